@@ -0,0 +1,194 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.MapSnapshotService.ExportFormat;
+import com.mapbox.mapboxandroiddemo.utils.MapSnapshotService.SnapshotRequest;
+import com.mapbox.mapboxsdk.Mapbox;
+import com.mapbox.mapboxsdk.constants.Style;
+import com.mapbox.mapboxsdk.geometry.LatLngBounds;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Renders small batches of real snapshots of the streets style, so it needs a network connection.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BatchSnapshotGeneratorTest {
+
+  private static final int BATCH_SIZE = 6;
+  private static final int SNAPSHOT_SIZE = 256;
+  private static final long TIMEOUT_SECONDS = 120;
+
+  private Context context;
+  private File outputDirectory;
+  private BatchSnapshotGenerator generator;
+
+  @Before
+  public void setUp() {
+    context = InstrumentationRegistry.getTargetContext();
+    outputDirectory = new File(context.getCacheDir(), "batch_snapshot_test");
+    deleteOutput();
+    InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+      @Override
+      public void run() {
+        Mapbox.getInstance(context, context.getString(R.string.access_token));
+        generator = new BatchSnapshotGenerator(context, 2, outputDirectory, ExportFormat.PNG, 0);
+      }
+    });
+  }
+
+  @After
+  public void tearDown() {
+    InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+      @Override
+      public void run() {
+        generator.release();
+      }
+    });
+    deleteOutput();
+  }
+
+  @Test
+  public void batchWritesEverySnapshot() throws InterruptedException {
+    final RecordingListener listener = new RecordingListener(-1);
+    generate(createRequests(0), listener);
+
+    assertTrue("The batch didn't complete", listener.completed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertEquals(BATCH_SIZE, listener.writtenCount);
+    assertEquals(0, listener.failedCount);
+    assertEquals(listener.writtenFiles.size(), listener.writtenCount);
+    assertTrue(listener.snapshotsPerSecond > 0);
+    assertOutputFiles(listener.writtenFiles);
+  }
+
+  @Test
+  public void cancelledBatchStopsReportingAndIsReplacedByTheNextOne() throws InterruptedException {
+    // Cancels the first batch from its first written snapshot, and starts the second one right away
+    final RecordingListener secondListener = new RecordingListener(-1);
+    final RecordingListener firstListener = new RecordingListener(1) {
+      @Override
+      void onLimitReached() {
+        generator.cancel();
+        assertFalse(generator.isGenerating());
+        generator.generate(createRequests(1), secondListener);
+      }
+    };
+    generate(createRequests(0), firstListener);
+
+    assertTrue("The second batch didn't complete", secondListener.completed.await(TIMEOUT_SECONDS,
+      TimeUnit.SECONDS));
+    assertEquals(BATCH_SIZE, secondListener.writtenCount);
+    assertEquals(0, secondListener.failedCount);
+    assertOutputFiles(secondListener.writtenFiles);
+
+    // Snapshots of the first batch that were being written when it was cancelled are overwritten, and it
+    // never reports anything after the cancel
+    assertEquals(1, firstListener.writtenFiles.size());
+    assertEquals(1, firstListener.completed.getCount());
+  }
+
+  private void generate(final List<SnapshotRequest> requests, final BatchSnapshotGenerator.Listener listener) {
+    InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+      @Override
+      public void run() {
+        generator.generate(requests, listener);
+        assertTrue(generator.isGenerating());
+      }
+    });
+  }
+
+  private void assertOutputFiles(List<File> writtenFiles) {
+    File[] files = outputDirectory.listFiles();
+    assertNotNull(files);
+    assertEquals(BATCH_SIZE, files.length);
+    for (File file : writtenFiles) {
+      assertTrue(file.exists());
+      assertTrue(file.length() > 0);
+    }
+  }
+
+  /**
+   * Creates a row of neighbouring areas in San Francisco, a row further south for every batch.
+   */
+  private static List<SnapshotRequest> createRequests(int batch) {
+    List<SnapshotRequest> requests = new ArrayList<>();
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      double west = -122.52 + i * 0.02;
+      double north = 37.81 - batch * 0.02;
+      requests.add(new SnapshotRequest(LatLngBounds.from(north, west + 0.02, north - 0.02, west), SNAPSHOT_SIZE,
+        SNAPSHOT_SIZE, Style.MAPBOX_STREETS));
+    }
+    return requests;
+  }
+
+  private void deleteOutput() {
+    File[] files = outputDirectory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        assertTrue(file.delete());
+      }
+    }
+  }
+
+  private static class RecordingListener implements BatchSnapshotGenerator.Listener {
+
+    final CountDownLatch completed = new CountDownLatch(1);
+    final List<File> writtenFiles = new ArrayList<>();
+    private final int writtenLimit;
+    int writtenCount;
+    int failedCount;
+    double snapshotsPerSecond;
+
+    /**
+     * @param writtenLimit the number of written snapshots after which {@link #onLimitReached()} is called,
+     *                     or -1
+     */
+    RecordingListener(int writtenLimit) {
+      this.writtenLimit = writtenLimit;
+    }
+
+    void onLimitReached() {
+      // Overridden by tests that act in the middle of a batch
+    }
+
+    @Override
+    public void onSnapshotWritten(int index, @NonNull SnapshotRequest request, @NonNull File file) {
+      writtenFiles.add(file);
+      if (writtenFiles.size() == writtenLimit) {
+        onLimitReached();
+      }
+    }
+
+    @Override
+    public void onSnapshotFailed(int index, @NonNull SnapshotRequest request, @NonNull String message) {
+      // Counted by the generator
+    }
+
+    @Override
+    public void onBatchComplete(int writtenCount, int failedCount, double snapshotsPerSecond) {
+      this.writtenCount = writtenCount;
+      this.failedCount = failedCount;
+      this.snapshotsPerSecond = snapshotsPerSecond;
+      completed.countDown();
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.View;
+import android.widget.TextView;
+
+import com.google.gson.JsonObject;
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.Point;
+import com.mapbox.mapboxandroiddemo.R;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Renders a batch of callouts the way the symbol layer examples do: every Bitmap is handed back to the pool
+ * once the callout rendered after it replaced it on the map. Checks how often the {@link BitmapPool} reused a
+ * Bitmap, and logs the render rate and peak heap use with and without a pool.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CalloutRendererBenchmarkTest {
+
+  private static final String TAG = "CalloutRendererBenchmark";
+  private static final String PROPERTY_NAME = "name";
+  private static final int CALLOUT_COUNT = 500;
+  private static final long POOL_SIZE_BYTES = 4 * 1024 * 1024;
+
+  @Test
+  public void renderReusesPooledBitmaps() {
+    BitmapPool pool = new BitmapPool(POOL_SIZE_BYTES);
+    CalloutRenderer renderer = renderBatch(pool, "pooled");
+
+    assertEquals(CALLOUT_COUNT, renderer.getRenderCount());
+    // Every callout has the same size, and only the first two are rendered while none has been released
+    assertEquals(2, pool.getMissCount());
+    assertEquals(CALLOUT_COUNT - 2, pool.getHitCount());
+    pool.clear();
+  }
+
+  @Test
+  public void renderAllocatesEveryBitmapWithoutPool() {
+    BitmapPool pool = new BitmapPool(0);
+    CalloutRenderer renderer = renderBatch(pool, "unpooled");
+
+    assertEquals(CALLOUT_COUNT, renderer.getRenderCount());
+    assertEquals(CALLOUT_COUNT, pool.getMissCount());
+    assertEquals(0, pool.getHitCount());
+  }
+
+  private static CalloutRenderer renderBatch(BitmapPool pool, String label) {
+    Context context = InstrumentationRegistry.getTargetContext();
+    CalloutRenderer renderer = new CalloutRenderer(context, R.layout.symbol_layer_info_window_layout_callout,
+      new TitleViewBinder(), pool);
+    CalloutRenderStats stats = new CalloutRenderStats();
+
+    Bitmap previous = null;
+    for (Feature feature : createFeatures()) {
+      Bitmap bitmap = renderer.render(feature);
+      assertTrue(bitmap.getWidth() > 0 && bitmap.getHeight() > 0);
+      stats.sampleHeap();
+      if (previous != null) {
+        renderer.release(previous);
+      }
+      previous = bitmap;
+    }
+    renderer.release(previous);
+
+    Log.d(TAG, String.format(Locale.US, "%s: %d callouts at %.1f bitmaps/s, pool hit rate %.2f, peak heap %d KB",
+      label, renderer.getRenderCount(), renderer.getRenderRate(), pool.getHitRate(),
+      stats.getPeakHeapBytes() / 1024));
+    return renderer;
+  }
+
+  private static List<Feature> createFeatures() {
+    List<Feature> features = new ArrayList<>();
+    for (int i = 0; i < CALLOUT_COUNT; i++) {
+      JsonObject properties = new JsonObject();
+      // The same text for every callout, so they all have the same size whatever the font
+      properties.addProperty(PROPERTY_NAME, "Callout");
+      features.add(Feature.fromGeometry(Point.fromLngLat(-122.4 + i * 0.001, 37.7), properties,
+        String.valueOf(i)));
+    }
+    return features;
+  }
+
+  private static class TitleViewBinder implements CalloutRenderer.ViewBinder {
+
+    @Override
+    public void bindView(@NonNull View view, @NonNull Feature feature) {
+      TextView titleTextView = view.findViewById(R.id.info_window_title);
+      titleTextView.setText(feature.getStringProperty(PROPERTY_NAME));
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.content.res.AssetManager;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.geojson.Geometry;
+import com.mapbox.geojson.LineString;
+import com.mapbox.geojson.Point;
+import com.mapbox.geojson.Polygon;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the {@link GeoJsonCoordinateDecoder} with reading a whole GeoJSON asset into a String, parsing it
+ * into a {@link FeatureCollection} and collecting its coordinates as Points, which is what the examples used
+ * to do. Decodes "marathon_route.geojson", which has over 12,000 coordinates, and logs the average time and
+ * heap growth of each approach.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GeoJsonDecodeBenchmarkTest {
+
+  private static final String TAG = "GeoJsonDecodeBenchmark";
+  private static final String ASSET_NAME = "marathon_route.geojson";
+  private static final int ITERATIONS = 10;
+
+  @Test
+  public void decodeMarathonRoute() throws IOException {
+    AssetManager assets = InstrumentationRegistry.getTargetContext().getAssets();
+    Runtime runtime = Runtime.getRuntime();
+    GeoJsonCoordinateDecoder decoder = new GeoJsonCoordinateDecoder();
+    LngLatBuffer buffer = new LngLatBuffer();
+
+    // One untimed warm up run of each approach
+    int treeCount = decodeWithTree(assets, ASSET_NAME).size();
+    decodeStreaming(assets, ASSET_NAME, decoder, buffer);
+    assertEquals(treeCount, buffer.size());
+
+    long treeNanos = 0;
+    long treeHeapBytes = 0;
+    long streamingNanos = 0;
+    long streamingHeapBytes = 0;
+    for (int i = 0; i < ITERATIONS; i++) {
+      runtime.gc();
+      long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+      long start = System.nanoTime();
+      decodeWithTree(assets, ASSET_NAME);
+      treeNanos += System.nanoTime() - start;
+      treeHeapBytes += runtime.totalMemory() - runtime.freeMemory() - heapBefore;
+
+      runtime.gc();
+      heapBefore = runtime.totalMemory() - runtime.freeMemory();
+      start = System.nanoTime();
+      buffer.clear();
+      decodeStreaming(assets, ASSET_NAME, decoder, buffer);
+      streamingNanos += System.nanoTime() - start;
+      streamingHeapBytes += runtime.totalMemory() - runtime.freeMemory() - heapBefore;
+    }
+
+    Log.d(TAG, String.format(Locale.US, "%s: FeatureCollection %d coordinates in %.1f ms, heap +%d KB; streaming %d"
+        + " coordinates in %.1f ms, heap +%d KB", ASSET_NAME, treeCount, treeNanos / 1000000f / ITERATIONS,
+      treeHeapBytes / 1024 / ITERATIONS, buffer.size(), streamingNanos / 1000000f / ITERATIONS,
+      streamingHeapBytes / 1024 / ITERATIONS));
+  }
+
+  private static void decodeStreaming(AssetManager assets, String assetName, GeoJsonCoordinateDecoder decoder,
+                                      LngLatBuffer buffer) throws IOException {
+    InputStream inputStream = assets.open(assetName);
+    try {
+      decoder.decodeAllGeometries(inputStream, buffer);
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  private static List<Point> decodeWithTree(AssetManager assets, String assetName) throws IOException {
+    InputStream inputStream = assets.open(assetName);
+    StringBuilder sb = new StringBuilder();
+    try {
+      BufferedReader rd = new BufferedReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+      int cp;
+      while ((cp = rd.read()) != -1) {
+        sb.append((char) cp);
+      }
+    } finally {
+      inputStream.close();
+    }
+
+    List<Point> points = new ArrayList<>();
+    for (Feature feature : FeatureCollection.fromJson(sb.toString()).features()) {
+      Geometry geometry = feature.geometry();
+      if (geometry instanceof LineString) {
+        points.addAll(((LineString) geometry).coordinates());
+      } else if (geometry instanceof Polygon) {
+        for (List<Point> ring : ((Polygon) geometry).coordinates()) {
+          points.addAll(ring);
+        }
+      }
+    }
+    return points;
+  }
+}
@@ -0,0 +1,110 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.mapbox.geojson.Point;
+import com.mapbox.geojson.utils.PolylineUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the {@link LineSimplifier} with {@code PolylineUtils.simplify()} on synthetic GPS traces of
+ * 1,000 to 50,000 points, about the size of the line assets of the examples. Checks that both keep the same
+ * vertices, at the benchmark tolerance and at the tolerance of every level of a {@link SimplifiedLinePyramid},
+ * and logs the time each takes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LineSimplifierBenchmarkTest {
+
+  private static final String TAG = "LineSimplifierBenchmark";
+  private static final double TOLERANCE = 0.001;
+  private static final long SEED = 42;
+  private static final int[] TRACE_SIZES = {1000, 10000, 50000};
+  private static final double PIXEL_TOLERANCE = 4;
+  private static final int MIN_ZOOM = 0;
+  private static final int MAX_ZOOM = 22;
+  // The world is 512 pixels wide at zoom level 0 in the Maps SDK
+  private static final double DEGREES_PER_PIXEL_AT_ZOOM_ZERO = 360d / 512;
+
+  @Test
+  public void simplifyTraces() {
+    for (int traceSize : TRACE_SIZES) {
+      LngLatBuffer trace = createTrace(traceSize);
+      List<Point> points = trace.toPoints();
+      // One untimed warm up run
+      PolylineUtils.simplify(points, TOLERANCE, true);
+      runLineSimplifier(trace, LineSimplifier.DOUGLAS_PEUCKER);
+
+      long start = System.nanoTime();
+      List<Point> polylineUtilsPoints = PolylineUtils.simplify(points, TOLERANCE, true);
+      long polylineUtilsNanos = System.nanoTime() - start;
+      int polylineUtilsCount = polylineUtilsPoints.size();
+
+      start = System.nanoTime();
+      int[] douglasPeuckerIndices = runLineSimplifier(trace, LineSimplifier.DOUGLAS_PEUCKER);
+      long douglasPeuckerNanos = System.nanoTime() - start;
+      int douglasPeuckerCount = douglasPeuckerIndices.length;
+
+      start = System.nanoTime();
+      int visvalingamCount = runLineSimplifier(trace, LineSimplifier.VISVALINGAM_WHYATT).length;
+      long visvalingamNanos = System.nanoTime() - start;
+
+      // Picking a level from a pyramid is what happens on every zoom change
+      SimplifiedLinePyramid pyramid = new SimplifiedLinePyramid(trace, LineSimplifier.DOUGLAS_PEUCKER,
+        PIXEL_TOLERANCE, MIN_ZOOM, MAX_ZOOM);
+      start = System.nanoTime();
+      int pyramidCount = pyramid.getLatLngs(14).size();
+      long pyramidNanos = System.nanoTime() - start;
+
+      Log.d(TAG, String.format(Locale.US, "%d points: PolylineUtils %d in %.1f ms, Douglas-Peucker %d in %.1f ms,"
+          + " Visvalingam-Whyatt %d in %.1f ms, pyramid level 14 %d in %.1f ms", traceSize, polylineUtilsCount,
+        polylineUtilsNanos / 1000000f, douglasPeuckerCount, douglasPeuckerNanos / 1000000f, visvalingamCount,
+        visvalingamNanos / 1000000f, pyramidCount, pyramidNanos / 1000000f));
+
+      assertSameVertices(polylineUtilsPoints, trace, douglasPeuckerIndices);
+      // Visvalingam-Whyatt compares areas with the tolerance, so PolylineUtils can't serve as a reference for it
+      assertTrue(visvalingamCount >= 2 && visvalingamCount < traceSize);
+      for (int zoom = MIN_ZOOM; zoom <= MAX_ZOOM; zoom++) {
+        double tolerance = PIXEL_TOLERANCE * DEGREES_PER_PIXEL_AT_ZOOM_ZERO / Math.pow(2, zoom);
+        assertSameVertices(PolylineUtils.simplify(points, tolerance, true), trace, pyramid.getIndices(zoom));
+      }
+    }
+  }
+
+  private static int[] runLineSimplifier(LngLatBuffer trace, int method) {
+    return LineSimplifier.select(LineSimplifier.computeImportance(trace, method), TOLERANCE);
+  }
+
+  private static void assertSameVertices(List<Point> expected, LngLatBuffer trace, int[] indices) {
+    assertEquals(expected.size(), indices.length);
+    for (int i = 0; i < indices.length; i++) {
+      assertEquals(expected.get(i).longitude(), trace.getLongitude(indices[i]), 0);
+      assertEquals(expected.get(i).latitude(), trace.getLatitude(indices[i]), 0);
+    }
+  }
+
+  private static LngLatBuffer createTrace(int size) {
+    // A walk with a slowly turning heading, roughly like a GPS trace sampled every few meters
+    Random random = new Random(SEED);
+    LngLatBuffer trace = new LngLatBuffer(size);
+    double longitude = -122.4;
+    double latitude = 37.7;
+    double heading = 0;
+    for (int i = 0; i < size; i++) {
+      heading += (random.nextDouble() - 0.5) * 0.5;
+      longitude += Math.cos(heading) * 0.00005;
+      latitude += Math.sin(heading) * 0.00005;
+      trace.add(longitude, latitude);
+    }
+    return trace;
+  }
+}
@@ -0,0 +1,172 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.mapbox.api.directions.v5.DirectionsCriteria;
+import com.mapbox.core.constants.Constants;
+import com.mapbox.geojson.Point;
+import com.mapbox.geojson.utils.PolylineUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Matches a trace of 15 points against a mock Map Matching API, split into the windows [0, 10) and [6, 15),
+ * which overlap at the trace points 6 to 9. Every window is "matched" onto its own trace points, so the
+ * stitched line has to be the trace itself, without gaps or doubled points at the seam.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TraceMatcherTest {
+
+  private static final int TRACE_SIZE = 15;
+  private static final int WINDOW_SIZE = 10;
+  private static final int OVERLAP = 4;
+  private static final double DELTA = 0.000001;
+
+  private MockWebServer server;
+  private TraceMatcher matcher;
+  private List<Point> trace;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockWebServer();
+    server.start();
+    // One request at a time, so the responses are served in window order
+    matcher = new TraceMatcher("pk.test", DirectionsCriteria.PROFILE_DRIVING, server.url("/").toString(),
+      WINDOW_SIZE, OVERLAP, 1);
+    trace = new ArrayList<>();
+    for (int i = 0; i < TRACE_SIZE; i++) {
+      trace.add(Point.fromLngLat(-122.4 + i * 0.001, 37.7 + i * 0.0005));
+    }
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    matcher.shutdown();
+    server.shutdown();
+  }
+
+  @Test
+  public void stitchesWindowsAtTheMiddleOfTheOverlap() throws Exception {
+    server.enqueue(createResponse(0, 10, -1));
+    server.enqueue(createResponse(6, 15, -1));
+
+    Result result = matchTrace();
+
+    assertEquals(0, result.failedWindowCount);
+    assertTrace(result.matchedPoints);
+  }
+
+  @Test
+  public void stitchesBothWindowsAtTheSamePointWhenTheMiddleIsUnmatchedOnOneSide() throws Exception {
+    // The middle of the overlap, trace point 8, is only matched by the second window
+    server.enqueue(createResponse(0, 10, 8));
+    server.enqueue(createResponse(6, 15, -1));
+
+    Result result = matchTrace();
+
+    assertEquals(0, result.failedWindowCount);
+    assertTrace(result.matchedPoints);
+  }
+
+  @Test
+  public void fillsInAFailedWindowWithTheRawTrace() throws Exception {
+    server.enqueue(createResponse(0, 10, -1));
+    server.enqueue(new MockResponse().setResponseCode(500));
+
+    Result result = matchTrace();
+
+    assertEquals(1, result.failedWindowCount);
+    assertTrace(result.matchedPoints);
+  }
+
+  private Result matchTrace() throws InterruptedException {
+    final Result result = new Result();
+    InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+      @Override
+      public void run() {
+        matcher.match(trace, new TraceMatcher.Listener() {
+          @Override
+          public void onPartialMatch(List<Point> matchedPoints, int matchedWindowCount, int windowCount) {
+            result.partialMatchCount++;
+          }
+
+          @Override
+          public void onMatchComplete(List<Point> matchedPoints, int failedWindowCount) {
+            result.matchedPoints = new ArrayList<>(matchedPoints);
+            result.failedWindowCount = failedWindowCount;
+            result.completed.countDown();
+          }
+        });
+      }
+    });
+    assertTrue("Matching didn't complete", result.completed.await(10, TimeUnit.SECONDS));
+    assertTrue(result.partialMatchCount > 0);
+    return result;
+  }
+
+  private void assertTrace(List<Point> matchedPoints) {
+    assertEquals(trace.size(), matchedPoints.size());
+    for (int i = 0; i < trace.size(); i++) {
+      assertEquals(trace.get(i).longitude(), matchedPoints.get(i).longitude(), DELTA);
+      assertEquals(trace.get(i).latitude(), matchedPoints.get(i).latitude(), DELTA);
+    }
+  }
+
+  /**
+   * Creates a Map Matching response that matches the trace points of a window onto themselves.
+   *
+   * @param start          the first trace point of the window
+   * @param end            the end of the window, exclusive
+   * @param unmatchedIndex the trace point that isn't matched, or -1
+   */
+  private MockResponse createResponse(int start, int end, int unmatchedIndex) {
+    List<Point> geometry = trace.subList(start, end);
+    StringBuilder json = new StringBuilder();
+    json.append("{\"code\":\"Ok\",\"matchings\":[{\"confidence\":0.9,\"distance\":1000,\"duration\":100,")
+      .append("\"weight\":100,\"weight_name\":\"routability\",\"legs\":[],\"geometry\":\"")
+      .append(escape(PolylineUtils.encode(geometry, Constants.PRECISION_6)))
+      .append("\"}],\"tracepoints\":[");
+    for (int i = start; i < end; i++) {
+      if (i > start) {
+        json.append(',');
+      }
+      if (i == unmatchedIndex) {
+        json.append("null");
+      } else {
+        Point point = trace.get(i);
+        json.append("{\"alternatives_count\":0,\"waypoint_index\":").append(i - start)
+          .append(",\"matchings_index\":0,\"name\":\"\",\"location\":[").append(point.longitude()).append(',')
+          .append(point.latitude()).append("]}");
+      }
+    }
+    json.append("]}");
+    return new MockResponse().setBody(json.toString());
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"");
+  }
+
+  private static class Result {
+
+    final CountDownLatch completed = new CountDownLatch(1);
+    List<Point> matchedPoints;
+    int failedWindowCount;
+    int partialMatchCount;
+  }
+}
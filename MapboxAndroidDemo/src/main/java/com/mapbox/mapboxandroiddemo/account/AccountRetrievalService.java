@@ -13,6 +13,7 @@ import android.util.Log;
 import com.mapbox.mapboxandroiddemo.MainActivity;
 import com.mapbox.mapboxandroiddemo.R;
 import com.mapbox.mapboxandroiddemo.commons.AnalyticsTracker;
+import com.mapbox.mapboxandroiddemo.commons.NetworkModule;
 import com.mapbox.mapboxandroiddemo.model.usermodel.UserResponse;
 
 import org.json.JSONException;
@@ -22,11 +23,8 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 
 import okhttp3.MediaType;
-import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
-import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
 
 import static com.mapbox.mapboxandroiddemo.commons.StringConstants.AUTHCODE_KEY;
 import static com.mapbox.mapboxandroiddemo.commons.StringConstants.AVATAR_IMAGE_KEY;
@@ -87,7 +85,6 @@ public class AccountRetrievalService extends IntentService {
       .appendQueryParameter("code", code)
       .build().getQuery();
 
-    OkHttpClient client = new OkHttpClient();
     Request request = new Request.Builder()
       .addHeader("User-Agent", "Android Dev Preview")
       .addHeader("Content-Type", "application/x-www-form-urlencoded")
@@ -95,7 +92,7 @@ public class AccountRetrievalService extends IntentService {
       .post(RequestBody.create(MediaType.parse("application/x-www-form-urlencoded"), query))
       .build();
 
-    client.newCall(request).enqueue(new okhttp3.Callback() {
+    NetworkModule.getInstance(this).getOkHttpClient().newCall(request).enqueue(new okhttp3.Callback() {
       @Override
       public void onFailure(okhttp3.Call call, IOException exception) {
         Log.d("AccountRetrievalService", "onFailure: " + exception);
@@ -131,11 +128,8 @@ public class AccountRetrievalService extends IntentService {
   }
 
   private void getUserInfo(final String userName, final String token) {
-    Retrofit retrofit = new Retrofit.Builder()
-      .baseUrl(BASE_URL)
-      .addConverterFactory(GsonConverterFactory.create())
-      .build();
-    MapboxAccountRetrofitService service = retrofit.create(MapboxAccountRetrofitService.class);
+    MapboxAccountRetrofitService service = NetworkModule.getInstance(this).getRetrofit(BASE_URL)
+      .create(MapboxAccountRetrofitService.class);
     retrofit2.Call<UserResponse> request = service.getUserAccount(userName, token);
     request.enqueue(new retrofit2.Callback<UserResponse>() {
       @Override
@@ -4,26 +4,17 @@ import android.graphics.Color;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
-import android.text.TextUtils;
 import android.util.Log;
 
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonCoordinateDecoder;
+import com.mapbox.mapboxandroiddemo.utils.LngLatBuffer;
 import com.mapbox.mapboxsdk.Mapbox;
-import com.mapbox.mapboxsdk.annotations.PolylineOptions;
-import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
 import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Draw a polyline by parsing a GeoJSON file with the Mapbox Android SDK.
@@ -101,43 +92,19 @@ public class DrawGeojsonLineActivity extends AppCompatActivity implements OnMapR
     mapView.onDestroy();
   }
 
-  private class DrawGeoJson extends AsyncTask<Void, Void, List<LatLng>> {
+  private class DrawGeoJson extends AsyncTask<Void, Void, LngLatBuffer> {
     @Override
-    protected List<LatLng> doInBackground(Void... voids) {
+    protected LngLatBuffer doInBackground(Void... voids) {
 
-      ArrayList<LatLng> points = new ArrayList<>();
+      LngLatBuffer points = new LngLatBuffer();
 
       try {
-        // Load GeoJSON file
+        // Stream the coordinates of the GeoJSON file's line string straight into the buffer
         InputStream inputStream = getAssets().open("example.geojson");
-        BufferedReader rd = new BufferedReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
-        StringBuilder sb = new StringBuilder();
-        int cp;
-        while ((cp = rd.read()) != -1) {
-          sb.append((char) cp);
-        }
-
-        inputStream.close();
-
-        // Parse JSON
-        JSONObject json = new JSONObject(sb.toString());
-        JSONArray features = json.getJSONArray("features");
-        JSONObject feature = features.getJSONObject(0);
-        JSONObject geometry = feature.getJSONObject("geometry");
-        if (geometry != null) {
-          String type = geometry.getString("type");
-
-          // Our GeoJSON only has one feature: a line string
-          if (!TextUtils.isEmpty(type) && type.equalsIgnoreCase("LineString")) {
-
-            // Get the Coordinates
-            JSONArray coords = geometry.getJSONArray("coordinates");
-            for (int lc = 0; lc < coords.length(); lc++) {
-              JSONArray coord = coords.getJSONArray(lc);
-              LatLng latLng = new LatLng(coord.getDouble(1), coord.getDouble(0));
-              points.add(latLng);
-            }
-          }
+        try {
+          new GeoJsonCoordinateDecoder().decodeFirstGeometry(inputStream, points);
+        } finally {
+          inputStream.close();
         }
       } catch (Exception exception) {
         Log.e(TAG, "Exception Loading GeoJSON: " + exception.toString());
@@ -147,14 +114,13 @@ public class DrawGeojsonLineActivity extends AppCompatActivity implements OnMapR
     }
 
     @Override
-    protected void onPostExecute(List<LatLng> points) {
+    protected void onPostExecute(LngLatBuffer points) {
       super.onPostExecute(points);
 
       if (points.size() > 0) {
 
         // Draw polyline on map
-        mapboxMap.addPolyline(new PolylineOptions()
-          .addAll(points)
+        mapboxMap.addPolyline(points.toPolylineOptions()
           .color(Color.parseColor("#3bb2d0"))
           .width(2));
       }
@@ -1,10 +1,10 @@
 package com.mapbox.mapboxandroiddemo.examples.dds;
 
 import android.os.Bundle;
-import android.os.Handler;
 import android.support.v7.app.AppCompatActivity;
 
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.MapFrameScheduler;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
@@ -29,11 +29,11 @@ public class AddRainFallStyleActivity extends AppCompatActivity implements OnMap
   public static final String ID_SOURCE = "moji-source";
   public static final String ID_LAYER = "moji-layer";
   public static final String SOURCE_URL = "mapbox://shenhongissky.6vm8ssjm";
+  private static final long FRAME_INTERVAL_MILLIS = 1000;
   private MapView mapView;
-  private Handler handler;
+  private MapFrameScheduler frameScheduler;
   private FillLayer layer;
   private int index = 1;
-  private RefreshGeoJsonRunnable refreshGeoJsonRunnable;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -46,10 +46,10 @@ public class AddRainFallStyleActivity extends AppCompatActivity implements OnMap
     // This contains the MapView in XML and needs to be called after the account manager
     setContentView(R.layout.activity_style_rainfall);
 
-    handler = new Handler();
     mapView = findViewById(R.id.mapView);
     mapView.onCreate(savedInstanceState);
     mapView.getMapAsync(this);
+    frameScheduler = new MapFrameScheduler(mapView);
   }
 
   @Override
@@ -86,9 +86,6 @@ public class AddRainFallStyleActivity extends AppCompatActivity implements OnMap
   protected void onDestroy() {
     super.onDestroy();
     mapView.onDestroy();
-    handler.removeCallbacks(refreshGeoJsonRunnable);
-    refreshGeoJsonRunnable = null;
-    handler = null;
   }
 
   @Override
@@ -100,22 +97,24 @@ public class AddRainFallStyleActivity extends AppCompatActivity implements OnMap
   @Override
   public void onMapReady(MapboxMap mapboxMap) {
     addRadar(mapboxMap);
-    refreshGeoJsonRunnable = new RefreshGeoJsonRunnable();
-    do {
-      handler.postDelayed(refreshGeoJsonRunnable, 1000);
-    }
-    while (index == 39);
+    frameScheduler.add(new RefreshFilterAnimation());
   }
 
-  private class RefreshGeoJsonRunnable implements Runnable {
+  private class RefreshFilterAnimation implements MapFrameScheduler.FrameAnimation {
+    private boolean started;
+
     @Override
-    public void run() {
-      layer.setFilter(eq((Expression.get("idx")), literal(index)));
-      index++;
-      if (index == 40) {
-        index = 0;
+    public long onFrame(long frameTimeMillis) {
+      // The first hour is already shown by the initial filter
+      if (started) {
+        layer.setFilter(eq((Expression.get("idx")), literal(index)));
+        index++;
+        if (index == 40) {
+          index = 0;
+        }
       }
-      handler.postDelayed(this, 1000);
+      started = true;
+      return frameTimeMillis + FRAME_INTERVAL_MILLIS;
     }
   }
 
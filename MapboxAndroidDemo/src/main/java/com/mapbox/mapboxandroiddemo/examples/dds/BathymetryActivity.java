@@ -7,6 +7,7 @@ import android.util.Log;
 
 import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.commons.GeoJsonAssetLoader;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.geometry.LatLngBounds;
@@ -17,7 +18,7 @@ import com.mapbox.mapboxsdk.style.layers.FillLayer;
 import com.mapbox.mapboxsdk.style.layers.SymbolLayer;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
-import java.io.InputStream;
+import java.io.IOException;
 
 import static com.mapbox.mapboxsdk.style.expressions.Expression.eq;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.geometryType;
@@ -72,7 +73,7 @@ public class BathymetryActivity extends AppCompatActivity implements OnMapReadyC
     mapboxMap.removeLayer("water-label");
 
     // Initialize FeatureCollection object for future use with layers
-    featureCollection = FeatureCollection.fromJson(loadGeoJsonFromAsset("bathymetry-data.geojson"));
+    featureCollection = loadGeoJsonFromAsset("bathymetry-data.geojson");
 
     // Retrieve GeoJSON from local file and add it to the map
     GeoJsonSource geoJsonSource = new GeoJsonSource(geojsonSourceId,
@@ -161,19 +162,12 @@ public class BathymetryActivity extends AppCompatActivity implements OnMapReadyC
     mapView.onSaveInstanceState(outState);
   }
 
-  private String loadGeoJsonFromAsset(String filename) {
+  private FeatureCollection loadGeoJsonFromAsset(String filename) {
     try {
-      // Load GeoJSON file
-      InputStream is = getAssets().open(filename);
-      int size = is.available();
-      byte[] buffer = new byte[size];
-      is.read(buffer);
-      is.close();
-      return new String(buffer, "UTF-8");
-
-    } catch (Exception exception) {
-      Log.e("StyleLineActivity", "Exception Loading GeoJSON: " + exception.toString());
-      exception.printStackTrace();
+      // Load GeoJSON file from local asset folder through the shared, cached loader
+      return GeoJsonAssetLoader.loadFeatureCollection(this, filename);
+    } catch (IOException exception) {
+      Log.e("BathymetryActivity", "Exception loading GeoJSON: " + exception.toString());
       return null;
     }
   }
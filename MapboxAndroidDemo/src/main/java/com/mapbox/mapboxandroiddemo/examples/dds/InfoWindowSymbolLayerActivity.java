@@ -1,16 +1,13 @@
 package com.mapbox.mapboxandroiddemo.examples.dds;
 
-import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.graphics.Canvas;
-import android.graphics.Color;
 import android.graphics.PointF;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.v7.app.AppCompatActivity;
-import android.view.LayoutInflater;
+import android.util.Log;
 import android.view.View;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -18,6 +15,14 @@ import android.widget.Toast;
 import com.mapbox.geojson.Feature;
 import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.commons.FeatureIndex;
+import com.mapbox.mapboxandroiddemo.commons.GeoJsonAssetLoader;
+import com.mapbox.mapboxandroiddemo.utils.BitmapPool;
+import com.mapbox.mapboxandroiddemo.utils.CalloutImageCache;
+import com.mapbox.mapboxandroiddemo.utils.CalloutImageCache.Snapshot;
+import com.mapbox.mapboxandroiddemo.utils.CalloutRenderStats;
+import com.mapbox.mapboxandroiddemo.utils.CalloutRenderer;
+import com.mapbox.mapboxandroiddemo.utils.FeatureStateOverlay;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.annotations.BubbleLayout;
 import com.mapbox.mapboxsdk.geometry.LatLng;
@@ -27,7 +32,7 @@ import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
 import com.mapbox.mapboxsdk.style.layers.SymbolLayer;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
-import java.io.InputStream;
+import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.util.HashMap;
 import java.util.List;
@@ -54,12 +59,17 @@ public class InfoWindowSymbolLayerActivity extends AppCompatActivity implements
   private static final String PROPERTY_SELECTED = "selected";
   private static final String PROPERTY_NAME = "name";
   private static final String PROPERTY_CAPITAL = "capital";
+  private static final long CALLOUT_POOL_SIZE_BYTES = 2 * 1024 * 1024;
   private MapView mapView;
   private MapboxMap mapboxMap;
   private String geojsonSourceId = "geojsonSourceId";
+  private String selectionSourceId = "selectionSourceId";
   private GeoJsonSource source;
+  private FeatureStateOverlay selectionOverlay;
   private FeatureCollection featureCollection;
-  private HashMap<String, View> viewMap;
+  private FeatureIndex featureIndex;
+  private BitmapPool calloutBitmapPool;
+  private CalloutImageCache calloutImageCache;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -72,6 +82,9 @@ public class InfoWindowSymbolLayerActivity extends AppCompatActivity implements
     // This contains the MapView in XML and needs to be called after the access token is configured.
     setContentView(R.layout.activity_info_window_symbol_layer);
 
+    calloutBitmapPool = new BitmapPool(CALLOUT_POOL_SIZE_BYTES);
+    calloutImageCache = new CalloutImageCache(calloutBitmapPool, PROPERTY_NAME, PROPERTY_NAME, PROPERTY_CAPITAL);
+
     // Initialize the map view
     mapView = findViewById(R.id.mapView);
     mapView.onCreate(savedInstanceState);
@@ -100,6 +113,7 @@ public class InfoWindowSymbolLayerActivity extends AppCompatActivity implements
       return;
     }
     featureCollection = collection;
+    featureIndex = FeatureIndex.build(collection, PROPERTY_NAME);
     setupSource();
     setUpImage();
     setUpMarkerLayer();
@@ -112,6 +126,10 @@ public class InfoWindowSymbolLayerActivity extends AppCompatActivity implements
   private void setupSource() {
     source = new GeoJsonSource(geojsonSourceId, featureCollection);
     mapboxMap.addSource(source);
+
+    // selected features are copied to a separate small source, so selecting one doesn't update all of them
+    selectionOverlay = new FeatureStateOverlay(selectionSourceId, PROPERTY_NAME);
+    mapboxMap.addSource(selectionOverlay.getSource());
   }
 
   /**
@@ -150,7 +168,7 @@ public class InfoWindowSymbolLayerActivity extends AppCompatActivity implements
    * </p>
    */
   private void setUpInfoWindowLayer() {
-    mapboxMap.addLayer(new SymbolLayer(CALLOUT_LAYER_ID, geojsonSourceId)
+    mapboxMap.addLayer(new SymbolLayer(CALLOUT_LAYER_ID, selectionSourceId)
       .withProperties(
         /* show image with id title based on the value of the name feature property */
         iconImage("{name}"),
@@ -179,16 +197,14 @@ public class InfoWindowSymbolLayerActivity extends AppCompatActivity implements
   private void handleClickIcon(PointF screenPoint) {
     List<Feature> features = mapboxMap.queryRenderedFeatures(screenPoint, MARKER_LAYER_ID);
     if (!features.isEmpty()) {
-      String name = features.get(0).getStringProperty(PROPERTY_NAME);
-      List<Feature> featureList = featureCollection.features();
-      for (int i = 0; i < featureList.size(); i++) {
-        if (featureList.get(i).getStringProperty(PROPERTY_NAME).equals(name)) {
-          if (featureSelectStatus(i)) {
-            setFeatureSelectState(featureList.get(i), false);
-          } else {
-            setSelected(i);
-          }
-        }
+      int index = featureIndex.indexOfName(features.get(0).getStringProperty(PROPERTY_NAME));
+      if (index == -1) {
+        return;
+      }
+      if (featureSelectStatus(index)) {
+        setFeatureSelectState(featureCollection.features().get(index), false);
+      } else {
+        setSelected(index);
       }
     }
   }
@@ -201,7 +217,6 @@ public class InfoWindowSymbolLayerActivity extends AppCompatActivity implements
   private void setSelected(int index) {
     Feature feature = featureCollection.features().get(index);
     setFeatureSelectState(feature, true);
-    refreshSource();
   }
 
   /**
@@ -210,8 +225,7 @@ public class InfoWindowSymbolLayerActivity extends AppCompatActivity implements
    * @param feature the feature to be selected.
    */
   private void setFeatureSelectState(Feature feature, boolean selectedState) {
-    feature.properties().addProperty(PROPERTY_SELECTED, selectedState);
-    refreshSource();
+    selectionOverlay.setBooleanState(feature, PROPERTY_SELECTED, selectedState);
   }
 
   /**
@@ -221,22 +235,22 @@ public class InfoWindowSymbolLayerActivity extends AppCompatActivity implements
    * @return true if "selected" is true. False if the boolean property is false.
    */
   private boolean featureSelectStatus(int index) {
-    if (featureCollection == null) {
+    if (featureCollection == null || selectionOverlay == null) {
       return false;
     }
-    return featureCollection.features().get(index).getBooleanProperty(PROPERTY_SELECTED);
+    return selectionOverlay.getBooleanState(featureCollection.features().get(index), PROPERTY_SELECTED);
   }
 
   /**
    * Invoked when the bitmaps have been generated from a view.
    */
-  public void setImageGenResults(HashMap<String, View> viewMap, HashMap<String, Bitmap> imageMap) {
+  public void setImageGenResults(HashMap<String, Bitmap> imageMap) {
+    calloutImageCache.removeStale(imageMap);
     if (mapboxMap != null) {
       // calling addImages is faster as separate addImage calls for each bitmap.
       mapboxMap.addImages(imageMap);
     }
-    // need to store reference to views to be able to use them as hitboxes for click events.
-    this.viewMap = viewMap;
+    calloutImageCache.onImagesAdded(imageMap);
   }
 
   /**
@@ -258,8 +272,12 @@ public class InfoWindowSymbolLayerActivity extends AppCompatActivity implements
         return null;
       }
 
-      String geoJson = loadGeoJsonFromAsset(activity, "us_west_coast.geojson");
-      return FeatureCollection.fromJson(geoJson);
+      try {
+        return GeoJsonAssetLoader.loadFeatureCollection(activity, "us_west_coast.geojson");
+      } catch (IOException exception) {
+        Log.e("InfoWindowSymbolLayer", "Exception loading GeoJSON: " + exception.toString());
+        return null;
+      }
     }
 
     @Override
@@ -270,29 +288,8 @@ public class InfoWindowSymbolLayerActivity extends AppCompatActivity implements
         return;
       }
 
-      // This example runs on the premise that each GeoJSON Feature has a "selected" property,
-      // with a boolean value. If your data's Features don't have this boolean property,
-      // add it to the FeatureCollection 's features with the following code:
-      for (Feature singleFeature : featureCollection.features()) {
-        singleFeature.addBooleanProperty(PROPERTY_SELECTED, false);
-      }
-
       activity.setUpData(featureCollection);
-      new GenerateViewIconTask(activity).execute(featureCollection);
-    }
-
-    static String loadGeoJsonFromAsset(Context context, String filename) {
-      try {
-        // Load GeoJSON file from local asset folder
-        InputStream is = context.getAssets().open(filename);
-        int size = is.available();
-        byte[] buffer = new byte[size];
-        is.read(buffer);
-        is.close();
-        return new String(buffer, "UTF-8");
-      } catch (Exception exception) {
-        throw new RuntimeException(exception);
-      }
+      new GenerateViewIconTask(activity).execute(activity.calloutImageCache.snapshot(featureCollection.features()));
     }
   }
 
@@ -305,9 +302,8 @@ public class InfoWindowSymbolLayerActivity extends AppCompatActivity implements
    * Generating Views on background thread since we are not going to be adding them to the view hierarchy.
    * </p>
    */
-  private static class GenerateViewIconTask extends AsyncTask<FeatureCollection, Void, HashMap<String, Bitmap>> {
+  private static class GenerateViewIconTask extends AsyncTask<Snapshot, Void, HashMap<String, Bitmap>> {
 
-    private final HashMap<String, View> viewMap = new HashMap<>();
     private final WeakReference<InfoWindowSymbolLayerActivity> activityRef;
     private final boolean refreshSource;
 
@@ -322,40 +318,18 @@ public class InfoWindowSymbolLayerActivity extends AppCompatActivity implements
 
     @SuppressWarnings("WrongThread")
     @Override
-    protected HashMap<String, Bitmap> doInBackground(FeatureCollection... params) {
+    protected HashMap<String, Bitmap> doInBackground(Snapshot... params) {
       InfoWindowSymbolLayerActivity activity = activityRef.get();
       if (activity != null) {
-        HashMap<String, Bitmap> imagesMap = new HashMap<>();
-        LayoutInflater inflater = LayoutInflater.from(activity);
-
-        FeatureCollection featureCollection = params[0];
-
-        for (Feature feature : featureCollection.features()) {
+        CalloutRenderer renderer = new CalloutRenderer(activity, R.layout.symbol_layer_info_window_layout_callout,
+          new CalloutViewBinder(activity.getString(R.string.capital)), activity.calloutBitmapPool);
+        CalloutRenderStats stats = new CalloutRenderStats();
 
-          BubbleLayout bubbleLayout = (BubbleLayout)
-            inflater.inflate(R.layout.symbol_layer_info_window_layout_callout, null);
+        Snapshot snapshot = params[0];
 
-          String name = feature.getStringProperty(PROPERTY_NAME);
-          TextView titleTextView = bubbleLayout.findViewById(R.id.info_window_title);
-          titleTextView.setText(name);
-
-          String style = feature.getStringProperty(PROPERTY_CAPITAL);
-          TextView descriptionTextView = bubbleLayout.findViewById(R.id.info_window_description);
-          descriptionTextView.setText(
-            String.format(activity.getString(R.string.capital), style));
-
-          int measureSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
-          bubbleLayout.measure(measureSpec, measureSpec);
-
-          int measuredWidth = bubbleLayout.getMeasuredWidth();
-
-          bubbleLayout.setArrowPosition(measuredWidth / 2 - 5);
-
-          Bitmap bitmap = SymbolGenerator.generate(bubbleLayout);
-          imagesMap.put(name, bitmap);
-          viewMap.put(name, bubbleLayout);
-        }
+        HashMap<String, Bitmap> imagesMap = activity.calloutImageCache.renderDirty(renderer, snapshot, stats);
 
+        stats.log(renderer);
         return imagesMap;
       } else {
         return null;
@@ -367,7 +341,7 @@ public class InfoWindowSymbolLayerActivity extends AppCompatActivity implements
       super.onPostExecute(bitmapHashMap);
       InfoWindowSymbolLayerActivity activity = activityRef.get();
       if (activity != null && bitmapHashMap != null) {
-        activity.setImageGenResults(viewMap, bitmapHashMap);
+        activity.setImageGenResults(bitmapHashMap);
         if (refreshSource) {
           activity.refreshSource();
         }
@@ -377,32 +351,34 @@ public class InfoWindowSymbolLayerActivity extends AppCompatActivity implements
   }
 
   /**
-   * Utility class to generate Bitmaps for Symbol.
-   * <p>
-   * Bitmaps can be added to the map with {@link com.mapbox.mapboxsdk.maps.MapboxMap#addImage(String, Bitmap)}
-   * </p>
+   * Binds the name and capital of a city to the BubbleLayout callout, with the arrow centered below it.
    */
-  private static class SymbolGenerator {
-
-    /**
-     * Generate a Bitmap from an Android SDK View.
-     *
-     * @param view the View to be drawn to a Bitmap
-     * @return the generated bitmap
-     */
-    static Bitmap generate(@NonNull View view) {
+  private static class CalloutViewBinder implements CalloutRenderer.ViewBinder {
+
+    private final String capitalFormat;
+
+    CalloutViewBinder(String capitalFormat) {
+      this.capitalFormat = capitalFormat;
+    }
+
+    @Override
+    public void bindView(@NonNull View view, @NonNull Feature feature) {
+      BubbleLayout bubbleLayout = (BubbleLayout) view;
+
+      String name = feature.getStringProperty(PROPERTY_NAME);
+      TextView titleTextView = bubbleLayout.findViewById(R.id.info_window_title);
+      titleTextView.setText(name);
+
+      String style = feature.getStringProperty(PROPERTY_CAPITAL);
+      TextView descriptionTextView = bubbleLayout.findViewById(R.id.info_window_description);
+      descriptionTextView.setText(String.format(capitalFormat, style));
+
       int measureSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
-      view.measure(measureSpec, measureSpec);
+      bubbleLayout.measure(measureSpec, measureSpec);
 
-      int measuredWidth = view.getMeasuredWidth();
-      int measuredHeight = view.getMeasuredHeight();
+      int measuredWidth = bubbleLayout.getMeasuredWidth();
 
-      view.layout(0, 0, measuredWidth, measuredHeight);
-      Bitmap bitmap = Bitmap.createBitmap(measuredWidth, measuredHeight, Bitmap.Config.ARGB_8888);
-      bitmap.eraseColor(Color.TRANSPARENT);
-      Canvas canvas = new Canvas(bitmap);
-      view.draw(canvas);
-      return bitmap;
+      bubbleLayout.setArrowPosition(measuredWidth / 2 - 5);
     }
   }
 
@@ -448,6 +424,10 @@ public class InfoWindowSymbolLayerActivity extends AppCompatActivity implements
     if (mapboxMap != null) {
       mapboxMap.removeOnMapClickListener(this);
     }
+    if (selectionOverlay != null) {
+      selectionOverlay.cancelPendingUpdate();
+    }
     mapView.onDestroy();
+    calloutBitmapPool.clear();
   }
 }
\ No newline at end of file
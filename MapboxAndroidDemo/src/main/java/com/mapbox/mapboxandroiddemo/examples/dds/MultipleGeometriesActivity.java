@@ -3,8 +3,11 @@ package com.mapbox.mapboxandroiddemo.examples.dds;
 import android.graphics.Color;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
 
+import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.commons.GeoJsonAssetLoader;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
@@ -15,7 +18,6 @@ import com.mapbox.mapboxsdk.style.layers.PropertyFactory;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
 import java.io.IOException;
-import java.io.InputStream;
 
 import static com.mapbox.mapboxsdk.style.expressions.Expression.eq;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.geometryType;
@@ -122,17 +124,12 @@ public class MultipleGeometriesActivity extends AppCompatActivity implements OnM
     mapView.onSaveInstanceState(outState);
   }
 
-  private String loadJsonFromAsset(String filename) {
+  private FeatureCollection loadJsonFromAsset(String filename) {
     try {
-      InputStream is = getAssets().open(filename);
-      int size = is.available();
-      byte[] buffer = new byte[size];
-      is.read(buffer);
-      is.close();
-      return new String(buffer, "UTF-8");
-
-    } catch (IOException ex) {
-      ex.printStackTrace();
+      // Load GeoJSON file from local asset folder through the shared, cached loader
+      return GeoJsonAssetLoader.loadFeatureCollection(this, filename);
+    } catch (IOException exception) {
+      Log.e("MultipleGeometries", "Exception loading GeoJSON: " + exception.toString());
       return null;
     }
   }
@@ -1,11 +1,15 @@
 package com.mapbox.mapboxandroiddemo.examples.dds;
 
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
 import android.view.View;
 
+import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.commons.GeoJsonAssetLoader;
+import com.mapbox.mapboxandroiddemo.utils.MapInteractiveTrace;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.camera.CameraPosition;
 import com.mapbox.mapboxsdk.camera.CameraUpdateFactory;
@@ -17,7 +21,8 @@ import com.mapbox.mapboxsdk.style.expressions.Expression;
 import com.mapbox.mapboxsdk.style.layers.HeatmapLayer;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
-import java.io.InputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
 
 import static com.mapbox.mapboxsdk.style.expressions.Expression.heatmapDensity;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.interpolate;
@@ -42,6 +47,8 @@ public class MultipleHeatmapStylingActivity extends AppCompatActivity
   private Expression[] listOfHeatmapRadiusStops;
   private Float[] listOfHeatmapIntensityStops;
   private int index;
+  private FeatureCollection heatmapFeatures;
+  private MapInteractiveTrace interactiveTrace;
 
   @Override
   public void onCreate(Bundle savedInstanceState) {
@@ -51,6 +58,11 @@ public class MultipleHeatmapStylingActivity extends AppCompatActivity
     // object or in the same activity which contains the mapview.
     Mapbox.getInstance(this, getString(R.string.access_token));
     setContentView(R.layout.activity_multiple_heatmap_styling);
+    interactiveTrace = new MapInteractiveTrace("timeToInteractiveMapMultipleHeatmapStyling");
+
+    // Start parsing the GeoJSON right away so that it runs while the map style is loading
+    new LoadHeatmapDataTask(this).execute();
+
     mapView = findViewById(R.id.mapView);
     mapView.onCreate(savedInstanceState);
     mapView.getMapAsync(this);
@@ -65,11 +77,10 @@ public class MultipleHeatmapStylingActivity extends AppCompatActivity
       .build();
     mapboxMap.animateCamera(
       CameraUpdateFactory.newCameraPosition(cameraPositionForFragmentMap), 2600);
-    addHeatmapDataSource();
     initHeatmapColors();
     initHeatmapRadiusStops();
     initHeatmapIntensityStops();
-    addHeatmapLayer();
+    addHeatmapDataIfReady();
     findViewById(R.id.switch_heatmap_style_fab).setOnClickListener(new View.OnClickListener() {
       @Override
       public void onClick(View view) {
@@ -88,9 +99,28 @@ public class MultipleHeatmapStylingActivity extends AppCompatActivity
     });
   }
 
+  /**
+   * Invoked when the heatmap GeoJSON has been parsed on a background thread.
+   */
+  private void setHeatmapData(FeatureCollection featureCollection) {
+    heatmapFeatures = featureCollection;
+    addHeatmapDataIfReady();
+  }
+
+  /**
+   * The data is loaded in parallel with the map style, so it's only added once both are available.
+   */
+  private void addHeatmapDataIfReady() {
+    if (mapboxMap == null || heatmapFeatures == null || mapboxMap.getSource(HEATMAP_SOURCE_ID) != null) {
+      return;
+    }
+    addHeatmapDataSource();
+    addHeatmapLayer();
+    interactiveTrace.onDataAttached(mapView);
+  }
+
   private void addHeatmapDataSource() {
-    mapboxMap.addSource(new GeoJsonSource(HEATMAP_SOURCE_ID,
-      loadGeoJsonFromAsset("la_heatmap_styling_points.geojson")));
+    mapboxMap.addSource(new GeoJsonSource(HEATMAP_SOURCE_ID, heatmapFeatures));
   }
 
   private void addHeatmapLayer() {
@@ -159,6 +189,7 @@ public class MultipleHeatmapStylingActivity extends AppCompatActivity
   @Override
   public void onDestroy() {
     super.onDestroy();
+    interactiveTrace.cancel(mapView);
     mapView.onDestroy();
   }
 
@@ -409,20 +440,40 @@ public class MultipleHeatmapStylingActivity extends AppCompatActivity
     };
   }
 
-  private String loadGeoJsonFromAsset(String filename) {
-    try {
-      // Load GeoJSON file
-      InputStream is = getAssets().open(filename);
-      int size = is.available();
-      byte[] buffer = new byte[size];
-      is.read(buffer);
-      is.close();
-      return new String(buffer, "UTF-8");
-
-    } catch (Exception exception) {
-      Log.e("MultipleHeatmapStyling", "Exception loading GeoJSON: " + exception.toString());
-      exception.printStackTrace();
-      return null;
+  /**
+   * AsyncTask to load the heatmap data from the assets folder off the UI thread.
+   */
+  private static class LoadHeatmapDataTask extends AsyncTask<Void, Void, FeatureCollection> {
+
+    private final WeakReference<MultipleHeatmapStylingActivity> activityRef;
+
+    LoadHeatmapDataTask(MultipleHeatmapStylingActivity activity) {
+      this.activityRef = new WeakReference<>(activity);
+    }
+
+    @Override
+    protected FeatureCollection doInBackground(Void... params) {
+      MultipleHeatmapStylingActivity activity = activityRef.get();
+      if (activity == null) {
+        return null;
+      }
+
+      try {
+        return GeoJsonAssetLoader.loadFeatureCollection(activity, "la_heatmap_styling_points.geojson");
+      } catch (IOException exception) {
+        Log.e("MultipleHeatmapStyling", "Exception loading GeoJSON: " + exception.toString());
+        return null;
+      }
+    }
+
+    @Override
+    protected void onPostExecute(FeatureCollection featureCollection) {
+      super.onPostExecute(featureCollection);
+      MultipleHeatmapStylingActivity activity = activityRef.get();
+      if (featureCollection == null || activity == null || activity.isFinishing()) {
+        return;
+      }
+      activity.setHeatmapData(featureCollection);
     }
   }
-}
\ No newline at end of file
+}
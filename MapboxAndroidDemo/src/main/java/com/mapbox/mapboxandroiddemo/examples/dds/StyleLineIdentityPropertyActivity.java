@@ -4,7 +4,9 @@ import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
 
+import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.commons.GeoJsonAssetLoader;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
@@ -14,7 +16,7 @@ import com.mapbox.mapboxsdk.style.layers.Property;
 import com.mapbox.mapboxsdk.style.layers.PropertyFactory;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
-import java.io.InputStream;
+import java.io.IOException;
 
 import static com.mapbox.mapboxsdk.style.expressions.Expression.get;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.match;
@@ -112,23 +114,14 @@ public class StyleLineIdentityPropertyActivity extends AppCompatActivity {
     mapView.onSaveInstanceState(outState);
   }
 
-  private String loadGeoJsonFromAsset(String filename) {
-
+  private FeatureCollection loadGeoJsonFromAsset(String filename) {
     try {
-      // Load GeoJSON file
-      InputStream is = getAssets().open(filename);
-      int size = is.available();
-      byte[] buffer = new byte[size];
-      is.read(buffer);
-      is.close();
-      return new String(buffer, "UTF-8");
-
-    } catch (Exception exception) {
-      Log.e("StyleLineActivity", "Exception Loading GeoJSON: " + exception.toString());
-      exception.printStackTrace();
+      // Load GeoJSON file from local asset folder through the shared, cached loader
+      return GeoJsonAssetLoader.loadFeatureCollection(this, filename);
+    } catch (IOException exception) {
+      Log.e("StyleLineActivity", "Exception loading GeoJSON: " + exception.toString());
       return null;
     }
-
   }
 }
 
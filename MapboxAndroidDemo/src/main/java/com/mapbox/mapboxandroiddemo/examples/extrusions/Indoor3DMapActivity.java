@@ -3,8 +3,11 @@ package com.mapbox.mapboxandroiddemo.examples.extrusions;
 import android.os.Bundle;
 import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
 
+import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.commons.GeoJsonAssetLoader;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
@@ -13,7 +16,6 @@ import com.mapbox.mapboxsdk.style.layers.FillExtrusionLayer;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
 import java.io.IOException;
-import java.io.InputStream;
 
 import static com.mapbox.mapboxsdk.style.expressions.Expression.get;
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.fillExtrusionBase;
@@ -105,19 +107,12 @@ public class Indoor3DMapActivity extends AppCompatActivity {
     mapView.onSaveInstanceState(outState);
   }
 
-  private String loadJsonFromAsset(String filename) {
-    // Using this method to load in GeoJSON files from the assets folder.
-
+  private FeatureCollection loadJsonFromAsset(String filename) {
     try {
-      InputStream is = getAssets().open(filename);
-      int size = is.available();
-      byte[] buffer = new byte[size];
-      is.read(buffer);
-      is.close();
-      return new String(buffer, "UTF-8");
-
-    } catch (IOException ex) {
-      ex.printStackTrace();
+      // Load GeoJSON file from local asset folder through the shared, cached loader
+      return GeoJsonAssetLoader.loadFeatureCollection(this, filename);
+    } catch (IOException exception) {
+      Log.e("Indoor3DMapActivity", "Exception loading GeoJSON: " + exception.toString());
       return null;
     }
   }
@@ -12,12 +12,11 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.mapbox.api.geocoding.v5.GeocodingCriteria;
-import com.mapbox.api.geocoding.v5.MapboxGeocoding;
 import com.mapbox.api.geocoding.v5.models.CarmenFeature;
 import com.mapbox.api.geocoding.v5.models.GeocodingResponse;
-import com.mapbox.core.exceptions.ServicesException;
 import com.mapbox.geojson.Point;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.ReverseGeocodeCache;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.camera.CameraPosition;
 import com.mapbox.mapboxsdk.camera.CameraUpdateFactory;
@@ -29,9 +28,6 @@ import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
 import java.util.ArrayList;
 import java.util.List;
 
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
 import timber.log.Timber;
 
 /**
@@ -39,6 +35,9 @@ import timber.log.Timber;
  */
 public class GeocodingActivity extends AppCompatActivity implements OnMapReadyCallback {
 
+  // Cells of about 1.2 by 0.6 km, places rarely change within that distance
+  private static final int PLACE_GEOHASH_PRECISION = 6;
+
   private MapView mapView;
   private MapboxMap mapboxMap;
   private Button startGeocodeButton;
@@ -47,6 +46,7 @@ public class GeocodingActivity extends AppCompatActivity implements OnMapReadyCa
   private EditText latEditText;
   private EditText longEditText;
   private TextView geocodeResultTextView;
+  private ReverseGeocodeCache.Callback geocodeCallback;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -173,41 +173,37 @@ public class GeocodingActivity extends AppCompatActivity implements OnMapReadyCa
     listPopup.show();
   }
 
-  private void makeGeocodeSearch(LatLng latLng) {
-    try {
-      // Build a Mapbox geocoding request
-      MapboxGeocoding client = MapboxGeocoding.builder()
-        .accessToken(getString(R.string.access_token))
-        .query(Point.fromLngLat(latLng.getLongitude(), latLng.getLatitude()))
-        .geocodingTypes(GeocodingCriteria.TYPE_PLACE)
-        .mode(GeocodingCriteria.MODE_PLACES)
-        .build();
-      client.enqueueCall(new Callback<GeocodingResponse>() {
-        @Override
-        public void onResponse(Call<GeocodingResponse> call,
-                               Response<GeocodingResponse> response) {
-          List<CarmenFeature> results = response.body().features();
-          if (results.size() > 0) {
-
-            // Get the first Feature from the successful geocoding response
-            CarmenFeature feature = results.get(0);
-            geocodeResultTextView.setText(feature.toString());
-            animateCameraToNewPosition(latLng);
-          } else {
-            Toast.makeText(GeocodingActivity.this, R.string.no_results,
-              Toast.LENGTH_SHORT).show();
-          }
-        }
+  private void makeGeocodeSearch(final LatLng latLng) {
+    if (geocodeCallback != null) {
+      ReverseGeocodeCache.getInstance(this).cancel(geocodeCallback);
+    }
+    geocodeCallback = new ReverseGeocodeCache.Callback() {
+      @Override
+      public void onResult(GeocodingResponse response) {
+        List<CarmenFeature> results = response.features();
+        if (results.size() > 0) {
 
-        @Override
-        public void onFailure(Call<GeocodingResponse> call, Throwable throwable) {
-          Timber.e("Geocoding Failure: " + throwable.getMessage());
+          // Get the first Feature from the successful geocoding response
+          CarmenFeature feature = results.get(0);
+          geocodeResultTextView.setText(feature.toString());
+          animateCameraToNewPosition(latLng);
+        } else {
+          Toast.makeText(GeocodingActivity.this, R.string.no_results,
+            Toast.LENGTH_SHORT).show();
         }
-      });
-    } catch (ServicesException servicesException) {
-      Timber.e("Error geocoding: " + servicesException.toString());
-      servicesException.printStackTrace();
-    }
+      }
+
+      @Override
+      public void onError(String message) {
+        Timber.e("Geocoding Failure: " + message);
+      }
+    };
+
+    // Look the coordinates up through the shared cache, which only makes a request for places it
+    // hasn't seen recently
+    ReverseGeocodeCache.getInstance(this).reverseGeocode(
+      Point.fromLngLat(latLng.getLongitude(), latLng.getLatitude()), GeocodingCriteria.TYPE_PLACE,
+      PLACE_GEOHASH_PRECISION, geocodeCallback);
   }
 
   private void animateCameraToNewPosition(LatLng latLng) {
@@ -252,6 +248,9 @@ public class GeocodingActivity extends AppCompatActivity implements OnMapReadyCa
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    if (geocodeCallback != null) {
+      ReverseGeocodeCache.getInstance(this).cancel(geocodeCallback);
+    }
     mapView.onDestroy();
   }
 
@@ -6,15 +6,11 @@ import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
 
-import com.mapbox.api.matching.v5.MapboxMapMatching;
-import com.mapbox.api.matching.v5.models.MapMatchingResponse;
-import com.mapbox.core.constants.Constants;
-import com.mapbox.core.exceptions.ServicesException;
-import com.mapbox.geojson.FeatureCollection;
-import com.mapbox.geojson.LineString;
 import com.mapbox.geojson.Point;
-import com.mapbox.geojson.utils.PolylineUtils;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonCoordinateDecoder;
+import com.mapbox.mapboxandroiddemo.utils.LngLatBuffer;
+import com.mapbox.mapboxandroiddemo.utils.TraceMatcher;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.annotations.Polyline;
 import com.mapbox.mapboxsdk.annotations.PolylineOptions;
@@ -23,17 +19,10 @@ import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
 import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
 
-import java.io.BufferedReader;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
-
 import static com.mapbox.api.directions.v5.DirectionsCriteria.PROFILE_DRIVING;
 
 
@@ -47,6 +36,7 @@ public class MapMatchingActivity extends AppCompatActivity {
   private MapView mapView;
   private MapboxMap map;
   private Polyline mapMatchedRoute;
+  private TraceMatcher traceMatcher;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -59,6 +49,9 @@ public class MapMatchingActivity extends AppCompatActivity {
     // This contains the MapView in XML and needs to be called after the access token is configured.
     setContentView(R.layout.activity_javaservices_map_matching);
 
+    // Long traces are matched in overlapping windows, a few requests at a time
+    traceMatcher = new TraceMatcher(getString(R.string.access_token), PROFILE_DRIVING);
+
     mapView = findViewById(R.id.mapView);
     mapView.onCreate(savedInstanceState);
     mapView.getMapAsync(new OnMapReadyCallback() {
@@ -103,6 +96,7 @@ public class MapMatchingActivity extends AppCompatActivity {
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    traceMatcher.shutdown();
     mapView.onDestroy();
   }
 
@@ -112,27 +106,19 @@ public class MapMatchingActivity extends AppCompatActivity {
     mapView.onSaveInstanceState(outState);
   }
 
-  private class DrawGeoJson extends AsyncTask<Void, Void, List<Point>> {
+  private class DrawGeoJson extends AsyncTask<Void, Void, LngLatBuffer> {
     @Override
-    protected List<Point> doInBackground(Void... voids) {
+    protected LngLatBuffer doInBackground(Void... voids) {
 
-      List<Point> points = new ArrayList<>();
+      LngLatBuffer points = new LngLatBuffer();
 
       try {
-        // Load GeoJSON file
+        // Stream the coordinates of the GeoJSON file's line string straight into the buffer
         InputStream inputStream = getAssets().open("trace.geojson");
-        BufferedReader rd = new BufferedReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
-        StringBuilder sb = new StringBuilder();
-        int cp;
-        while ((cp = rd.read()) != -1) {
-          sb.append((char) cp);
-        }
-        inputStream.close();
-        FeatureCollection featureCollection = FeatureCollection.fromJson(sb.toString());
-        LineString lineString = (LineString) featureCollection.features().get(0).geometry();
-        for (Point singlePosition : lineString.coordinates()) {
-          points.add(Point.fromLngLat(singlePosition.longitude(),
-            singlePosition.latitude()));
+        try {
+          new GeoJsonCoordinateDecoder().decodeFirstGeometry(inputStream, points);
+        } finally {
+          inputStream.close();
         }
       } catch (Exception exception) {
         Log.e(TAG, "Exception Loading GeoJSON: " + exception.toString());
@@ -141,82 +127,49 @@ public class MapMatchingActivity extends AppCompatActivity {
     }
 
     @Override
-    protected void onPostExecute(List<Point> points) {
+    protected void onPostExecute(LngLatBuffer points) {
       super.onPostExecute(points);
       drawBeforeMapMatching(points);
-      drawMapMatched(points);
+      drawMapMatched(points.toPoints());
     }
   }
 
-  private void drawBeforeMapMatching(List<Point> points) {
-    LatLng[] pointsArray = new LatLng[points.size()];
-    for (int i = 0; i < points.size(); i++) {
-      pointsArray[i] = new LatLng(points.get(i).latitude(), points.get(i).longitude());
-    }
-
-    map.addPolyline(new PolylineOptions()
-      .add(pointsArray)
+  private void drawBeforeMapMatching(LngLatBuffer points) {
+    map.addPolyline(points.toPolylineOptions()
       .color(Color.parseColor("#8a8acb"))
       .alpha(0.65f)
       .width(4));
   }
 
   private void drawMapMatched(List<Point> coordinates) {
-    try {
-      // Setup the request using a client.
-      MapboxMapMatching client = MapboxMapMatching.builder()
-        .accessToken(Mapbox.getAccessToken())
-        .profile(PROFILE_DRIVING)
-        .coordinates(coordinates)
-        .build();
-
-      // Execute the API call and handle the response.
-      client.enqueueCall(new Callback<MapMatchingResponse>() {
-        @Override
-        public void onResponse(Call<MapMatchingResponse> call,
-                               Response<MapMatchingResponse> response) {
-          // Create a new list to store the map matched coordinates.
-          List<LatLng> mapMatchedPoints = new ArrayList<>();
-
-          // Check that the map matching API response is "OK".
-          if (response.code() == 200) {
-            // Convert the map matched response list from position to latlng coordinates.
-            // By default, the SDK uses MapMatchingCriteria.GEOMETRY_POLYLINE_6, therefore
-            // you need Constants.PRECISION_6 for the decode to be right
-            String geometry = response.body().matchings().get(0).geometry();
-            List<Point> pointList = PolylineUtils.decode(geometry, Constants.PRECISION_6);
-            if (pointList == null) {
-              return;
-            }
-
-            for (Point singlePosition : pointList) {
-              mapMatchedPoints.add(new LatLng(singlePosition.latitude(),
-                singlePosition.longitude()));
-            }
-
-            if (mapMatchedRoute != null) {
-              map.removeAnnotation(mapMatchedRoute);
-            }
-
-            // Add the map matched route to the Mapbox map.
-            mapMatchedRoute = map.addPolyline(new PolylineOptions()
-              .addAll(mapMatchedPoints)
-              .color(Color.parseColor("#3bb2d0"))
-              .width(4));
-          } else {
-            // If the response code does not response "OK" an error has occurred.
-            Log.e(TAG, "Too many coordinates, profile not found, invalid input, or no match.");
-          }
+    // The matched route is drawn as soon as the start of the trace is matched, and grows as the rest arrives
+    traceMatcher.match(coordinates, new TraceMatcher.Listener() {
+      @Override
+      public void onPartialMatch(List<Point> matchedPoints, int matchedWindowCount, int windowCount) {
+        // Convert the map matched points to latlng coordinates.
+        List<LatLng> mapMatchedPoints = new ArrayList<>(matchedPoints.size());
+        for (Point singlePosition : matchedPoints) {
+          mapMatchedPoints.add(new LatLng(singlePosition.latitude(), singlePosition.longitude()));
         }
 
-        @Override
-        public void onFailure(Call<MapMatchingResponse> call, Throwable throwable) {
-          Log.e(TAG, "MapboxMapMatching error: " + throwable.getMessage());
+        if (mapMatchedRoute == null) {
+          // Add the map matched route to the Mapbox map.
+          mapMatchedRoute = map.addPolyline(new PolylineOptions()
+            .addAll(mapMatchedPoints)
+            .color(Color.parseColor("#3bb2d0"))
+            .width(4));
+        } else {
+          mapMatchedRoute.setPoints(mapMatchedPoints);
         }
-      });
-    } catch (ServicesException servicesException) {
-      Log.e(TAG, "MapboxMapMatching error: " + servicesException.getMessage());
-      servicesException.printStackTrace();
-    }
+      }
+
+      @Override
+      public void onMatchComplete(List<Point> matchedPoints, int failedWindowCount) {
+        if (failedWindowCount > 0) {
+          // Parts of the trace that couldn't be matched are drawn as they were recorded.
+          Log.e(TAG, failedWindowCount + " parts of the trace couldn't be matched: no match or invalid input.");
+        }
+      }
+    });
   }
-}
\ No newline at end of file
+}
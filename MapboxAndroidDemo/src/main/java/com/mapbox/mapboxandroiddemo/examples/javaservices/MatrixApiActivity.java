@@ -18,12 +18,12 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.mapbox.api.directions.v5.DirectionsCriteria;
-import com.mapbox.api.matrix.v1.MapboxMatrix;
-import com.mapbox.api.matrix.v1.models.MatrixResponse;
 import com.mapbox.geojson.Feature;
 import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.geojson.Point;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.commons.GeoJsonAssetLoader;
+import com.mapbox.mapboxandroiddemo.utils.DistanceMatrixStore;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.annotations.Icon;
 import com.mapbox.mapboxsdk.annotations.IconFactory;
@@ -35,14 +35,12 @@ import com.mapbox.mapboxsdk.maps.MapboxMap;
 import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
 import com.mapbox.turf.TurfConversion;
 
-import java.io.InputStream;
+import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
+import java.util.Map;
 
 
 /**
@@ -50,6 +48,8 @@ import retrofit2.Response;
  */
 public class MatrixApiActivity extends AppCompatActivity {
 
+  private static final int MAX_PARALLEL_MATRIX_REQUESTS = 4;
+
   private MapView mapView;
   private MapboxMap mapboxMap;
   private List<Point> pointList;
@@ -57,6 +57,9 @@ public class MatrixApiActivity extends AppCompatActivity {
   private RecyclerView recyclerView;
   private MatrixApiLocationRecyclerViewAdapter matrixApiLocationRecyclerViewAdapter;
   private ArrayList<SingleRecyclerViewMatrixLocation> matrixLocationList;
+  private Map<Long, Integer> markerPositions = new HashMap<>();
+  private DistanceMatrixStore matrixStore;
+  private final DecimalFormat distanceFormat = new DecimalFormat("#.##");
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -74,6 +77,10 @@ public class MatrixApiActivity extends AppCompatActivity {
     // Create list of positions from local GeoJSON file
     initPositionListFromGeoJsonFile();
 
+    // The whole matrix is fetched once, on the first marker click, and every click is answered from it
+    matrixStore = new DistanceMatrixStore(getString(R.string.access_token), DirectionsCriteria.PROFILE_DRIVING,
+      pointList, MAX_PARALLEL_MATRIX_REQUESTS);
+
     mapView = findViewById(R.id.mapView);
     mapView.onCreate(savedInstanceState);
     mapView.getMapAsync(new OnMapReadyCallback() {
@@ -94,9 +101,8 @@ public class MatrixApiActivity extends AppCompatActivity {
           @Override
           public boolean onMarkerClick(@NonNull Marker marker) {
 
-            // Make a call to the Mapbox Matrix API
-            makeMapboxMatrixApiCall(getClickedMarkerNumInPositionList(marker), Point.fromLngLat(
-              marker.getPosition().getLongitude(), marker.getPosition().getLatitude()));
+            // Show the Mapbox Matrix API results for the clicked marker
+            makeMapboxMatrixApiCall(getClickedMarkerNumInPositionList(marker));
             return false;
           }
         });
@@ -107,14 +113,9 @@ public class MatrixApiActivity extends AppCompatActivity {
   }
 
   private int getClickedMarkerNumInPositionList(Marker clickedMarker) {
-    int clickedMarkerIndexPositionInList = -1;
     if (clickedMarker != null) {
-      for (Marker singleMarker : mapboxMap.getMarkers()) {
-        if (singleMarker == clickedMarker) {
-          clickedMarkerIndexPositionInList = mapboxMap.getMarkers().indexOf(singleMarker);
-        }
-      }
-      return clickedMarkerIndexPositionInList;
+      Integer clickedMarkerIndexPositionInList = markerPositions.get(clickedMarker.getId());
+      return clickedMarkerIndexPositionInList != null ? clickedMarkerIndexPositionInList : -1;
     } else {
       return 0;
     }
@@ -131,69 +132,66 @@ public class MatrixApiActivity extends AppCompatActivity {
     snapHelper.attachToRecyclerView(recyclerView);
   }
 
-  private void makeMapboxMatrixApiCall(final int markerPositionInList, Point pointOfClickedMarker) {
-
-    // Build Mapbox Matrix API parameters
-    MapboxMatrix directionsMatrixClient = MapboxMatrix.builder()
-      .accessToken(getString(R.string.access_token))
-      .profile(DirectionsCriteria.PROFILE_DRIVING)
-      .coordinates(pointList)
-      .build();
+  private void makeMapboxMatrixApiCall(final int markerPositionInList) {
+    if (markerPositionInList < 0) {
+      return;
+    }
 
-    // Handle the API response
-    directionsMatrixClient.enqueueCall(new Callback<MatrixResponse>() {
+    matrixStore.load(new DistanceMatrixStore.Listener() {
       @Override
-      public void onResponse(Call<MatrixResponse> call,
-                             Response<MatrixResponse> response) {
-        List<Double[]> durationsToAllOfTheLocationsFromTheOrigin = response.body().durations();
-        for (int x = 0; x < durationsToAllOfTheLocationsFromTheOrigin.size(); x++) {
-          String finalConvertedFormattedDistance = String.valueOf(new DecimalFormat("#.##")
-            .format(TurfConversion.convertLength(
-              durationsToAllOfTheLocationsFromTheOrigin.get(markerPositionInList)[x],
-              "meters", "miles")));
-          if (x == markerPositionInList) {
-            matrixLocationList.get(x).setDistanceFromOrigin(finalConvertedFormattedDistance);
-          }
-          if (x != markerPositionInList) {
-            matrixLocationList.get(x).setDistanceFromOrigin(finalConvertedFormattedDistance);
-            matrixApiLocationRecyclerViewAdapter.notifyDataSetChanged();
-          }
-        }
+      public void onMatrixLoaded(DistanceMatrixStore store) {
+        bindDurationsFrom(store, markerPositionInList);
       }
 
       @Override
-      public void onFailure(Call<MatrixResponse> call, Throwable throwable) {
+      public void onMatrixError(String message) {
         Toast.makeText(MatrixApiActivity.this, R.string.call_error,
           Toast.LENGTH_SHORT).show();
-        Log.d("MatrixApiActivity", "onResponse onFailure");
+        Log.d("MatrixApiActivity", "onResponse onFailure: " + message);
       }
     });
   }
 
+  private void bindDurationsFrom(DistanceMatrixStore store, int markerPositionInList) {
+    for (int x = 0; x < store.size(); x++) {
+      double duration = store.getDuration(markerPositionInList, x);
+      String finalConvertedFormattedDistance = Double.isNaN(duration) ? null : distanceFormat.format(
+        TurfConversion.convertLength(duration, "meters", "miles"));
+
+      // Only re-bind the cards whose value changed
+      SingleRecyclerViewMatrixLocation location = matrixLocationList.get(x);
+      String previousDistance = location.getDistanceFromOrigin();
+      if (finalConvertedFormattedDistance == null ? previousDistance != null
+        : !finalConvertedFormattedDistance.equals(previousDistance)) {
+        location.setDistanceFromOrigin(finalConvertedFormattedDistance);
+        matrixApiLocationRecyclerViewAdapter.notifyItemChanged(x);
+      }
+    }
+  }
+
   private void addMarkers() {
     Icon lightningBoltIcon = IconFactory.getInstance(MatrixApiActivity.this)
       .fromResource(R.drawable.lightning_bolt);
-    for (Feature feature : featureCollection.features()) {
-      mapboxMap.addMarker(new MarkerOptions()
+    List<Feature> features = featureCollection.features();
+    for (int i = 0; i < features.size(); i++) {
+      Feature feature = features.get(i);
+      Marker marker = mapboxMap.addMarker(new MarkerOptions()
         .position(new LatLng(feature.getProperty("Latitude").getAsDouble(),
           feature.getProperty("Longitude").getAsDouble()))
         .snippet(feature.getStringProperty("Station_Name"))
         .icon(lightningBoltIcon));
+
+      // Remember the position of each marker's feature, so a clicked marker doesn't need to be searched for
+      markerPositions.put(marker.getId(), i);
     }
   }
 
-  private String loadGeoJsonFromAsset(String filename) {
+  private FeatureCollection loadGeoJsonFromAsset(String filename) {
     try {
-      // Load GeoJSON file from local asset folder
-      InputStream is = getAssets().open(filename);
-      int size = is.available();
-      byte[] buffer = new byte[size];
-      is.read(buffer);
-      is.close();
-      return new String(buffer, "UTF-8");
-    } catch (Exception exception) {
-      Log.d("MatrixApiActivity", "Exception Loading GeoJSON: " + exception.toString());
-      exception.printStackTrace();
+      // Load GeoJSON file from local asset folder through the shared, cached loader
+      return GeoJsonAssetLoader.loadFeatureCollection(this, filename);
+    } catch (IOException exception) {
+      Log.e("MatrixApiActivity", "Exception loading GeoJSON: " + exception.toString());
       return null;
     }
   }
@@ -201,7 +199,7 @@ public class MatrixApiActivity extends AppCompatActivity {
   private void initPositionListFromGeoJsonFile() {
 
     // Get GeoJSON features from GeoJSON file in the assets folder
-    featureCollection = FeatureCollection.fromJson(loadGeoJsonFromAsset("boston_charge_stations.geojson"));
+    featureCollection = loadGeoJsonFromAsset("boston_charge_stations.geojson");
 
     // Initialize List<Position> for eventual use in the Matrix API call
     pointList = new ArrayList<>();
@@ -259,6 +257,7 @@ public class MatrixApiActivity extends AppCompatActivity {
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    matrixStore.shutdown();
     mapView.onDestroy();
   }
 
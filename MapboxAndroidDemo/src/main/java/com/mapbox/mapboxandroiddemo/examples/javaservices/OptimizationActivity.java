@@ -14,6 +14,7 @@ import com.mapbox.api.optimization.v1.models.OptimizationResponse;
 import com.mapbox.geojson.LineString;
 import com.mapbox.geojson.Point;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.RouteRequestScheduler;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.annotations.MarkerOptions;
 import com.mapbox.mapboxsdk.annotations.Polyline;
@@ -28,8 +29,6 @@ import java.util.List;
 
 
 import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
 
 import static com.mapbox.core.constants.Constants.PRECISION_6;
 
@@ -43,7 +42,7 @@ public class OptimizationActivity extends AppCompatActivity implements OnMapRead
   private MapView mapView;
   private MapboxMap mapboxMap;
   private DirectionsRoute optimizedRoute;
-  private MapboxOptimization optimizedClient;
+  private RouteRequestScheduler<OptimizationResponse> routeRequestScheduler;
   private Polyline optimizedPolyline;
   private List<Point> stops;
   private Point origin;
@@ -52,6 +51,8 @@ public class OptimizationActivity extends AppCompatActivity implements OnMapRead
   private static final String ANY = "any";
   private static final String TEAL_COLOR = "#23D2BE";
   private static final int POLYLINE_WIDTH = 5;
+  private static final long ROUTE_REQUEST_DEBOUNCE_MILLIS = 300;
+  private static final int OPTIMIZED_ROUTE_CACHE_SIZE = 32;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -69,6 +70,22 @@ public class OptimizationActivity extends AppCompatActivity implements OnMapRead
     // Add the origin Point to the list
     addFirstStopToStopsList();
 
+    // Rapid taps send a single request, and only the route for the latest stops is drawn
+    routeRequestScheduler = new RouteRequestScheduler<>(new RouteRequestScheduler.CallFactory<OptimizationResponse>() {
+      @Override
+      public Call<OptimizationResponse> createCall(List<Point> coordinates) {
+        return MapboxOptimization.builder()
+          .source(FIRST)
+          .destination(ANY)
+          .coordinates(coordinates)
+          .overview(DirectionsCriteria.OVERVIEW_FULL)
+          .profile(DirectionsCriteria.PROFILE_DRIVING)
+          .accessToken(Mapbox.getAccessToken())
+          .build()
+          .cloneCall();
+      }
+    }, new OptimizedRouteListener(), ROUTE_REQUEST_DEBOUNCE_MILLIS, OPTIMIZED_ROUTE_CACHE_SIZE);
+
     // Setup the MapView
     mapView = findViewById(R.id.mapView);
     mapView.onCreate(savedInstanceState);
@@ -101,7 +118,9 @@ public class OptimizationActivity extends AppCompatActivity implements OnMapRead
 
   @Override
   public void onMapLongClick(@NonNull LatLng point) {
+    routeRequestScheduler.cancel();
     mapboxMap.clear();
+    optimizedPolyline = null;
     stops.clear();
     addFirstStopToStopsList();
   }
@@ -131,42 +150,30 @@ public class OptimizationActivity extends AppCompatActivity implements OnMapRead
   }
 
   private void getOptimizedRoute(List<Point> coordinates) {
-    optimizedClient = MapboxOptimization.builder()
-      .source(FIRST)
-      .destination(ANY)
-      .coordinates(coordinates)
-      .overview(DirectionsCriteria.OVERVIEW_FULL)
-      .profile(DirectionsCriteria.PROFILE_DRIVING)
-      .accessToken(Mapbox.getAccessToken())
-      .build();
-
-    optimizedClient.enqueueCall(new Callback<OptimizationResponse>() {
-      @Override
-      public void onResponse(Call<OptimizationResponse> call, Response<OptimizationResponse> response) {
-        if (!response.isSuccessful()) {
-          Log.d("DirectionsActivity", getString(R.string.no_success));
-          Toast.makeText(OptimizationActivity.this, R.string.no_success, Toast.LENGTH_SHORT).show();
-          return;
-        } else {
-          if (response.body().trips().isEmpty()) {
-            Log.d("DirectionsActivity", getString(R.string.successful_but_no_routes) + " size = "
-              + response.body().trips().size());
-            Toast.makeText(OptimizationActivity.this, R.string.successful_but_no_routes,
-              Toast.LENGTH_SHORT).show();
-            return;
-          }
-        }
-
-        // Get most optimized route from API response
-        optimizedRoute = response.body().trips().get(0);
-        drawOptimizedRoute(optimizedRoute);
+    routeRequestScheduler.request(coordinates);
+  }
+
+  private class OptimizedRouteListener implements RouteRequestScheduler.Listener<OptimizationResponse> {
+    @Override
+    public void onRouteResult(List<Point> coordinates, OptimizationResponse response, boolean fromCache) {
+      if (response.trips().isEmpty()) {
+        Log.d("DirectionsActivity", getString(R.string.successful_but_no_routes) + " size = "
+          + response.trips().size());
+        Toast.makeText(OptimizationActivity.this, R.string.successful_but_no_routes,
+          Toast.LENGTH_SHORT).show();
+        return;
       }
 
-      @Override
-      public void onFailure(Call<OptimizationResponse> call, Throwable throwable) {
-        Log.d("DirectionsActivity", "Error: " + throwable.getMessage());
-      }
-    });
+      // Get most optimized route from API response
+      optimizedRoute = response.trips().get(0);
+      drawOptimizedRoute(optimizedRoute);
+    }
+
+    @Override
+    public void onRouteError(List<Point> coordinates, String message) {
+      Log.d("DirectionsActivity", getString(R.string.no_success) + ": " + message);
+      Toast.makeText(OptimizationActivity.this, R.string.no_success, Toast.LENGTH_SHORT).show();
+    }
   }
 
   private void drawOptimizedRoute(DirectionsRoute route) {
@@ -228,10 +235,8 @@ public class OptimizationActivity extends AppCompatActivity implements OnMapRead
   @Override
   protected void onDestroy() {
     super.onDestroy();
-    // Cancel the directions API request
-    if (optimizedClient != null) {
-      optimizedClient.cancelCall();
-    }
+    // Cancel the optimization API request
+    routeRequestScheduler.cancel();
     if (mapboxMap != null) {
       mapboxMap.removeOnMapClickListener(this);
     }
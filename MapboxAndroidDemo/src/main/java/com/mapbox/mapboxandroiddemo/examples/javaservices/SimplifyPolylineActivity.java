@@ -4,39 +4,44 @@ import android.graphics.Color;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
-import android.text.TextUtils;
 import android.util.Log;
 
-import com.mapbox.geojson.Point;
-import com.mapbox.geojson.utils.PolylineUtils;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonCoordinateDecoder;
+import com.mapbox.mapboxandroiddemo.utils.LineSimplifier;
+import com.mapbox.mapboxandroiddemo.utils.LngLatBuffer;
+import com.mapbox.mapboxandroiddemo.utils.SimplifiedLinePyramid;
 import com.mapbox.mapboxsdk.Mapbox;
+import com.mapbox.mapboxsdk.annotations.Polyline;
 import com.mapbox.mapboxsdk.annotations.PolylineOptions;
-import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
 import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
- * Using the polylines utility, simplify a polyline at a
- * given tolerance to reduce the number of coordinates in that polyline.
+ * Simplify a polyline to reduce the number of coordinates in that polyline, keeping
+ * only the detail that is visible at the current zoom level.
  */
 public class SimplifyPolylineActivity extends AppCompatActivity {
 
   private static final String TAG = "SimplifyLineActivity";
+  private static final double SIMPLIFY_PIXEL_TOLERANCE = 4;
+  private static final int MIN_SIMPLIFY_ZOOM = 0;
+  private static final int MAX_SIMPLIFY_ZOOM = 22;
 
   private MapView mapView;
   private MapboxMap map;
+  private SimplifiedLinePyramid simplifiedLine;
+  private Polyline simplifiedPolyline;
+  private int simplifiedZoomLevel;
+  private final MapboxMap.OnCameraMoveListener cameraMoveListener = new MapboxMap.OnCameraMoveListener() {
+    @Override
+    public void onCameraMove() {
+      updateSimplifiedLine();
+    }
+  };
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -95,6 +100,9 @@ public class SimplifyPolylineActivity extends AppCompatActivity {
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    if (map != null) {
+      map.removeOnCameraMoveListener(cameraMoveListener);
+    }
     mapView.onDestroy();
   }
 
@@ -104,91 +112,68 @@ public class SimplifyPolylineActivity extends AppCompatActivity {
     mapView.onSaveInstanceState(outState);
   }
 
-  private class DrawGeoJson extends AsyncTask<Void, Void, List<Point>> {
+  private class DrawGeoJson extends AsyncTask<Void, Void, SimplifiedLinePyramid> {
     @Override
-    protected List<Point> doInBackground(Void... voids) {
+    protected SimplifiedLinePyramid doInBackground(Void... voids) {
 
-      List<Point> points = new ArrayList<>();
+      LngLatBuffer points = new LngLatBuffer();
 
       try {
-        // Load GeoJSON file
+        // Stream the coordinates of the GeoJSON file's line string straight into the buffer
         InputStream inputStream = getAssets().open("matched_route.geojson");
-        BufferedReader rd = new BufferedReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
-        StringBuilder sb = new StringBuilder();
-        int cp;
-        while ((cp = rd.read()) != -1) {
-          sb.append((char) cp);
-        }
-
-        inputStream.close();
-
-        // Parse JSON
-        JSONObject json = new JSONObject(sb.toString());
-        JSONArray features = json.getJSONArray("features");
-        JSONObject feature = features.getJSONObject(0);
-        JSONObject geometry = feature.getJSONObject("geometry");
-        if (geometry != null) {
-          String type = geometry.getString("type");
-
-          // Our GeoJSON only has one feature: a line string
-          if (!TextUtils.isEmpty(type) && type.equalsIgnoreCase("LineString")) {
-
-            // Get the Coordinates
-            JSONArray coords = geometry.getJSONArray("coordinates");
-            for (int lc = 0; lc < coords.length(); lc++) {
-              JSONArray coord = coords.getJSONArray(lc);
-              Point position = Point.fromLngLat(coord.getDouble(0), coord.getDouble(1));
-              points.add(position);
-            }
-          }
+        try {
+          new GeoJsonCoordinateDecoder().decodeFirstGeometry(inputStream, points);
+        } finally {
+          inputStream.close();
         }
       } catch (Exception exception) {
         Log.e(TAG, "Exception Loading GeoJSON: " + exception.toString());
       }
 
-      return points;
+      // Simplify the line once for every zoom level, so zooming only has to pick a level
+      return new SimplifiedLinePyramid(points, LineSimplifier.DOUGLAS_PEUCKER, SIMPLIFY_PIXEL_TOLERANCE,
+        MIN_SIMPLIFY_ZOOM, MAX_SIMPLIFY_ZOOM);
     }
 
     @Override
-    protected void onPostExecute(List<Point> points) {
-      super.onPostExecute(points);
+    protected void onPostExecute(SimplifiedLinePyramid pyramid) {
+      super.onPostExecute(pyramid);
 
-      drawBeforeSimplify(points);
-      drawSimplify(points);
+      drawBeforeSimplify(pyramid.getLine());
+      drawSimplify(pyramid);
 
     }
   }
 
-  private void drawBeforeSimplify(List<Point> points) {
-
-    LatLng[] pointsArray = new LatLng[points.size()];
-    for (int i = 0; i < points.size(); i++) {
-      pointsArray[i] = new LatLng(points.get(i).latitude(), points.get(i).longitude());
-    }
+  private void drawBeforeSimplify(LngLatBuffer points) {
 
-    map.addPolyline(new PolylineOptions()
-      .add(pointsArray)
+    map.addPolyline(points.toPolylineOptions()
       .color(Color.parseColor("#8a8acb"))
       .width(4));
   }
 
-  private void drawSimplify(List<Point> points) {
+  private void drawSimplify(SimplifiedLinePyramid pyramid) {
 
-    List<Point> before = new ArrayList<>();
-    for (int i = 0; i < points.size(); i++) {
-      before.add(points.get(i));
-    }
+    simplifiedLine = pyramid;
+    double zoom = map.getCameraPosition().zoom;
+    simplifiedZoomLevel = (int) Math.floor(zoom);
+    simplifiedPolyline = map.addPolyline(new PolylineOptions()
+      .addAll(simplifiedLine.getLatLngs(zoom))
+      .color(Color.parseColor("#3bb2d0"))
+      .width(4));
 
-    List<Point> after = PolylineUtils.simplify(before, 0.001);
+    map.addOnCameraMoveListener(cameraMoveListener);
+  }
 
-    LatLng[] result = new LatLng[after.size()];
-    for (int i = 0; i < after.size(); i++) {
-      result[i] = new LatLng(after.get(i).latitude(), after.get(i).longitude());
+  private void updateSimplifiedLine() {
+    double zoom = map.getCameraPosition().zoom;
+    int zoomLevel = (int) Math.floor(zoom);
+    if (zoomLevel == simplifiedZoomLevel) {
+      return;
     }
 
-    map.addPolyline(new PolylineOptions()
-      .add(result)
-      .color(Color.parseColor("#3bb2d0"))
-      .width(4));
+    // Switch to the level of detail of the new zoom level
+    simplifiedZoomLevel = zoomLevel;
+    simplifiedPolyline.setPoints(simplifiedLine.getLatLngs(zoom));
   }
-}
\ No newline at end of file
+}
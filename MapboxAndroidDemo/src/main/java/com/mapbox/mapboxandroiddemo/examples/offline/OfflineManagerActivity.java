@@ -12,6 +12,9 @@ import android.widget.ProgressBar;
 import android.widget.Toast;
 
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.commons.OfflineDownloadManager;
+import com.mapbox.mapboxandroiddemo.commons.OfflineRegionBackend;
+import com.mapbox.mapboxandroiddemo.commons.OfflineRegionCatalog;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.camera.CameraPosition;
 import com.mapbox.mapboxsdk.camera.CameraUpdateFactory;
@@ -19,15 +22,8 @@ import com.mapbox.mapboxsdk.geometry.LatLngBounds;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
 import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
-import com.mapbox.mapboxsdk.offline.OfflineManager;
-import com.mapbox.mapboxsdk.offline.OfflineRegion;
-import com.mapbox.mapboxsdk.offline.OfflineRegionError;
-import com.mapbox.mapboxsdk.offline.OfflineRegionStatus;
-import com.mapbox.mapboxsdk.offline.OfflineTilePyramidRegionDefinition;
 
-import org.json.JSONObject;
-
-import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Download, view, navigate to, and delete an offline region.
@@ -36,10 +32,6 @@ public class OfflineManagerActivity extends AppCompatActivity {
 
   private static final String TAG = "OffManActivity";
 
-  // JSON encoding/decoding
-  public static final String JSON_CHARSET = "UTF-8";
-  public static final String JSON_FIELD_REGION_NAME = "FIELD_REGION_NAME";
-
   // UI elements
   private MapView mapView;
   private MapboxMap map;
@@ -51,8 +43,9 @@ public class OfflineManagerActivity extends AppCompatActivity {
   private int regionSelected;
 
   // Offline objects
-  private OfflineManager offlineManager;
-  private OfflineRegion offlineRegion;
+  private OfflineRegionCatalog offlineRegionCatalog;
+  private OfflineDownloadManager offlineDownloadManager;
+  private final DownloadListener downloadListener = new DownloadListener();
 
 
   @Override
@@ -73,14 +66,18 @@ public class OfflineManagerActivity extends AppCompatActivity {
       @Override
       public void onMapReady(MapboxMap mapboxMap) {
         map = mapboxMap;
+
+        // Continue a download that was interrupted when the example was closed
+        offlineDownloadManager.resume(downloadListener);
       }
     });
 
     // Assign progressBar for later use
     progressBar = (ProgressBar) findViewById(R.id.progress_bar);
 
-    // Set up the offlineManager
-    offlineManager = OfflineManager.getInstance(this);
+    // Set up the offline region catalogue and the download manager, which adds the regions it creates to it
+    offlineRegionCatalog = OfflineRegionCatalog.getInstance(this);
+    offlineDownloadManager = new OfflineDownloadManager(offlineRegionCatalog);
 
     // Bottom navigation bar button clicks are handled here.
     // Download offline button
@@ -136,6 +133,8 @@ public class OfflineManagerActivity extends AppCompatActivity {
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    // The regions keep what they downloaded, and the download continues the next time
+    offlineDownloadManager.cancel();
     mapView.onDestroy();
   }
 
@@ -191,88 +190,17 @@ public class OfflineManagerActivity extends AppCompatActivity {
     // Start the progressBar
     startProgress();
 
-    // Create offline definition using the current
-    // style and boundaries of visible map area
+    // Download the visible map area with the current style. The download manager estimates the tiles
+    // first and splits areas that are over the tile limit into several regions.
     String styleUrl = map.getStyleUrl();
     LatLngBounds bounds = map.getProjection().getVisibleRegion().latLngBounds;
     double minZoom = map.getCameraPosition().zoom;
     double maxZoom = map.getMaxZoomLevel();
     float pixelRatio = this.getResources().getDisplayMetrics().density;
-    OfflineTilePyramidRegionDefinition definition = new OfflineTilePyramidRegionDefinition(
-      styleUrl, bounds, minZoom, maxZoom, pixelRatio);
-
-    // Build a JSONObject using the user-defined offline region title,
-    // convert it into string, and use it to create a metadata variable.
-    // The metadata variable will later be passed to createOfflineRegion()
-    byte[] metadata;
-    try {
-      JSONObject jsonObject = new JSONObject();
-      jsonObject.put(JSON_FIELD_REGION_NAME, regionName);
-      String json = jsonObject.toString();
-      metadata = json.getBytes(JSON_CHARSET);
-    } catch (Exception exception) {
-      Log.e(TAG, "Failed to encode metadata: " + exception.getMessage());
-      metadata = null;
-    }
-
-    // Create the offline region and launch the download
-    offlineManager.createOfflineRegion(definition, metadata, new OfflineManager.CreateOfflineRegionCallback() {
-      @Override
-      public void onCreate(OfflineRegion offlineRegion) {
-        Log.d(TAG, "Offline region created: " + regionName);
-        OfflineManagerActivity.this.offlineRegion = offlineRegion;
-        launchDownload();
-      }
-
-      @Override
-      public void onError(String error) {
-        Log.e(TAG, "Error: " + error);
-      }
-    });
+    offlineDownloadManager.download(styleUrl, bounds, minZoom, maxZoom, pixelRatio, regionName,
+      downloadListener);
   }
 
-  private void launchDownload() {
-    // Set up an observer to handle download progress and
-    // notify the user when the region is finished downloading
-    offlineRegion.setObserver(new OfflineRegion.OfflineRegionObserver() {
-      @Override
-      public void onStatusChanged(OfflineRegionStatus status) {
-        // Compute a percentage
-        double percentage = status.getRequiredResourceCount() >= 0
-          ? (100.0 * status.getCompletedResourceCount() / status.getRequiredResourceCount()) :
-          0.0;
-
-        if (status.isComplete()) {
-          // Download complete
-          endProgress(getString(R.string.end_progress_success));
-          return;
-        } else if (status.isRequiredResourceCountPrecise()) {
-          // Switch to determinate state
-          setPercentage((int) Math.round(percentage));
-        }
-
-        // Log what is being currently downloaded
-        Log.d(TAG, String.format("%s/%s resources; %s bytes downloaded.",
-          String.valueOf(status.getCompletedResourceCount()),
-          String.valueOf(status.getRequiredResourceCount()),
-          String.valueOf(status.getCompletedResourceSize())));
-      }
-
-      @Override
-      public void onError(OfflineRegionError error) {
-        Log.e(TAG, "onError reason: " + error.getReason());
-        Log.e(TAG, "onError message: " + error.getMessage());
-      }
-
-      @Override
-      public void mapboxTileCountLimitExceeded(long limit) {
-        Log.e(TAG, "Mapbox tile count limit exceeded: " + limit);
-      }
-    });
-
-    // Change the region state
-    offlineRegion.setDownloadState(OfflineRegion.STATE_ACTIVE);
-  }
 
   private void downloadedRegionList() {
     // Build a region list when the user clicks the list button
@@ -280,96 +208,16 @@ public class OfflineManagerActivity extends AppCompatActivity {
     // Reset the region selected int to 0
     regionSelected = 0;
 
-    // Query the DB asynchronously
-    offlineManager.listOfflineRegions(new OfflineManager.ListOfflineRegionsCallback() {
+    // The catalogue lists the regions without querying the DB. The DB is only queried
+    // once, for regions the catalogue doesn't know about yet.
+    if (offlineRegionCatalog.isSynced()) {
+      showRegionList();
+      return;
+    }
+    offlineRegionCatalog.sync(new OfflineRegionCatalog.SyncCallback() {
       @Override
-      public void onList(final OfflineRegion[] offlineRegions) {
-        // Check result. If no regions have been
-        // downloaded yet, notify user and return
-        if (offlineRegions == null || offlineRegions.length == 0) {
-          Toast.makeText(getApplicationContext(), getString(R.string.toast_no_regions_yet), Toast.LENGTH_SHORT).show();
-          return;
-        }
-
-        // Add all of the region names to a list
-        ArrayList<String> offlineRegionsNames = new ArrayList<>();
-        for (OfflineRegion offlineRegion : offlineRegions) {
-          offlineRegionsNames.add(getRegionName(offlineRegion));
-        }
-        final CharSequence[] items = offlineRegionsNames.toArray(new CharSequence[offlineRegionsNames.size()]);
-
-        // Build a dialog containing the list of regions
-        AlertDialog dialog = new AlertDialog.Builder(OfflineManagerActivity.this)
-          .setTitle(getString(R.string.navigate_title))
-          .setSingleChoiceItems(items, 0, new DialogInterface.OnClickListener() {
-            @Override
-            public void onClick(DialogInterface dialog, int which) {
-              // Track which region the user selects
-              regionSelected = which;
-            }
-          })
-          .setPositiveButton(getString(R.string.navigate_positive_button), new DialogInterface.OnClickListener() {
-            @Override
-            public void onClick(DialogInterface dialog, int id) {
-
-              Toast.makeText(OfflineManagerActivity.this, items[regionSelected], Toast.LENGTH_LONG).show();
-
-              // Get the region bounds and zoom
-              LatLngBounds bounds = ((OfflineTilePyramidRegionDefinition)
-                offlineRegions[regionSelected].getDefinition()).getBounds();
-              double regionZoom = ((OfflineTilePyramidRegionDefinition)
-                offlineRegions[regionSelected].getDefinition()).getMinZoom();
-
-              // Create new camera position
-              CameraPosition cameraPosition = new CameraPosition.Builder()
-                .target(bounds.getCenter())
-                .zoom(regionZoom)
-                .build();
-
-              // Move camera to new position
-              map.moveCamera(CameraUpdateFactory.newCameraPosition(cameraPosition));
-
-            }
-          })
-          .setNeutralButton(getString(R.string.navigate_neutral_button_title), new DialogInterface.OnClickListener() {
-            @Override
-            public void onClick(DialogInterface dialog, int id) {
-              // Make progressBar indeterminate and
-              // set it to visible to signal that
-              // the deletion process has begun
-              progressBar.setIndeterminate(true);
-              progressBar.setVisibility(View.VISIBLE);
-
-              // Begin the deletion process
-              offlineRegions[regionSelected].delete(new OfflineRegion.OfflineRegionDeleteCallback() {
-                @Override
-                public void onDelete() {
-                  // Once the region is deleted, remove the
-                  // progressBar and display a toast
-                  progressBar.setVisibility(View.INVISIBLE);
-                  progressBar.setIndeterminate(false);
-                  Toast.makeText(getApplicationContext(), getString(R.string.toast_region_deleted),
-                    Toast.LENGTH_LONG).show();
-                }
-
-                @Override
-                public void onError(String error) {
-                  progressBar.setVisibility(View.INVISIBLE);
-                  progressBar.setIndeterminate(false);
-                  Log.e(TAG, "Error: " + error);
-                }
-              });
-            }
-          })
-          .setNegativeButton(getString(R.string.navigate_negative_button_title), new DialogInterface.OnClickListener() {
-            @Override
-            public void onClick(DialogInterface dialog, int id) {
-              // When the user cancels, don't do anything.
-              // The dialog will automatically close
-            }
-          }).create();
-        dialog.show();
-
+      public void onSynced() {
+        showRegionList();
       }
 
       @Override
@@ -379,20 +227,97 @@ public class OfflineManagerActivity extends AppCompatActivity {
     });
   }
 
-  private String getRegionName(OfflineRegion offlineRegion) {
-    // Get the region name from the offline region metadata
-    String regionName;
-
-    try {
-      byte[] metadata = offlineRegion.getMetadata();
-      String json = new String(metadata, JSON_CHARSET);
-      JSONObject jsonObject = new JSONObject(json);
-      regionName = jsonObject.getString(JSON_FIELD_REGION_NAME);
-    } catch (Exception exception) {
-      Log.e(TAG, "Failed to decode metadata: " + exception.getMessage());
-      regionName = String.format(getString(R.string.region_name), offlineRegion.getID());
+  private void showRegionList() {
+    // List the regions, the most recently viewed first
+    final List<OfflineRegionCatalog.Entry> regions = offlineRegionCatalog.query(null, null,
+      OfflineRegionCatalog.SORT_BY_RECENCY);
+    // Check result. If no regions have been
+    // downloaded yet, notify user and return
+    if (regions.isEmpty()) {
+      Toast.makeText(getApplicationContext(), getString(R.string.toast_no_regions_yet), Toast.LENGTH_SHORT).show();
+      return;
+    }
+
+    // Add all of the region names to a list
+    final CharSequence[] items = new CharSequence[regions.size()];
+    for (int i = 0; i < regions.size(); i++) {
+      items[i] = regions.get(i).getMetadata().getName();
     }
-    return regionName;
+
+    // Build a dialog containing the list of regions
+    AlertDialog dialog = new AlertDialog.Builder(OfflineManagerActivity.this)
+      .setTitle(getString(R.string.navigate_title))
+      .setSingleChoiceItems(items, 0, new DialogInterface.OnClickListener() {
+        @Override
+        public void onClick(DialogInterface dialog, int which) {
+          // Track which region the user selects
+          regionSelected = which;
+        }
+      })
+      .setPositiveButton(getString(R.string.navigate_positive_button), new DialogInterface.OnClickListener() {
+        @Override
+        public void onClick(DialogInterface dialog, int id) {
+
+          Toast.makeText(OfflineManagerActivity.this, items[regionSelected], Toast.LENGTH_LONG).show();
+
+          // Get the region bounds and zoom
+          OfflineRegionCatalog.Entry region = regions.get(regionSelected);
+          LatLngBounds bounds = region.getMetadata().getBounds();
+          double regionZoom = region.getMetadata().getMinZoom();
+
+          // Create new camera position
+          CameraPosition cameraPosition = new CameraPosition.Builder()
+            .target(bounds.getCenter())
+            .zoom(regionZoom)
+            .build();
+
+          // Move camera to new position
+          map.moveCamera(CameraUpdateFactory.newCameraPosition(cameraPosition));
+
+          // Viewed regions are the last to be evicted when storage runs low
+          offlineRegionCatalog.markUsed(region.getRegionId());
+
+        }
+      })
+      .setNeutralButton(getString(R.string.navigate_neutral_button_title), new DialogInterface.OnClickListener() {
+        @Override
+        public void onClick(DialogInterface dialog, int id) {
+          // Make progressBar indeterminate and
+          // set it to visible to signal that
+          // the deletion process has begun
+          progressBar.setIndeterminate(true);
+          progressBar.setVisibility(View.VISIBLE);
+
+          // Begin the deletion process
+          offlineRegionCatalog.delete(regions.get(regionSelected).getRegionId(),
+            new OfflineRegionBackend.DeleteCallback() {
+              @Override
+              public void onDelete() {
+                // Once the region is deleted, remove the
+                // progressBar and display a toast
+                progressBar.setVisibility(View.INVISIBLE);
+                progressBar.setIndeterminate(false);
+                Toast.makeText(getApplicationContext(), getString(R.string.toast_region_deleted),
+                  Toast.LENGTH_LONG).show();
+              }
+
+              @Override
+              public void onError(String error) {
+                progressBar.setVisibility(View.INVISIBLE);
+                progressBar.setIndeterminate(false);
+                Log.e(TAG, "Error: " + error);
+              }
+            });
+        }
+      })
+      .setNegativeButton(getString(R.string.navigate_negative_button_title), new DialogInterface.OnClickListener() {
+        @Override
+        public void onClick(DialogInterface dialog, int id) {
+          // When the user cancels, don't do anything.
+          // The dialog will automatically close
+        }
+      }).create();
+    dialog.show();
   }
 
   // Progress bar methods
@@ -430,4 +355,45 @@ public class OfflineManagerActivity extends AppCompatActivity {
     // Show a toast
     Toast.makeText(OfflineManagerActivity.this, message, Toast.LENGTH_LONG).show();
   }
-}
\ No newline at end of file
+
+  /**
+   * Shows the combined progress of the regions of a download, which the download manager throttles.
+   */
+  private class DownloadListener implements OfflineDownloadManager.Listener {
+
+    private boolean downloading;
+
+    @Override
+    public void onDownloadStarted(int regionCount, long estimatedTileCount) {
+      Log.d(TAG, "Downloading about " + estimatedTileCount + " tiles in " + regionCount + " regions");
+      downloading = regionCount > 0;
+      if (downloading && progressBar.getVisibility() != View.VISIBLE) {
+        // An interrupted download is being resumed
+        startProgress();
+      }
+    }
+
+    @Override
+    public void onDownloadProgress(long completedResourceCount, long requiredResourceCount,
+                                   long completedResourceSize, boolean precise) {
+      if (precise && requiredResourceCount > 0) {
+        // Switch to determinate state
+        setPercentage((int) Math.round(100.0 * completedResourceCount / requiredResourceCount));
+      }
+    }
+
+    @Override
+    public void onDownloadComplete() {
+      if (downloading) {
+        downloading = false;
+        endProgress(getString(R.string.end_progress_success));
+      }
+    }
+
+    @Override
+    public void onDownloadError(String message) {
+      downloading = false;
+      endProgress(message);
+    }
+  }
+}
@@ -11,17 +11,17 @@ import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.v4.app.NotificationCompat;
 import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
 
 import com.mapbox.mapboxandroiddemo.MainActivity;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.MapSnapshotService;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.geometry.LatLngBounds;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
 import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
-import com.mapbox.mapboxsdk.snapshotter.MapSnapshot;
-import com.mapbox.mapboxsdk.snapshotter.MapSnapshotter;
 
 import static android.app.PendingIntent.getActivity;
 
@@ -30,9 +30,10 @@ import static android.app.PendingIntent.getActivity;
  * in a way that utilizes provided bitmaps in native notifications.
  */
 public class SnapshotNotificationActivity extends AppCompatActivity implements OnMapReadyCallback,
-  MapboxMap.OnMapClickListener {
+  MapboxMap.OnMapClickListener, MapSnapshotService.SnapshotCallback {
+  private static final String TAG = "SnapshotNotification";
   private MapView mapView;
-  private MapSnapshotter mapSnapshotter;
+  private MapSnapshotService snapshotService;
   private MapboxMap mapboxMap;
   private NotificationManager notificationManager;
 
@@ -50,6 +51,8 @@ public class SnapshotNotificationActivity extends AppCompatActivity implements O
     mapView = findViewById(R.id.mapView);
     mapView.onCreate(savedInstanceState);
 
+    snapshotService = MapSnapshotService.getInstance(this);
+
     // Set a callback for when MapboxMap is ready to be used
     mapView.getMapAsync(this);
   }
@@ -76,24 +79,19 @@ public class SnapshotNotificationActivity extends AppCompatActivity implements O
    * @param width        of map
    */
   private void startSnapShot(LatLngBounds latLngBounds, int height, int width) {
-    if (mapSnapshotter == null) {
-      // Initialize snapshotter with map dimensions and given bounds
-      MapSnapshotter.Options options =
-        new MapSnapshotter.Options(width, height).withStyle(mapboxMap.getStyleUrl()).withRegion(latLngBounds);
-
-      mapSnapshotter = new MapSnapshotter(SnapshotNotificationActivity.this, options);
-    } else {
-      // Reuse pre-existing MapSnapshotter instance
-      mapSnapshotter.setSize(width, height);
-      mapSnapshotter.setRegion(latLngBounds);
-    }
+    // Taps on the same view are merged, or served from memory, by the snapshot service
+    snapshotService.render(new MapSnapshotService.SnapshotRequest(latLngBounds, width, height,
+      mapboxMap.getStyleUrl()), this);
+  }
 
-    mapSnapshotter.start(new MapSnapshotter.SnapshotReadyCallback() {
-      @Override
-      public void onSnapshotReady(MapSnapshot snapshot) {
-        createNotification(snapshot.getBitmap());
-      }
-    });
+  @Override
+  public void onSnapshotReady(@NonNull Bitmap snapshot) {
+    createNotification(snapshot);
+  }
+
+  @Override
+  public void onSnapshotError(@NonNull String message) {
+    Log.e(TAG, "Unable to render the snapshot: " + message);
   }
 
   /**
@@ -152,10 +150,8 @@ public class SnapshotNotificationActivity extends AppCompatActivity implements O
     super.onPause();
     mapView.onPause();
 
-    // Make sure to stop the snapshotter on pause if it exists
-    if (mapSnapshotter != null) {
-      mapSnapshotter.cancel();
-    }
+    // Make sure to stop the snapshot on pause
+    snapshotService.cancel(this);
   }
 
   @Override
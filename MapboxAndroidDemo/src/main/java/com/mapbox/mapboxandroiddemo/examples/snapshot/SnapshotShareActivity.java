@@ -1,36 +1,36 @@
 package com.mapbox.mapboxandroiddemo.examples.snapshot;
 
 import android.content.Intent;
-import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Bundle;
-import android.os.Environment;
 import android.os.StrictMode;
+import android.support.annotation.NonNull;
 import android.support.design.widget.FloatingActionButton;
 import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
 import android.view.View;
 import android.widget.Toast;
 
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.MapSnapshotService;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.geometry.LatLngBounds;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
 import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
-import com.mapbox.mapboxsdk.snapshotter.MapSnapshot;
-import com.mapbox.mapboxsdk.snapshotter.MapSnapshotter;
-
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.IOException;
 
 public class SnapshotShareActivity extends AppCompatActivity {
+  private static final String TAG = "SnapshotShareActivity";
+  // Keeps shared images small enough for messaging apps
+  private static final long MAX_SHARE_IMAGE_BYTES = 2 * 1024 * 1024;
+  private static final int REQUEST_CODE_SHARE = 1;
+
   private MapView mapView;
-  private MapSnapshotter mapSnapshotter;
+  private MapSnapshotService snapshotService;
   private MapboxMap mapboxMap;
   private FloatingActionButton cameraFab;
   private boolean hasStartedSnapshotGeneration;
+  private MapSnapshotService.SnapshotExport sharingExport;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -47,6 +47,7 @@ public class SnapshotShareActivity extends AppCompatActivity {
     cameraFab.setImageResource(R.drawable.ic_camera);
 
     hasStartedSnapshotGeneration = false;
+    snapshotService = MapSnapshotService.getInstance(this);
 
     mapView = findViewById(R.id.mapView);
     mapView.onCreate(savedInstanceState);
@@ -82,64 +83,50 @@ public class SnapshotShareActivity extends AppCompatActivity {
   }
 
   /**
-   * Creates bitmap from given parameters, and creates a notification with that bitmap
+   * Renders and exports a snapshot with the given parameters, and shares the image file
    *
    * @param latLngBounds of map
    * @param height       of map
    * @param width        of map
    */
   private void startSnapShot(LatLngBounds latLngBounds, int height, int width) {
-    if (mapSnapshotter == null) {
-      // Initialize snapshotter with map dimensions and given bounds
-      MapSnapshotter.Options options =
-        new MapSnapshotter.Options(width, height).withRegion(latLngBounds).withStyle(mapboxMap.getStyleUrl());
-
-      mapSnapshotter = new MapSnapshotter(SnapshotShareActivity.this, options);
-    } else {
-      // Reuse pre-existing MapSnapshotter instance
-      mapSnapshotter.setSize(width, height);
-      mapSnapshotter.setRegion(latLngBounds);
-      mapSnapshotter.setRegion(latLngBounds);
-    }
-
-    mapSnapshotter.start(new MapSnapshotter.SnapshotReadyCallback() {
-      @Override
-      public void onSnapshotReady(MapSnapshot snapshot) {
-
-        Bitmap bitmapOfMapSnapshotImage = snapshot.getBitmap();
-
-        Uri bmpUri = getLocalBitmapUri(bitmapOfMapSnapshotImage);
+    // The snapshot service reuses its snapshotter, and encodes the image off the main thread
+    MapSnapshotService.SnapshotRequest request = new MapSnapshotService.SnapshotRequest(
+      latLngBounds, width, height, mapboxMap.getStyleUrl());
+    snapshotService.export(request, MapSnapshotService.ExportFormat.PNG, MAX_SHARE_IMAGE_BYTES, exportCallback);
+  }
 
-        Intent shareIntent = new Intent();
-        shareIntent.putExtra(Intent.EXTRA_STREAM, bmpUri);
-        shareIntent.setType("image/png");
-        shareIntent.setAction(Intent.ACTION_SEND);
-        shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
-        startActivity(Intent.createChooser(shareIntent, "Share map image"));
+  private final MapSnapshotService.ExportCallback exportCallback = new MapSnapshotService.ExportCallback() {
+    @Override
+    public void onExportReady(@NonNull MapSnapshotService.SnapshotExport export) {
+      Uri bmpUri = Uri.fromFile(export.getFile());
+
+      Intent shareIntent = new Intent();
+      shareIntent.putExtra(Intent.EXTRA_STREAM, bmpUri);
+      shareIntent.setType(export.getFormat().getMimeType());
+      shareIntent.setAction(Intent.ACTION_SEND);
+      shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+      // The share is only recorded once the chooser, or the app the image was shared with, returns
+      sharingExport = export;
+      startActivityForResult(Intent.createChooser(shareIntent, "Share map image"), REQUEST_CODE_SHARE);
+
+      hasStartedSnapshotGeneration = false;
+    }
 
-        hasStartedSnapshotGeneration = false;
-      }
-    });
-  }
+    @Override
+    public void onExportError(@NonNull String message) {
+      Log.e(TAG, "Unable to share the snapshot: " + message);
+      hasStartedSnapshotGeneration = false;
+    }
+  };
 
-  private Uri getLocalBitmapUri(Bitmap bmp) {
-    Uri bmpUri = null;
-    File file = new File(getExternalFilesDir(Environment.DIRECTORY_PICTURES),
-      "share_image_" + System.currentTimeMillis() + ".png");
-    FileOutputStream out = null;
-    try {
-      out = new FileOutputStream(file);
-      bmp.compress(Bitmap.CompressFormat.PNG, 90, out);
-      try {
-        out.close();
-      } catch (IOException exception) {
-        exception.printStackTrace();
-      }
-      bmpUri = Uri.fromFile(file);
-    } catch (FileNotFoundException exception) {
-      exception.printStackTrace();
+  @Override
+  protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+    super.onActivityResult(requestCode, resultCode, data);
+    if (requestCode == REQUEST_CODE_SHARE && sharingExport != null) {
+      sharingExport.markShared();
+      sharingExport = null;
     }
-    return bmpUri;
   }
 
   @Override
@@ -164,10 +151,9 @@ public class SnapshotShareActivity extends AppCompatActivity {
   public void onPause() {
     super.onPause();
     mapView.onPause();
-    // Make sure to stop the snapshotter on pause if it exists
-    if (mapSnapshotter != null) {
-      mapSnapshotter.cancel();
-    }
+    // Make sure to stop the snapshot on pause
+    snapshotService.cancel(exportCallback);
+    hasStartedSnapshotGeneration = false;
   }
 
   @Override
@@ -1,10 +1,10 @@
 package com.mapbox.mapboxandroiddemo.examples.styles;
 
 import android.os.Bundle;
-import android.os.Handler;
 import android.support.v7.app.AppCompatActivity;
 
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.MapFrameScheduler;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.geometry.LatLngQuad;
@@ -20,8 +20,7 @@ import com.mapbox.mapboxsdk.style.sources.ImageSource;
 public class ImageSourceTimeLapseActivity extends AppCompatActivity implements OnMapReadyCallback {
 
   private MapView mapView;
-  private Handler handler;
-  private Runnable runnable;
+  private MapFrameScheduler frameScheduler;
   private static final String ID_IMAGE_SOURCE = "animated_image_source";
   private static final String ID_IMAGE_LAYER = "animated_image_layer";
 
@@ -39,6 +38,7 @@ public class ImageSourceTimeLapseActivity extends AppCompatActivity implements O
     mapView = (MapView) findViewById(R.id.mapView);
     mapView.onCreate(savedInstanceState);
     mapView.getMapAsync(this);
+    frameScheduler = new MapFrameScheduler(mapView);
   }
 
   @Override
@@ -55,21 +55,19 @@ public class ImageSourceTimeLapseActivity extends AppCompatActivity implements O
     RasterLayer layer = new RasterLayer(ID_IMAGE_LAYER, ID_IMAGE_SOURCE);
     mapboxMap.addLayer(layer);
 
-    // Loop the GeoJSON refreshing
-    handler = new Handler();
-    runnable = new RefreshImageRunnable(mapboxMap, handler);
-    handler.postDelayed(runnable, 100);
+    // Loop the image refreshing, the scheduler pauses it while the activity is stopped
+    frameScheduler.add(new RefreshImageAnimation(mapboxMap));
   }
 
-  private static class RefreshImageRunnable implements Runnable {
+  private static class RefreshImageAnimation implements MapFrameScheduler.FrameAnimation {
+    private static final long FRAME_INTERVAL_MILLIS = 1000;
     private final MapboxMap mapboxMap;
-    private final Handler handler;
     private int[] drawables;
     private int drawableIndex;
+    private boolean started;
 
-    RefreshImageRunnable(MapboxMap mapboxMap, Handler handler) {
+    RefreshImageAnimation(MapboxMap mapboxMap) {
       this.mapboxMap = mapboxMap;
-      this.handler = handler;
       drawables = new int[4];
       drawables[0] = R.drawable.southeast_radar_0;
       drawables[1] = R.drawable.southeast_radar_1;
@@ -79,12 +77,16 @@ public class ImageSourceTimeLapseActivity extends AppCompatActivity implements O
     }
 
     @Override
-    public void run() {
-      ((ImageSource) mapboxMap.getSource(ID_IMAGE_SOURCE)).setImage(drawables[drawableIndex++]);
-      if (drawableIndex > 3) {
-        drawableIndex = 0;
+    public long onFrame(long frameTimeMillis) {
+      // The first image is already shown by the source
+      if (started) {
+        ((ImageSource) mapboxMap.getSource(ID_IMAGE_SOURCE)).setImage(drawables[drawableIndex++]);
+        if (drawableIndex > 3) {
+          drawableIndex = 0;
+        }
       }
-      handler.postDelayed(this, 1000);
+      started = true;
+      return frameTimeMillis + FRAME_INTERVAL_MILLIS;
     }
   }
 
@@ -123,9 +125,6 @@ public class ImageSourceTimeLapseActivity extends AppCompatActivity implements O
   @Override
   protected void onDestroy() {
     super.onDestroy();
-    if (handler != null && runnable != null) {
-      handler.removeCallbacks(runnable);
-    }
     mapView.onDestroy();
   }
 
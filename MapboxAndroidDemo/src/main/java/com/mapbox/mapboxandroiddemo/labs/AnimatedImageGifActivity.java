@@ -4,11 +4,11 @@ import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Movie;
 import android.os.Bundle;
-import android.os.Handler;
 import android.support.annotation.NonNull;
 import android.support.v7.app.AppCompatActivity;
 
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.MapFrameScheduler;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.geometry.LatLngQuad;
@@ -29,8 +29,7 @@ public class AnimatedImageGifActivity extends AppCompatActivity implements OnMap
   private static final String ID_IMAGE_LAYER = "animated_image_layer";
 
   private MapView mapView;
-  private Handler handler;
-  private Runnable runnable;
+  private MapFrameScheduler frameScheduler;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -46,6 +45,9 @@ public class AnimatedImageGifActivity extends AppCompatActivity implements OnMap
     mapView = findViewById(R.id.mapView);
     mapView.onCreate(savedInstanceState);
     mapView.getMapAsync(this);
+
+    // Pauses the animation by itself while the activity is stopped
+    frameScheduler = new MapFrameScheduler(mapView);
   }
 
   @Override
@@ -70,10 +72,9 @@ public class AnimatedImageGifActivity extends AppCompatActivity implements OnMap
     // Add the layer to the map
     map.addLayer(layer);
 
-    // Use the RefreshImageRunnable class and runnable to quickly display images for a GIF/video UI experience
+    // Use the RefreshImageAnimation class to quickly display images for a GIF/video UI experience
     InputStream gifInputStream = getResources().openRawResource(R.raw.waving_bear);
-    runnable = new RefreshImageRunnable(imageSource, Movie.decodeStream(gifInputStream), handler = new Handler());
-    handler.postDelayed(runnable, 100);
+    frameScheduler.add(new RefreshImageAnimation(imageSource, Movie.decodeStream(gifInputStream)));
   }
 
   @Override
@@ -98,7 +99,6 @@ public class AnimatedImageGifActivity extends AppCompatActivity implements OnMap
   protected void onStop() {
     super.onStop();
     mapView.onStop();
-    handler.removeCallbacks(runnable);
   }
 
   @Override
@@ -113,28 +113,27 @@ public class AnimatedImageGifActivity extends AppCompatActivity implements OnMap
     mapView.onSaveInstanceState(outState);
   }
 
-  private static class RefreshImageRunnable implements Runnable {
+  private static class RefreshImageAnimation implements MapFrameScheduler.FrameAnimation {
+
+    private static final long FRAME_INTERVAL_MILLIS = 50;
 
     private ImageSource imageSource;
     private Movie movie;
-    private Handler handler;
     private long movieStart;
     private Bitmap bitmap;
     private Canvas canvas;
 
-    RefreshImageRunnable(ImageSource imageSource, Movie movie, Handler handler) {
+    RefreshImageAnimation(ImageSource imageSource, Movie movie) {
       this.imageSource = imageSource;
       this.movie = movie;
-      this.handler = handler;
       bitmap = Bitmap.createBitmap(movie.width(), movie.height(), Bitmap.Config.ARGB_8888);
       canvas = new Canvas(bitmap);
     }
 
     @Override
-    public void run() {
-      long now = android.os.SystemClock.uptimeMillis();
+    public long onFrame(long frameTimeMillis) {
       if (movieStart == 0) {
-        movieStart = now;
+        movieStart = frameTimeMillis;
       }
 
       int dur = movie.duration();
@@ -142,11 +141,11 @@ public class AnimatedImageGifActivity extends AppCompatActivity implements OnMap
         dur = 1000;
       }
 
-      movie.setTime((int) ((now - movieStart) % dur));
+      movie.setTime((int) ((frameTimeMillis - movieStart) % dur));
       movie.draw(canvas, 0, 0);
 
       imageSource.setImage(bitmap);
-      handler.postDelayed(this, 50);
+      return frameTimeMillis + FRAME_INTERVAL_MILLIS;
     }
   }
 }
@@ -9,19 +9,18 @@ import android.view.animation.AlphaAnimation;
 import android.widget.Button;
 
 import com.mapbox.geojson.Point;
-import com.mapbox.geojson.Polygon;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.IndoorLevelManager;
+import com.mapbox.mapboxandroiddemo.utils.PolygonGate;
 import com.mapbox.mapboxsdk.Mapbox;
+import com.mapbox.mapboxsdk.camera.CameraPosition;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
 import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
 import com.mapbox.mapboxsdk.style.layers.FillLayer;
+import com.mapbox.mapboxsdk.style.layers.Layer;
 import com.mapbox.mapboxsdk.style.layers.LineLayer;
-import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
-import com.mapbox.turf.TurfJoins;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -40,12 +39,10 @@ import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.lineWidth;
  */
 public class IndoorMapActivity extends AppCompatActivity {
 
-  private GeoJsonSource indoorBuildingSource;
-  private List<Point> boundingBox;
-  private List<List<Point>> boundingBoxList;
+  private IndoorLevelManager indoorLevelManager;
+  private PolygonGate buildingGate;
   private View levelButtons;
   private MapView mapView;
-  private MapboxMap map;
 
   @Override
   protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -63,51 +60,47 @@ public class IndoorMapActivity extends AppCompatActivity {
     mapView.getMapAsync(new OnMapReadyCallback() {
       @Override
       public void onMapReady(final MapboxMap mapboxMap) {
-        map = mapboxMap;
-
         levelButtons = findViewById(R.id.floor_level_buttons);
 
-        boundingBox = new ArrayList<>();
+        List<Point> boundingBox = new ArrayList<>();
 
         boundingBox.add(Point.fromLngLat(-77.03791, 38.89715));
         boundingBox.add(Point.fromLngLat(-77.03791, 38.89811));
         boundingBox.add(Point.fromLngLat(-77.03532, 38.89811));
         boundingBox.add(Point.fromLngLat(-77.03532, 38.89708));
 
-        boundingBoxList = new ArrayList<>();
-        boundingBoxList.add(boundingBox);
+        // The envelope and coordinates of the polygon are computed once, not on every camera move
+        buildingGate = new PolygonGate(boundingBox);
 
         mapboxMap.addOnCameraMoveListener(new MapboxMap.OnCameraMoveListener() {
           @Override
           public void onCameraMove() {
-            if (mapboxMap.getCameraPosition().zoom > 16) {
-              if (TurfJoins.inside(Point.fromLngLat(mapboxMap.getCameraPosition().target.getLongitude(),
-                mapboxMap.getCameraPosition().target.getLatitude()), Polygon.fromLngLats(boundingBoxList))) {
-                if (levelButtons.getVisibility() != View.VISIBLE) {
-                  showLevelButton();
-                }
-              } else {
-                if (levelButtons.getVisibility() == View.VISIBLE) {
-                  hideLevelButton();
-                }
+            CameraPosition cameraPosition = mapboxMap.getCameraPosition();
+            boolean showButtons = cameraPosition.zoom > 16 && buildingGate.contains(
+              cameraPosition.target.getLongitude(), cameraPosition.target.getLatitude());
+            if (showButtons) {
+              if (levelButtons.getVisibility() != View.VISIBLE) {
+                showLevelButton();
               }
             } else if (levelButtons.getVisibility() == View.VISIBLE) {
               hideLevelButton();
             }
           }
         });
-        indoorBuildingSource = new GeoJsonSource("indoor-building", loadJsonFromAsset("white_house_lvl_0.geojson"));
-        mapboxMap.addSource(indoorBuildingSource);
 
-        // Add the building layers since we know zoom levels in range
-        loadBuildingLayer();
+        // Parse every level once and add it to the map, switching levels only toggles layer visibility
+        indoorLevelManager = new IndoorLevelManager(mapboxMap, "indoor-building-", new BuildingLayerFactory(),
+          "white_house_lvl_0.geojson", "white_house_lvl_1.geojson");
+        indoorLevelManager.load(IndoorMapActivity.this);
       }
     });
     Button buttonSecondLevel = findViewById(R.id.second_level_button);
     buttonSecondLevel.setOnClickListener(new View.OnClickListener() {
       @Override
       public void onClick(View view) {
-        indoorBuildingSource.setGeoJson(loadJsonFromAsset("white_house_lvl_1.geojson"));
+        if (indoorLevelManager != null) {
+          indoorLevelManager.showLevel(1);
+        }
       }
     });
 
@@ -115,7 +108,9 @@ public class IndoorMapActivity extends AppCompatActivity {
     buttonGroundLevel.setOnClickListener(new View.OnClickListener() {
       @Override
       public void onClick(View view) {
-        indoorBuildingSource.setGeoJson(loadJsonFromAsset("white_house_lvl_0.geojson"));
+        if (indoorLevelManager != null) {
+          indoorLevelManager.showLevel(0);
+        }
       }
     });
   }
@@ -147,6 +142,9 @@ public class IndoorMapActivity extends AppCompatActivity {
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    if (indoorLevelManager != null) {
+      indoorLevelManager.cancel();
+    }
     mapView.onDestroy();
   }
 
@@ -180,45 +178,35 @@ public class IndoorMapActivity extends AppCompatActivity {
     levelButtons.setVisibility(View.VISIBLE);
   }
 
-  private void loadBuildingLayer() {
-    // Method used to load the indoor layer on the map. First the fill layer is drawn and then the
-    // line layer is added.
-
-    FillLayer indoorBuildingLayer = new FillLayer("indoor-building-fill", "indoor-building").withProperties(
-      fillColor(Color.parseColor("#eeeeee")),
-      // Function.zoom is used here to fade out the indoor layer if zoom level is beyond 16. Only
-      // necessary to show the indoor map at high zoom levels.
-      fillOpacity(interpolate(exponential(1f), zoom(),
-        stop(17f, 1f),
-        stop(16.5f, 0.5f),
-        stop(16f, 0f))));
-
-    map.addLayer(indoorBuildingLayer);
-
-    LineLayer indoorBuildingLineLayer = new LineLayer("indoor-building-line", "indoor-building").withProperties(
-      lineColor(Color.parseColor("#50667f")),
-      lineWidth(0.5f),
-      lineOpacity(interpolate(exponential(1f), zoom(),
-        stop(17f, 1f),
-        stop(16.5f, 0.5f),
-        stop(16f, 0f))));
-    map.addLayer(indoorBuildingLineLayer);
-  }
-
-  private String loadJsonFromAsset(String filename) {
-    // Using this method to load in GeoJSON files from the assets folder.
-
-    try {
-      InputStream is = getAssets().open(filename);
-      int size = is.available();
-      byte[] buffer = new byte[size];
-      is.read(buffer);
-      is.close();
-      return new String(buffer, "UTF-8");
-
-    } catch (IOException ex) {
-      ex.printStackTrace();
-      return null;
+  private static class BuildingLayerFactory implements IndoorLevelManager.LayerFactory {
+
+    @Override
+    public List<Layer> createLayers(String sourceId, String layerIdSuffix) {
+      // Method used to create the indoor layers of a level. First the fill layer is drawn and then the
+      // line layer is added.
+      List<Layer> layers = new ArrayList<>();
+
+      FillLayer indoorBuildingLayer = new FillLayer("indoor-building-fill" + layerIdSuffix, sourceId)
+        .withProperties(
+          fillColor(Color.parseColor("#eeeeee")),
+          // Function.zoom is used here to fade out the indoor layer if zoom level is beyond 16. Only
+          // necessary to show the indoor map at high zoom levels.
+          fillOpacity(interpolate(exponential(1f), zoom(),
+            stop(17f, 1f),
+            stop(16.5f, 0.5f),
+            stop(16f, 0f))));
+      layers.add(indoorBuildingLayer);
+
+      LineLayer indoorBuildingLineLayer = new LineLayer("indoor-building-line" + layerIdSuffix, sourceId)
+        .withProperties(
+          lineColor(Color.parseColor("#50667f")),
+          lineWidth(0.5f),
+          lineOpacity(interpolate(exponential(1f), zoom(),
+            stop(17f, 1f),
+            stop(16.5f, 0.5f),
+            stop(16f, 0f))));
+      layers.add(indoorBuildingLineLayer);
+      return layers;
     }
   }
 }
@@ -12,9 +12,9 @@ import android.view.View;
 import android.view.ViewGroup;
 
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.MapCameraSync;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.camera.CameraPosition;
-import com.mapbox.mapboxsdk.camera.CameraUpdateFactory;
 import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
@@ -22,11 +22,12 @@ import com.mapbox.mapboxsdk.maps.MapboxMapOptions;
 import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
 import com.mapbox.mapboxsdk.utils.MapFragmentUtils;
 
-public class InsetMapActivity extends AppCompatActivity implements OnMapReadyCallback, MapboxMap.OnCameraMoveListener {
+public class InsetMapActivity extends AppCompatActivity implements OnMapReadyCallback {
+
+  private static final int ZOOM_DISTANCE_BETWEEN_MAIN_AND_FRAGMENT_MAPS = 3;
 
   private MapView mainMapMapView;
-  private MapboxMap mainLargeMapboxMap;
-  private OnMapMovedFragmentInterface onMapMovedFragmentInterfaceListener;
+  private MapCameraSync mapCameraSync;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -43,6 +44,9 @@ public class InsetMapActivity extends AppCompatActivity implements OnMapReadyCal
     mainMapMapView.onCreate(savedInstanceState);
     mainMapMapView.getMapAsync(this);
 
+    // Applies the main map's camera to the mini-map at most once per frame
+    mapCameraSync = new MapCameraSync(mainMapMapView);
+
     /* Custom version of the regular Mapbox SupportMapFragment class. A custom one is being built here
     so that the interface call backs can be used in the appropriate places so that the example eventually
     works*/
@@ -77,25 +81,18 @@ public class InsetMapActivity extends AppCompatActivity implements OnMapReadyCal
       customSupportMapFragment = (CustomSupportMapFragment)
         getSupportFragmentManager().findFragmentByTag("com.mapbox.fragmentMap");
     }
+    customSupportMapFragment.getMapAsync(new OnMapReadyCallback() {
+      @Override
+      public void onMapReady(MapboxMap mapInFragment) {
+        // The resolved map is kept by the sync, instead of being looked up again on every camera move
+        mapCameraSync.link(mapInFragment, -ZOOM_DISTANCE_BETWEEN_MAIN_AND_FRAGMENT_MAPS);
+      }
+    });
   }
 
   @Override
   public void onMapReady(MapboxMap mapboxMap) {
-    InsetMapActivity.this.mainLargeMapboxMap = mapboxMap;
-    mainLargeMapboxMap.addOnCameraMoveListener(this);
-  }
-
-  @Override
-  public void onCameraMove() {
-    onMapMovedFragmentInterfaceListener.onMapMoved(mainLargeMapboxMap.getCameraPosition());
-  }
-
-  private void setOnDataListener(OnMapMovedFragmentInterface onMapMovedFragmentInterface) {
-    onMapMovedFragmentInterfaceListener = onMapMovedFragmentInterface;
-  }
-
-  public interface OnMapMovedFragmentInterface {
-    void onMapMoved(CameraPosition mainMapCameraPosition);
+    mapCameraSync.attach(mapboxMap);
   }
 
   // Add the mainMapMapView lifecycle to the activity's lifecycle methods
@@ -131,10 +128,8 @@ public class InsetMapActivity extends AppCompatActivity implements OnMapReadyCal
 
   @Override
   protected void onDestroy() {
+    mapCameraSync.release();
     super.onDestroy();
-    if (mainLargeMapboxMap != null) {
-      mainLargeMapboxMap.removeOnCameraMoveListener(this);
-    }
     mainMapMapView.onDestroy();
   }
 
@@ -151,13 +146,10 @@ public class InsetMapActivity extends AppCompatActivity implements OnMapReadyCal
    *
    * @see #getMapAsync(OnMapReadyCallback)
    */
-  public static class CustomSupportMapFragment extends Fragment implements
-    InsetMapActivity.OnMapMovedFragmentInterface {
+  public static class CustomSupportMapFragment extends Fragment {
 
     private MapView fragmentMap;
     private OnMapReadyCallback onMapReadyCallback;
-    private CameraPosition cameraPositionForFragmentMap;
-    private static final int ZOOM_DISTANCE_BETWEEN_MAIN_AND_FRAGMENT_MAPS = 3;
 
     /**
      * Creates a CustomSupportMapFragment instance
@@ -171,31 +163,6 @@ public class InsetMapActivity extends AppCompatActivity implements OnMapReadyCal
       return mapFragment;
     }
 
-    // Override method for OnMapMovedFragmentInterface
-    @Override
-    public void onMapMoved(final CameraPosition mainMapCameraPosition) {
-
-      cameraPositionForFragmentMap = new CameraPosition.Builder()
-        .target(mainMapCameraPosition.target)
-        .zoom(mainMapCameraPosition.zoom - ZOOM_DISTANCE_BETWEEN_MAIN_AND_FRAGMENT_MAPS)
-        .bearing(mainMapCameraPosition.bearing)
-        .tilt(mainMapCameraPosition.tilt)
-        .build();
-
-      fragmentMap.getMapAsync(new OnMapReadyCallback() {
-        @Override
-        public void onMapReady(final MapboxMap mapInFragment) {
-          mapInFragment.moveCamera(CameraUpdateFactory.newCameraPosition(cameraPositionForFragmentMap));
-        }
-      });
-    }
-
-    @Override
-    public void onCreate(@Nullable Bundle savedInstanceState) {
-      super.onCreate(savedInstanceState);
-      ((InsetMapActivity) getActivity()).setOnDataListener(this);
-    }
-
     /**
      * Creates the fragment view hierarchy.
      *
@@ -22,12 +22,11 @@ import com.mapbox.android.core.location.LocationEngineProvider;
 import com.mapbox.android.core.permissions.PermissionsListener;
 import com.mapbox.android.core.permissions.PermissionsManager;
 import com.mapbox.api.geocoding.v5.GeocodingCriteria;
-import com.mapbox.api.geocoding.v5.MapboxGeocoding;
 import com.mapbox.api.geocoding.v5.models.CarmenFeature;
 import com.mapbox.api.geocoding.v5.models.GeocodingResponse;
-import com.mapbox.core.exceptions.ServicesException;
 import com.mapbox.geojson.Point;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.ReverseGeocodeCache;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.annotations.Icon;
 import com.mapbox.mapboxsdk.annotations.IconFactory;
@@ -42,10 +41,6 @@ import com.mapbox.mapboxsdk.plugins.locationlayer.LocationLayerPlugin;
 
 import java.util.List;
 
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
-
 /**
  * Drop a marker at a specific location and then perform
  * reverse geocoding to retrieve and display the location's address
@@ -60,8 +55,11 @@ public class LocationPickerActivity extends AppCompatActivity implements Locatio
   private Button selectLocationButton;
   private PermissionsManager permissionsManager;
   private LocationLayerPlugin locationPlugin;
+  private ReverseGeocodeCache.Callback reverseGeocodeCallback;
 
   private static final String TAG = "LocationPickerActivity";
+  // Cells of about 5 by 5 m, so the result is the address of the spot the marker was dropped on
+  private static final int ADDRESS_GEOHASH_PRECISION = 9;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -204,6 +202,9 @@ public class LocationPickerActivity extends AppCompatActivity implements Locatio
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    if (reverseGeocodeCallback != null) {
+      ReverseGeocodeCache.getInstance(this).cancel(reverseGeocodeCallback);
+    }
     mapView.onDestroy();
     if (locationEngine != null) {
       locationEngine.deactivate();
@@ -251,47 +252,41 @@ public class LocationPickerActivity extends AppCompatActivity implements Locatio
   }
 
   private void reverseGeocode(final Point point) {
-    // This method is used to reverse geocode where the user has dropped the marker.
-    try {
-
-      MapboxGeocoding client = MapboxGeocoding.builder()
-        .accessToken(getString(R.string.access_token))
-        .query(Point.fromLngLat(point.longitude(), point.latitude()))
-        .geocodingTypes(GeocodingCriteria.TYPE_ADDRESS)
-        .build();
-
-      client.enqueueCall(new Callback<GeocodingResponse>() {
-        @Override
-        public void onResponse(Call<GeocodingResponse> call, Response<GeocodingResponse> response) {
-
-          List<CarmenFeature> results = response.body().features();
-          if (results.size() > 0) {
-            CarmenFeature feature = results.get(0);
-            // If the geocoder returns a result, we take the first in the list and update
-            // the dropped marker snippet with the information. Lastly we open the info
-            // window.
-            if (droppedMarker != null) {
-              droppedMarker.setSnippet(feature.placeName());
-              mapboxMap.selectMarker(droppedMarker);
-            }
+    // This method is used to reverse geocode where the user has dropped the marker. Lookups go through
+    // a shared cache, so dropping the marker at the same spot again doesn't make another request.
+    if (reverseGeocodeCallback != null) {
+      ReverseGeocodeCache.getInstance(this).cancel(reverseGeocodeCallback);
+    }
+    reverseGeocodeCallback = new ReverseGeocodeCache.Callback() {
+      @Override
+      public void onResult(GeocodingResponse response) {
+
+        List<CarmenFeature> results = response.features();
+        if (results.size() > 0) {
+          CarmenFeature feature = results.get(0);
+          // If the geocoder returns a result, we take the first in the list and update
+          // the dropped marker snippet with the information. Lastly we open the info
+          // window.
+          if (droppedMarker != null) {
+            droppedMarker.setSnippet(feature.placeName());
+            mapboxMap.selectMarker(droppedMarker);
+          }
 
-          } else {
-            if (droppedMarker != null) {
-              droppedMarker.setSnippet(getString(R.string.location_picker_dropped_marker_snippet_no_results));
-              mapboxMap.selectMarker(droppedMarker);
-            }
+        } else {
+          if (droppedMarker != null) {
+            droppedMarker.setSnippet(getString(R.string.location_picker_dropped_marker_snippet_no_results));
+            mapboxMap.selectMarker(droppedMarker);
           }
         }
+      }
 
-        @Override
-        public void onFailure(Call<GeocodingResponse> call, Throwable throwable) {
-          Log.e(TAG, "Geocoding Failure: " + throwable.getMessage());
-        }
-      });
-    } catch (ServicesException servicesException) {
-      Log.e(TAG, "Error geocoding: " + servicesException.toString());
-      servicesException.printStackTrace();
-    }
+      @Override
+      public void onError(String message) {
+        Log.e(TAG, "Geocoding Failure: " + message);
+      }
+    };
+    ReverseGeocodeCache.getInstance(this).reverseGeocode(point, GeocodingCriteria.TYPE_ADDRESS,
+      ADDRESS_GEOHASH_PRECISION, reverseGeocodeCallback);
   } // reverseGeocode
 
   @SuppressWarnings( {"MissingPermission"})
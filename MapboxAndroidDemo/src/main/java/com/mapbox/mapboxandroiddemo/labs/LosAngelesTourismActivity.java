@@ -3,13 +3,18 @@ package com.mapbox.mapboxandroiddemo.labs;
 import android.animation.ArgbEvaluator;
 import android.animation.ValueAnimator;
 import android.graphics.Color;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
 import android.view.View;
 
 import com.getbase.floatingactionbutton.FloatingActionButton;
+import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.commons.GeoJsonAssetLoader;
+import com.mapbox.mapboxandroiddemo.utils.MapInteractiveTrace;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
@@ -22,7 +27,7 @@ import com.mapbox.mapboxsdk.style.layers.PropertyFactory;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.lang.ref.WeakReference;
 
 import static com.mapbox.mapboxsdk.style.layers.Property.VISIBLE;
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.circleColor;
@@ -39,6 +44,9 @@ public class LosAngelesTourismActivity extends AppCompatActivity implements OnMa
   private ValueAnimator parkColorAnimator;
   private ValueAnimator hotelColorAnimator;
   private ValueAnimator attractionsColorAnimator;
+  private FeatureCollection hotelFeatures;
+  private FeatureCollection attractionFeatures;
+  private MapInteractiveTrace interactiveTrace;
 
   @Override
   protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -51,18 +59,92 @@ public class LosAngelesTourismActivity extends AppCompatActivity implements OnMa
     // This contains the MapView in XML and needs to be called after the access token is configured.
     setContentView(R.layout.activity_lab_los_angeles_tourism);
 
+    interactiveTrace = new MapInteractiveTrace("timeToInteractiveMapLosAngelesTourism");
+
+    // Start parsing the GeoJSON right away so that it runs while the map style is loading
+    new LoadTourismDataTask(this).execute("la_hotels.geojson", "la_attractions.geojson");
+
     mapView = (MapView) findViewById(R.id.mapView);
     mapView.onCreate(savedInstanceState);
     mapView.getMapAsync(this);
   }
 
-
   @Override
   public void onMapReady(MapboxMap mapboxMap) {
     this.mapboxMap = mapboxMap;
 
+    final FillLayer parks = (FillLayer) mapboxMap.getLayer("parks");
+    parks.setProperties(
+      PropertyFactory.visibility(Property.NONE)
+    );
+
+    parkColorAnimator = ValueAnimator.ofObject(
+      new ArgbEvaluator(),
+      Color.parseColor("#7ac79c"), // Brighter shade
+      Color.parseColor("#419a68") // Darker shade
+    );
+    parkColorAnimator.setDuration(1000);
+    parkColorAnimator.setRepeatCount(ValueAnimator.INFINITE);
+    parkColorAnimator.setRepeatMode(ValueAnimator.REVERSE);
+    parkColorAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+
+      @Override
+      public void onAnimationUpdate(ValueAnimator animator) {
+
+        parks.setProperties(
+          fillColor((int) animator.getAnimatedValue())
+        );
+      }
+    });
+
+    FloatingActionButton toggleHotelsFab = (FloatingActionButton) findViewById(R.id.fab_toggle_hotels);
+    toggleHotelsFab.setOnClickListener(new View.OnClickListener() {
+      @Override
+      public void onClick(View view) {
+        setLayerVisible("hotels");
+      }
+    });
+
+
+    FloatingActionButton toggleParksFab = (FloatingActionButton) findViewById(R.id.fab_toggle_parks);
+    toggleParksFab.setOnClickListener(new View.OnClickListener() {
+      @Override
+      public void onClick(View view) {
+        setLayerVisible("parks");
+      }
+    });
+
+    FloatingActionButton toggleAttractionsFab = (FloatingActionButton) findViewById(R.id.fab_toggle_attractions);
+    toggleAttractionsFab.setOnClickListener(new View.OnClickListener() {
+      @Override
+      public void onClick(View view) {
+        setLayerVisible("attractions");
+      }
+    });
+
+    addTourismDataIfReady();
+  }
+
+  /**
+   * Invoked when the hotel and attraction GeoJSON has been parsed on a background thread.
+   */
+  private void setTourismData(FeatureCollection hotels, FeatureCollection attractions) {
+    hotelFeatures = hotels;
+    attractionFeatures = attractions;
+    addTourismDataIfReady();
+  }
+
+  /**
+   * The data is loaded in parallel with the map style, so it's only added once both are available.
+   */
+  private void addTourismDataIfReady() {
+    if (mapboxMap == null || hotelFeatures == null || attractionFeatures == null
+      || mapboxMap.getSource("hotels") != null) {
+      return;
+    }
+
     // Add the hotels source to the map
-    GeoJsonSource hotelSource = new GeoJsonSource("hotels", loadJsonFromAsset("la_hotels.geojson"));
+    GeoJsonSource hotelSource = new GeoJsonSource("hotels", hotelFeatures);
     mapboxMap.addSource(hotelSource);
 
     FillLayer hotelLayer = new FillLayer("hotels", "hotels").withProperties(
@@ -95,7 +177,7 @@ public class LosAngelesTourismActivity extends AppCompatActivity implements OnMa
     });
 
     // Add the attractions source to the map
-    GeoJsonSource attractionsSource = new GeoJsonSource("attractions", loadJsonFromAsset("la_attractions.geojson"));
+    GeoJsonSource attractionsSource = new GeoJsonSource("attractions", attractionFeatures);
     mapboxMap.addSource(attractionsSource);
 
     CircleLayer attractionsLayer = new CircleLayer("attractions", "attractions").withProperties(
@@ -127,60 +209,12 @@ public class LosAngelesTourismActivity extends AppCompatActivity implements OnMa
 
     });
 
-    final FillLayer parks = (FillLayer) mapboxMap.getLayer("parks");
-    parks.setProperties(
-      PropertyFactory.visibility(Property.NONE)
-    );
-
-    parkColorAnimator = ValueAnimator.ofObject(
-      new ArgbEvaluator(),
-      Color.parseColor("#7ac79c"), // Brighter shade
-      Color.parseColor("#419a68") // Darker shade
-    );
-    parkColorAnimator.setDuration(1000);
-    parkColorAnimator.setRepeatCount(ValueAnimator.INFINITE);
-    parkColorAnimator.setRepeatMode(ValueAnimator.REVERSE);
-    parkColorAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-
-      @Override
-      public void onAnimationUpdate(ValueAnimator animator) {
-
-        parks.setProperties(
-          fillColor((int) animator.getAnimatedValue())
-        );
-      }
-    });
-
-    FloatingActionButton toggleHotelsFab = (FloatingActionButton) findViewById(R.id.fab_toggle_hotels);
-    toggleHotelsFab.setOnClickListener(new View.OnClickListener() {
-      @Override
-      public void onClick(View view) {
-        setLayerVisible("hotels");
-      }
-    });
-
-
-    FloatingActionButton toggleParksFab = (FloatingActionButton) findViewById(R.id.fab_toggle_parks);
-    toggleParksFab.setOnClickListener(new View.OnClickListener() {
-      @Override
-      public void onClick(View view) {
-        setLayerVisible("parks");
-      }
-    });
-
-    FloatingActionButton toggleAttractionsFab = (FloatingActionButton) findViewById(R.id.fab_toggle_attractions);
-    toggleAttractionsFab.setOnClickListener(new View.OnClickListener() {
-      @Override
-      public void onClick(View view) {
-        setLayerVisible("attractions");
-      }
-    });
-
     // Start all the animation at the same time so that they are in sync when displayed.
     parkColorAnimator.start();
     hotelColorAnimator.start();
     attractionsColorAnimator.start();
 
+    interactiveTrace.onDataAttached(mapView);
   }
 
   private void setLayerVisible(String layerId) {
@@ -205,13 +239,11 @@ public class LosAngelesTourismActivity extends AppCompatActivity implements OnMa
   public void onResume() {
     super.onResume();
     mapView.onResume();
-    if (hotelColorAnimator != null) {
-      hotelColorAnimator.start();
-    }
-    if (parkColorAnimator != null) {
+    // The hotel and attraction animators only exist once the data has been added, and the parks animator is
+    // only restarted together with them, so all three stay in sync
+    if (hotelColorAnimator != null && attractionsColorAnimator != null) {
       parkColorAnimator.start();
-    }
-    if (attractionsColorAnimator != null) {
+      hotelColorAnimator.start();
       attractionsColorAnimator.start();
     }
   }
@@ -232,9 +264,15 @@ public class LosAngelesTourismActivity extends AppCompatActivity implements OnMa
   public void onPause() {
     super.onPause();
     mapView.onPause();
-    hotelColorAnimator.cancel();
-    parkColorAnimator.cancel();
-    attractionsColorAnimator.cancel();
+    if (hotelColorAnimator != null) {
+      hotelColorAnimator.cancel();
+    }
+    if (parkColorAnimator != null) {
+      parkColorAnimator.cancel();
+    }
+    if (attractionsColorAnimator != null) {
+      attractionsColorAnimator.cancel();
+    }
   }
 
   @Override
@@ -246,6 +284,7 @@ public class LosAngelesTourismActivity extends AppCompatActivity implements OnMa
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    interactiveTrace.cancel(mapView);
     mapView.onDestroy();
   }
 
@@ -255,19 +294,44 @@ public class LosAngelesTourismActivity extends AppCompatActivity implements OnMa
     mapView.onSaveInstanceState(outState);
   }
 
-  private String loadJsonFromAsset(String filename) {
-    // Using this method to load in GeoJSON files from the assets folder.
-    try {
-      InputStream is = getAssets().open(filename);
-      int size = is.available();
-      byte[] buffer = new byte[size];
-      is.read(buffer);
-      is.close();
-      return new String(buffer, "UTF-8");
-
-    } catch (IOException ex) {
-      ex.printStackTrace();
-      return null;
+  /**
+   * AsyncTask to load the hotel and attraction data from the assets folder off the UI thread.
+   */
+  private static class LoadTourismDataTask extends AsyncTask<String, Void, FeatureCollection[]> {
+
+    private final WeakReference<LosAngelesTourismActivity> activityRef;
+
+    LoadTourismDataTask(LosAngelesTourismActivity activity) {
+      this.activityRef = new WeakReference<>(activity);
+    }
+
+    @Override
+    protected FeatureCollection[] doInBackground(String... assetNames) {
+      LosAngelesTourismActivity activity = activityRef.get();
+      if (activity == null) {
+        return null;
+      }
+
+      FeatureCollection[] featureCollections = new FeatureCollection[assetNames.length];
+      try {
+        for (int i = 0; i < assetNames.length; i++) {
+          featureCollections[i] = GeoJsonAssetLoader.loadFeatureCollection(activity, assetNames[i]);
+        }
+      } catch (IOException exception) {
+        Log.e("LosAngelesTourism", "Exception loading GeoJSON: " + exception.toString());
+        return null;
+      }
+      return featureCollections;
+    }
+
+    @Override
+    protected void onPostExecute(FeatureCollection[] featureCollections) {
+      super.onPostExecute(featureCollections);
+      LosAngelesTourismActivity activity = activityRef.get();
+      if (featureCollections == null || activity == null || activity.isFinishing()) {
+        return;
+      }
+      activity.setTourismData(featureCollections[0], featureCollections[1]);
     }
   }
 }
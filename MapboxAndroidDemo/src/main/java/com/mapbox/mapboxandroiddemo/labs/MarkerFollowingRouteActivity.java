@@ -1,18 +1,15 @@
 package com.mapbox.mapboxandroiddemo.labs;
 
-import android.animation.ObjectAnimator;
-import android.animation.TypeEvaluator;
-import android.animation.ValueAnimator;
 import android.graphics.Color;
 import android.os.AsyncTask;
 import android.os.Bundle;
-import android.os.Handler;
 import android.support.v7.app.AppCompatActivity;
-import android.text.TextUtils;
 import android.util.Log;
-import android.view.animation.LinearInterpolator;
 
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonCoordinateDecoder;
+import com.mapbox.mapboxandroiddemo.utils.LngLatBuffer;
+import com.mapbox.mapboxandroiddemo.utils.MapFrameScheduler;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.annotations.Icon;
 import com.mapbox.mapboxsdk.annotations.IconFactory;
@@ -24,14 +21,7 @@ import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
 import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -43,11 +33,7 @@ public class MarkerFollowingRouteActivity extends AppCompatActivity {
 
   private MapView mapView;
   private MapboxMap map;
-  private Handler handler;
-  private Runnable runnable;
-
-  private static int count = 0;
-  private long distance;
+  private MapFrameScheduler frameScheduler;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -63,6 +49,9 @@ public class MarkerFollowingRouteActivity extends AppCompatActivity {
     // Initialize the map view
     mapView = (MapView) findViewById(R.id.mapView);
     mapView.onCreate(savedInstanceState);
+
+    // The scheduler pauses the marker animation while the activity isn't in view
+    frameScheduler = new MapFrameScheduler(mapView);
     mapView.getMapAsync(new OnMapReadyCallback() {
       @Override
       public void onMapReady(MapboxMap mapboxMap) {
@@ -79,10 +68,6 @@ public class MarkerFollowingRouteActivity extends AppCompatActivity {
   public void onResume() {
     super.onResume();
     mapView.onResume();
-    // When the activity is resumed we restart the marker animating.
-    if (handler != null && runnable != null) {
-      handler.post(runnable);
-    }
   }
 
   @Override
@@ -101,11 +86,6 @@ public class MarkerFollowingRouteActivity extends AppCompatActivity {
   public void onPause() {
     super.onPause();
     mapView.onPause();
-    // Check if the marker is currently animating and if so, we pause the animation so we aren't
-    // using resources when the activities not in view.
-    if (handler != null && runnable != null) {
-      handler.removeCallbacks(runnable);
-    }
   }
 
   @Override
@@ -133,49 +113,24 @@ public class MarkerFollowingRouteActivity extends AppCompatActivity {
     @Override
     protected List<LatLng> doInBackground(Void... voids) {
 
-      // Store the route LatLng points in a list so we can query them.
-      List<LatLng> points = new ArrayList<>();
+      // Store the route coordinates in a buffer, without an object per coordinate.
+      LngLatBuffer coordinates = new LngLatBuffer();
 
       try {
-        // Load GeoJSON file from the assets folder.
+        // Stream the coordinates of the GeoJSON file's line string from the assets folder into the buffer.
         InputStream inputStream = getAssets().open("matched_route.geojson");
-        BufferedReader rd = new BufferedReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
-        StringBuilder sb = new StringBuilder();
-        int cp;
-        while ((cp = rd.read()) != -1) {
-          sb.append((char) cp);
-        }
-
-        inputStream.close();
-
-        // Parse JSON
-        JSONObject json = new JSONObject(sb.toString());
-        JSONArray features = json.getJSONArray("features");
-        JSONObject feature = features.getJSONObject(0);
-        JSONObject geometry = feature.getJSONObject("geometry");
-        if (geometry != null) {
-          String type = geometry.getString("type");
-
-          // Our GeoJSON only has one feature: a line string.
-          if (!TextUtils.isEmpty(type) && type.equalsIgnoreCase("LineString")) {
-
-            // Get the Coordinates and add them to the points list we created above.
-            JSONArray coords = geometry.getJSONArray("coordinates");
-            for (int lc = 0; lc < coords.length(); lc++) {
-              JSONArray coord = coords.getJSONArray(lc);
-              LatLng latLng = new LatLng(coord.getDouble(1), coord.getDouble(0));
-              points.add(latLng);
-            }
-          }
+        try {
+          new GeoJsonCoordinateDecoder().decodeFirstGeometry(inputStream, coordinates);
+        } finally {
+          inputStream.close();
         }
       } catch (Exception exception) {
-        // If an error occurs loading in the GeoJSON file or adding the points to the list,
-        // we log the error.
+        // If an error occurs loading in the GeoJSON file, we log the error.
         Log.e(TAG, "Exception Loading GeoJSON: " + exception.toString());
       }
 
-      // Lastly we return the list containing the route points.
-      return points;
+      // Lastly we return a list of the route points, which the marker animation queries.
+      return coordinates.toLatLngs();
     } // End doInBackground
 
     @Override
@@ -197,70 +152,75 @@ public class MarkerFollowingRouteActivity extends AppCompatActivity {
 
         // Using a view marker, we place it at the first point in the points list.
         final Marker marker = map.addMarker(new MarkerViewOptions()
-            .position(points.get(count))
+            .position(points.get(0))
             .icon(icon)
             .anchor(0.5f, 0.5f)
             .flat(true));
 
-        // Animating the marker requires the use of both the ValueAnimator and a handler.
-        // The ValueAnimator is used to move the marker between the GeoJSON points, this is
-        // done linearly. The handler is used to move the marker along the GeoJSON points.
-        handler = new Handler();
-        runnable = new Runnable() {
-          @Override
-          public void run() {
-
-            // Check if we are at the end of the points list, if so we want to stop using
-            // the handler.
-            if ((points.size() - 1) > count) {
-
-              // Calculating the distance is done between the current point and next.
-              // This gives us the duration we will need to execute the ValueAnimator.
-              // Multiplying by ten is done to slow down the marker speed. Adjusting
-              // this value will result in the marker traversing faster or slower along
-              // the line
-              distance = (long) marker.getPosition().distanceTo(points.get(count)) * 10;
-
-              // animate the marker from it's current position to the next point in the
-              // points list.
-              ValueAnimator markerAnimator = ObjectAnimator.ofObject(marker, "position",
-                  new LatLngEvaluator(), marker.getPosition(), points.get(count));
-              markerAnimator.setDuration(distance);
-              markerAnimator.setInterpolator(new LinearInterpolator());
-              markerAnimator.start();
-
-              // This line will make sure the marker appears when it is being animated
-              // and starts outside the current user view. Without this, the user must
-              // intentionally execute a gesture before the view marker reappears on
-              // the map.
-              map.getMarkerViewManager().update();
-
-              // Keeping the current point count we are on.
-              count++;
-
-              // Once we finish we need to repeat the entire process by executing the
-              // handler again once the ValueAnimator is finished.
-              handler.postDelayed(this, distance);
-            }
-          }
-        };
-        handler.post(runnable);
+        // The marker is moved along the GeoJSON points once per frame, together with any other
+        // change to the map in that frame.
+        frameScheduler.add(new MarkerRouteAnimation(map, marker, points));
       }
     } // End onPostExecute
   } // End DrawGeoJson
 
-  private static class LatLngEvaluator implements TypeEvaluator<LatLng> {
-    // Method is used to interpolate the marker animation.
-
-    private LatLng latLng = new LatLng();
+  private static class MarkerRouteAnimation implements MapFrameScheduler.FrameAnimation {
+    // Frames further apart than this mean the animation was paused, which shouldn't make the marker jump
+    private static final long MAX_FRAME_GAP_MILLIS = 100;
+
+    private final MapboxMap map;
+    private final Marker marker;
+    private final List<LatLng> points;
+    private final LatLng position = new LatLng();
+    private int count;
+    private long segmentStartMillis;
+    private long segmentDurationMillis;
+    private long lastFrameTimeMillis;
+
+    MarkerRouteAnimation(MapboxMap map, Marker marker, List<LatLng> points) {
+      this.map = map;
+      this.marker = marker;
+      this.points = points;
+    }
 
     @Override
-    public LatLng evaluate(float fraction, LatLng startValue, LatLng endValue) {
-      latLng.setLatitude(startValue.getLatitude()
-          + ((endValue.getLatitude() - startValue.getLatitude()) * fraction));
-      latLng.setLongitude(startValue.getLongitude()
-          + ((endValue.getLongitude() - startValue.getLongitude()) * fraction));
-      return latLng;
+    public long onFrame(long frameTimeMillis) {
+      if (lastFrameTimeMillis != 0 && frameTimeMillis - lastFrameTimeMillis > MAX_FRAME_GAP_MILLIS) {
+        segmentStartMillis += frameTimeMillis - lastFrameTimeMillis;
+      }
+      lastFrameTimeMillis = frameTimeMillis;
+
+      // Start the next segment once the current one is done, skipping points at the same position.
+      while (frameTimeMillis - segmentStartMillis >= segmentDurationMillis) {
+        // Check if we are at the end of the points list, if so we stop animating.
+        if (count >= points.size() - 1) {
+          marker.setPosition(points.get(points.size() - 1));
+          return FINISHED;
+        }
+        segmentStartMillis = segmentStartMillis == 0 ? frameTimeMillis : segmentStartMillis + segmentDurationMillis;
+        count++;
+
+        // Calculating the distance is done between the current point and next. This gives us the
+        // duration of the segment. Multiplying by ten is done to slow down the marker speed.
+        // Adjusting this value will result in the marker traversing faster or slower along the line.
+        segmentDurationMillis = (long) points.get(count - 1).distanceTo(points.get(count)) * 10;
+
+        // This line will make sure the marker appears when it is being animated and starts outside
+        // the current user view. Without this, the user must intentionally execute a gesture before
+        // the view marker reappears on the map.
+        map.getMarkerViewManager().update();
+      }
+
+      // Interpolate the marker linearly between the GeoJSON points.
+      float fraction = (float) (frameTimeMillis - segmentStartMillis) / segmentDurationMillis;
+      LatLng start = points.get(count - 1);
+      LatLng end = points.get(count);
+      position.setLatitude(start.getLatitude() + ((end.getLatitude() - start.getLatitude()) * fraction));
+      position.setLongitude(start.getLongitude() + ((end.getLongitude() - start.getLongitude()) * fraction));
+      marker.setPosition(position);
+
+      // Next vsync
+      return frameTimeMillis;
     }
   }
-}
\ No newline at end of file
+}
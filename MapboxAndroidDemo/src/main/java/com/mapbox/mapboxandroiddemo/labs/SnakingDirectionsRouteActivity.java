@@ -2,6 +2,7 @@ package com.mapbox.mapboxandroiddemo.labs;
 
 import android.graphics.Color;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
 import android.widget.Toast;
@@ -18,6 +19,8 @@ import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.geojson.LineString;
 import com.mapbox.geojson.Point;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.LngLatBuffer;
+import com.mapbox.mapboxandroiddemo.utils.MapFrameScheduler;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.annotations.MarkerOptions;
 import com.mapbox.mapboxsdk.geometry.LatLng;
@@ -29,6 +32,7 @@ import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 import retrofit2.Call;
 import retrofit2.Callback;
@@ -54,9 +58,11 @@ public class SnakingDirectionsRouteActivity extends AppCompatActivity
   private static final String DRIVING_ROUTE_POLYLINE_LINE_LAYER_ID = "DRIVING_ROUTE_POLYLINE_LINE_LAYER_ID";
   private static final String DRIVING_ROUTE_POLYLINE_SOURCE_ID = "DRIVING_ROUTE_POLYLINE_SOURCE_ID";
   private static final String TAG = "SnakingRouteActivity";
+  private static final long REVEAL_DURATION_MILLIS = 3000;
   private MapView mapView;
   private MapboxMap map;
   private MapboxDirections client;
+  private MapFrameScheduler frameScheduler;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -73,6 +79,7 @@ public class SnakingDirectionsRouteActivity extends AppCompatActivity
     mapView = findViewById(R.id.mapView);
     mapView.onCreate(savedInstanceState);
     mapView.getMapAsync(this);
+    frameScheduler = new MapFrameScheduler(mapView);
   }
 
   @Override
@@ -144,9 +151,9 @@ public class SnakingDirectionsRouteActivity extends AppCompatActivity
           return;
         }
 
-        // Get the route from the Mapbox Directions API
+        // Get the route from the Mapbox Directions API and collect the location of every intersection
         DirectionsRoute currentRoute = response.body().routes().get(0);
-        List<Point> directionsPointsForLineLayer = new ArrayList<>();
+        LngLatBuffer directionsPointsForLineLayer = new LngLatBuffer();
         for (int i = 0; i < currentRoute.legs().size(); i++) {
           RouteLeg leg = currentRoute.legs().get(i);
           List<LegStep> steps = leg.steps();
@@ -155,22 +162,16 @@ public class SnakingDirectionsRouteActivity extends AppCompatActivity
             List<StepIntersection> intersections = step.intersections();
             for (int k = 0; k < intersections.size(); k++) {
               Point location = intersections.get(k).location();
-              directionsPointsForLineLayer.add(Point.fromLngLat(location.longitude(), location.latitude()));
-              List<Feature> drivingRoutePolyLineFeatureList = new ArrayList<>();
-              LineString lineString = LineString.fromLngLats(directionsPointsForLineLayer);
-              List<Point> coordinates = lineString.coordinates();
-              for (int x = 0; x < coordinates.size(); x++) {
-                drivingRoutePolyLineFeatureList.add(Feature.fromGeometry(LineString.fromLngLats(coordinates)));
-              }
-
-              // Update the GeoJSON source
-              GeoJsonSource source = map.getSourceAs(DRIVING_ROUTE_POLYLINE_SOURCE_ID);
-              if (source != null) {
-                source.setGeoJson(FeatureCollection.fromFeatures(drivingRoutePolyLineFeatureList));
-              }
+              directionsPointsForLineLayer.add(location.longitude(), location.latitude());
             }
           }
         }
+
+        // Reveal the route a few points per frame, as a single growing line
+        GeoJsonSource source = map.getSourceAs(DRIVING_ROUTE_POLYLINE_SOURCE_ID);
+        if (source != null) {
+          frameScheduler.add(new RouteRevealAnimation(source, directionsPointsForLineLayer));
+        }
       }
 
       @Override
@@ -227,4 +228,53 @@ public class SnakingDirectionsRouteActivity extends AppCompatActivity
     super.onLowMemory();
     mapView.onLowMemory();
   }
-}
\ No newline at end of file
+
+  /**
+   * Grows the route line from the origin to the destination over a fixed time, whatever the number of
+   * points. Only the points revealed since the last frame are turned into Points, and the source is updated
+   * with one LineString feature per frame.
+   */
+  private static class RouteRevealAnimation implements MapFrameScheduler.FrameAnimation {
+
+    private final GeoJsonSource source;
+    private final LngLatBuffer coordinates;
+    private final List<Point> revealedPoints;
+    private long startTimeMillis;
+    private int updateCount;
+    private long updateTimeNanos;
+
+    RouteRevealAnimation(GeoJsonSource source, LngLatBuffer coordinates) {
+      this.source = source;
+      this.coordinates = coordinates;
+      this.revealedPoints = new ArrayList<>(coordinates.size());
+    }
+
+    @Override
+    public long onFrame(long frameTimeMillis) {
+      if (coordinates.size() < 2) {
+        return FINISHED;
+      }
+      if (startTimeMillis == 0) {
+        startTimeMillis = frameTimeMillis;
+      }
+
+      float fraction = Math.min(1f, (float) (frameTimeMillis - startTimeMillis) / REVEAL_DURATION_MILLIS);
+      int count = Math.max(2, Math.round(coordinates.size() * fraction));
+      if (count > revealedPoints.size()) {
+        long start = System.nanoTime();
+        coordinates.appendPoints(revealedPoints, revealedPoints.size(), count);
+        source.setGeoJson(Feature.fromGeometry(LineString.fromLngLats(revealedPoints)));
+        updateTimeNanos += System.nanoTime() - start;
+        updateCount++;
+      }
+
+      if (revealedPoints.size() == coordinates.size()) {
+        Log.d(TAG, String.format(Locale.US, "Revealed %d points in %d ms, %d updates taking %.2f ms on average",
+          coordinates.size(), SystemClock.uptimeMillis() - startTimeMillis, updateCount,
+          updateTimeNanos / 1000000f / updateCount));
+        return FINISHED;
+      }
+      return frameTimeMillis;
+    }
+  }
+}
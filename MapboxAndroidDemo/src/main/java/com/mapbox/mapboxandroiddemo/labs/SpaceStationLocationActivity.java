@@ -11,6 +11,7 @@ import android.view.animation.LinearInterpolator;
 import android.widget.Toast;
 
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.commons.NetworkModule;
 import com.mapbox.mapboxandroiddemo.model.IssModel;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.annotations.Icon;
@@ -28,8 +29,6 @@ import com.mapbox.turf.TurfMeasurement;
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
-import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
 import retrofit2.http.GET;
 
 /**
@@ -123,6 +122,7 @@ public class SpaceStationLocationActivity extends AppCompatActivity {
   protected void onDestroy() {
     super.onDestroy();
     mapView.onDestroy();
+    NetworkModule.getInstance(this).getMetrics().logSummary(TAG);
   }
 
   @Override
@@ -133,14 +133,10 @@ public class SpaceStationLocationActivity extends AppCompatActivity {
 
   private void callApi() {
 
-    // Build our client, The API we are using is very basic only returning a handful of
-    // information, mainly, the current latitude and longitude of the International Space Station.
-    Retrofit client = new Retrofit.Builder()
-      .baseUrl("http://api.open-notify.org/")
-      .addConverterFactory(GsonConverterFactory.create())
-      .build();
-
-    final IssApiService service = client.create(IssApiService.class);
+    // Get our client from the app's shared network module, The API we are using is very basic only returning
+    // a handful of information, mainly, the current latitude and longitude of the International Space Station.
+    final IssApiService service = NetworkModule.getInstance(this).getRetrofit("http://api.open-notify.org/")
+      .create(IssApiService.class);
 
     // A handler is needed to called the API every x amount of seconds.
     handler = new Handler();
@@ -5,14 +5,9 @@ import android.animation.AnimatorSet;
 import android.animation.TypeEvaluator;
 import android.animation.ValueAnimator;
 import android.annotation.SuppressLint;
-import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Paint;
 import android.graphics.PointF;
-import android.graphics.PorterDuff;
-import android.graphics.PorterDuffXfermode;
 import android.graphics.Rect;
 import android.os.AsyncTask;
 import android.os.Bundle;
@@ -27,6 +22,7 @@ import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.PagerSnapHelper;
 import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.SnapHelper;
+import android.util.LruCache;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -38,6 +34,16 @@ import com.mapbox.geojson.Feature;
 import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.geojson.Point;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.commons.FeatureIndex;
+import com.mapbox.mapboxandroiddemo.commons.GeoJsonAssetLoader;
+import com.mapbox.mapboxandroiddemo.commons.NetworkModule;
+import com.mapbox.mapboxandroiddemo.utils.BitmapPool;
+import com.mapbox.mapboxandroiddemo.utils.CalloutImageCache;
+import com.mapbox.mapboxandroiddemo.utils.CalloutImageCache.Snapshot;
+import com.mapbox.mapboxandroiddemo.utils.CalloutRenderStats;
+import com.mapbox.mapboxandroiddemo.utils.CalloutRenderer;
+import com.mapbox.mapboxandroiddemo.utils.FeatureStateOverlay;
+import com.mapbox.mapboxandroiddemo.utils.ThumbnailPipeline;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.camera.CameraPosition;
 import com.mapbox.mapboxsdk.camera.CameraUpdateFactory;
@@ -56,9 +62,8 @@ import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 import com.mapbox.mapboxsdk.style.sources.Source;
 import com.mapbox.mapboxsdk.style.sources.TileSet;
 import com.mapbox.mapboxsdk.style.sources.VectorSource;
-import com.squareup.picasso.Picasso;
 
-import java.io.InputStream;
+import java.io.IOException;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.ref.WeakReference;
@@ -81,7 +86,6 @@ import static com.mapbox.mapboxsdk.style.expressions.Expression.gte;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.interpolate;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.literal;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.lt;
-import static com.mapbox.mapboxsdk.style.expressions.Expression.match;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.stop;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.toNumber;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.zoom;
@@ -108,7 +112,9 @@ import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.visibility;
 public class SymbolLayerMapillaryActivity extends AppCompatActivity implements OnMapReadyCallback,
   MapboxMap.OnMapClickListener {
   private static final String SOURCE_ID = "mapbox.poi";
+  private static final String STATE_SOURCE_ID = "mapbox.poi.state";
   private static final String MAKI_LAYER_ID = "mapbox.poi.maki";
+  private static final String SELECTED_MAKI_LAYER_ID = "mapbox.poi.maki.selected";
   private static final String LOADING_LAYER_ID = "mapbox.poi.loading";
   private static final String CALLOUT_LAYER_ID = "mapbox.poi.callout";
 
@@ -125,17 +131,28 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
   private static final float LOADING_CIRCLE_RADIUS = 60;
   private static final int LOADING_PROGRESS_STEPS = 25; //number of steps in a progress animation
   private static final int LOADING_STEP_DURATION = 50; //duration between each step
+  private static final long CALLOUT_POOL_SIZE_BYTES = 4 * 1024 * 1024;
+  private static final long THUMBNAIL_POOL_SIZE_BYTES = 1024 * 1024;
+  private static final int THUMBNAIL_CACHE_SIZE_BYTES = 8 * 1024 * 1024;
+  private static final int MAX_PARALLEL_THUMBNAIL_FETCHES = 4;
+  private static final int MAPILLARY_RESPONSE_CACHE_SIZE = 16;
 
   private MapView mapView;
   private MapboxMap mapboxMap;
   private RecyclerView recyclerView;
 
   private GeoJsonSource source;
+  private FeatureStateOverlay stateOverlay;
+  private FeatureIndex featureIndex;
   private FeatureCollection featureCollection;
-  private HashMap<String, View> viewMap;
+  private BitmapPool calloutBitmapPool;
+  private CalloutRenderer calloutRenderer;
+  private CalloutImageCache calloutImageCache;
   private AnimatorSet animatorSet;
 
   private LoadMapillaryDataTask loadMapillaryDataTask;
+  private ThumbnailPipeline thumbnailPipeline;
+  private LruCache<String, FeatureCollection> mapillaryResponseCache;
 
   @ActivityStep
   private int currentStep;
@@ -170,6 +187,12 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
 
     recyclerView = findViewById(R.id.rv_on_top_of_map);
 
+    calloutBitmapPool = new BitmapPool(CALLOUT_POOL_SIZE_BYTES);
+    calloutRenderer = new CalloutRenderer(this, R.layout.mapillary_layout_callout, new CalloutViewBinder(),
+      calloutBitmapPool);
+    calloutImageCache = new CalloutImageCache(calloutBitmapPool, PROPERTY_TITLE,
+      PROPERTY_TITLE, PROPERTY_STYLE, PROPERTY_FAVOURITE);
+
     // Initialize the map view
     mapView = findViewById(R.id.mapView);
     mapView.onCreate(savedInstanceState);
@@ -207,6 +230,7 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
     }
 
     featureCollection = collection;
+    featureIndex = FeatureIndex.build(collection, PROPERTY_TITLE);
     setupSource();
     setupMakiLayer();
     setupLoadingLayer();
@@ -219,6 +243,10 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
   private void setupSource() {
     source = new GeoJsonSource(SOURCE_ID, featureCollection);
     mapboxMap.addSource(source);
+
+    // selection and loading state change often, keep it out of the large POI source
+    stateOverlay = new FeatureStateOverlay(STATE_SOURCE_ID, PROPERTY_TITLE);
+    mapboxMap.addSource(stateOverlay.getSource());
   }
 
   private void refreshSource() {
@@ -239,11 +267,16 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
         iconImage("{poi}-15"),
 
         /* allows show all icons */
-        iconAllowOverlap(true),
+        iconAllowOverlap(true))
+    );
 
-        /* when feature is in selected state, grow icon */
-        iconSize(match(get(PROPERTY_SELECTED), literal(1.0f),
-          stop(true, 1.5f))))
+    /* when feature is in selected state, draw a grown icon on top of it */
+    mapboxMap.addLayer(new SymbolLayer(SELECTED_MAKI_LAYER_ID, STATE_SOURCE_ID)
+      .withProperties(
+        iconImage("{poi}-15"),
+        iconAllowOverlap(true),
+        iconSize(1.5f))
+      .withFilter(eq(get(PROPERTY_SELECTED), literal(true)))
     );
   }
 
@@ -251,7 +284,7 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
    * Setup layer indicating that there is an ongoing progress.
    */
   private void setupLoadingLayer() {
-    mapboxMap.addLayerBelow(new CircleLayer(LOADING_LAYER_ID, SOURCE_ID)
+    mapboxMap.addLayerBelow(new CircleLayer(LOADING_LAYER_ID, STATE_SOURCE_ID)
       .withProperties(
         circleRadius(interpolate(exponential(1), get(PROPERTY_LOADING_PROGRESS), getLoadingAnimationStops())),
         circleColor(Color.GRAY),
@@ -276,7 +309,7 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
    * </p>
    */
   private void setupCalloutLayer() {
-    mapboxMap.addLayer(new SymbolLayer(CALLOUT_LAYER_ID, SOURCE_ID)
+    mapboxMap.addLayer(new SymbolLayer(CALLOUT_LAYER_ID, STATE_SOURCE_ID)
       .withProperties(
         /* show image with id title based on the value of the title feature property */
         iconImage("{title}"),
@@ -339,7 +372,7 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
    * @param symbolScreenPoint the point of the symbol on screen
    */
   private void handleClickCallout(Feature feature, PointF screenPoint, PointF symbolScreenPoint) {
-    View view = viewMap.get(feature.getStringProperty(PROPERTY_TITLE));
+    View view = calloutRenderer.layout(feature);
     View textContainer = view.findViewById(R.id.text_container);
 
     // create hitbox for textView
@@ -359,11 +392,9 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
       Toast.makeText(this, callout, Toast.LENGTH_LONG).show();
     } else {
       // user clicked on icon
-      List<Feature> featureList = featureCollection.features();
-      for (int i = 0; i < featureList.size(); i++) {
-        if (featureList.get(i).getStringProperty(PROPERTY_TITLE).equals(feature.getStringProperty(PROPERTY_TITLE))) {
-          toggleFavourite(i);
-        }
+      int index = featureIndex.indexOfName(feature.getStringProperty(PROPERTY_TITLE));
+      if (index != -1) {
+        toggleFavourite(index);
       }
     }
   }
@@ -379,12 +410,9 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
   private void handleClickIcon(PointF screenPoint) {
     List<Feature> features = mapboxMap.queryRenderedFeatures(screenPoint, MAKI_LAYER_ID);
     if (!features.isEmpty()) {
-      String title = features.get(0).getStringProperty(PROPERTY_TITLE);
-      List<Feature> featureList = featureCollection.features();
-      for (int i = 0; i < featureList.size(); i++) {
-        if (featureList.get(i).getStringProperty(PROPERTY_TITLE).equals(title)) {
-          setSelected(i, true);
-        }
+      int index = featureIndex.indexOfName(features.get(0).getStringProperty(PROPERTY_TITLE));
+      if (index != -1) {
+        setSelected(index, true);
       }
     }
   }
@@ -405,7 +433,6 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
     Feature feature = featureCollection.features().get(index);
     selectFeature(feature);
     animateCameraToSelection(feature);
-    refreshSource();
     loadMapillaryData(feature);
 
     if (withScroll) {
@@ -417,9 +444,7 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
    * Deselects the state of all the features
    */
   private void deselectAll(boolean hideRecycler) {
-    for (Feature feature : featureCollection.features()) {
-      feature.properties().addProperty(PROPERTY_SELECTED, false);
-    }
+    stateOverlay.clearState(PROPERTY_SELECTED);
 
     if (hideRecycler) {
       recyclerView.setVisibility(View.GONE);
@@ -432,13 +457,13 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
    * @param feature the feature to be selected.
    */
   private void selectFeature(Feature feature) {
-    feature.properties().addProperty(PROPERTY_SELECTED, true);
+    stateOverlay.setBooleanState(feature, PROPERTY_SELECTED, true);
   }
 
   private Feature getSelectedFeature() {
     if (featureCollection != null) {
       for (Feature feature : featureCollection.features()) {
-        if (feature.getBooleanProperty(PROPERTY_SELECTED)) {
+        if (stateOverlay.getBooleanState(feature, PROPERTY_SELECTED)) {
           return feature;
         }
       }
@@ -479,8 +504,15 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
       loadMapillaryDataTask.cancel(true);
     }
 
-    loadMapillaryDataTask = new LoadMapillaryDataTask(this,
-      mapboxMap, Picasso.with(getApplicationContext()), new Handler(), feature);
+    OkHttpClient httpClient = NetworkModule.getInstance(this).getOkHttpClient();
+    if (thumbnailPipeline == null) {
+      thumbnailPipeline = new ThumbnailPipeline(httpClient, new BitmapPool(THUMBNAIL_POOL_SIZE_BYTES),
+        LoadMapillaryDataTask.IMAGE_SIZE, MAX_PARALLEL_THUMBNAIL_FETCHES, THUMBNAIL_CACHE_SIZE_BYTES);
+      mapillaryResponseCache = new LruCache<>(MAPILLARY_RESPONSE_CACHE_SIZE);
+    }
+
+    loadMapillaryDataTask = new LoadMapillaryDataTask(this, mapboxMap, httpClient, thumbnailPipeline,
+      mapillaryResponseCache, new Handler(), feature);
     loadMapillaryDataTask.execute(50);
   }
 
@@ -494,25 +526,25 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
     String title = feature.getStringProperty(PROPERTY_TITLE);
     boolean currentState = feature.getBooleanProperty(PROPERTY_FAVOURITE);
     feature.properties().addProperty(PROPERTY_FAVOURITE, !currentState);
-    View view = viewMap.get(title);
 
-    ImageView imageView = (ImageView) view.findViewById(R.id.logoView);
-    imageView.setImageResource(currentState ? R.drawable.ic_favorite : R.drawable.ic_favorite_border);
-    Bitmap bitmap = SymbolGenerator.generate(view);
-    mapboxMap.addImage(title, bitmap);
-    refreshSource();
+    // The favourite state is only shown in the callout image, so the source doesn't need to be updated
+    Bitmap bitmap = calloutImageCache.renderIfDirty(calloutRenderer, feature);
+    if (bitmap != null) {
+      mapboxMap.addImage(title, bitmap);
+      calloutImageCache.onImageAdded(title, bitmap);
+    }
   }
 
   /**
    * Invoked when the bitmaps have been generated from a view.
    */
-  public void setImageGenResults(HashMap<String, View> viewMap, HashMap<String, Bitmap> imageMap) {
+  public void setImageGenResults(HashMap<String, Bitmap> imageMap) {
+    calloutImageCache.removeStale(imageMap);
     if (mapboxMap != null) {
       // calling addImages is faster as separate addImage calls for each bitmap.
       mapboxMap.addImages(imageMap);
     }
-    // need to store reference to views to be able to use them as hitboxes for click events.
-    this.viewMap = viewMap;
+    calloutImageCache.onImagesAdded(imageMap);
   }
 
   private void setActivityStep(@ActivityStep int activityStep) {
@@ -569,7 +601,15 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
     if (mapboxMap != null) {
       mapboxMap.removeOnMapClickListener(this);
     }
+    if (stateOverlay != null) {
+      stateOverlay.cancelPendingUpdate();
+    }
+    if (thumbnailPipeline != null) {
+      thumbnailPipeline.shutdown();
+    }
     mapView.onDestroy();
+    calloutBitmapPool.clear();
+    NetworkModule.getInstance(this).getMetrics().logSummary("SymbolLayerMapillaryActivity");
   }
 
   @Override
@@ -580,7 +620,6 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
       }
       setActivityStep(STEP_INITIAL);
       deselectAll(true);
-      refreshSource();
     } else {
       super.onBackPressed();
     }
@@ -679,8 +718,12 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
         return null;
       }
 
-      String geoJson = loadGeoJsonFromAsset(activity, "sf_poi.geojson");
-      return FeatureCollection.fromJson(geoJson);
+      try {
+        return GeoJsonAssetLoader.loadFeatureCollection(activity, "sf_poi.geojson");
+      } catch (IOException exception) {
+        Timber.e(exception, "Exception loading GeoJSON");
+        return null;
+      }
     }
 
     @Override
@@ -691,21 +734,7 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
         return;
       }
       activity.setupData(featureCollection);
-      new GenerateViewIconTask(activity).execute(featureCollection);
-    }
-
-    static String loadGeoJsonFromAsset(Context context, String filename) {
-      try {
-        // Load GeoJSON file from local asset folder
-        InputStream is = context.getAssets().open(filename);
-        int size = is.available();
-        byte[] buffer = new byte[size];
-        is.read(buffer);
-        is.close();
-        return new String(buffer, "UTF-8");
-      } catch (Exception exception) {
-        throw new RuntimeException(exception);
-      }
+      new GenerateViewIconTask(activity).execute(activity.calloutImageCache.snapshot(featureCollection.features()));
     }
   }
 
@@ -718,9 +747,8 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
    * Generating Views on background thread since we are not going to be adding them to the view hierarchy.
    * </p>
    */
-  private static class GenerateViewIconTask extends AsyncTask<FeatureCollection, Void, HashMap<String, Bitmap>> {
+  private static class GenerateViewIconTask extends AsyncTask<Snapshot, Void, HashMap<String, Bitmap>> {
 
-    private final HashMap<String, View> viewMap = new HashMap<>();
     private final WeakReference<SymbolLayerMapillaryActivity> activityRef;
     private final boolean refreshSource;
 
@@ -735,33 +763,19 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
 
     @SuppressWarnings("WrongThread")
     @Override
-    protected HashMap<String, Bitmap> doInBackground(FeatureCollection... params) {
+    protected HashMap<String, Bitmap> doInBackground(Snapshot... params) {
       SymbolLayerMapillaryActivity activity = activityRef.get();
       if (activity != null) {
-        HashMap<String, Bitmap> imagesMap = new HashMap<>();
-        LayoutInflater inflater = LayoutInflater.from(activity);
-        FeatureCollection featureCollection = params[0];
-
-        for (Feature feature : featureCollection.features()) {
-          View view = inflater.inflate(R.layout.mapillary_layout_callout, null);
+        // The activity's renderer is used on the UI thread, so this task uses its own View and Canvas
+        CalloutRenderer renderer = new CalloutRenderer(activity, R.layout.mapillary_layout_callout,
+          new CalloutViewBinder(), activity.calloutBitmapPool);
+        Snapshot snapshot = params[0];
+        CalloutRenderStats stats = new CalloutRenderStats();
 
-          String name = feature.getStringProperty(PROPERTY_TITLE);
-          TextView titleTv = (TextView) view.findViewById(R.id.title);
-          titleTv.setText(name);
-
-          String style = feature.getStringProperty(PROPERTY_STYLE);
-          TextView styleTv = (TextView) view.findViewById(R.id.style);
-          styleTv.setText(style);
-
-          boolean favourite = feature.getBooleanProperty(PROPERTY_FAVOURITE);
-          ImageView imageView = (ImageView) view.findViewById(R.id.logoView);
-          imageView.setImageResource(favourite ? R.drawable.ic_favorite : R.drawable.ic_favorite_border);
-
-          Bitmap bitmap = SymbolGenerator.generate(view);
-          imagesMap.put(name, bitmap);
-          viewMap.put(name, view);
-        }
+        // Only callouts whose title, style or favourite state changed since the last run are rendered
+        HashMap<String, Bitmap> imagesMap = activity.calloutImageCache.renderDirty(renderer, snapshot, stats);
 
+        stats.log(renderer);
         return imagesMap;
       } else {
         return null;
@@ -773,7 +787,7 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
       super.onPostExecute(bitmapHashMap);
       SymbolLayerMapillaryActivity activity = activityRef.get();
       if (activity != null && bitmapHashMap != null) {
-        activity.setImageGenResults(viewMap, bitmapHashMap);
+        activity.setImageGenResults(bitmapHashMap);
         if (refreshSource) {
           activity.refreshSource();
         }
@@ -781,6 +795,25 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
     }
   }
 
+  /**
+   * Binds the title, style and favourite state of a POI to the callout layout.
+   */
+  private static class CalloutViewBinder implements CalloutRenderer.ViewBinder {
+
+    @Override
+    public void bindView(@NonNull View view, @NonNull Feature feature) {
+      TextView titleTv = (TextView) view.findViewById(R.id.title);
+      titleTv.setText(feature.getStringProperty(PROPERTY_TITLE));
+
+      TextView styleTv = (TextView) view.findViewById(R.id.style);
+      styleTv.setText(feature.getStringProperty(PROPERTY_STYLE));
+
+      boolean favourite = feature.getBooleanProperty(PROPERTY_FAVOURITE);
+      ImageView imageView = (ImageView) view.findViewById(R.id.logoView);
+      imageView.setImageResource(favourite ? R.drawable.ic_favorite : R.drawable.ic_favorite_border);
+    }
+  }
+
   /**
    * Async task which fetches pictures from around the POI using Mapillary services.
    * https://www.mapillary.com/developer/api-documentation/
@@ -799,17 +832,23 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
 
     private WeakReference<SymbolLayerMapillaryActivity> activityRef;
     private MapboxMap map;
-    private Picasso picasso;
+    private OkHttpClient httpClient;
+    private ThumbnailPipeline thumbnailPipeline;
+    private LruCache<String, FeatureCollection> responseCache;
     private final Handler progressHandler;
     private int loadingProgress;
     private boolean loadingIncrease = true;
     private Feature feature;
 
-    public LoadMapillaryDataTask(SymbolLayerMapillaryActivity activity, MapboxMap map, Picasso picasso,
+    public LoadMapillaryDataTask(SymbolLayerMapillaryActivity activity, MapboxMap map, OkHttpClient httpClient,
+                                 ThumbnailPipeline thumbnailPipeline,
+                                 LruCache<String, FeatureCollection> responseCache,
                                  Handler progressHandler, Feature feature) {
       this.activityRef = new WeakReference<>(activity);
       this.map = map;
-      this.picasso = picasso;
+      this.httpClient = httpClient;
+      this.thumbnailPipeline = thumbnailPipeline;
+      this.responseCache = responseCache;
       this.progressHandler = progressHandler;
       this.feature = feature;
     }
@@ -824,38 +863,34 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
     @Override
     protected MapillaryDataLoadResult doInBackground(Integer... radius) {
       progressHandler.post(progressRunnable);
-      try {
-        Thread.sleep(2500); //ensure loading visualisation
-      } catch (InterruptedException exception) {
-        exception.printStackTrace();
-      }
-      OkHttpClient okHttpClient = new OkHttpClient();
       try {
         Point poiPosition = (Point) feature.geometry();
 
-        @SuppressLint("DefaultLocale") Request request = new Request.Builder()
-          .url(String.format(API_URL,
-            poiPosition.longitude(), poiPosition.latitude(),
-            poiPosition.longitude(), poiPosition.latitude(),
-            radius[0]
-          ))
-          .build();
-
-        Response response = okHttpClient.newCall(request).execute();
-        FeatureCollection featureCollection = FeatureCollection.fromJson(response.body().string());
-        MapillaryDataLoadResult mapillaryDataLoadResult = new MapillaryDataLoadResult(featureCollection);
-        for (Feature feature : featureCollection.features()) {
-          String imageId = feature.getStringProperty(KEY_UNIQUE_FEATURE);
-          String imageUrl = String.format(URL_IMAGE_PLACEHOLDER, imageId);
-          Bitmap bitmap = picasso.load(imageUrl).resize(IMAGE_SIZE, IMAGE_SIZE).get();
+        @SuppressLint("DefaultLocale") String url = String.format(API_URL,
+          poiPosition.longitude(), poiPosition.latitude(),
+          poiPosition.longitude(), poiPosition.latitude(),
+          radius[0]
+        );
 
-          //cropping bitmap to be circular
-          bitmap = getCroppedBitmap(bitmap);
+        // re-selecting a POI reuses the images found the last time
+        FeatureCollection featureCollection = responseCache.get(url);
+        if (featureCollection == null) {
+          Response response = httpClient.newCall(new Request.Builder().url(url).build()).execute();
+          featureCollection = FeatureCollection.fromJson(response.body().string());
+          responseCache.put(url, featureCollection);
+        }
 
-          mapillaryDataLoadResult.add(feature, bitmap);
+        Map<String, String> imageUrls = new HashMap<>();
+        for (Feature feature : featureCollection.features()) {
+          String imageId = feature.getStringProperty(KEY_UNIQUE_FEATURE);
+          imageUrls.put(imageId, String.format(URL_IMAGE_PLACEHOLDER, imageId));
         }
-        return mapillaryDataLoadResult;
 
+        // thumbnails are fetched in parallel and cropped to be circular
+        return new MapillaryDataLoadResult(featureCollection, thumbnailPipeline.load(imageUrls));
+      } catch (InterruptedException exception) {
+        // the task was cancelled while the thumbnails were loading
+        return null;
       } catch (Exception exception) {
         Timber.e(exception);
       }
@@ -876,13 +911,13 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
 
       FeatureCollection featureCollection = mapillaryDataLoadResult.mapillaryFeatureCollection;
 
-      Map<Feature, Bitmap> bitmapMap = mapillaryDataLoadResult.bitmapHashMap;
-      for (Map.Entry<Feature, Bitmap> featureBitmapEntry : bitmapMap.entrySet()) {
-        Feature feature = featureBitmapEntry.getKey();
-        String key = feature.getStringProperty(KEY_UNIQUE_FEATURE);
-        map.addImage(key, featureBitmapEntry.getValue());
+      for (Map.Entry<String, Bitmap> thumbnailEntry : mapillaryDataLoadResult.thumbnails.entrySet()) {
+        map.addImage(thumbnailEntry.getKey(), thumbnailEntry.getValue());
       }
 
+      // the map holds its own copy of the images now, thumbnails dropped from the cache can be reused
+      thumbnailPipeline.releaseEvicted();
+
       GeoJsonSource mapillarySource = (GeoJsonSource) map.getSource(ID_SOURCE);
       if (mapillarySource == null) {
         map.addSource(new GeoJsonSource(ID_SOURCE, featureCollection, new GeoJsonOptions()
@@ -958,28 +993,6 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
       }
     }
 
-    static Bitmap getCroppedBitmap(Bitmap bitmap) {
-      Bitmap output = Bitmap.createBitmap(bitmap.getWidth(),
-        bitmap.getHeight(), Bitmap.Config.ARGB_8888);
-      Canvas canvas = new Canvas(output);
-
-      final int color = 0xff424242;
-      final Paint paint = new Paint();
-      final Rect rect = new Rect(0, 0, bitmap.getWidth(), bitmap.getHeight());
-
-      paint.setAntiAlias(true);
-      canvas.drawARGB(0, 0, 0, 0);
-      paint.setColor(color);
-      // canvas.drawRoundRect(rectF, roundPx, roundPx, paint);
-      canvas.drawCircle(bitmap.getWidth() / 2, bitmap.getHeight() / 2,
-        bitmap.getWidth() / 2, paint);
-      paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_IN));
-      canvas.drawBitmap(bitmap, rect, rect, paint);
-      //Bitmap _bmp = Bitmap.createScaledBitmap(output, 60, 60, false);
-      //return _bmp;
-      return output;
-    }
-
     private Runnable progressRunnable = new Runnable() {
       @Override
       public void run() {
@@ -1000,10 +1013,10 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
 
         loadingProgress = loadingIncrease ? loadingProgress + 1 : loadingProgress - 1;
 
-        feature.addNumberProperty(PROPERTY_LOADING_PROGRESS, loadingProgress);
         SymbolLayerMapillaryActivity activity = activityRef.get();
         if (activity != null) {
-          activity.refreshSource();
+          // only the small state source is updated, at most once per frame
+          activity.stateOverlay.setNumberState(feature, PROPERTY_LOADING_PROGRESS, loadingProgress);
         }
         progressHandler.postDelayed(this, LOADING_STEP_DURATION);
       }
@@ -1011,10 +1024,12 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
 
     private void setLoadingState(boolean isLoading, boolean isSuccess) {
       progressHandler.removeCallbacksAndMessages(null);
-      feature.addBooleanProperty(PROPERTY_LOADING, isLoading);
       SymbolLayerMapillaryActivity activity = activityRef.get();
       if (activity != null) {
-        activity.refreshSource();
+        activity.stateOverlay.setBooleanState(feature, PROPERTY_LOADING, isLoading);
+        if (!isLoading) {
+          activity.stateOverlay.clearState(feature, PROPERTY_LOADING_PROGRESS);
+        }
 
         if (isLoading) { //zooming to a loading state
           activity.setActivityStep(STEP_LOADING);
@@ -1026,45 +1041,12 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
   }
 
   private static class MapillaryDataLoadResult {
-    private final HashMap<Feature, Bitmap> bitmapHashMap = new HashMap<>();
     private final FeatureCollection mapillaryFeatureCollection;
+    private final Map<String, Bitmap> thumbnails;
 
-    MapillaryDataLoadResult(FeatureCollection mapillaryFeatureCollection) {
+    MapillaryDataLoadResult(FeatureCollection mapillaryFeatureCollection, Map<String, Bitmap> thumbnails) {
       this.mapillaryFeatureCollection = mapillaryFeatureCollection;
-    }
-
-    public void add(Feature feature, Bitmap bitmap) {
-      bitmapHashMap.put(feature, bitmap);
-    }
-  }
-
-  /**
-   * Utility class to generate Bitmaps for Symbol.
-   * <p>
-   * Bitmaps can be added to the map with {@link com.mapbox.mapboxsdk.maps.MapboxMap#addImage(String, Bitmap)}
-   * </p>
-   */
-  private static class SymbolGenerator {
-
-    /**
-     * Generate a Bitmap from an Android SDK View.
-     *
-     * @param view the View to be drawn to a Bitmap
-     * @return the generated bitmap
-     */
-    static Bitmap generate(@NonNull View view) {
-      int measureSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
-      view.measure(measureSpec, measureSpec);
-
-      int measuredWidth = view.getMeasuredWidth();
-      int measuredHeight = view.getMeasuredHeight();
-
-      view.layout(0, 0, measuredWidth, measuredHeight);
-      Bitmap bitmap = Bitmap.createBitmap(measuredWidth, measuredHeight, Bitmap.Config.ARGB_8888);
-      bitmap.eraseColor(Color.TRANSPARENT);
-      Canvas canvas = new Canvas(bitmap);
-      view.draw(canvas);
-      return bitmap;
+      this.thumbnails = thumbnails;
     }
   }
 
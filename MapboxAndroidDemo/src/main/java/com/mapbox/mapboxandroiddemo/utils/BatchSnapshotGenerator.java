@@ -0,0 +1,281 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+import com.mapbox.mapboxandroiddemo.utils.MapSnapshotService.ExportFormat;
+import com.mapbox.mapboxandroiddemo.utils.MapSnapshotService.SnapshotRequest;
+import com.mapbox.mapboxsdk.snapshotter.MapSnapshot;
+import com.mapbox.mapboxsdk.snapshotter.MapSnapshotter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import timber.log.Timber;
+
+/**
+ * Renders snapshots of many regions, for example thumbnails of saved places, and writes each one to disk as
+ * soon as it's rendered.
+ * <p>
+ * The regions are rendered by a small pool of {@link MapSnapshotter}s, which are created once and reused
+ * for every region they render, so only a few renderers exist however long the list is. Snapshots are
+ * encoded off the main thread, and a snapshotter only starts its next region while fewer than two
+ * snapshots per snapshotter wait to be encoded, so rendering can't run ahead of the disk and fill the
+ * heap with bitmaps. A batch can be cancelled at any time, and its throughput in snapshots per second is
+ * reported when it completes.
+ * </p>
+ * <p>
+ * Must be used from the main thread.
+ * </p>
+ */
+public class BatchSnapshotGenerator {
+
+  /**
+   * The default number of snapshotters, which renders in parallel without too many renderers in memory.
+   */
+  public static final int DEFAULT_POOL_SIZE = 3;
+
+  private static final int MAX_PENDING_ENCODES_PER_SNAPSHOTTER = 2;
+
+  /**
+   * Receives the results of a batch, on the main thread.
+   */
+  public interface Listener {
+
+    /**
+     * @param index   the position of the region in the batch
+     * @param request the region
+     * @param file    the file the snapshot was written to
+     */
+    void onSnapshotWritten(int index, @NonNull SnapshotRequest request, @NonNull File file);
+
+    void onSnapshotFailed(int index, @NonNull SnapshotRequest request, @NonNull String message);
+
+    /**
+     * @param writtenCount       the number of snapshots written
+     * @param failedCount        the number of snapshots that couldn't be rendered or written
+     * @param snapshotsPerSecond the number of snapshots written per second, over the whole batch
+     */
+    void onBatchComplete(int writtenCount, int failedCount, double snapshotsPerSecond);
+  }
+
+  private final Context context;
+  private final int poolSize;
+  private final File outputDirectory;
+  private final ExportFormat format;
+  private final long maxBytes;
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private final ExecutorService encodeExecutor = Executors.newSingleThreadExecutor();
+  private final List<MapSnapshotter> idleSnapshotters = new ArrayList<>();
+  private final List<MapSnapshotter> activeSnapshotters = new ArrayList<>();
+  private Batch currentBatch;
+
+  /**
+   * @param context         the context to create the snapshotters with
+   * @param poolSize        the number of snapshotters rendering at the same time
+   * @param outputDirectory the directory the snapshots are written to
+   * @param format          the image format of the snapshots
+   * @param maxBytes        the largest a snapshot file may be, 0 for no limit
+   */
+  public BatchSnapshotGenerator(@NonNull Context context, int poolSize, @NonNull File outputDirectory,
+                                @NonNull ExportFormat format, long maxBytes) {
+    this.context = context.getApplicationContext();
+    this.poolSize = Math.max(1, poolSize);
+    this.outputDirectory = outputDirectory;
+    this.format = format;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Renders and writes a snapshot of every region, named after its position in the list. Cancels the batch
+   * that was running.
+   *
+   * @param requests the regions, with their sizes and styles
+   * @param listener receives every snapshot as it's written, and the end of the batch
+   */
+  public void generate(@NonNull List<SnapshotRequest> requests, @NonNull Listener listener) {
+    cancel();
+    if (!outputDirectory.exists() && !outputDirectory.mkdirs()) {
+      Timber.w("Unable to create %s", outputDirectory);
+    }
+    currentBatch = new Batch(new ArrayList<>(requests), listener);
+    Timber.d("Generating %d snapshots with %d snapshotters", requests.size(), poolSize);
+    startNext(currentBatch);
+  }
+
+  /**
+   * Stops the running batch. Snapshots that were written are kept, and the listener isn't called anymore.
+   */
+  public void cancel() {
+    if (currentBatch == null) {
+      return;
+    }
+    currentBatch.cancelled = true;
+    currentBatch = null;
+    for (MapSnapshotter snapshotter : activeSnapshotters) {
+      snapshotter.cancel();
+    }
+    idleSnapshotters.addAll(activeSnapshotters);
+    activeSnapshotters.clear();
+  }
+
+  public boolean isGenerating() {
+    return currentBatch != null;
+  }
+
+  /**
+   * @return the number of snapshots the running batch wrote per second so far, or 0 if none is running
+   */
+  public double getSnapshotsPerSecond() {
+    return currentBatch != null ? currentBatch.getSnapshotsPerSecond() : 0;
+  }
+
+  /**
+   * Cancels the running batch and releases the snapshotters, for example when the screen is closed. The
+   * generator can't be used afterwards.
+   */
+  public void release() {
+    cancel();
+    idleSnapshotters.clear();
+    encodeExecutor.shutdown();
+  }
+
+  private void startNext(Batch batch) {
+    while (!batch.cancelled && batch.nextIndex < batch.requests.size()
+      && activeSnapshotters.size() < poolSize
+      && batch.pendingEncodeCount < poolSize * MAX_PENDING_ENCODES_PER_SNAPSHOTTER) {
+      int index = batch.nextIndex++;
+      render(batch, index, batch.requests.get(index));
+    }
+    if (!batch.cancelled && batch.writtenCount + batch.failedCount == batch.requests.size()) {
+      currentBatch = null;
+      double snapshotsPerSecond = batch.getSnapshotsPerSecond();
+      Timber.d("Generated %d snapshots at %.1f snapshots/s, %d failed", batch.writtenCount, snapshotsPerSecond,
+        batch.failedCount);
+      batch.listener.onBatchComplete(batch.writtenCount, batch.failedCount, snapshotsPerSecond);
+    }
+  }
+
+  private void render(final Batch batch, final int index, final SnapshotRequest request) {
+    final MapSnapshotter snapshotter = obtainSnapshotter(request);
+    activeSnapshotters.add(snapshotter);
+    snapshotter.start(new MapSnapshotter.SnapshotReadyCallback() {
+      @Override
+      public void onSnapshotReady(MapSnapshot snapshot) {
+        if (batch.cancelled) {
+          return;
+        }
+        releaseSnapshotter(snapshotter);
+        write(batch, index, request, snapshot.getBitmap());
+        startNext(batch);
+      }
+    }, new MapSnapshotter.ErrorHandler() {
+      @Override
+      public void onError(String error) {
+        if (batch.cancelled) {
+          return;
+        }
+        releaseSnapshotter(snapshotter);
+        batch.failedCount++;
+        batch.listener.onSnapshotFailed(index, request, error);
+        startNext(batch);
+      }
+    });
+  }
+
+  private MapSnapshotter obtainSnapshotter(SnapshotRequest request) {
+    if (idleSnapshotters.isEmpty()) {
+      MapSnapshotter.Options options = new MapSnapshotter.Options(request.getWidth(), request.getHeight())
+        .withRegion(request.getBounds())
+        .withStyle(request.getStyleUrl());
+      return new MapSnapshotter(context, options);
+    }
+    // Reuse a snapshotter and its renderer
+    MapSnapshotter snapshotter = idleSnapshotters.remove(idleSnapshotters.size() - 1);
+    snapshotter.setSize(request.getWidth(), request.getHeight());
+    snapshotter.setRegion(request.getBounds());
+    snapshotter.setStyleUrl(request.getStyleUrl());
+    return snapshotter;
+  }
+
+  private void releaseSnapshotter(MapSnapshotter snapshotter) {
+    activeSnapshotters.remove(snapshotter);
+    idleSnapshotters.add(snapshotter);
+  }
+
+  private void write(final Batch batch, final int index, final SnapshotRequest request, final Bitmap snapshot) {
+    batch.pendingEncodeCount++;
+    final File file = new File(outputDirectory, "snapshot_" + index + "." + format.extension);
+    encodeExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        String error = null;
+        if (!batch.cancelled) {
+          try {
+            MapSnapshotService.writeImage(snapshot, format, maxBytes, file);
+          } catch (IOException exception) {
+            error = exception.toString();
+            if (file.exists() && !file.delete()) {
+              Timber.w("Unable to delete %s", file);
+            }
+          }
+        }
+        // The snapshot isn't shown anywhere, so its memory can go right away
+        snapshot.recycle();
+
+        final String finalError = error;
+        mainHandler.post(new Runnable() {
+          @Override
+          public void run() {
+            batch.pendingEncodeCount--;
+            if (batch.cancelled) {
+              return;
+            }
+            if (finalError != null) {
+              batch.failedCount++;
+              batch.listener.onSnapshotFailed(index, request, finalError);
+            } else {
+              batch.writtenCount++;
+              batch.listener.onSnapshotWritten(index, request, file);
+            }
+            startNext(batch);
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * The state of one batch.
+   */
+  private static class Batch {
+
+    final List<SnapshotRequest> requests;
+    final Listener listener;
+    final long startedAt = SystemClock.elapsedRealtime();
+    int nextIndex;
+    int pendingEncodeCount;
+    int writtenCount;
+    int failedCount;
+    // Read on the encode thread
+    volatile boolean cancelled;
+
+    Batch(List<SnapshotRequest> requests, Listener listener) {
+      this.requests = requests;
+      this.listener = listener;
+    }
+
+    double getSnapshotsPerSecond() {
+      long elapsedMillis = SystemClock.elapsedRealtime() - startedAt;
+      return elapsedMillis > 0 ? writtenCount * 1000.0 / elapsedMillis : 0;
+    }
+  }
+}
@@ -0,0 +1,240 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Build;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A bounded pool of mutable Bitmaps, bucketed by size, that can be reused instead of allocating a new
+ * Bitmap for every generated symbol image.
+ * <p>
+ * On KitKat and above, a pooled Bitmap is reused for any request that fits in its allocation, with
+ * {@link Bitmap#reconfigure(int, int, Bitmap.Config)} adjusting it to the requested size. Older devices can
+ * only reuse Bitmaps with exactly the same width, height and config.
+ * </p>
+ * <p>
+ * Only hand a Bitmap back with {@link #put(Bitmap)} once nothing reads it anymore, for example after the map
+ * image it was registered as has been replaced.
+ * </p>
+ */
+public class BitmapPool {
+
+  // Pooled bitmaps that are more than this factor larger than the request are not reused for it
+  private static final int MAX_SIZE_MULTIPLE = 2;
+  private static final int BUCKET_BYTES = 4 * 1024;
+
+  private final long maxSizeBytes;
+  private final TreeMap<Integer, ArrayDeque<Bitmap>> bucketsBySize = new TreeMap<>();
+  private final Map<String, ArrayDeque<Bitmap>> bucketsByDimensions = new HashMap<>();
+  private long currentSizeBytes;
+  private int hits;
+  private int misses;
+
+  /**
+   * @param maxSizeBytes the maximum number of bytes that the pooled Bitmaps may hold in total
+   */
+  public BitmapPool(long maxSizeBytes) {
+    this.maxSizeBytes = maxSizeBytes;
+  }
+
+  /**
+   * Returns a transparent, mutable Bitmap of the given size, reusing a pooled one when possible.
+   *
+   * @param width  the width of the Bitmap
+   * @param height the height of the Bitmap
+   * @param config the config of the Bitmap
+   * @return a Bitmap which is cleared to transparent
+   */
+  @NonNull
+  public synchronized Bitmap get(int width, int height, @NonNull Bitmap.Config config) {
+    Bitmap bitmap = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+      ? takeBySize(width, height, config) : takeByDimensions(width, height, config);
+    if (bitmap == null) {
+      misses++;
+      return Bitmap.createBitmap(width, height, config);
+    }
+    hits++;
+    bitmap.eraseColor(Color.TRANSPARENT);
+    return bitmap;
+  }
+
+  /**
+   * Offers a Bitmap back to the pool. Bitmaps that don't fit in the pool are recycled.
+   *
+   * @param bitmap the Bitmap that is no longer used
+   */
+  public synchronized void put(@NonNull Bitmap bitmap) {
+    if (bitmap.isRecycled() || !bitmap.isMutable()) {
+      return;
+    }
+    int size = getAllocationSize(bitmap);
+    if (size > maxSizeBytes) {
+      bitmap.recycle();
+      return;
+    }
+
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+      int bucket = getBucket(size);
+      ArrayDeque<Bitmap> bitmaps = bucketsBySize.get(bucket);
+      if (bitmaps == null) {
+        bitmaps = new ArrayDeque<>();
+        bucketsBySize.put(bucket, bitmaps);
+      }
+      bitmaps.push(bitmap);
+    } else {
+      String key = getDimensionsKey(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+      ArrayDeque<Bitmap> bitmaps = bucketsByDimensions.get(key);
+      if (bitmaps == null) {
+        bitmaps = new ArrayDeque<>();
+        bucketsByDimensions.put(key, bitmaps);
+      }
+      bitmaps.push(bitmap);
+    }
+    currentSizeBytes += size;
+    trimToSize(maxSizeBytes);
+  }
+
+  /**
+   * Recycles all pooled Bitmaps.
+   */
+  public synchronized void clear() {
+    trimToSize(0);
+  }
+
+  /**
+   * @return the fraction of {@link #get(int, int, Bitmap.Config)} calls that were served from the pool
+   */
+  public synchronized float getHitRate() {
+    int requests = hits + misses;
+    return requests == 0 ? 0 : (float) hits / requests;
+  }
+
+  /**
+   * @return the number of {@link #get(int, int, Bitmap.Config)} calls that reused a pooled Bitmap
+   */
+  public synchronized int getHitCount() {
+    return hits;
+  }
+
+  /**
+   * @return the number of {@link #get(int, int, Bitmap.Config)} calls that had to allocate a new Bitmap
+   */
+  public synchronized int getMissCount() {
+    return misses;
+  }
+
+  @TargetApi(Build.VERSION_CODES.KITKAT)
+  private Bitmap takeBySize(int width, int height, Bitmap.Config config) {
+    int size = width * height * getBytesPerPixel(config);
+    int bucket = getBucket(size);
+    Bitmap bitmap = takeFitting(bucket, size);
+    if (bitmap == null) {
+      // Buckets are rounded down, so every bitmap in a higher bucket fits
+      Integer higherBucket = bucketsBySize.higherKey(bucket);
+      if (higherBucket == null || higherBucket > getBucket(size + BUCKET_BYTES - 1) * MAX_SIZE_MULTIPLE) {
+        return null;
+      }
+      bitmap = removeFromBucket(bucketsBySize, higherBucket);
+    }
+    currentSizeBytes -= getAllocationSize(bitmap);
+    bitmap.reconfigure(width, height, config);
+    return bitmap;
+  }
+
+  /**
+   * Takes a bitmap of at least the given size out of a bucket, which can also hold bitmaps that are smaller.
+   */
+  @TargetApi(Build.VERSION_CODES.KITKAT)
+  private Bitmap takeFitting(int bucket, int size) {
+    ArrayDeque<Bitmap> bitmaps = bucketsBySize.get(bucket);
+    if (bitmaps == null) {
+      return null;
+    }
+    Iterator<Bitmap> iterator = bitmaps.iterator();
+    while (iterator.hasNext()) {
+      Bitmap bitmap = iterator.next();
+      if (bitmap.getAllocationByteCount() >= size) {
+        iterator.remove();
+        if (bitmaps.isEmpty()) {
+          bucketsBySize.remove(bucket);
+        }
+        return bitmap;
+      }
+    }
+    return null;
+  }
+
+  private Bitmap takeByDimensions(int width, int height, Bitmap.Config config) {
+    String key = getDimensionsKey(width, height, config);
+    if (!bucketsByDimensions.containsKey(key)) {
+      return null;
+    }
+    Bitmap bitmap = removeFromBucket(bucketsByDimensions, key);
+    currentSizeBytes -= getAllocationSize(bitmap);
+    return bitmap;
+  }
+
+  private void trimToSize(long size) {
+    while (currentSizeBytes > size) {
+      Bitmap bitmap;
+      if (!bucketsBySize.isEmpty()) {
+        // Evicting from the largest bucket frees the most memory per recycled Bitmap
+        bitmap = removeFromBucket(bucketsBySize, bucketsBySize.lastKey());
+      } else if (!bucketsByDimensions.isEmpty()) {
+        bitmap = removeFromBucket(bucketsByDimensions, bucketsByDimensions.keySet().iterator().next());
+      } else {
+        currentSizeBytes = 0;
+        return;
+      }
+      currentSizeBytes -= getAllocationSize(bitmap);
+      bitmap.recycle();
+    }
+  }
+
+  private static <K> Bitmap removeFromBucket(Map<K, ArrayDeque<Bitmap>> buckets, K key) {
+    ArrayDeque<Bitmap> bitmaps = buckets.get(key);
+    Bitmap bitmap = bitmaps.pop();
+    if (bitmaps.isEmpty()) {
+      buckets.remove(key);
+    }
+    return bitmap;
+  }
+
+  /**
+   * @return the size rounded down to a multiple of the bucket size, which is never more than the size
+   */
+  private static int getBucket(int size) {
+    return (size / BUCKET_BYTES) * BUCKET_BYTES;
+  }
+
+  private static String getDimensionsKey(int width, int height, Bitmap.Config config) {
+    return width + "x" + height + "-" + config;
+  }
+
+  private static int getAllocationSize(Bitmap bitmap) {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+      return bitmap.getAllocationByteCount();
+    }
+    return bitmap.getByteCount();
+  }
+
+  private static int getBytesPerPixel(Bitmap.Config config) {
+    switch (config) {
+      case ALPHA_8:
+        return 1;
+      case RGB_565:
+      case ARGB_4444:
+        return 2;
+      default:
+        return 4;
+    }
+  }
+}
@@ -0,0 +1,244 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.mapbox.geojson.Feature;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps track of which callout images have been rendered for which Feature content, so that only callouts
+ * whose displayed properties changed are rendered and registered with the map again.
+ * <p>
+ * Features are keyed by their id, or by the value of the image id property when they don't have one. The
+ * content hash is computed over the properties shown in the callout, so changing any other property doesn't
+ * cause a re-render. Bitmaps of replaced images are handed back to the {@link BitmapPool}.
+ * </p>
+ * <p>
+ * Background batches render a {@link Snapshot} of the Features, and their Bitmaps are only added to the map if
+ * no newer render of the same Feature happened in the meantime.
+ * </p>
+ */
+public class CalloutImageCache {
+
+  private final BitmapPool bitmapPool;
+  private final String imageIdProperty;
+  private final String[] contentProperties;
+  private final Map<String, RenderRecord> records = new HashMap<>();
+  private final Map<Bitmap, PendingImage> pendingImages = new HashMap<>();
+  private final Map<String, Bitmap> registeredImages = new HashMap<>();
+  // Increases with every render, so renders can be ordered against snapshots
+  private long sequence;
+
+  /**
+   * @param bitmapPool        the pool that replaced Bitmaps are returned to
+   * @param imageIdProperty   the Feature property used as the map image id, as in iconImage("{title}")
+   * @param contentProperties the Feature properties that are shown in the callout
+   */
+  public CalloutImageCache(@NonNull BitmapPool bitmapPool, @NonNull String imageIdProperty,
+                           @NonNull String... contentProperties) {
+    this.bitmapPool = bitmapPool;
+    this.imageIdProperty = imageIdProperty;
+    this.contentProperties = contentProperties;
+  }
+
+  /**
+   * Copies Features on the thread that changes their properties, so a batch can render the copies in the
+   * background while the originals keep changing. Property values are shared, so the originals must only be
+   * changed by replacing their values, as {@link JsonObject#addProperty(String, Boolean)} does.
+   *
+   * @param features the Features to copy
+   * @return the copies, to be rendered with {@link #renderDirty(CalloutRenderer, Snapshot, CalloutRenderStats)}
+   */
+  @NonNull
+  public synchronized Snapshot snapshot(@NonNull List<Feature> features) {
+    List<Feature> copies = new ArrayList<>(features.size());
+    for (Feature feature : features) {
+      JsonObject properties = new JsonObject();
+      if (feature.properties() != null) {
+        for (Map.Entry<String, JsonElement> property : feature.properties().entrySet()) {
+          properties.add(property.getKey(), property.getValue());
+        }
+      }
+      copies.add(Feature.fromGeometry(feature.geometry(), properties, feature.id(), feature.bbox()));
+    }
+    return new Snapshot(copies, sequence);
+  }
+
+  /**
+   * Renders the callouts of all Features of a snapshot whose content changed since they were last rendered,
+   * sampling the heap use after every render. Features that were rendered again after the snapshot was taken
+   * are skipped, as their copies are older than what the map shows.
+   *
+   * @param renderer the renderer to use, only called for dirty Features
+   * @param snapshot the copied Features to check
+   * @param stats    the stats that record the peak heap use, or null
+   * @return the rendered Bitmaps keyed by image id. Pass them through {@link #removeStale(Map)} before adding
+   * them with MapboxMap#addImages.
+   */
+  @NonNull
+  public HashMap<String, Bitmap> renderDirty(@NonNull CalloutRenderer renderer, @NonNull Snapshot snapshot,
+                                             @Nullable CalloutRenderStats stats) {
+    HashMap<String, Bitmap> images = new HashMap<>();
+    for (Feature feature : snapshot.features) {
+      Bitmap bitmap = renderIfDirty(renderer, feature, snapshot.sequence);
+      if (bitmap != null) {
+        images.put(feature.getStringProperty(imageIdProperty), bitmap);
+        if (stats != null) {
+          stats.sampleHeap();
+        }
+      }
+    }
+    return images;
+  }
+
+  /**
+   * Renders the callout of a single Feature if its content changed since it was last rendered. Only call this
+   * on the thread that changes the Feature, and add the Bitmap to the map right away.
+   *
+   * @param renderer the renderer to use
+   * @param feature  the Feature to check
+   * @return the rendered Bitmap, or null if the registered image is still up to date
+   */
+  @Nullable
+  public Bitmap renderIfDirty(@NonNull CalloutRenderer renderer, @NonNull Feature feature) {
+    // The Feature itself is never older than a render
+    return renderIfDirty(renderer, feature, Long.MAX_VALUE);
+  }
+
+  /**
+   * Removes the Bitmaps whose Features have been rendered again since, for example by a single render on the UI
+   * thread while a batch was running, and returns them to the pool. Call this on the UI thread right before
+   * adding the Bitmaps to the map.
+   *
+   * @param images the Bitmaps keyed by image id, as returned by a batch
+   */
+  public synchronized void removeStale(@NonNull Map<String, Bitmap> images) {
+    Iterator<Map.Entry<String, Bitmap>> iterator = images.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Bitmap bitmap = iterator.next().getValue();
+      PendingImage pendingImage = pendingImages.get(bitmap);
+      if (pendingImage != null && records.get(pendingImage.key) != pendingImage.record) {
+        iterator.remove();
+        pendingImages.remove(bitmap);
+        bitmapPool.put(bitmap);
+      }
+    }
+  }
+
+  /**
+   * Records that rendered Bitmaps have been added to the map, releasing the Bitmaps they replace.
+   *
+   * @param images the Bitmaps keyed by image id, as returned by {@link #removeStale(Map)}
+   */
+  public synchronized void onImagesAdded(@NonNull Map<String, Bitmap> images) {
+    for (Map.Entry<String, Bitmap> entry : images.entrySet()) {
+      onImageAdded(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * Records that a rendered Bitmap has been added to the map, releasing the Bitmap it replaces.
+   *
+   * @param imageId the id the Bitmap was added with
+   * @param bitmap  the Bitmap that was added
+   */
+  public synchronized void onImageAdded(@NonNull String imageId, @NonNull Bitmap bitmap) {
+    pendingImages.remove(bitmap);
+    Bitmap replacedBitmap = registeredImages.put(imageId, bitmap);
+    if (replacedBitmap != null && replacedBitmap != bitmap) {
+      bitmapPool.put(replacedBitmap);
+    }
+  }
+
+  /**
+   * Forces the callouts of all Features to be rendered again on the next update.
+   */
+  public synchronized void invalidateAll() {
+    records.clear();
+  }
+
+  @Nullable
+  private Bitmap renderIfDirty(CalloutRenderer renderer, Feature feature, long snapshotSequence) {
+    String key = getFeatureKey(feature);
+    int contentHash = getContentHash(feature);
+    RenderRecord record;
+    // Only the records are guarded, rendering happens outside the lock so the UI thread is never blocked by
+    // a batch that renders in the background
+    synchronized (this) {
+      RenderRecord renderedRecord = records.get(key);
+      if (renderedRecord != null
+        && (renderedRecord.contentHash == contentHash || renderedRecord.sequence > snapshotSequence)) {
+        return null;
+      }
+      record = new RenderRecord(contentHash, ++sequence);
+      records.put(key, record);
+    }
+    Bitmap bitmap = renderer.render(feature);
+    synchronized (this) {
+      pendingImages.put(bitmap, new PendingImage(key, record));
+    }
+    return bitmap;
+  }
+
+  private String getFeatureKey(Feature feature) {
+    String id = feature.id();
+    return id != null ? id : feature.getStringProperty(imageIdProperty);
+  }
+
+  private int getContentHash(Feature feature) {
+    int hash = 17;
+    for (String property : contentProperties) {
+      JsonElement value = feature.getProperty(property);
+      hash = 31 * hash + (value == null ? 0 : value.hashCode());
+    }
+    return hash;
+  }
+
+  /**
+   * Copies of Features taken with {@link #snapshot(List)}, and the last render before they were taken.
+   */
+  public static final class Snapshot {
+
+    private final List<Feature> features;
+    private final long sequence;
+
+    private Snapshot(List<Feature> features, long sequence) {
+      this.features = features;
+      this.sequence = sequence;
+    }
+  }
+
+  private static class RenderRecord {
+
+    final int contentHash;
+    final long sequence;
+
+    RenderRecord(int contentHash, long sequence) {
+      this.contentHash = contentHash;
+      this.sequence = sequence;
+    }
+  }
+
+  /**
+   * A rendered Bitmap that hasn't been added to the map yet, and the render it belongs to.
+   */
+  private static class PendingImage {
+
+    final String key;
+    final RenderRecord record;
+
+    PendingImage(String key, RenderRecord record) {
+      this.key = key;
+      this.record = record;
+    }
+  }
+}
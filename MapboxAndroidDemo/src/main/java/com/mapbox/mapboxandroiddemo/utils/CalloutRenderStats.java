@@ -0,0 +1,49 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.os.Debug;
+import android.support.annotation.NonNull;
+
+import timber.log.Timber;
+
+/**
+ * Tracks the peak heap use while a batch of callouts is rendered, and logs it together with the render
+ * rate of the {@link CalloutRenderer}. Bitmap pixels live on the native heap on Oreo and above and on the
+ * Java heap before that, so both are included.
+ */
+public class CalloutRenderStats {
+
+  private final Runtime runtime = Runtime.getRuntime();
+  private long peakHeapBytes;
+
+  public CalloutRenderStats() {
+    sampleHeap();
+  }
+
+  /**
+   * Records the current heap use if it's higher than the peak seen so far. Call this after every render, while
+   * the rendered Bitmaps are still held.
+   */
+  public void sampleHeap() {
+    long heapBytes = runtime.totalMemory() - runtime.freeMemory() + Debug.getNativeHeapAllocatedSize();
+    if (heapBytes > peakHeapBytes) {
+      peakHeapBytes = heapBytes;
+    }
+  }
+
+  /**
+   * @return the highest combined Java and native heap use sampled, in bytes
+   */
+  public long getPeakHeapBytes() {
+    return peakHeapBytes;
+  }
+
+  /**
+   * Logs the render rate of the renderer and the peak heap use.
+   *
+   * @param renderer the renderer the batch was rendered with
+   */
+  public void log(@NonNull CalloutRenderer renderer) {
+    Timber.d("Rendered %d callouts at %.1f bitmaps/s, peak heap %d KB",
+      renderer.getRenderCount(), renderer.getRenderRate(), peakHeapBytes / 1024);
+  }
+}
@@ -0,0 +1,122 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.SystemClock;
+import android.support.annotation.LayoutRes;
+import android.support.annotation.NonNull;
+import android.view.LayoutInflater;
+import android.view.View;
+
+import com.mapbox.geojson.Feature;
+
+/**
+ * Renders callout Views to Bitmaps that can be added to the map with
+ * {@link com.mapbox.mapboxsdk.maps.MapboxMap#addImage(String, Bitmap)}.
+ * <p>
+ * A single View is inflated and re-bound for every Feature, the Canvas is reused and the Bitmaps come from
+ * a {@link BitmapPool}, so rendering thousands of callouts doesn't allocate a View and a Canvas per Feature.
+ * Because the View is shared, a renderer must only be used from one thread at a time.
+ * </p>
+ * <p>
+ * Callouts are rendered as {@link Bitmap.Config#ARGB_8888} by default. {@link Bitmap.Config#RGB_565} halves
+ * the memory use but draws transparent areas as black, {@link Bitmap.Config#ALPHA_8} only keeps the alpha
+ * channel and is meant for single-colour icons.
+ * </p>
+ */
+public class CalloutRenderer {
+
+  /**
+   * Binds the data of a Feature to the callout View before it's measured and drawn.
+   */
+  public interface ViewBinder {
+    void bindView(@NonNull View view, @NonNull Feature feature);
+  }
+
+  private final Context context;
+  private final int layoutResId;
+  private final ViewBinder viewBinder;
+  private final BitmapPool bitmapPool;
+  private final Bitmap.Config config;
+  private final Canvas canvas = new Canvas();
+  private View view;
+  private int renderCount;
+  private long renderTimeMillis;
+
+  public CalloutRenderer(@NonNull Context context, @LayoutRes int layoutResId, @NonNull ViewBinder viewBinder,
+                         @NonNull BitmapPool bitmapPool) {
+    this(context, layoutResId, viewBinder, bitmapPool, Bitmap.Config.ARGB_8888);
+  }
+
+  public CalloutRenderer(@NonNull Context context, @LayoutRes int layoutResId, @NonNull ViewBinder viewBinder,
+                         @NonNull BitmapPool bitmapPool, @NonNull Bitmap.Config config) {
+    this.context = context;
+    this.layoutResId = layoutResId;
+    this.viewBinder = viewBinder;
+    this.bitmapPool = bitmapPool;
+    this.config = config;
+  }
+
+  /**
+   * Binds a Feature to the shared callout View, then measures and lays it out without drawing it. Use this
+   * to read the size or the hit boxes of a Feature's callout.
+   *
+   * @param feature the Feature to bind
+   * @return the shared View, laid out for the Feature. Only valid until the next call on this renderer.
+   */
+  @NonNull
+  public View layout(@NonNull Feature feature) {
+    if (view == null) {
+      view = LayoutInflater.from(context).inflate(layoutResId, null);
+    }
+    viewBinder.bindView(view, feature);
+
+    int measureSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+    view.measure(measureSpec, measureSpec);
+    view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+    return view;
+  }
+
+  /**
+   * Renders the callout of a Feature to a Bitmap taken from the pool.
+   *
+   * @param feature the Feature to render
+   * @return the rendered Bitmap. Hand it back to the pool with {@link #release(Bitmap)} once it's replaced.
+   */
+  @NonNull
+  public Bitmap render(@NonNull Feature feature) {
+    long start = SystemClock.elapsedRealtime();
+    View calloutView = layout(feature);
+    Bitmap bitmap = bitmapPool.get(calloutView.getMeasuredWidth(), calloutView.getMeasuredHeight(), config);
+    canvas.setBitmap(bitmap);
+    calloutView.draw(canvas);
+    canvas.setBitmap(null);
+    renderCount++;
+    renderTimeMillis += SystemClock.elapsedRealtime() - start;
+    return bitmap;
+  }
+
+  /**
+   * Returns a Bitmap created by {@link #render(Feature)} to the pool.
+   *
+   * @param bitmap the Bitmap that's no longer used
+   */
+  public void release(@NonNull Bitmap bitmap) {
+    bitmapPool.put(bitmap);
+  }
+
+  /**
+   * @return the number of callouts rendered per second by this renderer so far
+   */
+  public float getRenderRate() {
+    return renderTimeMillis == 0 ? renderCount : renderCount * 1000f / renderTimeMillis;
+  }
+
+  /**
+   * @return the number of callouts rendered by this renderer so far
+   */
+  public int getRenderCount() {
+    return renderCount;
+  }
+}
@@ -0,0 +1,270 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+
+import com.mapbox.api.matrix.v1.MapboxMatrix;
+import com.mapbox.api.matrix.v1.models.MatrixResponse;
+import com.mapbox.geojson.Point;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import retrofit2.Response;
+import timber.log.Timber;
+
+/**
+ * Fetches the travel durations between every pair of a fixed set of points from the Mapbox Matrix API once,
+ * and keeps them in a flat array, so looking up the durations from any point afterwards is local.
+ * <p>
+ * Sets of up to {@link #MAX_COORDINATES_PER_REQUEST} points are fetched with a single request. Larger sets
+ * are split into tiles of source and destination blocks that each fit in one request, which are fetched in
+ * parallel on a bounded pool of threads and merged into the same array.
+ * </p>
+ * <p>
+ * Must be used from the main thread, where the {@link Listener} is called as well.
+ * </p>
+ */
+public class DistanceMatrixStore {
+
+  /**
+   * The maximum number of coordinates the Matrix API accepts in one request.
+   */
+  public static final int MAX_COORDINATES_PER_REQUEST = 25;
+
+  private static final int TILE_BLOCK_SIZE = MAX_COORDINATES_PER_REQUEST / 2;
+
+  /**
+   * Told when the matrix is available, on the main thread.
+   */
+  public interface Listener {
+    void onMatrixLoaded(DistanceMatrixStore store);
+
+    void onMatrixError(String message);
+  }
+
+  private final String accessToken;
+  private final String profile;
+  private final List<Point> points;
+  private final int size;
+  private final double[] durations;
+  private final int maxParallelRequests;
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private final List<Listener> pendingListeners = new ArrayList<>();
+  private ExecutorService requestExecutor;
+  private boolean loaded;
+  private int remainingTileCount;
+  private String tileError;
+
+  /**
+   * @param accessToken         the Mapbox access token
+   * @param profile             the profile to travel with, such as {@code DirectionsCriteria.PROFILE_DRIVING}
+   * @param points              the points, whose order defines the rows and columns of the matrix
+   * @param maxParallelRequests the maximum number of tiles fetched at the same time
+   */
+  public DistanceMatrixStore(@NonNull String accessToken, @NonNull String profile, @NonNull List<Point> points,
+                             int maxParallelRequests) {
+    this.accessToken = accessToken;
+    this.profile = profile;
+    this.points = new ArrayList<>(points);
+    this.size = points.size();
+    this.durations = new double[size * size];
+    this.maxParallelRequests = maxParallelRequests;
+    Arrays.fill(durations, Double.NaN);
+  }
+
+  /**
+   * Makes sure the matrix is loaded. The listener is called before this method returns if it already is,
+   * and otherwise once the fetch that's in progress or started now completes.
+   *
+   * @param listener told when the matrix is available
+   */
+  public void load(@NonNull Listener listener) {
+    if (loaded) {
+      listener.onMatrixLoaded(this);
+      return;
+    }
+    pendingListeners.add(listener);
+    if (requestExecutor != null) {
+      return;
+    }
+
+    requestExecutor = Executors.newFixedThreadPool(maxParallelRequests);
+    tileError = null;
+    List<Tile> tiles = createTiles();
+    remainingTileCount = tiles.size();
+    for (final Tile tile : tiles) {
+      requestExecutor.execute(new Runnable() {
+        @Override
+        public void run() {
+          final String error = fetchTile(tile);
+          mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+              onTileFetched(error);
+            }
+          });
+        }
+      });
+    }
+  }
+
+  /**
+   * Stops notifying a listener passed to {@link #load(Listener)}.
+   */
+  public void removeListener(@NonNull Listener listener) {
+    pendingListeners.remove(listener);
+  }
+
+  /**
+   * Stops the request threads. Fetches in progress still complete, but aren't reported. The store can't be
+   * loaded afterwards, but a matrix that was already loaded stays available.
+   */
+  public void shutdown() {
+    pendingListeners.clear();
+    if (requestExecutor != null) {
+      requestExecutor.shutdownNow();
+      requestExecutor = null;
+    }
+  }
+
+  public boolean isLoaded() {
+    return loaded;
+  }
+
+  /**
+   * @return the number of points, which is the number of rows and of columns
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @param from the index of the origin
+   * @param to   the index of the destination
+   * @return the travel duration in seconds, or {@link Double#NaN} if there's no route
+   */
+  public double getDuration(int from, int to) {
+    return durations[from * size + to];
+  }
+
+  private void onTileFetched(String error) {
+    if (requestExecutor == null) {
+      // Shut down in the meantime
+      return;
+    }
+    if (error != null) {
+      tileError = error;
+    }
+    remainingTileCount--;
+    if (remainingTileCount > 0) {
+      return;
+    }
+
+    requestExecutor.shutdown();
+    requestExecutor = null;
+    List<Listener> listeners = new ArrayList<>(pendingListeners);
+    pendingListeners.clear();
+    if (tileError != null) {
+      for (Listener listener : listeners) {
+        listener.onMatrixError(tileError);
+      }
+      return;
+    }
+    loaded = true;
+    for (Listener listener : listeners) {
+      listener.onMatrixLoaded(this);
+    }
+  }
+
+  private List<Tile> createTiles() {
+    List<Tile> tiles = new ArrayList<>();
+    if (size <= MAX_COORDINATES_PER_REQUEST) {
+      tiles.add(new Tile(0, size, 0, size));
+      return tiles;
+    }
+    // Two blocks always fit in one request together
+    for (int sourceStart = 0; sourceStart < size; sourceStart += TILE_BLOCK_SIZE) {
+      for (int destinationStart = 0; destinationStart < size; destinationStart += TILE_BLOCK_SIZE) {
+        tiles.add(new Tile(sourceStart, Math.min(sourceStart + TILE_BLOCK_SIZE, size),
+          destinationStart, Math.min(destinationStart + TILE_BLOCK_SIZE, size)));
+      }
+    }
+    return tiles;
+  }
+
+  /**
+   * Called on a request thread. Fetches a tile and writes its durations into the matrix. Tiles don't share
+   * cells, so they can be written concurrently.
+   *
+   * @return an error message, or null if the tile was fetched
+   */
+  private String fetchTile(Tile tile) {
+    // The coordinates of the request are the source block, followed by the destination block unless
+    // it's the same block
+    boolean sameBlock = tile.sourceStart == tile.destinationStart;
+    List<Point> coordinates = new ArrayList<>(points.subList(tile.sourceStart, tile.sourceEnd));
+    int destinationOffset = 0;
+    if (!sameBlock) {
+      destinationOffset = coordinates.size();
+      coordinates.addAll(points.subList(tile.destinationStart, tile.destinationEnd));
+    }
+
+    try {
+      MapboxMatrix.Builder builder = MapboxMatrix.builder()
+        .accessToken(accessToken)
+        .profile(profile)
+        .coordinates(coordinates);
+      if (!sameBlock) {
+        builder.sources(createRange(0, tile.sourceEnd - tile.sourceStart))
+          .destinations(createRange(destinationOffset, tile.destinationEnd - tile.destinationStart));
+      }
+      Response<MatrixResponse> response = builder.build().executeCall();
+      MatrixResponse body = response.body();
+      if (!response.isSuccessful() || body == null || body.durations() == null) {
+        return "HTTP " + response.code();
+      }
+
+      List<Double[]> rows = body.durations();
+      for (int row = 0; row < rows.size(); row++) {
+        Double[] columns = rows.get(row);
+        for (int column = 0; column < columns.length; column++) {
+          // A missing route is null in the response
+          durations[(tile.sourceStart + row) * size + tile.destinationStart + column] =
+            columns[column] != null ? columns[column] : Double.NaN;
+        }
+      }
+      return null;
+    } catch (Exception exception) {
+      Timber.w("Unable to fetch matrix tile: %s", exception.toString());
+      return exception.toString();
+    }
+  }
+
+  private static Integer[] createRange(int start, int count) {
+    Integer[] range = new Integer[count];
+    for (int i = 0; i < count; i++) {
+      range[i] = start + i;
+    }
+    return range;
+  }
+
+  private static class Tile {
+
+    final int sourceStart;
+    final int sourceEnd;
+    final int destinationStart;
+    final int destinationEnd;
+
+    Tile(int sourceStart, int sourceEnd, int destinationStart, int destinationEnd) {
+      this.sourceStart = sourceStart;
+      this.sourceEnd = sourceEnd;
+      this.destinationStart = destinationStart;
+      this.destinationEnd = destinationEnd;
+    }
+  }
+}
@@ -0,0 +1,208 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.view.Choreographer;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds transient, per-feature state such as "selected" or "loading_progress" in a small separate
+ * GeoJsonSource, so that the large source with the base data never has to be uploaded again when the
+ * state changes.
+ * <p>
+ * A feature is copied into the overlay source, with the base properties plus its state, while it has any
+ * state set. Layers that depend on the state should use {@link #getSource()} instead of the base source.
+ * State changes are coalesced and the overlay source is updated at most once per frame.
+ * </p>
+ */
+public class FeatureStateOverlay {
+
+  private static final long FALLBACK_FRAME_DELAY_MILLIS = 16;
+
+  private final GeoJsonSource source;
+  private final String keyProperty;
+  private final Map<String, Feature> overlayFeatures = new LinkedHashMap<>();
+  private final Map<String, List<String>> overlayStates = new LinkedHashMap<>();
+  private final Handler handler = new Handler(Looper.getMainLooper());
+  private Object frameCallback;
+  private boolean updateScheduled;
+
+  /**
+   * @param sourceId    the id of the overlay GeoJsonSource
+   * @param keyProperty the property that uniquely identifies a feature of the base data
+   */
+  public FeatureStateOverlay(@NonNull String sourceId, @NonNull String keyProperty) {
+    this.source = new GeoJsonSource(sourceId, FeatureCollection.fromFeatures(new ArrayList<Feature>()));
+    this.keyProperty = keyProperty;
+  }
+
+  /**
+   * @return the overlay source, to be added to the map and used by the layers that depend on the state
+   */
+  @NonNull
+  public GeoJsonSource getSource() {
+    return source;
+  }
+
+  /**
+   * Sets a boolean state of a feature. Setting it to false removes the state.
+   *
+   * @param feature  the base feature
+   * @param property the name of the state property
+   * @param value    the new value
+   */
+  public void setBooleanState(@NonNull Feature feature, @NonNull String property, boolean value) {
+    if (value) {
+      getOrCreateOverlayFeature(feature, property).addBooleanProperty(property, true);
+      scheduleUpdate();
+    } else {
+      removeState(feature.getStringProperty(keyProperty), property);
+    }
+  }
+
+  /**
+   * Sets a numeric state of a feature.
+   *
+   * @param feature  the base feature
+   * @param property the name of the state property
+   * @param value    the new value
+   */
+  public void setNumberState(@NonNull Feature feature, @NonNull String property, @NonNull Number value) {
+    getOrCreateOverlayFeature(feature, property).addNumberProperty(property, value);
+    scheduleUpdate();
+  }
+
+  /**
+   * @param feature  the base feature
+   * @param property the name of the state property
+   * @return true if the boolean state is set for the feature
+   */
+  public boolean getBooleanState(@NonNull Feature feature, @NonNull String property) {
+    Feature overlayFeature = overlayFeatures.get(feature.getStringProperty(keyProperty));
+    if (overlayFeature == null || !overlayFeature.hasNonNullValueForProperty(property)) {
+      return false;
+    }
+    return overlayFeature.getBooleanProperty(property);
+  }
+
+  /**
+   * Removes a state from every feature that has it.
+   *
+   * @param property the name of the state property
+   */
+  public void clearState(@NonNull String property) {
+    for (String key : new ArrayList<>(overlayStates.keySet())) {
+      removeState(key, property);
+    }
+  }
+
+  /**
+   * Removes a state from a single feature.
+   *
+   * @param feature  the base feature
+   * @param property the name of the state property
+   */
+  public void clearState(@NonNull Feature feature, @NonNull String property) {
+    removeState(feature.getStringProperty(keyProperty), property);
+  }
+
+  /**
+   * Cancels a pending update of the overlay source. Call this when the map is destroyed.
+   */
+  public void cancelPendingUpdate() {
+    if (!updateScheduled) {
+      return;
+    }
+    updateScheduled = false;
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+      Choreographer.getInstance().removeFrameCallback((Choreographer.FrameCallback) frameCallback);
+    } else {
+      handler.removeCallbacks((Runnable) frameCallback);
+    }
+  }
+
+  private Feature getOrCreateOverlayFeature(Feature feature, String property) {
+    String key = feature.getStringProperty(keyProperty);
+    Feature overlayFeature = overlayFeatures.get(key);
+    if (overlayFeature == null) {
+      // Copy the base properties, so that expressions like iconImage("{title}") work on the overlay too
+      JsonObject properties = new JsonObject();
+      for (Map.Entry<String, JsonElement> entry : feature.properties().entrySet()) {
+        properties.add(entry.getKey(), entry.getValue());
+      }
+      overlayFeature = Feature.fromGeometry(feature.geometry(), properties, feature.id());
+      overlayFeatures.put(key, overlayFeature);
+      overlayStates.put(key, new ArrayList<String>());
+    }
+    List<String> states = overlayStates.get(key);
+    if (!states.contains(property)) {
+      states.add(property);
+    }
+    return overlayFeature;
+  }
+
+  private void removeState(String key, String property) {
+    List<String> states = overlayStates.get(key);
+    if (states == null || !states.remove(property)) {
+      return;
+    }
+    if (states.isEmpty()) {
+      overlayStates.remove(key);
+      overlayFeatures.remove(key);
+    } else {
+      overlayFeatures.get(key).removeProperty(property);
+    }
+    scheduleUpdate();
+  }
+
+  private void scheduleUpdate() {
+    if (updateScheduled) {
+      return;
+    }
+    updateScheduled = true;
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+      postFrameCallback();
+    } else {
+      if (frameCallback == null) {
+        frameCallback = new Runnable() {
+          @Override
+          public void run() {
+            update();
+          }
+        };
+      }
+      handler.postDelayed((Runnable) frameCallback, FALLBACK_FRAME_DELAY_MILLIS);
+    }
+  }
+
+  @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+  private void postFrameCallback() {
+    if (frameCallback == null) {
+      frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+          update();
+        }
+      };
+    }
+    Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) frameCallback);
+  }
+
+  private void update() {
+    updateScheduled = false;
+    source.setGeoJson(FeatureCollection.fromFeatures(new ArrayList<>(overlayFeatures.values())));
+  }
+}
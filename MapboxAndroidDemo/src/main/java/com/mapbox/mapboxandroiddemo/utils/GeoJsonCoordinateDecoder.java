@@ -0,0 +1,224 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the coordinates of GeoJSON geometries straight from a stream into a {@link LngLatBuffer}, without
+ * building a String of the document, a JSON tree or an object per coordinate.
+ * <p>
+ * Only the values of "coordinates" members are looked at, everything else is skipped. Positions are added
+ * in document order, whatever the nesting of the geometry, so the rings of a Polygon end up one after the
+ * other. Altitudes are ignored. Numbers with more than 18 significant digits are accurate to within a few
+ * units in the last place, which is far below what a map can show.
+ * </p>
+ */
+public class GeoJsonCoordinateDecoder {
+
+  private static final int BUFFER_SIZE = 8192;
+  private static final byte[] COORDINATES_KEY = {'c', 'o', 'o', 'r', 'd', 'i', 'n', 'a', 't', 'e', 's'};
+  private static final long MAX_EXACT_MANTISSA = 100000000000000000L;
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private InputStream inputStream;
+  private int position;
+  private int limit;
+
+  /**
+   * Reads the coordinates of the first geometry in a GeoJSON document, such as the LineString of a
+   * FeatureCollection with a single Feature. Doesn't close the stream.
+   *
+   * @param inputStream the UTF-8 encoded document
+   * @param target      the buffer the coordinates are appended to
+   * @throws IOException if the stream can't be read or the coordinates are malformed
+   */
+  public void decodeFirstGeometry(@NonNull InputStream inputStream, @NonNull LngLatBuffer target)
+    throws IOException {
+    decode(inputStream, target, true);
+  }
+
+  /**
+   * Reads the coordinates of all geometries in a GeoJSON document, one after the other. Doesn't close the
+   * stream.
+   *
+   * @param inputStream the UTF-8 encoded document
+   * @param target      the buffer the coordinates are appended to
+   * @throws IOException if the stream can't be read or the coordinates are malformed
+   */
+  public void decodeAllGeometries(@NonNull InputStream inputStream, @NonNull LngLatBuffer target)
+    throws IOException {
+    decode(inputStream, target, false);
+  }
+
+  private void decode(InputStream inputStream, LngLatBuffer target, boolean firstOnly) throws IOException {
+    this.inputStream = inputStream;
+    position = 0;
+    limit = 0;
+    try {
+      int character;
+      while ((character = next()) != -1) {
+        // Property names are the only strings followed by a colon
+        if (character == '"' && readStringMatches(COORDINATES_KEY) && nextNonWhitespace() == ':') {
+          readCoordinates(target);
+          if (firstOnly) {
+            return;
+          }
+        }
+      }
+    } finally {
+      this.inputStream = null;
+    }
+  }
+
+  private void readCoordinates(LngLatBuffer target) throws IOException {
+    if (nextNonWhitespace() != '[') {
+      throw new IOException("Expected an array of coordinates");
+    }
+    int depth = 1;
+    int numberIndex = 0;
+    double longitude = 0;
+    double latitude = 0;
+    while (depth > 0) {
+      int character = next();
+      switch (character) {
+        case -1:
+          throw new EOFException("Unterminated array of coordinates");
+        case '[':
+          depth++;
+          numberIndex = 0;
+          break;
+        case ']':
+          depth--;
+          // Only an array that directly contains numbers is a position
+          if (numberIndex >= 2) {
+            target.add(longitude, latitude);
+          }
+          numberIndex = 0;
+          break;
+        case ',':
+        case ' ':
+        case '\t':
+        case '\n':
+        case '\r':
+          break;
+        default:
+          if (character != '-' && (character < '0' || character > '9')) {
+            throw new IOException("Unexpected character '" + (char) character + "' in coordinates");
+          }
+          position--;
+          double value = readNumber();
+          if (numberIndex == 0) {
+            longitude = value;
+          } else if (numberIndex == 1) {
+            latitude = value;
+          }
+          numberIndex++;
+      }
+    }
+  }
+
+  private double readNumber() throws IOException {
+    int character = next();
+    boolean negative = character == '-';
+    if (negative) {
+      character = next();
+    }
+
+    long mantissa = 0;
+    int exponent = 0;
+    while (character >= '0' && character <= '9') {
+      if (mantissa < MAX_EXACT_MANTISSA) {
+        mantissa = mantissa * 10 + (character - '0');
+      } else {
+        exponent++;
+      }
+      character = next();
+    }
+    if (character == '.') {
+      character = next();
+      while (character >= '0' && character <= '9') {
+        if (mantissa < MAX_EXACT_MANTISSA) {
+          mantissa = mantissa * 10 + (character - '0');
+          exponent--;
+        }
+        character = next();
+      }
+    }
+    if (character == 'e' || character == 'E') {
+      character = next();
+      boolean negativeExponent = character == '-';
+      if (negativeExponent || character == '+') {
+        character = next();
+      }
+      int explicitExponent = 0;
+      while (character >= '0' && character <= '9') {
+        if (explicitExponent < 1000) {
+          explicitExponent = explicitExponent * 10 + (character - '0');
+        }
+        character = next();
+      }
+      exponent += negativeExponent ? -explicitExponent : explicitExponent;
+    }
+    if (character != -1) {
+      // The character after the number still belongs to the array
+      position--;
+    }
+
+    double value = exponent >= 0 ? mantissa * powerOfTen(exponent) : mantissa / powerOfTen(-exponent);
+    return negative ? -value : value;
+  }
+
+  private static double powerOfTen(int exponent) {
+    return exponent < POWERS_OF_TEN.length ? POWERS_OF_TEN[exponent] : Math.pow(10, exponent);
+  }
+
+  /**
+   * Reads the rest of a string whose opening quote was just read, and tells whether it equals the expected
+   * ASCII characters.
+   */
+  private boolean readStringMatches(byte[] expected) throws IOException {
+    int length = 0;
+    boolean matches = true;
+    int character;
+    while ((character = next()) != '"') {
+      if (character == -1) {
+        return false;
+      }
+      if (character == '\\') {
+        next();
+        matches = false;
+      } else if (length >= expected.length || expected[length] != character) {
+        matches = false;
+      }
+      length++;
+    }
+    return matches && length == expected.length;
+  }
+
+  private int nextNonWhitespace() throws IOException {
+    int character;
+    do {
+      character = next();
+    } while (character == ' ' || character == '\t' || character == '\n' || character == '\r');
+    return character;
+  }
+
+  private int next() throws IOException {
+    if (position == limit) {
+      limit = inputStream.read(buffer, 0, buffer.length);
+      position = 0;
+      if (limit <= 0) {
+        limit = 0;
+        return -1;
+      }
+    }
+    return buffer[position++] & 0xFF;
+  }
+}
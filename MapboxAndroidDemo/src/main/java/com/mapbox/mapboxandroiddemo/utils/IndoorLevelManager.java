@@ -0,0 +1,162 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.content.Context;
+import android.os.AsyncTask;
+import android.support.annotation.NonNull;
+
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.mapboxandroiddemo.commons.GeoJsonAssetLoader;
+import com.mapbox.mapboxsdk.maps.MapboxMap;
+import com.mapbox.mapboxsdk.style.layers.Layer;
+import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import timber.log.Timber;
+
+import static com.mapbox.mapboxsdk.style.layers.Property.NONE;
+import static com.mapbox.mapboxsdk.style.layers.Property.VISIBLE;
+import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.visibility;
+
+/**
+ * Shows one floor level of an indoor map at a time.
+ * <p>
+ * All levels are parsed once, in the background, and every level gets its own source and layers on the
+ * map, of which only those of the selected level are visible. Switching levels then only changes layer
+ * visibility, instead of reading and parsing the level's GeoJSON and sending it to the map again.
+ * </p>
+ * <p>
+ * Must be used from the main thread.
+ * </p>
+ */
+public class IndoorLevelManager {
+
+  /**
+   * Creates the layers that show a level.
+   */
+  public interface LayerFactory {
+
+    /**
+     * @param sourceId      the id of the level's source
+     * @param layerIdSuffix a suffix that makes layer ids unique per level
+     * @return the layers, in the order they're added to the map
+     */
+    List<Layer> createLayers(String sourceId, String layerIdSuffix);
+  }
+
+  private final MapboxMap mapboxMap;
+  private final String sourceIdPrefix;
+  private final LayerFactory layerFactory;
+  private final String[] assetNames;
+  private final List<List<Layer>> levelLayers = new ArrayList<>();
+  private LoadLevelsTask loadLevelsTask;
+  private int selectedLevel;
+
+  /**
+   * @param mapboxMap      the map to show the levels on
+   * @param sourceIdPrefix the prefix of the source ids, followed by the level number
+   * @param layerFactory   creates the layers of each level
+   * @param assetNames     the GeoJSON asset of each level, starting from the lowest
+   */
+  public IndoorLevelManager(@NonNull MapboxMap mapboxMap, @NonNull String sourceIdPrefix,
+                            @NonNull LayerFactory layerFactory, @NonNull String... assetNames) {
+    this.mapboxMap = mapboxMap;
+    this.sourceIdPrefix = sourceIdPrefix;
+    this.layerFactory = layerFactory;
+    this.assetNames = assetNames;
+  }
+
+  /**
+   * Parses all levels in the background and adds them to the map, showing the selected level.
+   */
+  public void load(@NonNull Context context) {
+    if (loadLevelsTask != null) {
+      return;
+    }
+    loadLevelsTask = new LoadLevelsTask(context.getApplicationContext());
+    loadLevelsTask.execute(assetNames);
+  }
+
+  /**
+   * Shows a level and hides the others. A level selected before the levels are loaded is shown once
+   * they are.
+   *
+   * @param level the index of the level in the asset names
+   */
+  public void showLevel(int level) {
+    if (level == selectedLevel) {
+      return;
+    }
+    setLevelVisibility(selectedLevel, NONE);
+    selectedLevel = level;
+    setLevelVisibility(selectedLevel, VISIBLE);
+  }
+
+  public int getSelectedLevel() {
+    return selectedLevel;
+  }
+
+  /**
+   * Stops loading the levels, for example when the Activity is destroyed.
+   */
+  public void cancel() {
+    if (loadLevelsTask != null) {
+      loadLevelsTask.cancel(true);
+    }
+  }
+
+  private void setLevelVisibility(int level, String visibility) {
+    if (level < 0 || level >= levelLayers.size()) {
+      return;
+    }
+    for (Layer layer : levelLayers.get(level)) {
+      layer.setProperties(visibility(visibility));
+    }
+  }
+
+  private void addLevels(FeatureCollection[] levels) {
+    for (int level = 0; level < levels.length; level++) {
+      List<Layer> layers = new ArrayList<>();
+      if (levels[level] != null) {
+        String sourceId = sourceIdPrefix + level;
+        mapboxMap.addSource(new GeoJsonSource(sourceId, levels[level]));
+        layers = layerFactory.createLayers(sourceId, "-" + level);
+        for (Layer layer : layers) {
+          layer.setProperties(visibility(level == selectedLevel ? VISIBLE : NONE));
+          mapboxMap.addLayer(layer);
+        }
+      }
+      levelLayers.add(layers);
+    }
+  }
+
+  private class LoadLevelsTask extends AsyncTask<String, Void, FeatureCollection[]> {
+
+    private final Context context;
+
+    LoadLevelsTask(Context context) {
+      this.context = context;
+    }
+
+    @Override
+    protected FeatureCollection[] doInBackground(String... assetNames) {
+      FeatureCollection[] levels = new FeatureCollection[assetNames.length];
+      for (int level = 0; level < assetNames.length && !isCancelled(); level++) {
+        try {
+          levels[level] = GeoJsonAssetLoader.loadFeatureCollection(context, assetNames[level]);
+        } catch (IOException exception) {
+          // The level is left out, the others can still be shown
+          Timber.e(exception, "Unable to load level %s", assetNames[level]);
+        }
+      }
+      return levels;
+    }
+
+    @Override
+    protected void onPostExecute(FeatureCollection[] levels) {
+      addLevels(levels);
+    }
+  }
+}
@@ -0,0 +1,259 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Simplifies lines stored in a {@link LngLatBuffer}, with either Douglas-Peucker or Visvalingam-Whyatt.
+ * <p>
+ * Instead of simplifying for one tolerance, both algorithms compute the importance of every vertex once:
+ * the largest squared tolerance at which the vertex is still kept. A simplified line for any tolerance is
+ * then just the vertices whose importance is above the square of that tolerance, which is what
+ * {@link SimplifiedLinePyramid} uses to precompute a line per zoom level. Neither algorithm recurses, so
+ * lines with millions of vertices don't overflow the stack. Coordinates are treated as planar, like
+ * {@code PolylineUtils.simplify()} does.
+ * </p>
+ */
+public class LineSimplifier {
+
+  /**
+   * Keeps the vertices that are furthest from the line through their neighbours. Importance is the squared
+   * distance to that line.
+   */
+  public static final int DOUGLAS_PEUCKER = 0;
+
+  /**
+   * Repeatedly drops the vertex that forms the smallest triangle with its neighbours. Importance is a
+   * triangle area, in squared degrees, which smooths lines more evenly than Douglas-Peucker.
+   */
+  public static final int VISVALINGAM_WHYATT = 1;
+
+  private LineSimplifier() {
+    // No instances
+  }
+
+  /**
+   * Computes the importance of every vertex of a line. The first and last vertex are always kept, and
+   * get {@link Double#POSITIVE_INFINITY}.
+   *
+   * @param line   the line to simplify
+   * @param method {@link #DOUGLAS_PEUCKER} or {@link #VISVALINGAM_WHYATT}
+   * @return the importance of each vertex, indexed like the line
+   */
+  @NonNull
+  public static double[] computeImportance(@NonNull LngLatBuffer line, int method) {
+    double[] importance = new double[line.size()];
+    if (line.size() <= 2) {
+      Arrays.fill(importance, Double.POSITIVE_INFINITY);
+      return importance;
+    }
+    if (method == VISVALINGAM_WHYATT) {
+      computeVisvalingamImportance(line, importance);
+    } else {
+      computeDouglasPeuckerImportance(line, importance);
+    }
+    importance[0] = Double.POSITIVE_INFINITY;
+    importance[line.size() - 1] = Double.POSITIVE_INFINITY;
+    return importance;
+  }
+
+  /**
+   * Picks the vertices of a line that are kept at a tolerance.
+   *
+   * @param importance the importance of each vertex, from {@link #computeImportance(LngLatBuffer, int)}
+   * @param tolerance  the tolerance, in degrees
+   * @return the indices of the kept vertices, in line order
+   */
+  @NonNull
+  public static int[] select(@NonNull double[] importance, double tolerance) {
+    double squaredTolerance = tolerance * tolerance;
+    int count = 0;
+    for (double vertexImportance : importance) {
+      if (vertexImportance > squaredTolerance) {
+        count++;
+      }
+    }
+    int[] indices = new int[count];
+    count = 0;
+    for (int i = 0; i < importance.length; i++) {
+      if (importance[i] > squaredTolerance) {
+        indices[count++] = i;
+      }
+    }
+    return indices;
+  }
+
+  private static void computeDouglasPeuckerImportance(LngLatBuffer line, double[] importance) {
+    // Each range on the stack is a pair of vertex indices, with the importance of the vertex that split
+    // it off. A vertex can't be more important than its parent, which keeps the result equal to running
+    // Douglas-Peucker for each tolerance separately.
+    int[] ranges = new int[64];
+    double[] parentImportance = new double[32];
+    int stackSize = 0;
+    ranges[0] = 0;
+    ranges[1] = line.size() - 1;
+    parentImportance[0] = Double.POSITIVE_INFINITY;
+    stackSize++;
+
+    while (stackSize > 0) {
+      stackSize--;
+      int first = ranges[stackSize * 2];
+      int last = ranges[stackSize * 2 + 1];
+      double parent = parentImportance[stackSize];
+
+      int farthest = -1;
+      double maxDistance = -1;
+      for (int i = first + 1; i < last; i++) {
+        double distance = squaredSegmentDistance(line, i, first, last);
+        if (distance > maxDistance) {
+          maxDistance = distance;
+          farthest = i;
+        }
+      }
+      if (farthest == -1) {
+        continue;
+      }
+
+      double vertexImportance = Math.min(maxDistance, parent);
+      importance[farthest] = vertexImportance;
+      if (stackSize + 2 > parentImportance.length) {
+        ranges = Arrays.copyOf(ranges, ranges.length * 2);
+        parentImportance = Arrays.copyOf(parentImportance, parentImportance.length * 2);
+      }
+      ranges[stackSize * 2] = first;
+      ranges[stackSize * 2 + 1] = farthest;
+      parentImportance[stackSize] = vertexImportance;
+      stackSize++;
+      ranges[stackSize * 2] = farthest;
+      ranges[stackSize * 2 + 1] = last;
+      parentImportance[stackSize] = vertexImportance;
+      stackSize++;
+    }
+  }
+
+  private static void computeVisvalingamImportance(LngLatBuffer line, double[] importance) {
+    int size = line.size();
+    int[] previous = new int[size];
+    int[] next = new int[size];
+    double[] area = new double[size];
+    // Min-heap of the interior vertices by triangle area, with the heap position of each vertex
+    int[] heap = new int[size - 2];
+    int[] heapPosition = new int[size];
+    int heapSize = 0;
+
+    for (int i = 1; i < size - 1; i++) {
+      previous[i] = i - 1;
+      next[i] = i + 1;
+      area[i] = triangleArea(line, i - 1, i, i + 1);
+      heap[heapSize] = i;
+      heapPosition[i] = heapSize;
+      heapSize++;
+    }
+    for (int i = heapSize / 2 - 1; i >= 0; i--) {
+      siftDown(heap, heapPosition, area, heapSize, i);
+    }
+
+    double maxRemovedArea = 0;
+    while (heapSize > 0) {
+      int vertex = heap[0];
+      heapSize--;
+      if (heapSize > 0) {
+        heap[0] = heap[heapSize];
+        heapPosition[heap[0]] = 0;
+        siftDown(heap, heapPosition, area, heapSize, 0);
+      }
+
+      // A vertex that's removed later is never less important than one that's removed before it
+      maxRemovedArea = Math.max(maxRemovedArea, area[vertex]);
+      importance[vertex] = maxRemovedArea;
+
+      int before = previous[vertex];
+      int after = next[vertex];
+      next[before] = after;
+      previous[after] = before;
+      if (before > 0) {
+        updateArea(line, heap, heapPosition, area, heapSize, previous[before], before, after);
+      }
+      if (after < size - 1) {
+        updateArea(line, heap, heapPosition, area, heapSize, before, after, next[after]);
+      }
+    }
+  }
+
+  private static void updateArea(LngLatBuffer line, int[] heap, int[] heapPosition, double[] area, int heapSize,
+                                 int before, int vertex, int after) {
+    double oldArea = area[vertex];
+    area[vertex] = triangleArea(line, before, vertex, after);
+    if (area[vertex] < oldArea) {
+      siftUp(heap, heapPosition, area, heapPosition[vertex]);
+    } else {
+      siftDown(heap, heapPosition, area, heapSize, heapPosition[vertex]);
+    }
+  }
+
+  private static void siftUp(int[] heap, int[] heapPosition, double[] area, int position) {
+    int vertex = heap[position];
+    while (position > 0) {
+      int parent = (position - 1) / 2;
+      if (area[heap[parent]] <= area[vertex]) {
+        break;
+      }
+      heap[position] = heap[parent];
+      heapPosition[heap[position]] = position;
+      position = parent;
+    }
+    heap[position] = vertex;
+    heapPosition[vertex] = position;
+  }
+
+  private static void siftDown(int[] heap, int[] heapPosition, double[] area, int heapSize, int position) {
+    int vertex = heap[position];
+    while (true) {
+      int child = position * 2 + 1;
+      if (child >= heapSize) {
+        break;
+      }
+      if (child + 1 < heapSize && area[heap[child + 1]] < area[heap[child]]) {
+        child++;
+      }
+      if (area[vertex] <= area[heap[child]]) {
+        break;
+      }
+      heap[position] = heap[child];
+      heapPosition[heap[position]] = position;
+      position = child;
+    }
+    heap[position] = vertex;
+    heapPosition[vertex] = position;
+  }
+
+  private static double triangleArea(LngLatBuffer line, int first, int second, int third) {
+    double x1 = line.getLongitude(first);
+    double y1 = line.getLatitude(first);
+    return Math.abs((line.getLongitude(second) - x1) * (line.getLatitude(third) - y1)
+      - (line.getLongitude(third) - x1) * (line.getLatitude(second) - y1)) / 2;
+  }
+
+  private static double squaredSegmentDistance(LngLatBuffer line, int vertex, int first, int last) {
+    double x = line.getLongitude(first);
+    double y = line.getLatitude(first);
+    double dx = line.getLongitude(last) - x;
+    double dy = line.getLatitude(last) - y;
+
+    if (dx != 0 || dy != 0) {
+      double t = ((line.getLongitude(vertex) - x) * dx + (line.getLatitude(vertex) - y) * dy) / (dx * dx + dy * dy);
+      if (t > 1) {
+        x = line.getLongitude(last);
+        y = line.getLatitude(last);
+      } else if (t > 0) {
+        x += dx * t;
+        y += dy * t;
+      }
+    }
+
+    dx = line.getLongitude(vertex) - x;
+    dy = line.getLatitude(vertex) - y;
+    return dx * dx + dy * dy;
+  }
+}
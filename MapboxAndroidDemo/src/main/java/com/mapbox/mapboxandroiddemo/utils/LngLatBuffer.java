@@ -0,0 +1,123 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+
+import com.mapbox.geojson.LineString;
+import com.mapbox.geojson.Point;
+import com.mapbox.mapboxsdk.annotations.PolylineOptions;
+import com.mapbox.mapboxsdk.geometry.LatLng;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A growable list of coordinates, stored as longitude/latitude pairs in a single double array instead of
+ * one {@link Point} object per coordinate.
+ * <p>
+ * Use it to collect the coordinates of long lines, and only create Points for the part of the line that is
+ * actually handed to the map.
+ * </p>
+ */
+public class LngLatBuffer {
+
+  private static final int DEFAULT_CAPACITY = 256;
+
+  private double[] coordinates;
+  private int size;
+
+  public LngLatBuffer() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param capacity the number of coordinates that fit without growing the buffer
+   */
+  public LngLatBuffer(int capacity) {
+    coordinates = new double[Math.max(capacity, 1) * 2];
+  }
+
+  /**
+   * Appends a coordinate to the end of the buffer.
+   *
+   * @param longitude the longitude of the coordinate
+   * @param latitude  the latitude of the coordinate
+   */
+  public void add(double longitude, double latitude) {
+    if (size * 2 == coordinates.length) {
+      coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+    }
+    coordinates[size * 2] = longitude;
+    coordinates[size * 2 + 1] = latitude;
+    size++;
+  }
+
+  /**
+   * @return the number of coordinates in the buffer
+   */
+  public int size() {
+    return size;
+  }
+
+  public double getLongitude(int index) {
+    return coordinates[index * 2];
+  }
+
+  public double getLatitude(int index) {
+    return coordinates[index * 2 + 1];
+  }
+
+  /**
+   * Removes all coordinates, keeping the allocated capacity.
+   */
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * Appends Points for a range of the coordinates to a list.
+   *
+   * @param target the list to append to
+   * @param from   the index of the first coordinate, inclusive
+   * @param to     the index of the last coordinate, exclusive
+   */
+  public void appendPoints(@NonNull List<Point> target, int from, int to) {
+    for (int i = from; i < to; i++) {
+      target.add(Point.fromLngLat(coordinates[i * 2], coordinates[i * 2 + 1]));
+    }
+  }
+
+  /**
+   * @return a new list with a Point for every coordinate
+   */
+  public List<Point> toPoints() {
+    List<Point> points = new ArrayList<>(size);
+    appendPoints(points, 0, size);
+    return points;
+  }
+
+  /**
+   * @return a new list with a LatLng for every coordinate
+   */
+  public List<LatLng> toLatLngs() {
+    List<LatLng> latLngs = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      latLngs.add(new LatLng(coordinates[i * 2 + 1], coordinates[i * 2]));
+    }
+    return latLngs;
+  }
+
+  /**
+   * @return a LineString through all coordinates
+   */
+  public LineString toLineString() {
+    return LineString.fromLngLats(toPoints());
+  }
+
+  /**
+   * @return PolylineOptions with all coordinates added, ready to be styled and added to the map
+   */
+  public PolylineOptions toPolylineOptions() {
+    return new PolylineOptions().addAll(toLatLngs());
+  }
+}
@@ -0,0 +1,181 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+
+import com.mapbox.mapboxsdk.camera.CameraPosition;
+import com.mapbox.mapboxsdk.camera.CameraUpdateFactory;
+import com.mapbox.mapboxsdk.geometry.LatLng;
+import com.mapbox.mapboxsdk.maps.MapboxMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Makes any number of linked maps, like an inset mini-map or overview maps, follow the camera of a main map.
+ * <p>
+ * Camera move events of the main map only mark the camera as changed. The latest camera is applied to the
+ * linked maps once per frame, on the next animation tick, however many move events arrived in between. A
+ * linked map is only moved when the change would be visible on it: its center moves by at least half a
+ * pixel, or its zoom, bearing or tilt changes noticeably. Moving the camera of a linked map needs a new
+ * CameraPosition, but nothing else is allocated per move event or per frame.
+ * </p>
+ * <p>
+ * Must be used from the main thread.
+ * </p>
+ */
+public class MapCameraSync implements MapboxMap.OnCameraMoveListener {
+
+  private static final double MIN_CENTER_CHANGE_PIXELS = 0.5;
+  private static final double MIN_ZOOM_CHANGE = 0.01;
+  private static final double MIN_BEARING_CHANGE = 0.5;
+  private static final double MIN_TILT_CHANGE = 0.5;
+  // Pixels per degree of longitude at zoom 0, with the 512 pixel tiles of Mapbox GL
+  private static final double PIXELS_PER_DEGREE_AT_ZOOM_0 = 512.0 / 360.0;
+
+  private final View mainMapView;
+  private final List<LinkedMap> linkedMaps = new ArrayList<>();
+  private final Runnable frameRunnable = new Runnable() {
+    @Override
+    public void run() {
+      frameScheduled = false;
+      syncLinkedMaps();
+    }
+  };
+  private MapboxMap mainMap;
+  private boolean frameScheduled;
+
+  /**
+   * @param mainMapView the view of the main map, which times the frames
+   */
+  public MapCameraSync(@NonNull View mainMapView) {
+    this.mainMapView = mainMapView;
+  }
+
+  /**
+   * Starts following the camera of the main map.
+   *
+   * @param mainMap the map whose camera the linked maps follow
+   */
+  public void attach(@NonNull MapboxMap mainMap) {
+    this.mainMap = mainMap;
+    mainMap.addOnCameraMoveListener(this);
+    scheduleFrame();
+  }
+
+  /**
+   * Links a map to the main map, or changes its zoom offset if it's linked already. It follows the main
+   * map from the next frame on.
+   *
+   * @param linkedMap  the map to move along with the main map
+   * @param zoomOffset the difference between its zoom and the main map's zoom, negative to zoom out further
+   */
+  public void link(@NonNull MapboxMap linkedMap, double zoomOffset) {
+    unlink(linkedMap);
+    linkedMaps.add(new LinkedMap(linkedMap, zoomOffset));
+    scheduleFrame();
+  }
+
+  /**
+   * Stops moving a linked map.
+   */
+  public void unlink(@NonNull MapboxMap linkedMap) {
+    for (int i = 0; i < linkedMaps.size(); i++) {
+      if (linkedMaps.get(i).map == linkedMap) {
+        linkedMaps.remove(i);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Stops following the main map and unlinks all maps, for example when the Activity is destroyed.
+   */
+  public void release() {
+    if (mainMap != null) {
+      mainMap.removeOnCameraMoveListener(this);
+      mainMap = null;
+    }
+    linkedMaps.clear();
+    mainMapView.removeCallbacks(frameRunnable);
+    frameScheduled = false;
+  }
+
+  @Override
+  public void onCameraMove() {
+    scheduleFrame();
+  }
+
+  private void scheduleFrame() {
+    if (frameScheduled || mainMap == null || linkedMaps.isEmpty()) {
+      return;
+    }
+    frameScheduled = true;
+    ViewCompat.postOnAnimation(mainMapView, frameRunnable);
+  }
+
+  private void syncLinkedMaps() {
+    if (mainMap == null) {
+      return;
+    }
+    CameraPosition mainCamera = mainMap.getCameraPosition();
+    if (mainCamera.target == null) {
+      return;
+    }
+    for (int i = 0; i < linkedMaps.size(); i++) {
+      linkedMaps.get(i).follow(mainCamera);
+    }
+  }
+
+  private static class LinkedMap {
+
+    final MapboxMap map;
+    final double zoomOffset;
+    boolean synced;
+    double latitude;
+    double longitude;
+    double zoom;
+    double bearing;
+    double tilt;
+
+    LinkedMap(MapboxMap map, double zoomOffset) {
+      this.map = map;
+      this.zoomOffset = zoomOffset;
+    }
+
+    void follow(CameraPosition mainCamera) {
+      LatLng target = mainCamera.target;
+      double targetZoom = Math.max(0, mainCamera.zoom + zoomOffset);
+      if (synced && !isVisibleChange(target, targetZoom, mainCamera.bearing, mainCamera.tilt)) {
+        return;
+      }
+      synced = true;
+      latitude = target.getLatitude();
+      longitude = target.getLongitude();
+      zoom = targetZoom;
+      bearing = mainCamera.bearing;
+      tilt = mainCamera.tilt;
+      map.moveCamera(CameraUpdateFactory.newCameraPosition(new CameraPosition.Builder()
+        .target(target)
+        .zoom(zoom)
+        .bearing(bearing)
+        .tilt(tilt)
+        .build()));
+    }
+
+    private boolean isVisibleChange(LatLng target, double targetZoom, double targetBearing, double targetTilt) {
+      if (Math.abs(targetZoom - zoom) >= MIN_ZOOM_CHANGE
+        || Math.abs(targetBearing - bearing) >= MIN_BEARING_CHANGE
+        || Math.abs(targetTilt - tilt) >= MIN_TILT_CHANGE) {
+        return true;
+      }
+      // Degrees are converted to pixels at the zoom of this map, so a mini-map that is zoomed out far
+      // ignores movements that are visible on the main map
+      double pixelsPerDegree = PIXELS_PER_DEGREE_AT_ZOOM_0 * Math.pow(2, zoom);
+      double longitudeDelta = Math.abs(target.getLongitude() - longitude);
+      double latitudeDelta = Math.abs(target.getLatitude() - latitude);
+      return Math.max(longitudeDelta, latitudeDelta) * pixelsPerDegree >= MIN_CENTER_CHANGE_PIXELS;
+    }
+  }
+}
@@ -0,0 +1,328 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.view.Choreographer;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import timber.log.Timber;
+
+/**
+ * Runs all per-frame changes of a map, such as animating an image source or a marker, in a single
+ * Choreographer callback, so they end up in the same rendered frame.
+ * <p>
+ * Each {@link FrameAnimation} tells the scheduler when it needs its next frame. No callback is posted until
+ * the earliest of those times, so an animation that changes the map once per second doesn't wake the UI
+ * thread on every vsync. While the MapView isn't shown, animations are skipped, and the scheduler stops
+ * completely while the Activity of the MapView is stopped.
+ * </p>
+ * <p>
+ * Must only be used from the main thread.
+ * </p>
+ */
+public class MapFrameScheduler {
+
+  /**
+   * A change to the map that is repeated over multiple frames.
+   */
+  public interface FrameAnimation {
+
+    /**
+     * Returned from {@link #onFrame(long)} to remove the animation from the scheduler.
+     */
+    long FINISHED = -1;
+
+    /**
+     * Called with the time of the frame, once the time requested by the previous call has passed.
+     *
+     * @param frameTimeMillis the time of the frame, in the {@link SystemClock#uptimeMillis()} time base
+     * @return the time at which the next frame is needed, or {@link #FINISHED}
+     */
+    long onFrame(long frameTimeMillis);
+  }
+
+  private static final long FALLBACK_FRAME_DELAY_MILLIS = 16;
+  private static final long HIDDEN_POLL_DELAY_MILLIS = 250;
+
+  private final View mapView;
+  private final Handler handler = new Handler(Looper.getMainLooper());
+  private final List<ScheduledAnimation> animations = new ArrayList<>();
+  private final ActivityLifecycleListener lifecycleListener = new ActivityLifecycleListener();
+  private Activity activity;
+  private Object frameCallback;
+  private boolean frameScheduled;
+  private long scheduledFrameTimeMillis;
+  private boolean paused;
+
+  private int frameCount;
+  private int hiddenFrameCount;
+  private long totalFrameTimeNanos;
+  private long maxFrameTimeNanos;
+
+  /**
+   * @param mapView the MapView the animations change, used to pause them while it isn't visible
+   */
+  public MapFrameScheduler(@NonNull View mapView) {
+    this.mapView = mapView;
+    activity = findActivity(mapView.getContext());
+    if (activity != null) {
+      activity.getApplication().registerActivityLifecycleCallbacks(lifecycleListener);
+    }
+  }
+
+  /**
+   * Adds an animation, which gets its first frame on the next vsync.
+   *
+   * @param animation the animation to add
+   */
+  public void add(@NonNull FrameAnimation animation) {
+    animations.add(new ScheduledAnimation(animation, SystemClock.uptimeMillis()));
+    scheduleNextFrame();
+  }
+
+  /**
+   * Removes an animation before it finished.
+   *
+   * @param animation the animation to remove
+   */
+  public void remove(@NonNull FrameAnimation animation) {
+    for (int i = 0; i < animations.size(); i++) {
+      if (animations.get(i).animation == animation) {
+        animations.get(i).removed = true;
+        animations.remove(i);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Stops dispatching frames until {@link #resume()} is called. Happens automatically when the Activity of
+   * the MapView is stopped.
+   */
+  public void pause() {
+    paused = true;
+    cancelFrame();
+  }
+
+  /**
+   * Continues dispatching frames after {@link #pause()}. Animations that were due in the meantime get their
+   * next frame right away.
+   */
+  public void resume() {
+    paused = false;
+    scheduleNextFrame();
+  }
+
+  /**
+   * Removes all animations and stops following the Activity lifecycle. Happens automatically when the
+   * Activity of the MapView is destroyed.
+   */
+  public void release() {
+    pause();
+    animations.clear();
+    if (activity != null) {
+      activity.getApplication().unregisterActivityLifecycleCallbacks(lifecycleListener);
+      activity = null;
+    }
+  }
+
+  /**
+   * @return the number of frames in which at least one animation ran
+   */
+  public int getFrameCount() {
+    return frameCount;
+  }
+
+  /**
+   * @return the average time spent in the animations per frame, in milliseconds
+   */
+  public float getAverageFrameTimeMillis() {
+    return frameCount == 0 ? 0 : totalFrameTimeNanos / 1000000f / frameCount;
+  }
+
+  /**
+   * @return the longest time spent in the animations in a single frame, in milliseconds
+   */
+  public float getMaxFrameTimeMillis() {
+    return maxFrameTimeNanos / 1000000f;
+  }
+
+  /**
+   * Logs the frame time statistics.
+   */
+  public void logStats() {
+    Timber.d("Ran %d frames, %.2f ms on average, %.2f ms max, skipped %d while hidden",
+      frameCount, getAverageFrameTimeMillis(), getMaxFrameTimeMillis(), hiddenFrameCount);
+  }
+
+  private void doFrame() {
+    frameScheduled = false;
+    if (paused || animations.isEmpty()) {
+      return;
+    }
+    if (!mapView.isShown()) {
+      // Nothing of the map is visible, check again later without touching it
+      hiddenFrameCount++;
+      scheduleFrame(SystemClock.uptimeMillis() + HIDDEN_POLL_DELAY_MILLIS);
+      return;
+    }
+
+    long frameTimeMillis = SystemClock.uptimeMillis();
+    long start = System.nanoTime();
+    // Iterate over a copy, animations may add or remove others while they run
+    ScheduledAnimation[] currentAnimations = animations.toArray(new ScheduledAnimation[animations.size()]);
+    for (ScheduledAnimation scheduled : currentAnimations) {
+      if (scheduled.removed || scheduled.dueTimeMillis > frameTimeMillis) {
+        continue;
+      }
+      long nextFrameTimeMillis = scheduled.animation.onFrame(frameTimeMillis);
+      if (nextFrameTimeMillis == FrameAnimation.FINISHED) {
+        remove(scheduled.animation);
+      } else {
+        scheduled.dueTimeMillis = nextFrameTimeMillis;
+      }
+    }
+
+    long frameTimeNanos = System.nanoTime() - start;
+    frameCount++;
+    totalFrameTimeNanos += frameTimeNanos;
+    maxFrameTimeNanos = Math.max(maxFrameTimeNanos, frameTimeNanos);
+    scheduleNextFrame();
+  }
+
+  private void scheduleNextFrame() {
+    if (paused || animations.isEmpty()) {
+      return;
+    }
+    long nextFrameTimeMillis = Long.MAX_VALUE;
+    for (ScheduledAnimation scheduled : animations) {
+      nextFrameTimeMillis = Math.min(nextFrameTimeMillis, scheduled.dueTimeMillis);
+    }
+    scheduleFrame(nextFrameTimeMillis);
+  }
+
+  private void scheduleFrame(long frameTimeMillis) {
+    if (frameScheduled) {
+      if (scheduledFrameTimeMillis <= frameTimeMillis) {
+        return;
+      }
+      cancelFrame();
+    }
+    frameScheduled = true;
+    scheduledFrameTimeMillis = frameTimeMillis;
+    long delayMillis = Math.max(0, frameTimeMillis - SystemClock.uptimeMillis());
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+      postFrameCallback(delayMillis);
+    } else {
+      if (frameCallback == null) {
+        frameCallback = new Runnable() {
+          @Override
+          public void run() {
+            doFrame();
+          }
+        };
+      }
+      handler.postDelayed((Runnable) frameCallback, Math.max(delayMillis, FALLBACK_FRAME_DELAY_MILLIS));
+    }
+  }
+
+  @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+  private void postFrameCallback(long delayMillis) {
+    if (frameCallback == null) {
+      frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+          MapFrameScheduler.this.doFrame();
+        }
+      };
+    }
+    Choreographer.getInstance().postFrameCallbackDelayed((Choreographer.FrameCallback) frameCallback, delayMillis);
+  }
+
+  private void cancelFrame() {
+    if (!frameScheduled) {
+      return;
+    }
+    frameScheduled = false;
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+      Choreographer.getInstance().removeFrameCallback((Choreographer.FrameCallback) frameCallback);
+    } else {
+      handler.removeCallbacks((Runnable) frameCallback);
+    }
+  }
+
+  private static Activity findActivity(Context context) {
+    while (context instanceof ContextWrapper) {
+      if (context instanceof Activity) {
+        return (Activity) context;
+      }
+      context = ((ContextWrapper) context).getBaseContext();
+    }
+    return null;
+  }
+
+  private static class ScheduledAnimation {
+
+    final FrameAnimation animation;
+    long dueTimeMillis;
+    boolean removed;
+
+    ScheduledAnimation(FrameAnimation animation, long dueTimeMillis) {
+      this.animation = animation;
+      this.dueTimeMillis = dueTimeMillis;
+    }
+  }
+
+  private class ActivityLifecycleListener implements Application.ActivityLifecycleCallbacks {
+
+    @Override
+    public void onActivityStarted(Activity startedActivity) {
+      if (startedActivity == activity) {
+        resume();
+      }
+    }
+
+    @Override
+    public void onActivityStopped(Activity stoppedActivity) {
+      if (stoppedActivity == activity) {
+        pause();
+        logStats();
+      }
+    }
+
+    @Override
+    public void onActivityDestroyed(Activity destroyedActivity) {
+      if (destroyedActivity == activity) {
+        release();
+      }
+    }
+
+    @Override
+    public void onActivityCreated(Activity createdActivity, Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityResumed(Activity resumedActivity) {
+    }
+
+    @Override
+    public void onActivityPaused(Activity pausedActivity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity savedActivity, Bundle outState) {
+    }
+  }
+}
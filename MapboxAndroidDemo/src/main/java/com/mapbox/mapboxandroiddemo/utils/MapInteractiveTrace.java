@@ -0,0 +1,94 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+import com.google.firebase.perf.FirebasePerformance;
+import com.google.firebase.perf.metrics.Trace;
+import com.mapbox.mapboxsdk.maps.MapView;
+
+import timber.log.Timber;
+
+/**
+ * Measures the "time to first interactive map" of an example screen: the time from the activity being
+ * created until its data has been attached to the map and the map has fully rendered with it.
+ * <p>
+ * The result is reported as a Firebase Performance trace and logged, so it can be compared across devices.
+ * Start it in onCreate(), call {@link #onDataAttached(MapView)} once all sources and layers have been added
+ * and {@link #cancel(MapView)} in onDestroy().
+ * </p>
+ */
+public class MapInteractiveTrace implements MapView.OnDidFinishRenderingMapListener {
+
+  /**
+   * Set on traces of screens that were closed before the map became interactive, so their durations can be
+   * filtered out of the results.
+   */
+  public static final String COUNTER_CANCELLED = "cancelled";
+
+  private final String name;
+  private final Trace trace;
+  private final long startTime;
+  private MapView mapView;
+  private boolean stopped;
+
+  public MapInteractiveTrace(@NonNull String name) {
+    this.name = name;
+    this.trace = FirebasePerformance.getInstance().newTrace(name);
+    this.startTime = SystemClock.elapsedRealtime();
+    trace.start();
+  }
+
+  /**
+   * Called once the data for the screen has been added to the map. The trace is stopped on the next
+   * fully rendered frame.
+   *
+   * @param mapView the MapView that the data has been added to
+   */
+  public void onDataAttached(@NonNull MapView mapView) {
+    if (stopped || this.mapView != null) {
+      return;
+    }
+    this.mapView = mapView;
+    mapView.addOnDidFinishRenderingMapListener(this);
+  }
+
+  @Override
+  public void onDidFinishRenderingMap(boolean fully) {
+    if (fully) {
+      stop();
+    }
+  }
+
+  /**
+   * Stops listening to the map, for example when the screen is closed before the map became interactive.
+   * Firebase Performance can't discard a started trace, so a trace that is still running is stopped with the
+   * {@link #COUNTER_CANCELLED} counter.
+   *
+   * @param mapView the MapView the trace was attached to
+   */
+  public void cancel(@NonNull MapView mapView) {
+    mapView.removeOnDidFinishRenderingMapListener(this);
+    this.mapView = null;
+    if (stopped) {
+      return;
+    }
+    stopped = true;
+    trace.incrementCounter(COUNTER_CANCELLED);
+    trace.stop();
+    Timber.d("%s: cancelled after %d ms", name, SystemClock.elapsedRealtime() - startTime);
+  }
+
+  private void stop() {
+    if (stopped) {
+      return;
+    }
+    stopped = true;
+    trace.stop();
+    Timber.d("%s: map interactive after %d ms", name, SystemClock.elapsedRealtime() - startTime);
+    if (mapView != null) {
+      mapView.removeOnDidFinishRenderingMapListener(this);
+      mapView = null;
+    }
+  }
+}
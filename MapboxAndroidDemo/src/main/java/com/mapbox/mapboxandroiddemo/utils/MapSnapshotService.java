@@ -0,0 +1,557 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Environment;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.util.LruCache;
+
+import com.mapbox.mapboxsdk.geometry.LatLngBounds;
+import com.mapbox.mapboxsdk.snapshotter.MapSnapshot;
+import com.mapbox.mapboxsdk.snapshotter.MapSnapshotter;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import timber.log.Timber;
+
+/**
+ * Renders map snapshots one after another with a single, reused {@link MapSnapshotter}, and exports them
+ * as image files off the main thread.
+ * <p>
+ * Requests for the same bounds, size and style are merged, whether they're still queued or already being
+ * rendered, and recent snapshots are kept in memory, so asking for the same snapshot again returns the
+ * same Bitmap without rendering it again. Exports are encoded as PNG or WebP on a background thread,
+ * streamed into a temporary file, and re-encoded smaller until they fit a size cap. The finished file is
+ * renamed over the previous export of the same snapshot, so an app that is still reading the previous file
+ * keeps reading it whole. Exports older than a day, or beyond the newest few, are deleted. The latency of
+ * every stage, from the request to the render, the encoding and the share, is recorded in its
+ * {@link SnapshotExport}.
+ * </p>
+ * <p>
+ * Must be used from the main thread.
+ * </p>
+ */
+public final class MapSnapshotService {
+
+  private static final String EXPORT_DIRECTORY_NAME = "snapshot_exports";
+  private static final String TEMPORARY_SUFFIX = ".tmp";
+  private static final int MAX_EXPORT_FILES = 10;
+  private static final long MAX_EXPORT_AGE_MILLIS = 24 * 60 * 60 * 1000;
+  private static final int MAX_ENCODE_ATTEMPTS = 4;
+  private static final int[] WEBP_QUALITIES = {90, 75, 60, 45};
+  // Lossless PNGs only get smaller with fewer pixels
+  private static final float PNG_SCALE_STEP = 0.75f;
+
+  private static volatile MapSnapshotService mapSnapshotServiceInstance;
+
+  /**
+   * The image format of an export.
+   */
+  public enum ExportFormat {
+    PNG(Bitmap.CompressFormat.PNG, "png", "image/png"),
+    WEBP(Bitmap.CompressFormat.WEBP, "webp", "image/webp");
+
+    final Bitmap.CompressFormat compressFormat;
+    final String extension;
+    final String mimeType;
+
+    ExportFormat(Bitmap.CompressFormat compressFormat, String extension, String mimeType) {
+      this.compressFormat = compressFormat;
+      this.extension = extension;
+      this.mimeType = mimeType;
+    }
+
+    public String getMimeType() {
+      return mimeType;
+    }
+  }
+
+  /**
+   * Receives a rendered snapshot, on the main thread.
+   */
+  public interface SnapshotCallback {
+    void onSnapshotReady(@NonNull Bitmap snapshot);
+
+    void onSnapshotError(@NonNull String message);
+  }
+
+  /**
+   * Receives an exported snapshot, on the main thread.
+   */
+  public interface ExportCallback {
+    void onExportReady(@NonNull SnapshotExport export);
+
+    void onExportError(@NonNull String message);
+  }
+
+  private final Context context;
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private final ExecutorService encodeExecutor = Executors.newSingleThreadExecutor();
+  private final LruCache<SnapshotRequest, Bitmap> snapshotCache;
+  // Queued snapshots in request order, each with everyone waiting for it
+  private final LinkedHashMap<SnapshotRequest, PendingSnapshot> queue = new LinkedHashMap<>();
+  private final Set<ExportCallback> activeExports = new HashSet<>();
+  private MapSnapshotter mapSnapshotter;
+  private PendingSnapshot currentSnapshot;
+
+  private MapSnapshotService(Context context) {
+    this.context = context;
+    // Up to an eighth of the heap, which holds a few full screen snapshots
+    int cacheSizeBytes = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 8);
+    snapshotCache = new LruCache<SnapshotRequest, Bitmap>(cacheSizeBytes) {
+      @Override
+      protected int sizeOf(SnapshotRequest key, Bitmap value) {
+        return value.getByteCount();
+      }
+    };
+  }
+
+  /**
+   * Returns the app's MapSnapshotService, creating it on first use.
+   */
+  public static MapSnapshotService getInstance(@NonNull Context context) {
+    if (mapSnapshotServiceInstance == null) {
+      synchronized (MapSnapshotService.class) {
+        if (mapSnapshotServiceInstance == null) {
+          mapSnapshotServiceInstance = new MapSnapshotService(context.getApplicationContext());
+        }
+      }
+    }
+    return mapSnapshotServiceInstance;
+  }
+
+  /**
+   * Renders a snapshot, or returns it from memory right away if it was rendered recently.
+   *
+   * @param request  the area, size and style of the snapshot
+   * @param callback receives the snapshot, which must not be recycled since it stays cached
+   */
+  public void render(@NonNull SnapshotRequest request, @NonNull SnapshotCallback callback) {
+    Bitmap snapshot = snapshotCache.get(request);
+    if (snapshot != null) {
+      callback.onSnapshotReady(snapshot);
+      return;
+    }
+    enqueue(request, callback, callback);
+  }
+
+  /**
+   * Renders a snapshot and writes it to an image file.
+   *
+   * @param request  the area, size and style of the snapshot
+   * @param format   the image format of the file
+   * @param maxBytes the largest the file may be, 0 for no limit
+   * @param callback receives the file
+   */
+  public void export(@NonNull final SnapshotRequest request, @NonNull final ExportFormat format,
+                     final long maxBytes, @NonNull final ExportCallback callback) {
+    activeExports.add(callback);
+    final long requestedAt = SystemClock.elapsedRealtime();
+    SnapshotCallback renderCallback = new SnapshotCallback() {
+      @Override
+      public void onSnapshotReady(@NonNull Bitmap snapshot) {
+        if (activeExports.contains(callback)) {
+          encode(request, snapshot, format, maxBytes, requestedAt, callback);
+        }
+      }
+
+      @Override
+      public void onSnapshotError(@NonNull String message) {
+        if (activeExports.remove(callback)) {
+          callback.onExportError(message);
+        }
+      }
+    };
+    Bitmap snapshot = snapshotCache.get(request);
+    if (snapshot != null) {
+      renderCallback.onSnapshotReady(snapshot);
+    } else {
+      enqueue(request, renderCallback, callback);
+    }
+  }
+
+  /**
+   * Stops delivering to a callback passed to {@link #render(SnapshotRequest, SnapshotCallback)} or
+   * {@link #export(SnapshotRequest, ExportFormat, long, ExportCallback)}. A snapshot nobody waits for
+   * anymore is dropped from the queue, or stops rendering.
+   */
+  public void cancel(@NonNull Object callback) {
+    activeExports.remove(callback);
+    Iterator<PendingSnapshot> iterator = queue.values().iterator();
+    while (iterator.hasNext()) {
+      PendingSnapshot pendingSnapshot = iterator.next();
+      if (pendingSnapshot.removeWaiter(callback) && pendingSnapshot != currentSnapshot) {
+        iterator.remove();
+      }
+    }
+    if (currentSnapshot != null && currentSnapshot.waiters.isEmpty()) {
+      mapSnapshotter.cancel();
+      queue.remove(currentSnapshot.request);
+      currentSnapshot = null;
+      renderNext();
+    }
+  }
+
+  private void enqueue(SnapshotRequest request, SnapshotCallback callback, Object owner) {
+    PendingSnapshot pendingSnapshot = queue.get(request);
+    if (pendingSnapshot == null) {
+      pendingSnapshot = new PendingSnapshot(request);
+      queue.put(request, pendingSnapshot);
+    } else {
+      Timber.d("Merged snapshot request %s", request);
+    }
+    pendingSnapshot.waiters.add(new Waiter(owner, callback));
+    if (currentSnapshot == null) {
+      renderNext();
+    }
+  }
+
+  private void renderNext() {
+    if (queue.isEmpty()) {
+      return;
+    }
+    final PendingSnapshot pendingSnapshot = queue.values().iterator().next();
+    final SnapshotRequest request = pendingSnapshot.request;
+    currentSnapshot = pendingSnapshot;
+    pendingSnapshot.renderStartedAt = SystemClock.elapsedRealtime();
+    if (mapSnapshotter == null) {
+      MapSnapshotter.Options options = new MapSnapshotter.Options(request.width, request.height)
+        .withRegion(request.bounds)
+        .withStyle(request.styleUrl);
+      mapSnapshotter = new MapSnapshotter(context, options);
+    } else {
+      // Reuse the snapshotter and its renderer
+      mapSnapshotter.setSize(request.width, request.height);
+      mapSnapshotter.setRegion(request.bounds);
+      mapSnapshotter.setStyleUrl(request.styleUrl);
+    }
+    mapSnapshotter.start(new MapSnapshotter.SnapshotReadyCallback() {
+      @Override
+      public void onSnapshotReady(MapSnapshot snapshot) {
+        if (currentSnapshot != pendingSnapshot) {
+          return;
+        }
+        Bitmap bitmap = snapshot.getBitmap();
+        snapshotCache.put(request, bitmap);
+        finish(pendingSnapshot);
+        Timber.d("Rendered snapshot %s in %d ms", request,
+          SystemClock.elapsedRealtime() - pendingSnapshot.renderStartedAt);
+        for (Waiter waiter : pendingSnapshot.waiters) {
+          waiter.callback.onSnapshotReady(bitmap);
+        }
+      }
+    }, new MapSnapshotter.ErrorHandler() {
+      @Override
+      public void onError(String error) {
+        if (currentSnapshot != pendingSnapshot) {
+          return;
+        }
+        Timber.w("Unable to render snapshot %s: %s", request, error);
+        finish(pendingSnapshot);
+        for (Waiter waiter : pendingSnapshot.waiters) {
+          waiter.callback.onSnapshotError(error);
+        }
+      }
+    });
+  }
+
+  private void finish(PendingSnapshot pendingSnapshot) {
+    queue.remove(pendingSnapshot.request);
+    currentSnapshot = null;
+    // Callbacks may queue more snapshots, which start after this one is delivered
+    mainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        if (currentSnapshot == null) {
+          renderNext();
+        }
+      }
+    });
+  }
+
+  private void encode(final SnapshotRequest request, final Bitmap snapshot, final ExportFormat format,
+                      final long maxBytes, final long requestedAt, final ExportCallback callback) {
+    final long renderedAt = SystemClock.elapsedRealtime();
+    final File exportDirectory = getExportDirectory();
+    encodeExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        File file = new File(exportDirectory, "snapshot_" + Integer.toHexString(request.hashCode()) + "."
+          + format.extension);
+        String error = null;
+        try {
+          if (!exportDirectory.exists() && !exportDirectory.mkdirs()) {
+            throw new IOException("Unable to create " + exportDirectory);
+          }
+          File temporaryFile = new File(exportDirectory, file.getName() + TEMPORARY_SUFFIX);
+          writeImage(snapshot, format, maxBytes, temporaryFile);
+          if (!temporaryFile.renameTo(file)) {
+            if (!temporaryFile.delete()) {
+              Timber.w("Unable to delete %s", temporaryFile);
+            }
+            throw new IOException("Unable to replace " + file);
+          }
+          pruneExports(exportDirectory, file);
+        } catch (IOException exception) {
+          Timber.w("Unable to export snapshot %s: %s", request, exception.toString());
+          error = exception.toString();
+        }
+
+        final SnapshotExport export = new SnapshotExport(file, format, requestedAt, renderedAt,
+          SystemClock.elapsedRealtime());
+        final String finalError = error;
+        mainHandler.post(new Runnable() {
+          @Override
+          public void run() {
+            if (!activeExports.remove(callback)) {
+              return;
+            }
+            if (finalError != null) {
+              callback.onExportError(finalError);
+            } else {
+              callback.onExportReady(export);
+            }
+          }
+        });
+      }
+    });
+  }
+
+  private File getExportDirectory() {
+    File picturesDirectory = context.getExternalFilesDir(Environment.DIRECTORY_PICTURES);
+    return new File(picturesDirectory != null ? picturesDirectory : context.getFilesDir(), EXPORT_DIRECTORY_NAME);
+  }
+
+  /**
+   * Called on a background thread. Encodes a snapshot straight into a file, and encodes it again with a
+   * lower WebP quality, or fewer PNG pixels, while the file is larger than the cap.
+   */
+  static void writeImage(@NonNull Bitmap snapshot, @NonNull ExportFormat format, long maxBytes,
+                         @NonNull File file) throws IOException {
+    Bitmap image = snapshot;
+    for (int attempt = 0; attempt < MAX_ENCODE_ATTEMPTS; attempt++) {
+      int quality = format == ExportFormat.WEBP ? WEBP_QUALITIES[attempt] : 100;
+      OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file));
+      try {
+        if (!image.compress(format.compressFormat, quality, outputStream)) {
+          throw new IOException("Unable to encode " + file);
+        }
+      } finally {
+        outputStream.close();
+      }
+      if (maxBytes <= 0 || file.length() <= maxBytes) {
+        break;
+      }
+      if (format == ExportFormat.PNG && attempt < MAX_ENCODE_ATTEMPTS - 1) {
+        Bitmap scaled = Bitmap.createScaledBitmap(image, Math.max(1, (int) (image.getWidth() * PNG_SCALE_STEP)),
+          Math.max(1, (int) (image.getHeight() * PNG_SCALE_STEP)), true);
+        if (image != snapshot) {
+          // Only the scaled copies are ours, the snapshot stays cached
+          image.recycle();
+        }
+        image = scaled;
+      }
+    }
+    if (image != snapshot) {
+      image.recycle();
+    }
+  }
+
+  private static void pruneExports(File exportDirectory, File keep) {
+    File[] files = exportDirectory.listFiles();
+    if (files == null) {
+      return;
+    }
+    Arrays.sort(files, new Comparator<File>() {
+      @Override
+      public int compare(File first, File second) {
+        long firstModified = first.lastModified();
+        long secondModified = second.lastModified();
+        return firstModified > secondModified ? -1 : (firstModified == secondModified ? 0 : 1);
+      }
+    });
+    long oldestKept = System.currentTimeMillis() - MAX_EXPORT_AGE_MILLIS;
+    for (int i = 0; i < files.length; i++) {
+      if (!files[i].equals(keep) && (i >= MAX_EXPORT_FILES || files[i].lastModified() < oldestKept)
+        && !files[i].delete()) {
+        Timber.w("Unable to delete %s", files[i]);
+      }
+    }
+  }
+
+  /**
+   * The area, size and style of a snapshot. Bounds are rounded to about a centimeter, so requests for the
+   * same view are merged even if the projection returns slightly different bounds.
+   */
+  public static final class SnapshotRequest {
+
+    private final LatLngBounds bounds;
+    private final int width;
+    private final int height;
+    private final String styleUrl;
+    private final String key;
+
+    /**
+     * @param bounds   the area of the snapshot
+     * @param width    the width of the snapshot, in pixels
+     * @param height   the height of the snapshot, in pixels
+     * @param styleUrl the style of the map
+     */
+    public SnapshotRequest(@NonNull LatLngBounds bounds, int width, int height, @NonNull String styleUrl) {
+      this.bounds = bounds;
+      this.width = Math.max(1, width);
+      this.height = Math.max(1, height);
+      this.styleUrl = styleUrl;
+      this.key = String.format(Locale.US, "%.7f,%.7f,%.7f,%.7f/%dx%d/%s", bounds.getLatNorth(),
+        bounds.getLonEast(), bounds.getLatSouth(), bounds.getLonWest(), this.width, this.height, styleUrl);
+    }
+
+    @NonNull
+    public LatLngBounds getBounds() {
+      return bounds;
+    }
+
+    public int getWidth() {
+      return width;
+    }
+
+    public int getHeight() {
+      return height;
+    }
+
+    @NonNull
+    public String getStyleUrl() {
+      return styleUrl;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof SnapshotRequest && key.equals(((SnapshotRequest) other).key);
+    }
+
+    @Override
+    public int hashCode() {
+      return key.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return key;
+    }
+  }
+
+  /**
+   * An exported snapshot file, with the time each stage took.
+   */
+  public static final class SnapshotExport {
+
+    private final File file;
+    private final ExportFormat format;
+    private final long requestedAt;
+    private final long renderedAt;
+    private final long encodedAt;
+
+    SnapshotExport(File file, ExportFormat format, long requestedAt, long renderedAt, long encodedAt) {
+      this.file = file;
+      this.format = format;
+      this.requestedAt = requestedAt;
+      this.renderedAt = renderedAt;
+      this.encodedAt = encodedAt;
+    }
+
+    @NonNull
+    public File getFile() {
+      return file;
+    }
+
+    @NonNull
+    public ExportFormat getFormat() {
+      return format;
+    }
+
+    /**
+     * @return the milliseconds from the request until the snapshot was rendered, including its wait in
+     *     the queue, or 0 if it came from memory
+     */
+    public long getRenderMillis() {
+      return renderedAt - requestedAt;
+    }
+
+    /**
+     * @return the milliseconds it took to encode and write the file
+     */
+    public long getEncodeMillis() {
+      return encodedAt - renderedAt;
+    }
+
+    /**
+     * Records that sharing the file finished, once the share chooser or the app the file was shared with
+     * returned, and logs the latency of every stage. The share stage includes the time the user spent
+     * picking an app.
+     *
+     * @return the milliseconds from the request until the share finished
+     */
+    public long markShared() {
+      long sharedAt = SystemClock.elapsedRealtime();
+      Timber.d("Snapshot %s: render %d ms, encode %d ms (%d KB), share %d ms, total %d ms", file.getName(),
+        getRenderMillis(), getEncodeMillis(), file.length() / 1024, sharedAt - encodedAt, sharedAt - requestedAt);
+      return sharedAt - requestedAt;
+    }
+  }
+
+  /**
+   * A queued snapshot and everyone waiting for it.
+   */
+  private static class PendingSnapshot {
+
+    final SnapshotRequest request;
+    final List<Waiter> waiters = new ArrayList<>();
+    long renderStartedAt;
+
+    PendingSnapshot(SnapshotRequest request) {
+      this.request = request;
+    }
+
+    /**
+     * @return whether nobody waits for the snapshot anymore
+     */
+    boolean removeWaiter(Object owner) {
+      Iterator<Waiter> iterator = waiters.iterator();
+      while (iterator.hasNext()) {
+        if (iterator.next().owner == owner) {
+          iterator.remove();
+        }
+      }
+      return waiters.isEmpty();
+    }
+  }
+
+  private static class Waiter {
+
+    final Object owner;
+    final SnapshotCallback callback;
+
+    Waiter(Object owner, SnapshotCallback callback) {
+      this.owner = owner;
+      this.callback = callback;
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+
+import com.mapbox.geojson.Point;
+
+import java.util.List;
+
+/**
+ * Tests whether points are inside a fixed polygon, cheaply enough to run on every camera move.
+ * <p>
+ * The polygon's envelope is computed once, and points outside of it, which is almost every point when the
+ * camera is away from the polygon, are rejected with four comparisons. Only points inside the envelope go
+ * through the full point-in-polygon test, which runs over the precomputed coordinate arrays and doesn't
+ * allocate, unlike {@code TurfJoins.inside()} with a Polygon built for each call.
+ * </p>
+ */
+public class PolygonGate {
+
+  private final double[] longitudes;
+  private final double[] latitudes;
+  private final double minLongitude;
+  private final double minLatitude;
+  private final double maxLongitude;
+  private final double maxLatitude;
+
+  /**
+   * @param ring the outer ring of the polygon, which doesn't need to repeat its first point at the end
+   */
+  public PolygonGate(@NonNull List<Point> ring) {
+    longitudes = new double[ring.size()];
+    latitudes = new double[ring.size()];
+    double minLng = Double.POSITIVE_INFINITY;
+    double minLat = Double.POSITIVE_INFINITY;
+    double maxLng = Double.NEGATIVE_INFINITY;
+    double maxLat = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < ring.size(); i++) {
+      longitudes[i] = ring.get(i).longitude();
+      latitudes[i] = ring.get(i).latitude();
+      minLng = Math.min(minLng, longitudes[i]);
+      minLat = Math.min(minLat, latitudes[i]);
+      maxLng = Math.max(maxLng, longitudes[i]);
+      maxLat = Math.max(maxLat, latitudes[i]);
+    }
+    minLongitude = minLng;
+    minLatitude = minLat;
+    maxLongitude = maxLng;
+    maxLatitude = maxLat;
+  }
+
+  /**
+   * @param longitude the longitude of the point
+   * @param latitude  the latitude of the point
+   * @return whether the point is inside the polygon
+   */
+  public boolean contains(double longitude, double latitude) {
+    if (longitude < minLongitude || longitude > maxLongitude || latitude < minLatitude || latitude > maxLatitude) {
+      return false;
+    }
+
+    // Counts the edges crossed by a ray going east from the point, an odd count means it's inside
+    boolean inside = false;
+    for (int i = 0, j = longitudes.length - 1; i < longitudes.length; j = i++) {
+      if ((latitudes[i] > latitude) != (latitudes[j] > latitude)
+        && longitude < (longitudes[j] - longitudes[i]) * (latitude - latitudes[i])
+        / (latitudes[j] - latitudes[i]) + longitudes[i]) {
+        inside = !inside;
+      }
+    }
+    return inside;
+  }
+}
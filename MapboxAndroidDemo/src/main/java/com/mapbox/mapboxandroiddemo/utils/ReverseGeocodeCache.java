@@ -0,0 +1,360 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.util.LruCache;
+
+import com.mapbox.api.geocoding.v5.MapboxGeocoding;
+import com.mapbox.api.geocoding.v5.models.GeocodingResponse;
+import com.mapbox.geojson.Point;
+import com.mapbox.mapboxsdk.Mapbox;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.Response;
+import timber.log.Timber;
+
+/**
+ * Reverse geocodes points through a cache keyed by the geohash cell the point falls in, so looking up the
+ * same area again, like a map centre that barely moved, doesn't make a request.
+ * <p>
+ * A cell is geocoded at the first point looked up in it, and later points in the cell share that result.
+ * The precision is chosen per lookup: 5 characters make cells of about 5 km, which suits places, and
+ * 9 characters about 5 m, which suits addresses. Results are kept in memory in an LRU cache and on disk, both for a limited time.
+ * Lookups of a cell that is already being geocoded wait for that request instead of sending another one.
+ * </p>
+ * <p>
+ * Must be used from the main thread, where the {@link Callback} is called as well.
+ * </p>
+ */
+public final class ReverseGeocodeCache {
+
+  private static final String DISK_CACHE_DIRECTORY_NAME = "geocoding";
+  private static final int MEMORY_CACHE_SIZE = 128;
+  private static final int MAX_DISK_ENTRIES = 1000;
+  private static final long TIME_TO_LIVE_MILLIS = TimeUnit.DAYS.toMillis(7);
+  private static final int WORKER_THREAD_COUNT = 2;
+  private static final char[] GEOHASH_ALPHABET = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static volatile ReverseGeocodeCache reverseGeocodeCacheInstance;
+
+  /**
+   * Receives the result of a lookup.
+   */
+  public interface Callback {
+    void onResult(GeocodingResponse response);
+
+    void onError(String message);
+  }
+
+  private final File diskCacheDirectory;
+  private final LruCache<String, CacheEntry> memoryCache = new LruCache<>(MEMORY_CACHE_SIZE);
+  private final Map<String, List<Callback>> pendingCallbacks = new HashMap<>();
+  private final ExecutorService workerExecutor = Executors.newFixedThreadPool(WORKER_THREAD_COUNT);
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+  private int lookupCount;
+  private int memoryHitCount;
+  private int diskHitCount;
+  private int coalescedCount;
+  private int networkCount;
+  private long networkTimeMillis;
+
+  private ReverseGeocodeCache(Context context) {
+    diskCacheDirectory = new File(context.getCacheDir(), DISK_CACHE_DIRECTORY_NAME);
+  }
+
+  /**
+   * Returns the app's ReverseGeocodeCache, creating it on first use.
+   */
+  public static ReverseGeocodeCache getInstance(@NonNull Context context) {
+    if (reverseGeocodeCacheInstance == null) {
+      synchronized (ReverseGeocodeCache.class) {
+        if (reverseGeocodeCacheInstance == null) {
+          reverseGeocodeCacheInstance = new ReverseGeocodeCache(context.getApplicationContext());
+        }
+      }
+    }
+    return reverseGeocodeCacheInstance;
+  }
+
+  /**
+   * Reverse geocodes a point, or returns the result of an earlier point in the same cell. A cached result is
+   * delivered before this method returns.
+   *
+   * @param point         the point to look up
+   * @param geocodingType the type of result, such as {@code GeocodingCriteria.TYPE_ADDRESS}
+   * @param precision     the number of geohash characters of the cell, between 1 and 12
+   * @param callback      receives the result on the main thread
+   */
+  public void reverseGeocode(@NonNull final Point point, @NonNull final String geocodingType, int precision,
+                             @NonNull Callback callback) {
+    lookupCount++;
+    final String key = geocodingType + "_" + encodeGeohash(point.latitude(), point.longitude(), precision);
+
+    CacheEntry entry = memoryCache.get(key);
+    if (entry != null && entry.expiryTimeMillis > System.currentTimeMillis()) {
+      memoryHitCount++;
+      callback.onResult(entry.response);
+      return;
+    }
+
+    List<Callback> callbacks = pendingCallbacks.get(key);
+    if (callbacks != null) {
+      coalescedCount++;
+      callbacks.add(callback);
+      return;
+    }
+    callbacks = new ArrayList<>();
+    callbacks.add(callback);
+    pendingCallbacks.put(key, callbacks);
+
+    workerExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        load(key, point, geocodingType);
+      }
+    });
+  }
+
+  /**
+   * Stops delivering results to a callback, for example when its Activity is destroyed.
+   *
+   * @param callback the callback passed to {@link #reverseGeocode(Point, String, int, Callback)}
+   */
+  public void cancel(@NonNull Callback callback) {
+    for (List<Callback> callbacks : pendingCallbacks.values()) {
+      callbacks.remove(callback);
+    }
+  }
+
+  /**
+   * @return the share of lookups answered from memory, from disk or by joining a request for the same cell
+   */
+  public float getHitRate() {
+    return lookupCount == 0 ? 0 : (float) (memoryHitCount + diskHitCount + coalescedCount) / lookupCount;
+  }
+
+  /**
+   * @return the estimated time saved by lookups that didn't make a request, based on the average request
+   * time, in milliseconds
+   */
+  public long getLatencySavedMillis() {
+    if (networkCount == 0) {
+      return 0;
+    }
+    return (memoryHitCount + diskHitCount + coalescedCount) * networkTimeMillis / networkCount;
+  }
+
+  /**
+   * Logs the hit counts and the estimated time saved.
+   */
+  public void logStats() {
+    Timber.d("%d reverse geocoding lookups: %d memory hits, %d disk hits, %d coalesced, %d requests, "
+        + "hit rate %.2f, %d ms saved", lookupCount, memoryHitCount, diskHitCount, coalescedCount, networkCount,
+      getHitRate(), getLatencySavedMillis());
+  }
+
+  /**
+   * Called on a worker thread. Reads the cell from disk, or geocodes the point and stores the result for its
+   * cell.
+   */
+  private void load(String key, Point point, String geocodingType) {
+    File file = new File(diskCacheDirectory, key + ".json");
+    long expiryTimeMillis = file.lastModified() + TIME_TO_LIVE_MILLIS;
+    if (file.exists() && expiryTimeMillis > System.currentTimeMillis()) {
+      try {
+        GeocodingResponse response = GeocodingResponse.fromJson(readFile(file));
+        deliver(key, response, expiryTimeMillis, Source.DISK, 0);
+        return;
+      } catch (Exception exception) {
+        Timber.w("Unable to read cached geocoding result %s: %s", file, exception.toString());
+      }
+    }
+
+    long start = SystemClock.elapsedRealtime();
+    try {
+      Response<GeocodingResponse> response = MapboxGeocoding.builder()
+        .accessToken(Mapbox.getAccessToken())
+        .query(point)
+        .geocodingTypes(geocodingType)
+        .build()
+        .executeCall();
+      long elapsedMillis = SystemClock.elapsedRealtime() - start;
+      GeocodingResponse body = response.body();
+      if (!response.isSuccessful() || body == null) {
+        deliverError(key, "HTTP " + response.code());
+        return;
+      }
+      writeFile(file, body.toJson());
+      deliver(key, body, System.currentTimeMillis() + TIME_TO_LIVE_MILLIS, Source.NETWORK, elapsedMillis);
+    } catch (Exception exception) {
+      deliverError(key, exception.toString());
+    }
+  }
+
+  private void deliver(final String key, final GeocodingResponse response, final long expiryTimeMillis,
+                       final Source source, final long networkMillis) {
+    mainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        if (source == Source.DISK) {
+          diskHitCount++;
+        } else {
+          networkCount++;
+          networkTimeMillis += networkMillis;
+        }
+        memoryCache.put(key, new CacheEntry(response, expiryTimeMillis));
+        List<Callback> callbacks = pendingCallbacks.remove(key);
+        if (callbacks != null) {
+          for (Callback callback : callbacks) {
+            callback.onResult(response);
+          }
+        }
+      }
+    });
+  }
+
+  private void deliverError(final String key, final String message) {
+    mainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        List<Callback> callbacks = pendingCallbacks.remove(key);
+        if (callbacks != null) {
+          for (Callback callback : callbacks) {
+            callback.onError(message);
+          }
+        }
+      }
+    });
+  }
+
+  private static String readFile(File file) throws IOException {
+    InputStream inputStream = new FileInputStream(file);
+    try {
+      byte[] bytes = new byte[(int) file.length()];
+      int offset = 0;
+      int read;
+      while (offset < bytes.length && (read = inputStream.read(bytes, offset, bytes.length - offset)) != -1) {
+        offset += read;
+      }
+      return new String(bytes, 0, offset, UTF_8);
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  private void writeFile(File file, String json) {
+    if (!diskCacheDirectory.exists() && !diskCacheDirectory.mkdirs()) {
+      Timber.w("Unable to create %s", diskCacheDirectory);
+      return;
+    }
+    // Written to a temporary file first, so a reader never sees half of a result
+    File tempFile = new File(file.getPath() + ".tmp");
+    try {
+      OutputStream outputStream = new FileOutputStream(tempFile);
+      try {
+        outputStream.write(json.getBytes(UTF_8));
+      } finally {
+        outputStream.close();
+      }
+      if (!tempFile.renameTo(file)) {
+        Timber.w("Unable to store geocoding result %s", file);
+      }
+    } catch (IOException exception) {
+      Timber.w("Unable to store geocoding result %s: %s", file, exception.toString());
+    }
+    trimDiskCache();
+  }
+
+  private synchronized void trimDiskCache() {
+    File[] files = diskCacheDirectory.listFiles();
+    if (files == null || files.length <= MAX_DISK_ENTRIES) {
+      return;
+    }
+    Arrays.sort(files, new Comparator<File>() {
+      @Override
+      public int compare(File first, File second) {
+        long firstModified = first.lastModified();
+        long secondModified = second.lastModified();
+        return firstModified < secondModified ? -1 : (firstModified == secondModified ? 0 : 1);
+      }
+    });
+    for (int i = 0; i < files.length - MAX_DISK_ENTRIES; i++) {
+      if (!files[i].delete()) {
+        Timber.w("Unable to delete %s", files[i]);
+      }
+    }
+  }
+
+  private static String encodeGeohash(double latitude, double longitude, int precision) {
+    double minLatitude = -90;
+    double maxLatitude = 90;
+    double minLongitude = -180;
+    double maxLongitude = 180;
+    char[] geohash = new char[Math.max(1, Math.min(12, precision))];
+    boolean longitudeBit = true;
+    for (int i = 0; i < geohash.length; i++) {
+      int index = 0;
+      for (int bit = 0; bit < 5; bit++) {
+        index <<= 1;
+        // Bits alternate between longitude and latitude, halving the range each time
+        if (longitudeBit) {
+          double middle = (minLongitude + maxLongitude) / 2;
+          if (longitude >= middle) {
+            index |= 1;
+            minLongitude = middle;
+          } else {
+            maxLongitude = middle;
+          }
+        } else {
+          double middle = (minLatitude + maxLatitude) / 2;
+          if (latitude >= middle) {
+            index |= 1;
+            minLatitude = middle;
+          } else {
+            maxLatitude = middle;
+          }
+        }
+        longitudeBit = !longitudeBit;
+      }
+      geohash[i] = GEOHASH_ALPHABET[index];
+    }
+    return new String(geohash);
+  }
+
+  private enum Source {
+    DISK,
+    NETWORK
+  }
+
+  private static class CacheEntry {
+
+    final GeocodingResponse response;
+    final long expiryTimeMillis;
+
+    CacheEntry(GeocodingResponse response, long expiryTimeMillis) {
+      this.response = response;
+      this.expiryTimeMillis = expiryTimeMillis;
+    }
+  }
+}
@@ -0,0 +1,173 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.util.LruCache;
+
+import com.mapbox.geojson.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import timber.log.Timber;
+
+/**
+ * Requests routes for a list of stops that changes quickly, for example with every tap on the map, so that
+ * only the route for the latest stops is ever shown.
+ * <p>
+ * Requests made in quick succession are debounced, so a burst of changes sends a single request. Sending a
+ * new request cancels the one in flight, and every request is tagged with a generation number, so a
+ * response for stops that have changed since is dropped even if it arrives after the cancel. Results are
+ * kept in an LRU cache keyed by the ordered stops, so going back to stops that were requested before, like
+ * removing and re-adding a stop, is answered right away without a request.
+ * </p>
+ * <p>
+ * Must be used from the main thread, where the {@link Listener} is called as well.
+ * </p>
+ *
+ * @param <T> the type of the route response
+ */
+public class RouteRequestScheduler<T> {
+
+  /**
+   * Creates the API call for a list of stops, for example with {@code MapboxOptimization.cloneCall()}.
+   */
+  public interface CallFactory<T> {
+    Call<T> createCall(List<Point> stops);
+  }
+
+  /**
+   * Receives the route for the latest stops.
+   */
+  public interface Listener<T> {
+
+    /**
+     * @param stops     the stops the route was requested for
+     * @param result    the successful response
+     * @param fromCache whether the response came from the cache instead of a request
+     */
+    void onRouteResult(List<Point> stops, T result, boolean fromCache);
+
+    /**
+     * @param stops   the stops the route was requested for
+     * @param message a description of the error
+     */
+    void onRouteError(List<Point> stops, String message);
+  }
+
+  private final CallFactory<T> callFactory;
+  private final Listener<T> listener;
+  private final long debounceMillis;
+  private final LruCache<String, T> resultCache;
+  private final Handler handler = new Handler(Looper.getMainLooper());
+  private int generation;
+  private Runnable pendingRequest;
+  private Call<T> inFlightCall;
+
+  /**
+   * @param callFactory    creates the API call for a list of stops
+   * @param listener       receives the results
+   * @param debounceMillis how long the stops must stay unchanged before a request is sent
+   * @param cacheSize      the number of results kept in the cache
+   */
+  public RouteRequestScheduler(@NonNull CallFactory<T> callFactory, @NonNull Listener<T> listener,
+                               long debounceMillis, int cacheSize) {
+    this.callFactory = callFactory;
+    this.listener = listener;
+    this.debounceMillis = debounceMillis;
+    this.resultCache = new LruCache<>(cacheSize);
+  }
+
+  /**
+   * Requests the route for new stops, superseding any earlier request.
+   *
+   * @param stops the stops, in order
+   */
+  public void request(@NonNull List<Point> stops) {
+    cancel();
+    final List<Point> requestedStops = new ArrayList<>(stops);
+    final String key = createKey(requestedStops);
+
+    T cachedResult = resultCache.get(key);
+    if (cachedResult != null) {
+      listener.onRouteResult(requestedStops, cachedResult, true);
+      return;
+    }
+
+    final int requestGeneration = generation;
+    pendingRequest = new Runnable() {
+      @Override
+      public void run() {
+        pendingRequest = null;
+        send(requestedStops, key, requestGeneration);
+      }
+    };
+    handler.postDelayed(pendingRequest, debounceMillis);
+  }
+
+  /**
+   * Cancels the pending or in flight request, if any. Its result won't be delivered.
+   */
+  public void cancel() {
+    generation++;
+    if (pendingRequest != null) {
+      handler.removeCallbacks(pendingRequest);
+      pendingRequest = null;
+    }
+    if (inFlightCall != null) {
+      inFlightCall.cancel();
+      inFlightCall = null;
+    }
+  }
+
+  private void send(final List<Point> stops, final String key, final int requestGeneration) {
+    final Call<T> call = callFactory.createCall(stops);
+    inFlightCall = call;
+    call.enqueue(new Callback<T>() {
+      @Override
+      public void onResponse(Call<T> call, Response<T> response) {
+        if (!isCurrent(call, requestGeneration)) {
+          return;
+        }
+        inFlightCall = null;
+        T result = response.body();
+        if (!response.isSuccessful() || result == null) {
+          listener.onRouteError(stops, "HTTP " + response.code());
+          return;
+        }
+        resultCache.put(key, result);
+        listener.onRouteResult(stops, result, false);
+      }
+
+      @Override
+      public void onFailure(Call<T> call, Throwable throwable) {
+        if (call.isCanceled() || !isCurrent(call, requestGeneration)) {
+          return;
+        }
+        inFlightCall = null;
+        listener.onRouteError(stops, throwable.getMessage());
+      }
+    });
+  }
+
+  private boolean isCurrent(Call<T> call, int requestGeneration) {
+    if (requestGeneration != generation) {
+      // The stops changed after this request was sent
+      Timber.d("Dropped a stale route response, generation %d of %d", requestGeneration, generation);
+      return false;
+    }
+    return call == inFlightCall;
+  }
+
+  private static String createKey(List<Point> stops) {
+    StringBuilder key = new StringBuilder(stops.size() * 40);
+    for (Point stop : stops) {
+      key.append(stop.longitude()).append(',').append(stop.latitude()).append(';');
+    }
+    return key.toString();
+  }
+}
@@ -0,0 +1,89 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+
+import com.mapbox.mapboxsdk.geometry.LatLng;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A line simplified once for every whole zoom level, so the map can switch to the right level of detail
+ * while the camera zooms without simplifying again. Picking a level is a lookup, and building its LatLngs
+ * only touches the vertices that are kept.
+ * <p>
+ * The tolerance of each level is a fixed number of screen pixels, converted to degrees at that zoom level.
+ * The vertex importance is computed once by the {@link LineSimplifier}, so building the pyramid takes a
+ * single simplification plus a pass over the importances per level.
+ * </p>
+ */
+public class SimplifiedLinePyramid {
+
+  // The world is 512 pixels wide at zoom level 0 in the Maps SDK
+  private static final double DEGREES_PER_PIXEL_AT_ZOOM_ZERO = 360d / 512;
+
+  private final LngLatBuffer line;
+  private final int minZoom;
+  private final int[][] levels;
+
+  /**
+   * Simplifies a line for a range of zoom levels. Call this off the main thread for long lines.
+   *
+   * @param line           the line to simplify, which must not change afterwards
+   * @param method         {@link LineSimplifier#DOUGLAS_PEUCKER} or {@link LineSimplifier#VISVALINGAM_WHYATT}
+   * @param pixelTolerance the distance from the original line, in pixels, that the simplified line may stray
+   * @param minZoom        the lowest zoom level to simplify for
+   * @param maxZoom        the highest zoom level to simplify for
+   */
+  public SimplifiedLinePyramid(@NonNull LngLatBuffer line, int method, double pixelTolerance, int minZoom,
+                               int maxZoom) {
+    this.line = line;
+    this.minZoom = minZoom;
+    levels = new int[maxZoom - minZoom + 1][];
+    double[] importance = LineSimplifier.computeImportance(line, method);
+    for (int zoom = minZoom; zoom <= maxZoom; zoom++) {
+      double tolerance = pixelTolerance * DEGREES_PER_PIXEL_AT_ZOOM_ZERO / Math.pow(2, zoom);
+      levels[zoom - minZoom] = LineSimplifier.select(importance, tolerance);
+    }
+  }
+
+  /**
+   * @return the original line
+   */
+  @NonNull
+  public LngLatBuffer getLine() {
+    return line;
+  }
+
+  /**
+   * @param zoom the zoom level of the camera
+   * @return the indices of the vertices kept at the zoom level, in line order
+   */
+  @NonNull
+  public int[] getIndices(double zoom) {
+    int level = (int) Math.floor(zoom) - minZoom;
+    return levels[Math.max(0, Math.min(levels.length - 1, level))];
+  }
+
+  /**
+   * @param zoom the zoom level of the camera
+   * @return the number of vertices kept at the zoom level
+   */
+  public int getVertexCount(double zoom) {
+    return getIndices(zoom).length;
+  }
+
+  /**
+   * @param zoom the zoom level of the camera
+   * @return a new list with the vertices kept at the zoom level
+   */
+  @NonNull
+  public List<LatLng> getLatLngs(double zoom) {
+    int[] indices = getIndices(zoom);
+    List<LatLng> latLngs = new ArrayList<>(indices.length);
+    for (int index : indices) {
+      latLngs.add(new LatLng(line.getLatitude(index), line.getLongitude(index)));
+    }
+    return latLngs;
+  }
+}
@@ -0,0 +1,457 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.LruCache;
+import android.view.ViewTreeObserver;
+import android.widget.ImageView;
+
+import com.mapbox.api.staticmap.v1.MapboxStaticMap;
+import com.mapbox.geojson.Point;
+import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.commons.NetworkModule;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import timber.log.Timber;
+
+/**
+ * Loads Mapbox Static API images into ImageViews, sized for the view and the display density, through a
+ * memory and a disk cache.
+ * <p>
+ * The requested size is the size of the view, halved and asked for as a retina image on high density
+ * displays, so an image is never downloaded larger than it's shown. Images are stored on disk under a hash
+ * of their normalized parameters, so the same camera at the same size is only ever downloaded once, and
+ * downloads run in parallel on a bounded pool of threads with the app's shared OkHttpClient. For every
+ * camera a small version of the image is kept in memory as well, which is shown right away the next time
+ * the camera is loaded, at any size, while the full image is read. The first time a camera is loaded
+ * there's no placeholder yet, and the view stays empty until its image has been downloaded.
+ * </p>
+ * <p>
+ * Must be used from the main thread.
+ * </p>
+ */
+public final class StaticMapImageService {
+
+  private static final String DISK_CACHE_DIRECTORY_NAME = "static_maps";
+  private static final long MAX_DISK_CACHE_BYTES = 20 * 1024 * 1024;
+  private static final int PLACEHOLDER_CACHE_SIZE = 64;
+  private static final int PLACEHOLDER_SIZE_PIXELS = 64;
+  private static final int MAX_IMAGE_SIZE = 1280;
+  private static final int FETCH_THREAD_COUNT = 4;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private static volatile StaticMapImageService staticMapImageServiceInstance;
+
+  private final OkHttpClient httpClient;
+  private final String accessToken;
+  private final float density;
+  private final File diskCacheDirectory;
+  private final LruCache<String, Bitmap> imageCache;
+  private final LruCache<String, Bitmap> placeholderCache = new LruCache<>(PLACEHOLDER_CACHE_SIZE);
+  private final Map<String, PendingImage> pendingImages = new HashMap<>();
+  private final ExecutorService fetchExecutor = Executors.newFixedThreadPool(FETCH_THREAD_COUNT);
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+  private StaticMapImageService(Context context) {
+    httpClient = NetworkModule.getInstance(context).getOkHttpClient();
+    accessToken = context.getString(R.string.access_token);
+    density = context.getResources().getDisplayMetrics().density;
+    diskCacheDirectory = new File(context.getCacheDir(), DISK_CACHE_DIRECTORY_NAME);
+    imageCache = new LruCache<String, Bitmap>((int) (Runtime.getRuntime().maxMemory() / 16)) {
+      @Override
+      protected int sizeOf(String key, Bitmap value) {
+        return value.getByteCount();
+      }
+    };
+  }
+
+  /**
+   * Returns the app's StaticMapImageService, creating it on first use.
+   */
+  public static StaticMapImageService getInstance(@NonNull Context context) {
+    if (staticMapImageServiceInstance == null) {
+      synchronized (StaticMapImageService.class) {
+        if (staticMapImageServiceInstance == null) {
+          staticMapImageServiceInstance = new StaticMapImageService(context.getApplicationContext());
+        }
+      }
+    }
+    return staticMapImageServiceInstance;
+  }
+
+  /**
+   * Loads the image of a camera into a view, replacing whatever was loaded into it before. If the view
+   * hasn't been laid out yet, loading starts once it has. A view without a height, like one with
+   * adjustViewBounds, gets a square image.
+   *
+   * @param camera    the camera of the image
+   * @param imageView the view to show the image in
+   * @return the image or its small placeholder, which is already shown, or null if neither is in memory
+   */
+  @Nullable
+  public Bitmap load(@NonNull final StaticMapCamera camera, @NonNull final ImageView imageView) {
+    if (imageView.getWidth() > 0) {
+      return load(camera, imageView, imageView.getWidth(),
+        imageView.getHeight() > 0 ? imageView.getHeight() : imageView.getWidth());
+    }
+
+    // Tagged right away, so a later load into the same view wins over this one
+    imageView.setTag(R.id.static_map_image_key, camera);
+    imageView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+      @Override
+      public boolean onPreDraw() {
+        imageView.getViewTreeObserver().removeOnPreDrawListener(this);
+        if (imageView.getTag(R.id.static_map_image_key) == camera && imageView.getWidth() > 0) {
+          load(camera, imageView, imageView.getWidth(),
+            imageView.getHeight() > 0 ? imageView.getHeight() : imageView.getWidth());
+        }
+        return true;
+      }
+    });
+    Bitmap placeholder = placeholderCache.get(camera.getKey());
+    imageView.setImageBitmap(placeholder);
+    return placeholder;
+  }
+
+  /**
+   * Stops delivering an image to a view, for example when its Activity is destroyed.
+   */
+  public void cancel(@NonNull ImageView imageView) {
+    imageView.setTag(R.id.static_map_image_key, null);
+    for (PendingImage pendingImage : pendingImages.values()) {
+      pendingImage.targets.remove(imageView);
+    }
+  }
+
+  private Bitmap load(StaticMapCamera camera, ImageView imageView, int widthPixels, int heightPixels) {
+    cancel(imageView);
+    ImageSize size = new ImageSize(widthPixels, heightPixels, density);
+    String key = createKey(camera, size);
+    imageView.setTag(R.id.static_map_image_key, camera);
+
+    Bitmap image = imageCache.get(key);
+    if (image != null) {
+      imageView.setImageBitmap(image);
+      return image;
+    }
+
+    PendingImage pendingImage = pendingImages.get(key);
+    if (pendingImage == null) {
+      pendingImage = fetch(camera, size, key);
+    }
+    pendingImage.targets.add(imageView);
+
+    Bitmap placeholder = placeholderCache.get(camera.getKey());
+    imageView.setImageBitmap(placeholder);
+    return placeholder;
+  }
+
+  private PendingImage fetch(final StaticMapCamera camera, final ImageSize size, final String key) {
+    final PendingImage pendingImage = new PendingImage(size);
+    pendingImages.put(key, pendingImage);
+    fetchExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        fetchImage(camera, key, pendingImage);
+      }
+    });
+    return pendingImage;
+  }
+
+  /**
+   * Called on a fetch thread. Reads the image from disk, or downloads and stores it, and decodes the
+   * placeholder and the image itself.
+   */
+  private void fetchImage(final StaticMapCamera camera, final String key, final PendingImage pendingImage) {
+    File file = new File(diskCacheDirectory, hash(key) + ".png");
+    Bitmap image = null;
+    Bitmap placeholder = null;
+    boolean failed = false;
+    try {
+      byte[] data;
+      if (file.exists()) {
+        data = readFile(file);
+        // Keeps recently used images from being trimmed
+        if (!file.setLastModified(System.currentTimeMillis())) {
+          Timber.w("Unable to touch %s", file);
+        }
+      } else {
+        long start = SystemClock.elapsedRealtime();
+        data = download(camera, pendingImage.size);
+        Timber.d("Downloaded static map %s in %d ms", camera.getKey(), SystemClock.elapsedRealtime() - start);
+        writeFile(file, data);
+      }
+      if (placeholderCache.get(camera.getKey()) == null) {
+        placeholder = decode(data, PLACEHOLDER_SIZE_PIXELS);
+      }
+      image = BitmapFactory.decodeByteArray(data, 0, data.length);
+    } catch (Exception exception) {
+      Timber.w("Unable to load static map %s: %s", camera.getKey(), exception.toString());
+      failed = true;
+    }
+
+    final Bitmap finalImage = image;
+    final Bitmap finalPlaceholder = placeholder;
+    final boolean finalFailed = failed;
+    mainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        deliver(camera, key, pendingImage, finalImage, finalPlaceholder, finalFailed);
+      }
+    });
+  }
+
+  private void deliver(StaticMapCamera camera, String key, PendingImage pendingImage, Bitmap image,
+                       Bitmap placeholder, boolean failed) {
+    pendingImages.remove(key);
+    if (placeholder != null) {
+      placeholderCache.put(camera.getKey(), placeholder);
+    }
+    if (failed || image == null || pendingImage.targets.isEmpty()) {
+      return;
+    }
+    imageCache.put(key, image);
+    for (ImageView imageView : pendingImage.targets) {
+      if (imageView.getTag(R.id.static_map_image_key) == camera) {
+        imageView.setImageBitmap(image);
+      }
+    }
+  }
+
+  private byte[] download(StaticMapCamera camera, ImageSize size) throws IOException {
+    String url = MapboxStaticMap.builder()
+      .accessToken(accessToken)
+      .styleId(camera.styleId)
+      .cameraPoint(camera.center)
+      .cameraZoom(camera.zoom)
+      .cameraBearing(camera.bearing)
+      .cameraPitch(camera.pitch)
+      .width(size.width)
+      .height(size.height)
+      .retina(size.retina)
+      .build()
+      .url()
+      .toString();
+    Response response = httpClient.newCall(new Request.Builder().url(url).build()).execute();
+    ResponseBody body = response.body();
+    try {
+      if (!response.isSuccessful() || body == null) {
+        throw new IOException("Unexpected response " + response.code());
+      }
+      return body.bytes();
+    } finally {
+      response.close();
+    }
+  }
+
+  private static Bitmap decode(byte[] data, int targetSize) {
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inJustDecodeBounds = true;
+    BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    int sampleSize = 1;
+    while (Math.min(options.outWidth, options.outHeight) / (sampleSize * 2) >= targetSize) {
+      sampleSize *= 2;
+    }
+    options.inJustDecodeBounds = false;
+    options.inSampleSize = sampleSize;
+    return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+  }
+
+  private static String createKey(StaticMapCamera camera, ImageSize size) {
+    return camera.getKey() + "|" + size.width + "|" + size.height + "|" + (size.retina ? "@2x" : "@1x");
+  }
+
+  private static String hash(String key) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(UTF_8));
+      char[] hex = new char[digest.length * 2];
+      for (int i = 0; i < digest.length; i++) {
+        hex[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+        hex[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xF];
+      }
+      return new String(hex);
+    } catch (NoSuchAlgorithmException exception) {
+      // Every Android version has SHA-1
+      throw new IllegalStateException(exception);
+    }
+  }
+
+  private static byte[] readFile(File file) throws IOException {
+    InputStream inputStream = new FileInputStream(file);
+    try {
+      byte[] bytes = new byte[(int) file.length()];
+      int offset = 0;
+      int read;
+      while (offset < bytes.length && (read = inputStream.read(bytes, offset, bytes.length - offset)) != -1) {
+        offset += read;
+      }
+      return offset == bytes.length ? bytes : Arrays.copyOf(bytes, offset);
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  private void writeFile(File file, byte[] data) {
+    if (!diskCacheDirectory.exists() && !diskCacheDirectory.mkdirs()) {
+      Timber.w("Unable to create %s", diskCacheDirectory);
+      return;
+    }
+    // Written to a temporary file first, so a reader never sees half of an image
+    File tempFile = new File(file.getPath() + ".tmp");
+    try {
+      OutputStream outputStream = new FileOutputStream(tempFile);
+      try {
+        outputStream.write(data);
+      } finally {
+        outputStream.close();
+      }
+      if (!tempFile.renameTo(file)) {
+        Timber.w("Unable to store static map %s", file);
+      }
+    } catch (IOException exception) {
+      Timber.w("Unable to store static map %s: %s", file, exception.toString());
+    }
+    trimDiskCache();
+  }
+
+  private synchronized void trimDiskCache() {
+    File[] files = diskCacheDirectory.listFiles();
+    if (files == null) {
+      return;
+    }
+    long totalBytes = 0;
+    for (File file : files) {
+      totalBytes += file.length();
+    }
+    if (totalBytes <= MAX_DISK_CACHE_BYTES) {
+      return;
+    }
+    Arrays.sort(files, new Comparator<File>() {
+      @Override
+      public int compare(File first, File second) {
+        long firstModified = first.lastModified();
+        long secondModified = second.lastModified();
+        return firstModified < secondModified ? -1 : (firstModified == secondModified ? 0 : 1);
+      }
+    });
+    for (int i = 0; i < files.length && totalBytes > MAX_DISK_CACHE_BYTES; i++) {
+      long length = files[i].length();
+      if (files[i].delete()) {
+        totalBytes -= length;
+      } else {
+        Timber.w("Unable to delete %s", files[i]);
+      }
+    }
+  }
+
+  /**
+   * The camera of a static map image. Its parameters are normalized, so cameras that produce the same
+   * image share their cache entries.
+   */
+  public static final class StaticMapCamera {
+
+    final String styleId;
+    final Point center;
+    final double zoom;
+    final double bearing;
+    final double pitch;
+    private final String key;
+
+    /**
+     * @param styleId the style of the map, such as {@code Style.MAPBOX_STREETS}
+     * @param center  the center of the image
+     * @param zoom    the zoom level
+     * @param bearing the bearing, in degrees
+     * @param pitch   the pitch, in degrees
+     */
+    public StaticMapCamera(@NonNull String styleId, @NonNull Point center, double zoom, double bearing,
+                           double pitch) {
+      // Six decimals are about 10 cm, the API doesn't render finer differences than that
+      this.center = Point.fromLngLat(round(center.longitude(), 1e6), round(center.latitude(), 1e6));
+      this.styleId = styleId;
+      this.zoom = round(zoom, 100);
+      this.bearing = round(((bearing % 360) + 360) % 360, 10);
+      this.pitch = round(pitch, 10);
+      this.key = String.format(Locale.US, "%s|%.6f|%.6f|%.2f|%.1f|%.1f", styleId, this.center.longitude(),
+        this.center.latitude(), this.zoom, this.bearing, this.pitch);
+    }
+
+    /**
+     * @param styleId the style of the map, such as {@code Style.MAPBOX_STREETS}
+     * @param center  the center of the image
+     * @param zoom    the zoom level
+     */
+    public StaticMapCamera(@NonNull String styleId, @NonNull Point center, double zoom) {
+      this(styleId, center, zoom, 0, 0);
+    }
+
+    String getKey() {
+      return key;
+    }
+
+    private static double round(double value, double scale) {
+      return Math.round(value * scale) / scale;
+    }
+  }
+
+  /**
+   * The size of the image to request for a view, in density independent pixels.
+   */
+  private static class ImageSize {
+
+    final int width;
+    final int height;
+    final boolean retina;
+
+    ImageSize(int widthPixels, int heightPixels, float density) {
+      // Retina images are twice the requested size, which fits high density displays best
+      retina = density >= 1.5f;
+      int scale = retina ? 2 : 1;
+      width = Math.max(1, Math.min(MAX_IMAGE_SIZE, (widthPixels + scale - 1) / scale));
+      height = Math.max(1, Math.min(MAX_IMAGE_SIZE, (heightPixels + scale - 1) / scale));
+    }
+  }
+
+  /**
+   * An image that is being fetched, with the views waiting for it. Only the size and the decode flag are
+   * read off the main thread.
+   */
+  private static class PendingImage {
+
+    final ImageSize size;
+    final List<ImageView> targets = new ArrayList<>();
+
+    PendingImage(ImageSize size) {
+      this.size = size;
+    }
+  }
+}
@@ -0,0 +1,265 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Shader;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.util.LruCache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import timber.log.Timber;
+
+/**
+ * Downloads images, crops them to circular thumbnails of a fixed size and keeps the results in an LRU cache
+ * keyed by image id, so that loading the same images again doesn't touch the network.
+ * <p>
+ * Images are fetched in parallel on a bounded pool of threads with the given OkHttpClient, so a batch of
+ * images takes about as long as its slowest request. Decoding and cropping reuse Bitmaps from a
+ * {@link BitmapPool}: the decoded image is drawn as a circle straight into a pooled thumbnail Bitmap and
+ * handed back to the pool right away, and thumbnails that fall out of the cache are pooled as well.
+ * </p>
+ * <p>
+ * Thumbnails evicted from the cache may still be referenced by the result of the last {@link #load(Map)},
+ * so they're only handed to the pool once {@link #releaseEvicted()} is called.
+ * </p>
+ */
+public class ThumbnailPipeline {
+
+  private final OkHttpClient httpClient;
+  private final BitmapPool bitmapPool;
+  private final int thumbnailSize;
+  private final ExecutorService fetchExecutor;
+  private final LruCache<String, Bitmap> thumbnailCache;
+  private final List<Bitmap> evictedThumbnails = new ArrayList<>();
+  private final ThreadLocal<CircleCropper> croppers = new ThreadLocal<CircleCropper>() {
+    @Override
+    protected CircleCropper initialValue() {
+      return new CircleCropper();
+    }
+  };
+
+  /**
+   * @param httpClient         the client used to download the images
+   * @param bitmapPool         the pool used for decoded images and thumbnails
+   * @param thumbnailSize      the width and height of the thumbnails, in pixels
+   * @param maxParallelFetches the maximum number of images downloaded at the same time
+   * @param cacheSizeBytes     the maximum number of bytes the cached thumbnails may hold in total
+   */
+  public ThumbnailPipeline(@NonNull OkHttpClient httpClient, @NonNull BitmapPool bitmapPool, int thumbnailSize,
+                           int maxParallelFetches, int cacheSizeBytes) {
+    this.httpClient = httpClient;
+    this.bitmapPool = bitmapPool;
+    this.thumbnailSize = thumbnailSize;
+    this.fetchExecutor = Executors.newFixedThreadPool(maxParallelFetches);
+    this.thumbnailCache = new LruCache<String, Bitmap>(cacheSizeBytes) {
+      @Override
+      protected int sizeOf(String key, Bitmap value) {
+        return value.getByteCount();
+      }
+
+      @Override
+      protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+        if (oldValue != newValue) {
+          synchronized (evictedThumbnails) {
+            evictedThumbnails.add(oldValue);
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * Returns the circular thumbnails of a batch of images, from the cache where possible and downloaded in
+   * parallel otherwise. Blocks until all downloads are done, so call this from a background thread. Images
+   * that fail to load are logged and left out of the result.
+   *
+   * @param urlsByImageId the URLs of the images, keyed by image id
+   * @return the thumbnails keyed by image id
+   * @throws InterruptedException if the calling thread was interrupted, the remaining downloads are cancelled
+   */
+  @NonNull
+  public Map<String, Bitmap> load(@NonNull Map<String, String> urlsByImageId) throws InterruptedException {
+    Map<String, Bitmap> thumbnails = new HashMap<>();
+    Map<String, Future<Bitmap>> fetches = new HashMap<>();
+    for (Map.Entry<String, String> entry : urlsByImageId.entrySet()) {
+      Bitmap thumbnail = thumbnailCache.get(entry.getKey());
+      if (thumbnail != null) {
+        thumbnails.put(entry.getKey(), thumbnail);
+      } else {
+        fetches.put(entry.getKey(), fetchExecutor.submit(new FetchThumbnailTask(entry.getValue())));
+      }
+    }
+
+    try {
+      for (Map.Entry<String, Future<Bitmap>> fetch : fetches.entrySet()) {
+        try {
+          Bitmap thumbnail = fetch.getValue().get();
+          thumbnailCache.put(fetch.getKey(), thumbnail);
+          thumbnails.put(fetch.getKey(), thumbnail);
+        } catch (ExecutionException exception) {
+          Timber.e(exception.getCause(), "Unable to load thumbnail %s", fetch.getKey());
+        }
+      }
+    } finally {
+      // Cancels whatever is still running when the load was interrupted, finished fetches are unaffected
+      for (Future<Bitmap> fetch : fetches.values()) {
+        fetch.cancel(true);
+      }
+    }
+    Timber.d("Loaded %d thumbnails, %d from the cache", thumbnails.size(), urlsByImageId.size() - fetches.size());
+    return thumbnails;
+  }
+
+  /**
+   * Hands thumbnails that were evicted from the cache back to the pool. Call this once the thumbnails of
+   * the last {@link #load(Map)} have been copied, eg. by MapboxMap#addImage, and no other load is running.
+   */
+  public void releaseEvicted() {
+    synchronized (evictedThumbnails) {
+      for (Bitmap thumbnail : evictedThumbnails) {
+        bitmapPool.put(thumbnail);
+      }
+      evictedThumbnails.clear();
+    }
+  }
+
+  /**
+   * Cancels all downloads and drops the cached thumbnails. The pipeline can't be used afterwards.
+   */
+  public void shutdown() {
+    fetchExecutor.shutdownNow();
+    thumbnailCache.evictAll();
+    synchronized (evictedThumbnails) {
+      evictedThumbnails.clear();
+    }
+    bitmapPool.clear();
+  }
+
+  private Bitmap fetchThumbnail(String url) throws IOException {
+    Request request = new Request.Builder().url(url).build();
+    byte[] data;
+    Response response = httpClient.newCall(request).execute();
+    ResponseBody body = response.body();
+    try {
+      if (!response.isSuccessful() || body == null) {
+        throw new IOException("Unexpected response " + response.code() + " for " + url);
+      }
+      data = body.bytes();
+    } finally {
+      response.close();
+    }
+
+    Bitmap image = decode(data);
+    if (image == null) {
+      throw new IOException("Unable to decode " + url);
+    }
+    Bitmap thumbnail = bitmapPool.get(thumbnailSize, thumbnailSize, Bitmap.Config.ARGB_8888);
+    croppers.get().crop(image, thumbnail);
+    bitmapPool.put(image);
+    return thumbnail;
+  }
+
+  private Bitmap decode(byte[] data) {
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inJustDecodeBounds = true;
+    BitmapFactory.decodeByteArray(data, 0, data.length, options);
+
+    // Skip the rows and columns that wouldn't make it into the thumbnail anyway
+    int sampleSize = 1;
+    while (Math.min(options.outWidth, options.outHeight) / (sampleSize * 2) >= thumbnailSize) {
+      sampleSize *= 2;
+    }
+    options.inJustDecodeBounds = false;
+    options.inSampleSize = sampleSize;
+    options.inMutable = true;
+    options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+      Bitmap decoded = decodeIntoPooledBitmap(data, options);
+      if (decoded != null) {
+        return decoded;
+      }
+    }
+    return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+  }
+
+  @TargetApi(Build.VERSION_CODES.KITKAT)
+  private Bitmap decodeIntoPooledBitmap(byte[] data, BitmapFactory.Options options) {
+    int width = (options.outWidth + options.inSampleSize - 1) / options.inSampleSize;
+    int height = (options.outHeight + options.inSampleSize - 1) / options.inSampleSize;
+    Bitmap reusable = bitmapPool.get(width, height, Bitmap.Config.ARGB_8888);
+    options.inBitmap = reusable;
+    try {
+      return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    } catch (IllegalArgumentException exception) {
+      // The decoder couldn't reuse the Bitmap, eg. because the image is in an unsupported format
+      bitmapPool.put(reusable);
+      return null;
+    } finally {
+      options.inBitmap = null;
+    }
+  }
+
+  private class FetchThumbnailTask implements Callable<Bitmap> {
+
+    private final String url;
+
+    FetchThumbnailTask(String url) {
+      this.url = url;
+    }
+
+    @Override
+    public Bitmap call() throws IOException {
+      return fetchThumbnail(url);
+    }
+  }
+
+  /**
+   * Draws the center of an image, scaled to fill the target, as a circle. Holds its Canvas, Paint and Matrix
+   * so they're only allocated once per fetch thread.
+   */
+  private static class CircleCropper {
+
+    private final Canvas canvas = new Canvas();
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+    private final Matrix matrix = new Matrix();
+
+    void crop(Bitmap source, Bitmap target) {
+      float scale = Math.max((float) target.getWidth() / source.getWidth(),
+        (float) target.getHeight() / source.getHeight());
+      matrix.setScale(scale, scale);
+      matrix.postTranslate((target.getWidth() - source.getWidth() * scale) / 2f,
+        (target.getHeight() - source.getHeight() * scale) / 2f);
+
+      BitmapShader shader = new BitmapShader(source, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+      shader.setLocalMatrix(matrix);
+      paint.setShader(shader);
+
+      canvas.setBitmap(target);
+      float radius = Math.min(target.getWidth(), target.getHeight()) / 2f;
+      canvas.drawCircle(target.getWidth() / 2f, target.getHeight() / 2f, radius, paint);
+      canvas.setBitmap(null);
+      paint.setShader(null);
+    }
+  }
+}
@@ -0,0 +1,368 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+
+import com.mapbox.api.directions.v5.DirectionsCriteria;
+import com.mapbox.api.matching.v5.MapboxMapMatching;
+import com.mapbox.api.matching.v5.models.MapMatchingMatching;
+import com.mapbox.api.matching.v5.models.MapMatchingResponse;
+import com.mapbox.api.matching.v5.models.MapMatchingTracepoint;
+import com.mapbox.core.constants.Constants;
+import com.mapbox.geojson.Point;
+import com.mapbox.geojson.utils.PolylineUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import retrofit2.Response;
+import timber.log.Timber;
+
+/**
+ * Matches GPS traces of any length with the Mapbox Map Matching API, which only accepts a limited number of
+ * coordinates per request.
+ * <p>
+ * A long trace is split into windows that overlap by a few points, and the windows are matched in parallel
+ * on a bounded pool of threads. The matched geometries are stitched together at one trace point of each
+ * overlap, the one closest to its middle that both windows matched: the geometry of the earlier window is cut
+ * at the vertex closest to where that point was matched, and the geometry of the later window continues from
+ * its own closest vertex. As soon as the windows at the start of the trace and the window after them are
+ * matched, the stitched line so far is reported, so it can be shown while the rest is still being matched. A
+ * window that can't be matched is filled in with its raw trace points, so the line stays continuous.
+ * </p>
+ * <p>
+ * The base URL of the API can be changed, for example to point the matcher at a local mock server.
+ * Must be used from the main thread, where the {@link Listener} is called as well.
+ * </p>
+ */
+public class TraceMatcher {
+
+  /**
+   * The maximum number of coordinates the Map Matching API accepts in one request.
+   */
+  public static final int MAX_COORDINATES_PER_REQUEST = 100;
+
+  private static final int DEFAULT_OVERLAP = 10;
+  private static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+
+  /**
+   * Receives the matched trace, on the main thread.
+   */
+  public interface Listener {
+
+    /**
+     * Called every time more of the trace, counted from its start, has been matched.
+     *
+     * @param matchedPoints the stitched geometry of the first windows, owned by the matcher
+     * @param matchedWindowCount the number of windows included in the geometry
+     * @param windowCount the number of windows the trace was split into
+     */
+    void onPartialMatch(List<Point> matchedPoints, int matchedWindowCount, int windowCount);
+
+    /**
+     * Called once the whole trace has been matched, after the last {@link #onPartialMatch(List, int, int)}.
+     *
+     * @param matchedPoints the stitched geometry of the whole trace
+     * @param failedWindowCount the number of windows that couldn't be matched and show the raw trace instead
+     */
+    void onMatchComplete(List<Point> matchedPoints, int failedWindowCount);
+  }
+
+  private final String accessToken;
+  private final String profile;
+  private final String baseUrl;
+  private final int windowSize;
+  private final int overlap;
+  private final ExecutorService requestExecutor;
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private MatchJob currentJob;
+
+  /**
+   * Creates a matcher that uses the Mapbox API with windows of the maximum size.
+   *
+   * @param accessToken the Mapbox access token
+   * @param profile     the profile to match with, such as {@link DirectionsCriteria#PROFILE_DRIVING}
+   */
+  public TraceMatcher(@NonNull String accessToken, @NonNull String profile) {
+    this(accessToken, profile, Constants.BASE_API_URL, MAX_COORDINATES_PER_REQUEST, DEFAULT_OVERLAP,
+      DEFAULT_MAX_CONCURRENT_REQUESTS);
+  }
+
+  /**
+   * @param accessToken           the Mapbox access token
+   * @param profile               the profile to match with, such as {@link DirectionsCriteria#PROFILE_DRIVING}
+   * @param baseUrl               the base URL of the Map Matching API
+   * @param windowSize            the number of trace points per request, at most
+   *                              {@link #MAX_COORDINATES_PER_REQUEST}
+   * @param overlap               the number of trace points shared by neighbouring windows, at least 1
+   * @param maxConcurrentRequests the maximum number of requests in flight at the same time
+   */
+  public TraceMatcher(@NonNull String accessToken, @NonNull String profile, @NonNull String baseUrl,
+                      int windowSize, int overlap, int maxConcurrentRequests) {
+    if (windowSize < 2 || windowSize > MAX_COORDINATES_PER_REQUEST || overlap < 1 || overlap >= windowSize) {
+      throw new IllegalArgumentException("Invalid window size " + windowSize + " or overlap " + overlap);
+    }
+    this.accessToken = accessToken;
+    this.profile = profile;
+    this.baseUrl = baseUrl;
+    this.windowSize = windowSize;
+    this.overlap = overlap;
+    this.requestExecutor = Executors.newFixedThreadPool(maxConcurrentRequests);
+  }
+
+  /**
+   * Starts matching a trace, cancelling the trace that was being matched before.
+   *
+   * @param trace    the GPS trace, at least two points
+   * @param listener receives the matched geometry as it becomes available
+   */
+  public void match(@NonNull List<Point> trace, @NonNull Listener listener) {
+    cancel();
+    currentJob = new MatchJob(new ArrayList<>(trace), listener);
+    for (Window window : currentJob.windows) {
+      requestExecutor.execute(new MatchRequest(currentJob, window));
+    }
+  }
+
+  /**
+   * Stops reporting the trace that is being matched. Requests that have been sent still complete.
+   */
+  public void cancel() {
+    if (currentJob != null) {
+      currentJob.cancelled = true;
+      currentJob = null;
+    }
+  }
+
+  /**
+   * Cancels matching and stops the request threads. The matcher can't be used afterwards.
+   */
+  public void shutdown() {
+    cancel();
+    requestExecutor.shutdownNow();
+  }
+
+  private List<Window> createWindows(List<Point> trace) {
+    List<Window> windows = new ArrayList<>();
+    int step = windowSize - overlap;
+    int start = 0;
+    while (true) {
+      int end = Math.min(start + windowSize, trace.size());
+      windows.add(new Window(windows.size(), start, end));
+      if (end == trace.size()) {
+        return windows;
+      }
+      start += step;
+    }
+  }
+
+  /**
+   * Called on a request thread. Fills in the geometry of a window and where each of its trace points was
+   * matched, falling back to the raw trace points.
+   */
+  private void matchWindow(List<Point> trace, Window window) {
+    List<Point> coordinates = trace.subList(window.start, window.end);
+    try {
+      Response<MapMatchingResponse> response = MapboxMapMatching.builder()
+        .accessToken(accessToken)
+        .baseUrl(baseUrl)
+        .profile(profile)
+        .overview(DirectionsCriteria.OVERVIEW_FULL)
+        .coordinates(coordinates)
+        .build()
+        .executeCall();
+      MapMatchingResponse body = response.body();
+      if (response.isSuccessful() && body != null && body.matchings() != null && !body.matchings().isEmpty()) {
+        List<Point> geometry = new ArrayList<>();
+        for (MapMatchingMatching matching : body.matchings()) {
+          List<Point> decoded = PolylineUtils.decode(matching.geometry(), Constants.PRECISION_6);
+          if (decoded != null) {
+            geometry.addAll(decoded);
+          }
+        }
+        List<MapMatchingTracepoint> tracepoints = body.tracepoints();
+        Point[] snappedPoints = new Point[coordinates.size()];
+        for (int i = 0; tracepoints != null && i < tracepoints.size() && i < snappedPoints.length; i++) {
+          // Points that couldn't be matched are null
+          MapMatchingTracepoint tracepoint = tracepoints.get(i);
+          snappedPoints[i] = tracepoint != null ? tracepoint.location() : null;
+        }
+        if (!geometry.isEmpty()) {
+          window.geometry = geometry;
+          window.snappedPoints = snappedPoints;
+          return;
+        }
+      }
+      Timber.w("Unable to match window %d: HTTP %d", window.index, response.code());
+    } catch (Exception exception) {
+      Timber.w("Unable to match window %d: %s", window.index, exception.toString());
+    }
+    window.failed = true;
+    window.geometry = new ArrayList<>(coordinates);
+    window.snappedPoints = coordinates.toArray(new Point[coordinates.size()]);
+  }
+
+  /**
+   * Picks the trace point two neighbouring windows are stitched at: the point closest to the middle of their
+   * overlap that both of them matched, or the middle point if there is none. Both windows are cut at the same
+   * point, so the stitched line has no gap or doubled section there.
+   */
+  private int findSeamTraceIndex(Window window, Window nextWindow) {
+    int seamStart = nextWindow.start;
+    int seamEnd = Math.min(seamStart + overlap, window.end);
+    int middle = seamStart + (seamEnd - seamStart) / 2;
+    // Look outwards from the middle of the overlap for a point that was matched on both sides
+    for (int offset = 0; offset < 2 * overlap; offset++) {
+      int traceIndex = middle + ((offset & 1) == 0 ? offset / 2 : -(offset + 1) / 2);
+      if (traceIndex < seamStart || traceIndex >= seamEnd) {
+        continue;
+      }
+      if (window.snappedPoints[traceIndex - window.start] != null
+        && nextWindow.snappedPoints[traceIndex - nextWindow.start] != null) {
+        return traceIndex;
+      }
+    }
+    return middle;
+  }
+
+  /**
+   * Finds the vertex of a window's geometry closest to where a trace point was matched, or to the raw trace
+   * point if the window couldn't match it.
+   */
+  private static int findSeamVertex(List<Point> trace, Window window, int traceIndex) {
+    Point snappedPoint = window.snappedPoints[traceIndex - window.start];
+    return findClosestVertex(window.geometry, snappedPoint != null ? snappedPoint : trace.get(traceIndex));
+  }
+
+  private static int findClosestVertex(List<Point> geometry, Point point) {
+    int closest = 0;
+    double minDistance = Double.MAX_VALUE;
+    for (int i = 0; i < geometry.size(); i++) {
+      double dx = geometry.get(i).longitude() - point.longitude();
+      double dy = geometry.get(i).latitude() - point.latitude();
+      double distance = dx * dx + dy * dy;
+      if (distance < minDistance) {
+        minDistance = distance;
+        closest = i;
+      }
+    }
+    return closest;
+  }
+
+  /**
+   * A trace point range and, once matched, its geometry. Written on a request thread and read on the main
+   * thread after the result is posted.
+   */
+  private static class Window {
+
+    final int index;
+    final int start;
+    final int end;
+    List<Point> geometry;
+    Point[] snappedPoints;
+    boolean failed;
+
+    Window(int index, int start, int end) {
+      this.index = index;
+      this.start = start;
+      this.end = end;
+    }
+  }
+
+  /**
+   * The state of matching one trace. Only touched on the main thread, except for the windows.
+   */
+  private class MatchJob {
+
+    final List<Point> trace;
+    final Listener listener;
+    final List<Window> windows;
+    final boolean[] windowMatched;
+    final List<Point> matchedPoints = new ArrayList<>();
+    int stitchedWindowCount;
+    // The first vertex of the next window to stitch, past the seam it shares with the window before it
+    int nextWindowFrom;
+    int failedWindowCount;
+    volatile boolean cancelled;
+
+    MatchJob(List<Point> trace, Listener listener) {
+      this.trace = trace;
+      this.listener = listener;
+      this.windows = createWindows(trace);
+      this.windowMatched = new boolean[windows.size()];
+    }
+
+    void onWindowMatched(Window window) {
+      if (cancelled) {
+        return;
+      }
+      windowMatched[window.index] = true;
+      if (window.failed) {
+        failedWindowCount++;
+      }
+
+      // Windows can only be stitched in order, once all windows before them are there, and once the window
+      // after them is there to agree on the seam
+      int previousStitchedCount = stitchedWindowCount;
+      while (stitchedWindowCount < windows.size() && windowMatched[stitchedWindowCount]
+        && (stitchedWindowCount == windows.size() - 1 || windowMatched[stitchedWindowCount + 1])) {
+        stitch(windows.get(stitchedWindowCount));
+        stitchedWindowCount++;
+      }
+      if (stitchedWindowCount == previousStitchedCount) {
+        return;
+      }
+
+      listener.onPartialMatch(matchedPoints, stitchedWindowCount, windows.size());
+      if (stitchedWindowCount == windows.size()) {
+        listener.onMatchComplete(matchedPoints, failedWindowCount);
+        if (currentJob == this) {
+          currentJob = null;
+        }
+      }
+    }
+
+    private void stitch(Window window) {
+      // The earlier window already covers the geometry up to the seam vertex
+      int from = nextWindowFrom;
+      int to = window.geometry.size();
+      if (window.index < windows.size() - 1) {
+        Window nextWindow = windows.get(window.index + 1);
+        int seamTraceIndex = findSeamTraceIndex(window, nextWindow);
+        to = findSeamVertex(trace, window, seamTraceIndex) + 1;
+        nextWindowFrom = findSeamVertex(trace, nextWindow, seamTraceIndex) + 1;
+      }
+      if (from < to) {
+        matchedPoints.addAll(window.geometry.subList(from, to));
+      }
+    }
+  }
+
+  private class MatchRequest implements Runnable {
+
+    private final MatchJob job;
+    private final Window window;
+
+    MatchRequest(MatchJob job, Window window) {
+      this.job = job;
+      this.window = window;
+    }
+
+    @Override
+    public void run() {
+      if (job.cancelled) {
+        return;
+      }
+      matchWindow(job.trace, window);
+      mainHandler.post(new Runnable() {
+        @Override
+        public void run() {
+          job.onWindowMatched(window);
+        }
+      });
+    }
+  }
+}
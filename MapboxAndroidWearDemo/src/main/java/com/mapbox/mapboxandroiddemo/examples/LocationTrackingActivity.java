@@ -1,18 +1,12 @@
 package com.mapbox.mapboxandroiddemo.examples;
 
 
-import android.annotation.SuppressLint;
-import android.location.Location;
 import android.os.Bundle;
 import android.support.wearable.activity.WearableActivity;
 
-import com.mapbox.android.core.location.LocationEngine;
-import com.mapbox.android.core.location.LocationEngineListener;
-import com.mapbox.android.core.location.LocationEngineProvider;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.WearLocationTracker;
 import com.mapbox.mapboxsdk.Mapbox;
-import com.mapbox.mapboxsdk.camera.CameraUpdateFactory;
-import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
 import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
@@ -23,9 +17,7 @@ import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
 public class LocationTrackingActivity extends WearableActivity {
 
   private MapView mapView;
-  private MapboxMap map;
-  private LocationEngine locationEngine;
-  private LocationEngineListener locationEngineListener;
+  private WearLocationTracker locationTracker;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -41,38 +33,16 @@ public class LocationTrackingActivity extends WearableActivity {
     mapView = findViewById(R.id.mapView);
     mapView.onCreate(savedInstanceState);
 
-    LocationEngineProvider locationEngineProvider = new LocationEngineProvider(this);
-    locationEngine = locationEngineProvider.obtainBestLocationEngineAvailable();
-
-    locationEngineListener = new LocationEngineListener() {
-      @SuppressLint("MissingPermission")
-      @Override
-      public void onConnected() {
-        locationEngine.requestLocationUpdates();
-      }
-
-      @Override
-      public void onLocationChanged(Location location) {
-        if (map != null) {
-          map.moveCamera(CameraUpdateFactory.newLatLngZoom(new LatLng(location), 16));
-        }
-      }
-    };
+    // Tracks the location with one location engine, and moves the camera less often in ambient mode
+    locationTracker = new WearLocationTracker(this);
     mapView.getMapAsync(new OnMapReadyCallback() {
       @Override
       public void onMapReady(MapboxMap mapboxMap) {
 
         // Customize map with markers, polylines, etc.
-        map = mapboxMap;
-        @SuppressLint("MissingPermission")
-        Location lastLocation = new LocationEngineProvider(LocationTrackingActivity.this)
-          .obtainBestLocationEngineAvailable().getLastLocation();
-        if (lastLocation != null) {
-          map.moveCamera(CameraUpdateFactory.newLatLngZoom(new LatLng(lastLocation), 16));
-        }
+        locationTracker.setMap(mapboxMap);
       }
     });
-    locationEngine.addLocationEngineListener(locationEngineListener);
     setAmbientEnabled();
   }
 
@@ -98,13 +68,12 @@ public class LocationTrackingActivity extends WearableActivity {
   protected void onStart() {
     super.onStart();
     mapView.onStart();
-    locationEngine.activate();
+    locationTracker.start();
   }
 
   @Override
   protected void onStop() {
-    locationEngine.removeLocationUpdates();
-    locationEngine.deactivate();
+    locationTracker.stop();
     super.onStop();
     mapView.onStop();
   }
@@ -112,9 +81,28 @@ public class LocationTrackingActivity extends WearableActivity {
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    locationTracker.release();
     mapView.onDestroy();
   }
 
+  @Override
+  public void onEnterAmbient(Bundle ambientDetails) {
+    super.onEnterAmbient(ambientDetails);
+    locationTracker.setAmbient(true);
+  }
+
+  @Override
+  public void onUpdateAmbient() {
+    super.onUpdateAmbient();
+    locationTracker.onUpdateAmbient();
+  }
+
+  @Override
+  public void onExitAmbient() {
+    super.onExitAmbient();
+    locationTracker.setAmbient(false);
+  }
+
   @Override
   protected void onSaveInstanceState(Bundle outState) {
     super.onSaveInstanceState(outState);
@@ -0,0 +1,228 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.location.Location;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.mapbox.android.core.location.LocationEngine;
+import com.mapbox.android.core.location.LocationEngineListener;
+import com.mapbox.android.core.location.LocationEnginePriority;
+import com.mapbox.android.core.location.LocationEngineProvider;
+import com.mapbox.mapboxsdk.camera.CameraPosition;
+import com.mapbox.mapboxsdk.camera.CameraUpdateFactory;
+import com.mapbox.mapboxsdk.geometry.LatLng;
+import com.mapbox.mapboxsdk.maps.MapboxMap;
+
+/**
+ * Keeps the camera of a map centered on the location of the watch, with as little battery as it needs.
+ * <p>
+ * One {@link LocationEngine} is created and shared for the last known location and for the updates.
+ * Fixes that moved the location less than a few meters, and didn't turn the heading noticeably, don't move
+ * the camera. In ambient mode, location updates are requested less often and with less accuracy, and the
+ * camera only moves when the screen is updated in {@link #onUpdateAmbient()}, about once a minute, to the
+ * latest fix. The number of fixes and of camera updates is counted, to measure what tracking costs.
+ * </p>
+ * <p>
+ * The activity forwards its lifecycle and ambient callbacks to {@link #start()}, {@link #stop()},
+ * {@link #setAmbient(boolean)} and {@link #onUpdateAmbient()}.
+ * </p>
+ */
+public class WearLocationTracker implements LocationEngineListener {
+
+  private static final String TAG = "WearLocationTracker";
+
+  private static final double TRACKING_ZOOM = 16;
+
+  private static final int INTERACTIVE_INTERVAL_MILLIS = 1000;
+  private static final int INTERACTIVE_FASTEST_INTERVAL_MILLIS = 500;
+  private static final float INTERACTIVE_MIN_DISPLACEMENT_METERS = 2;
+  private static final float INTERACTIVE_MIN_CAMERA_DISTANCE_METERS = 5;
+  private static final float INTERACTIVE_MIN_CAMERA_BEARING_DEGREES = 15;
+
+  // The screen of an ambient activity is updated about once a minute
+  private static final int AMBIENT_INTERVAL_MILLIS = 60000;
+  private static final int AMBIENT_FASTEST_INTERVAL_MILLIS = 30000;
+  private static final float AMBIENT_MIN_DISPLACEMENT_METERS = 20;
+  private static final float AMBIENT_MIN_CAMERA_DISTANCE_METERS = 20;
+
+  private final LocationEngine locationEngine;
+  private MapboxMap map;
+  private boolean started;
+  private boolean ambient;
+  private Location lastCameraLocation;
+  private Location pendingLocation;
+  private long fixCount;
+  private long cameraUpdateCount;
+
+  public WearLocationTracker(@NonNull Context context) {
+    locationEngine = new LocationEngineProvider(context).obtainBestLocationEngineAvailable();
+    locationEngine.addLocationEngineListener(this);
+    applyPowerProfile();
+  }
+
+  /**
+   * Sets the map whose camera follows the location, and moves it to the last known location right away.
+   */
+  public void setMap(@NonNull MapboxMap map) {
+    this.map = map;
+    Location lastLocation = getLastLocation();
+    if (lastLocation != null) {
+      moveCamera(lastLocation);
+    }
+  }
+
+  /**
+   * @return the last location the shared location engine knows, or null
+   */
+  @SuppressLint("MissingPermission")
+  @Nullable
+  public Location getLastLocation() {
+    return locationEngine.getLastLocation();
+  }
+
+  /**
+   * Starts receiving location updates, from {@code onStart()}.
+   */
+  public void start() {
+    started = true;
+    locationEngine.activate();
+    if (locationEngine.isConnected()) {
+      requestLocationUpdates();
+    }
+  }
+
+  /**
+   * Stops receiving location updates, from {@code onStop()}.
+   */
+  public void stop() {
+    started = false;
+    locationEngine.removeLocationUpdates();
+    locationEngine.deactivate();
+    Log.d(TAG, "Applied " + cameraUpdateCount + " camera updates for " + fixCount + " location fixes");
+  }
+
+  /**
+   * Stops using the location engine for good, from {@code onDestroy()}.
+   */
+  public void release() {
+    locationEngine.removeLocationEngineListener(this);
+    map = null;
+  }
+
+  /**
+   * Switches between the update rates of ambient and interactive mode. Leaving ambient mode moves the
+   * camera to the latest fix right away.
+   */
+  public void setAmbient(boolean ambient) {
+    if (this.ambient == ambient) {
+      return;
+    }
+    this.ambient = ambient;
+    applyPowerProfile();
+    if (started && locationEngine.isConnected()) {
+      // The new interval and priority only apply to a new request
+      locationEngine.removeLocationUpdates();
+      requestLocationUpdates();
+    }
+    if (!ambient && pendingLocation != null) {
+      moveCamera(pendingLocation);
+    }
+  }
+
+  /**
+   * Moves the camera to the latest fix, if it moved far enough, when the ambient screen is updated.
+   */
+  public void onUpdateAmbient() {
+    if (pendingLocation != null && movedEnough(pendingLocation, AMBIENT_MIN_CAMERA_DISTANCE_METERS, 360)) {
+      moveCamera(pendingLocation);
+    }
+  }
+
+  /**
+   * @return the number of location fixes received
+   */
+  public long getFixCount() {
+    return fixCount;
+  }
+
+  /**
+   * @return the number of times the camera was moved, which is at most the number of fixes
+   */
+  public long getCameraUpdateCount() {
+    return cameraUpdateCount;
+  }
+
+  public void resetCounters() {
+    fixCount = 0;
+    cameraUpdateCount = 0;
+  }
+
+  @Override
+  public void onConnected() {
+    if (started) {
+      requestLocationUpdates();
+    }
+  }
+
+  @Override
+  public void onLocationChanged(Location location) {
+    fixCount++;
+    pendingLocation = location;
+    if (!ambient && movedEnough(location, INTERACTIVE_MIN_CAMERA_DISTANCE_METERS,
+      INTERACTIVE_MIN_CAMERA_BEARING_DEGREES)) {
+      moveCamera(location);
+    }
+  }
+
+  @SuppressLint("MissingPermission")
+  private void requestLocationUpdates() {
+    locationEngine.requestLocationUpdates();
+  }
+
+  private void applyPowerProfile() {
+    if (ambient) {
+      locationEngine.setPriority(LocationEnginePriority.BALANCED_POWER_ACCURACY);
+      locationEngine.setInterval(AMBIENT_INTERVAL_MILLIS);
+      locationEngine.setFastestInterval(AMBIENT_FASTEST_INTERVAL_MILLIS);
+      locationEngine.setSmallestDisplacement(AMBIENT_MIN_DISPLACEMENT_METERS);
+    } else {
+      locationEngine.setPriority(LocationEnginePriority.HIGH_ACCURACY);
+      locationEngine.setInterval(INTERACTIVE_INTERVAL_MILLIS);
+      locationEngine.setFastestInterval(INTERACTIVE_FASTEST_INTERVAL_MILLIS);
+      locationEngine.setSmallestDisplacement(INTERACTIVE_MIN_DISPLACEMENT_METERS);
+    }
+  }
+
+  private boolean movedEnough(Location location, float minDistanceMeters, float minBearingDegrees) {
+    if (lastCameraLocation == null) {
+      return true;
+    }
+    if (lastCameraLocation.distanceTo(location) >= minDistanceMeters) {
+      return true;
+    }
+    if (!location.hasBearing() || !lastCameraLocation.hasBearing()) {
+      return false;
+    }
+    double bearingChange = Math.abs(location.getBearing() - lastCameraLocation.getBearing()) % 360;
+    return Math.min(bearingChange, 360 - bearingChange) >= minBearingDegrees;
+  }
+
+  private void moveCamera(Location location) {
+    pendingLocation = null;
+    if (map == null) {
+      return;
+    }
+    CameraPosition.Builder position = new CameraPosition.Builder()
+      .target(new LatLng(location))
+      .zoom(TRACKING_ZOOM);
+    if (location.hasBearing()) {
+      position.bearing(location.getBearing());
+    }
+    map.moveCamera(CameraUpdateFactory.newCameraPosition(position.build()));
+    lastCameraLocation = location;
+    cameraUpdateCount++;
+  }
+}
@@ -0,0 +1,53 @@
+package com.mapbox.mapboxandroiddemo.commons;
+
+import java.util.Map;
+
+/**
+ * A single analytics call, as buffered by the {@link AnalyticsEventQueue} and stored in the
+ * {@link AnalyticsEventLog}. Instances are reused as slots of the queue, so an event must be copied before
+ * the slot is handed back.
+ */
+final class AnalyticsEvent {
+
+  static final int TYPE_TRACK = 0;
+  static final int TYPE_SCREEN = 1;
+  static final int TYPE_IDENTIFY = 2;
+
+  int type;
+  String name;
+  String userId;
+  long timestamp;
+  // The common case of a single property is kept in two fields, so it doesn't need a Map per event
+  String propertyKey;
+  String propertyValue;
+  Map<String, String> properties;
+
+  void set(int type, String name, String userId, String propertyKey, String propertyValue,
+           Map<String, String> properties) {
+    this.type = type;
+    this.name = name;
+    this.userId = userId;
+    this.timestamp = System.currentTimeMillis();
+    this.propertyKey = propertyKey;
+    this.propertyValue = propertyValue;
+    this.properties = properties;
+  }
+
+  void copyFrom(AnalyticsEvent event) {
+    type = event.type;
+    name = event.name;
+    userId = event.userId;
+    timestamp = event.timestamp;
+    propertyKey = event.propertyKey;
+    propertyValue = event.propertyValue;
+    properties = event.properties;
+  }
+
+  void clear() {
+    name = null;
+    userId = null;
+    propertyKey = null;
+    propertyValue = null;
+    properties = null;
+  }
+}
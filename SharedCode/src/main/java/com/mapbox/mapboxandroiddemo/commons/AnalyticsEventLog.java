@@ -0,0 +1,249 @@
+package com.mapbox.mapboxandroiddemo.commons;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only file of analytics events that haven't been handed to Segment yet, so that they survive the
+ * process being killed and can be kept while the device is offline.
+ * <p>
+ * Every event is one line of tab separated fields. When the file grows beyond its maximum size, the oldest
+ * events are dropped. Only used from the flush thread of the {@link AnalyticsEventQueue}.
+ * </p>
+ */
+final class AnalyticsEventLog {
+
+  private static final String TAG = "AnalyticsEventLog";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final String NULL_FIELD = "\\N";
+  private static final int FIXED_FIELD_COUNT = 4;
+
+  private final File file;
+  private final long maxSizeBytes;
+
+  /**
+   * @param file         the file to store the events in
+   * @param maxSizeBytes the size above which the oldest events are dropped
+   */
+  AnalyticsEventLog(File file, long maxSizeBytes) {
+    this.file = file;
+    this.maxSizeBytes = maxSizeBytes;
+  }
+
+  /**
+   * Appends events to the end of the file and syncs it to disk.
+   */
+  void append(AnalyticsEvent[] events, int count) throws IOException {
+    File directory = file.getParentFile();
+    if (directory != null && !directory.exists() && !directory.mkdirs()) {
+      throw new IOException("Unable to create " + directory);
+    }
+
+    FileOutputStream outputStream = new FileOutputStream(file, true);
+    try {
+      Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, UTF_8));
+      StringBuilder line = new StringBuilder();
+      for (int i = 0; i < count; i++) {
+        line.setLength(0);
+        encode(events[i], line);
+        writer.write(line.toString());
+      }
+      writer.flush();
+      outputStream.getFD().sync();
+    } finally {
+      outputStream.close();
+    }
+
+    if (file.length() > maxSizeBytes) {
+      dropOldest();
+    }
+  }
+
+  /**
+   * Reads all stored events, oldest first.
+   */
+  List<AnalyticsEvent> readAll() throws IOException {
+    List<AnalyticsEvent> events = new ArrayList<>();
+    if (!file.exists()) {
+      return events;
+    }
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        AnalyticsEvent event = decode(line);
+        if (event != null) {
+          events.add(event);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return events;
+  }
+
+  /**
+   * Removes all stored events, once they've been handed over.
+   */
+  void clear() {
+    if (file.exists() && !file.delete()) {
+      Log.e(TAG, "Unable to delete " + file);
+    }
+  }
+
+  private void dropOldest() throws IOException {
+    // Keep the newest lines that fit in half of the maximum size, so this doesn't run on every append
+    ArrayDeque<String> lines = new ArrayDeque<>();
+    long keptBytes = 0;
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lines.addLast(line);
+        keptBytes += line.length() + 1;
+        while (keptBytes > maxSizeBytes / 2 && !lines.isEmpty()) {
+          keptBytes -= lines.removeFirst().length() + 1;
+        }
+      }
+    } finally {
+      reader.close();
+    }
+
+    File tempFile = new File(file.getPath() + ".tmp");
+    Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), UTF_8));
+    try {
+      for (String line : lines) {
+        writer.write(line);
+        writer.write('\n');
+      }
+    } finally {
+      writer.close();
+    }
+    if (!tempFile.renameTo(file)) {
+      throw new IOException("Unable to replace " + file);
+    }
+  }
+
+  private static void encode(AnalyticsEvent event, StringBuilder line) {
+    line.append(event.type).append('\t').append(event.timestamp).append('\t');
+    appendField(line, event.name);
+    line.append('\t');
+    appendField(line, event.userId);
+    if (event.propertyKey != null) {
+      line.append('\t');
+      appendField(line, event.propertyKey);
+      line.append('\t');
+      appendField(line, event.propertyValue);
+    }
+    if (event.properties != null) {
+      for (Map.Entry<String, String> property : event.properties.entrySet()) {
+        line.append('\t');
+        appendField(line, property.getKey());
+        line.append('\t');
+        appendField(line, property.getValue());
+      }
+    }
+    line.append('\n');
+  }
+
+  private static void appendField(StringBuilder line, String value) {
+    if (value == null) {
+      line.append(NULL_FIELD);
+      return;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      char character = value.charAt(i);
+      switch (character) {
+        case '\\':
+          line.append("\\\\");
+          break;
+        case '\t':
+          line.append("\\t");
+          break;
+        case '\n':
+          line.append("\\n");
+          break;
+        case '\r':
+          line.append("\\r");
+          break;
+        default:
+          line.append(character);
+      }
+    }
+  }
+
+  private static AnalyticsEvent decode(String line) {
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean escaped = false;
+    boolean isNull = false;
+    for (int i = 0; i <= line.length(); i++) {
+      if (i == line.length() || (!escaped && line.charAt(i) == '\t')) {
+        fields.add(isNull ? null : field.toString());
+        field.setLength(0);
+        isNull = false;
+        continue;
+      }
+      char character = line.charAt(i);
+      if (escaped) {
+        escaped = false;
+        switch (character) {
+          case 't':
+            field.append('\t');
+            break;
+          case 'n':
+            field.append('\n');
+            break;
+          case 'r':
+            field.append('\r');
+            break;
+          case 'N':
+            isNull = true;
+            break;
+          default:
+            field.append(character);
+        }
+      } else if (character == '\\') {
+        escaped = true;
+      } else {
+        field.append(character);
+      }
+    }
+
+    if (fields.size() < FIXED_FIELD_COUNT) {
+      // A line that was only partly written when the process died
+      return null;
+    }
+    AnalyticsEvent event = new AnalyticsEvent();
+    try {
+      event.type = Integer.parseInt(fields.get(0));
+      event.timestamp = Long.parseLong(fields.get(1));
+    } catch (NumberFormatException exception) {
+      return null;
+    }
+    event.name = fields.get(2);
+    event.userId = fields.get(3);
+    if (fields.size() > FIXED_FIELD_COUNT) {
+      event.properties = new HashMap<>();
+      for (int i = FIXED_FIELD_COUNT; i + 1 < fields.size(); i += 2) {
+        event.properties.put(fields.get(i), fields.get(i + 1));
+      }
+    }
+    return event;
+  }
+}
@@ -0,0 +1,217 @@
+package com.mapbox.mapboxandroiddemo.commons;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Buffers analytics events in memory and hands them to a {@link Sender} in batches, either when enough
+ * events have been collected or after a fixed interval, whichever comes first.
+ * <p>
+ * The buffer is split into a few stripes, each a fixed size ring of reusable {@link AnalyticsEvent} slots,
+ * so recording an event takes a short, mostly uncontended lock and allocates nothing. When a stripe is full,
+ * its oldest event is dropped. On every flush, the buffered events are first appended to an
+ * {@link AnalyticsEventLog}, and only removed from it once they've been handed to the Sender. In offline
+ * mode, events stay in the log until offline mode is turned off again.
+ * </p>
+ */
+final class AnalyticsEventQueue {
+
+  private static final String TAG = "AnalyticsEventQueue";
+  private static final int STRIPE_COUNT = 4;
+  private static final int STRIPE_CAPACITY = 64;
+
+  /**
+   * Delivers batches of events, called on the flush thread.
+   */
+  interface Sender {
+    void send(AnalyticsEvent event);
+
+    void flush();
+  }
+
+  private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+  private final AnalyticsEvent[] batch = new AnalyticsEvent[STRIPE_COUNT * STRIPE_CAPACITY];
+  private final AnalyticsEventLog eventLog;
+  private final Sender sender;
+  private final int batchSize;
+  private final ScheduledExecutorService flushExecutor;
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+  private final Runnable flushRunnable = new Runnable() {
+    @Override
+    public void run() {
+      flushScheduled.set(false);
+      flushNow();
+    }
+  };
+  private volatile boolean offline;
+
+  /**
+   * @param eventLog             the log the events are persisted in until they're sent
+   * @param sender               the destination of the events
+   * @param batchSize            the number of buffered events in a stripe that triggers a flush
+   * @param flushIntervalSeconds the interval at which buffered events are flushed anyway
+   */
+  AnalyticsEventQueue(AnalyticsEventLog eventLog, Sender sender, int batchSize, long flushIntervalSeconds) {
+    this.eventLog = eventLog;
+    this.sender = sender;
+    this.batchSize = Math.min(batchSize, STRIPE_CAPACITY);
+    for (int i = 0; i < STRIPE_COUNT; i++) {
+      stripes[i] = new Stripe();
+    }
+    for (int i = 0; i < batch.length; i++) {
+      batch[i] = new AnalyticsEvent();
+    }
+
+    flushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "analytics-flush");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+      }
+    });
+    // Sends the events that were left in the log when the process was last stopped
+    flushExecutor.scheduleWithFixedDelay(flushRunnable, 0, flushIntervalSeconds, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Records an event. Never blocks on I/O.
+   */
+  void offer(int type, String name, String userId, String propertyKey, String propertyValue,
+             Map<String, String> properties) {
+    Stripe stripe = stripes[(int) (Thread.currentThread().getId() & (STRIPE_COUNT - 1))];
+    int size;
+    synchronized (stripe) {
+      size = stripe.add(type, name, userId, propertyKey, propertyValue, properties);
+    }
+    if (size >= batchSize) {
+      scheduleFlush();
+    }
+  }
+
+  /**
+   * While offline, events are only stored in the log. Turning offline mode off sends them.
+   */
+  void setOffline(boolean offline) {
+    this.offline = offline;
+    if (!offline) {
+      scheduleFlush();
+    }
+  }
+
+  /**
+   * Flushes the buffered events on the flush thread as soon as possible.
+   */
+  void scheduleFlush() {
+    if (flushScheduled.compareAndSet(false, true)) {
+      flushExecutor.execute(flushRunnable);
+    }
+  }
+
+  private void flushNow() {
+    int count = 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        count = stripe.drainTo(batch, count);
+      }
+    }
+
+    try {
+      if (count > 0) {
+        eventLog.append(batch, count);
+      }
+    } catch (IOException exception) {
+      // Still send the events, they're only not safe from the process being killed
+      Log.e(TAG, "Unable to store analytics events: " + exception.toString());
+      if (!offline) {
+        for (int i = 0; i < count; i++) {
+          sender.send(batch[i]);
+        }
+        sender.flush();
+      }
+      clearBatch(count);
+      return;
+    }
+    clearBatch(count);
+
+    if (!offline) {
+      sendLoggedEvents();
+    }
+  }
+
+  private void sendLoggedEvents() {
+    try {
+      List<AnalyticsEvent> events = eventLog.readAll();
+      if (events.isEmpty()) {
+        return;
+      }
+      for (AnalyticsEvent event : events) {
+        sender.send(event);
+      }
+      sender.flush();
+      eventLog.clear();
+    } catch (IOException exception) {
+      Log.e(TAG, "Unable to read stored analytics events: " + exception.toString());
+    }
+  }
+
+  private void clearBatch(int count) {
+    for (int i = 0; i < count; i++) {
+      batch[i].clear();
+    }
+  }
+
+  /**
+   * A ring of reusable event slots. Guarded by its own monitor.
+   */
+  private static final class Stripe {
+
+    private final AnalyticsEvent[] slots = new AnalyticsEvent[STRIPE_CAPACITY];
+    private int head;
+    private int size;
+    private int droppedCount;
+
+    Stripe() {
+      for (int i = 0; i < slots.length; i++) {
+        slots[i] = new AnalyticsEvent();
+      }
+    }
+
+    int add(int type, String name, String userId, String propertyKey, String propertyValue,
+            Map<String, String> properties) {
+      if (size == slots.length) {
+        // Back pressure, the oldest event makes room for the newest one
+        head = (head + 1) % slots.length;
+        size--;
+        droppedCount++;
+      }
+      slots[(head + size) % slots.length].set(type, name, userId, propertyKey, propertyValue, properties);
+      size++;
+      return size;
+    }
+
+    int drainTo(AnalyticsEvent[] target, int offset) {
+      if (droppedCount > 0) {
+        Log.w(TAG, "Dropped " + droppedCount + " analytics events");
+        droppedCount = 0;
+      }
+      for (int i = 0; i < size; i++) {
+        AnalyticsEvent slot = slots[(head + i) % slots.length];
+        target[offset++].copyFrom(slot);
+        slot.clear();
+      }
+      head = 0;
+      size = 0;
+      return offset;
+    }
+  }
+}
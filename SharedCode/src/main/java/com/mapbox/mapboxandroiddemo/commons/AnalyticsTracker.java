@@ -1,6 +1,8 @@
 package com.mapbox.mapboxandroiddemo.commons;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.content.SharedPreferences;
 import android.os.Build;
 import android.preference.PreferenceManager;
@@ -8,15 +10,26 @@ import android.support.annotation.NonNull;
 
 import com.segment.analytics.Analytics;
 import com.segment.analytics.messages.IdentifyMessage;
+import com.segment.analytics.messages.MessageBuilder;
 import com.segment.analytics.messages.ScreenMessage;
 import com.segment.analytics.messages.TrackMessage;
 
+import java.io.File;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 
 /**
  * This class abstracts various analytics calls to Segment analytics' Java library.
+ * <p>
+ * Calls are buffered in memory and handed to Segment in batches by an {@link AnalyticsEventQueue}. Every
+ * batch is first written to a file and kept there until it's sent, so written events survive the device
+ * being offline and the app being killed. Batches are written after 20 events, every 30 seconds, and as
+ * soon as the app's UI is hidden, so only the events of the last 30 seconds can be lost if the process dies
+ * while the app is in the foreground.
+ * </p>
  */
 
 public class AnalyticsTracker {
@@ -45,9 +58,15 @@ public class AnalyticsTracker {
   private static final String IS_WEARABLE_VALUE = "wearable";
   private static final String MAPBOX_SHARED_PREFERENCE_KEY_ANALYTICS_ENABLED = "mapboxAnalyticsEnabled";
   private static final String MAPBOX_SHARED_PREFERENCES_FILE = "MapboxSharedPreferences";
+  private static final String EVENT_LOG_FILE_NAME = "analytics/events.log";
+  private static final long EVENT_LOG_MAX_SIZE_BYTES = 256 * 1024;
+  private static final int EVENT_BATCH_SIZE = 20;
+  private static final long EVENT_FLUSH_INTERVAL_SECONDS = 30;
+  private static final String NOT_LOGGED_IN = "not logged in";
   private static String MAPBOX_USERNAME;
   private Boolean analyticsEnabled;
   private Boolean deviceIsWearable;
+  private AnalyticsEventQueue eventQueue;
 
   /**
    * Initializes instance of AnalyticsTracker class
@@ -64,6 +83,11 @@ public class AnalyticsTracker {
           } else {
             analytics = Analytics.builder(context.getString(R.string.mapbox_segment_write_key)).build();
           }
+          File eventLogFile = new File(context.getApplicationContext().getFilesDir(), EVENT_LOG_FILE_NAME);
+          analyticsInstance.eventQueue = new AnalyticsEventQueue(
+            new AnalyticsEventLog(eventLogFile, EVENT_LOG_MAX_SIZE_BYTES), new SegmentSender(),
+            EVENT_BATCH_SIZE, EVENT_FLUSH_INTERVAL_SECONDS);
+          context.getApplicationContext().registerComponentCallbacks(analyticsInstance.new FlushOnHideCallbacks());
         }
       }
     }
@@ -102,10 +126,7 @@ public class AnalyticsTracker {
     } else {
       properties.put("size", isTablet ? IS_TABLET_MAP_VALUE : IS_PHONE_MAP_VALUE);
     }
-    analytics.enqueue(TrackMessage.builder("New install")
-      .userId(loggedIn ? MAPBOX_USERNAME : "not logged in")
-      .properties(properties)
-    );
+    eventQueue.offer(AnalyticsEvent.TYPE_TRACK, "New install", getUserId(loggedIn), null, null, properties);
   }
 
   /**
@@ -126,9 +147,7 @@ public class AnalyticsTracker {
    * @param exampleName Name of the selected example
    */
   public void clickedOnIndividualExample(@NonNull String exampleName, boolean loggedIn) {
-    if (deviceIsWearable) {
-      trackEventWithProperties(CLICKED_ON_INDIVIDUAL_EXAMPLE_EVENT_NAME, EXAMPLE_NAME_MAP_KEY, exampleName, loggedIn);
-    } else if (isAnalyticsEnabled()) {
+    if (deviceIsWearable || isAnalyticsEnabled()) {
       trackEventWithProperties(CLICKED_ON_INDIVIDUAL_EXAMPLE_EVENT_NAME, EXAMPLE_NAME_MAP_KEY, exampleName, loggedIn);
     }
   }
@@ -148,7 +167,7 @@ public class AnalyticsTracker {
 
   /**
    * Makes an analytics call telling Segment what custom-named event has happened. Custom parameters provided
-   * are also included in the call.
+   * are also included in the call. Callers check whether analytics are enabled.
    *
    * @param eventName             Name of the event that's being recorded
    * @param keyForPropertiesMap   Key to the property being attached to the event that's being called
@@ -156,18 +175,11 @@ public class AnalyticsTracker {
    */
   private void trackEventWithProperties(@NonNull String eventName, String keyForPropertiesMap,
                                         String valueForPropertiesMap, boolean loggedIn) {
-    if (isAnalyticsEnabled()) {
-
-      if (keyForPropertiesMap == null || valueForPropertiesMap == null) {
-        analytics.enqueue(TrackMessage.builder(eventName)
-          .userId(loggedIn ? MAPBOX_USERNAME : "not logged in"));
-      }
-      if (keyForPropertiesMap != null && valueForPropertiesMap != null) {
-        Map<String, String> properties = new HashMap<>();
-        properties.put(keyForPropertiesMap, valueForPropertiesMap);
-        analytics.enqueue(TrackMessage.builder(eventName).userId(loggedIn ? MAPBOX_USERNAME : "not logged in")
-          .properties(properties));
-      }
+    if (keyForPropertiesMap == null || valueForPropertiesMap == null) {
+      eventQueue.offer(AnalyticsEvent.TYPE_TRACK, eventName, getUserId(loggedIn), null, null, null);
+    } else {
+      eventQueue.offer(AnalyticsEvent.TYPE_TRACK, eventName, getUserId(loggedIn), keyForPropertiesMap,
+        valueForPropertiesMap, null);
     }
   }
 
@@ -179,10 +191,8 @@ public class AnalyticsTracker {
    */
   public void viewedScreen(String nameOfScreen, boolean loggedIn) {
 
-    if (deviceIsWearable) {
-      analytics.enqueue(ScreenMessage.builder(nameOfScreen).userId(loggedIn ? MAPBOX_USERNAME : "not logged in"));
-    } else if (isAnalyticsEnabled()) {
-      analytics.enqueue(ScreenMessage.builder(nameOfScreen).userId(loggedIn ? MAPBOX_USERNAME : "not logged in"));
+    if (deviceIsWearable || isAnalyticsEnabled()) {
+      eventQueue.offer(AnalyticsEvent.TYPE_SCREEN, nameOfScreen, getUserId(loggedIn), null, null, null);
     }
   }
 
@@ -193,16 +203,27 @@ public class AnalyticsTracker {
    */
   public void identifyUser(@NonNull String userEmailAddress) {
     if (isAnalyticsEnabled()) {
-      Map<String, String> traits = new HashMap<>();
-      traits.put("email", userEmailAddress);
-
-      analytics.enqueue(IdentifyMessage.builder()
-        .userId(MAPBOX_USERNAME)
-        .traits(traits)
-      );
+      eventQueue.offer(AnalyticsEvent.TYPE_IDENTIFY, null, MAPBOX_USERNAME, "email", userEmailAddress, null);
     }
   }
 
+  /**
+   * While offline, analytics calls are only stored on the device. They're sent once offline mode is turned
+   * off again.
+   *
+   * @param offline true to hold back analytics calls, false to send them
+   */
+  public void setOfflineMode(boolean offline) {
+    eventQueue.setOffline(offline);
+  }
+
+  /**
+   * Sends the buffered analytics calls as soon as possible, eg. before the app goes to the background.
+   */
+  public void flush() {
+    eventQueue.scheduleFlush();
+  }
+
   /**
    * Returns the opt-out status for the current device and analytics client combination.
    */
@@ -235,4 +256,65 @@ public class AnalyticsTracker {
     return context.getSharedPreferences(
       AnalyticsTracker.MAPBOX_SHARED_PREFERENCES_FILE, Context.MODE_PRIVATE);
   }
-}
\ No newline at end of file
+
+  private static String getUserId(boolean loggedIn) {
+    return loggedIn ? MAPBOX_USERNAME : NOT_LOGGED_IN;
+  }
+
+  /**
+   * Turns buffered events into Segment messages, on the flush thread of the {@link AnalyticsEventQueue}.
+   */
+  private static class SegmentSender implements AnalyticsEventQueue.Sender {
+
+    @Override
+    public void send(AnalyticsEvent event) {
+      Map<String, String> properties = event.properties;
+      if (properties == null && event.propertyKey != null) {
+        properties = Collections.singletonMap(event.propertyKey, event.propertyValue);
+      }
+
+      MessageBuilder builder;
+      switch (event.type) {
+        case AnalyticsEvent.TYPE_SCREEN:
+          builder = ScreenMessage.builder(event.name);
+          break;
+        case AnalyticsEvent.TYPE_IDENTIFY:
+          builder = properties != null ? IdentifyMessage.builder().traits(properties) : IdentifyMessage.builder();
+          break;
+        default:
+          builder = properties != null
+            ? TrackMessage.builder(event.name).properties(properties) : TrackMessage.builder(event.name);
+      }
+      analytics.enqueue(builder.userId(event.userId).timestamp(new Date(event.timestamp)));
+    }
+
+    @Override
+    public void flush() {
+      analytics.flush();
+    }
+  }
+
+  /**
+   * Writes the buffered events to the log as soon as the UI is hidden, since a process in the background
+   * can be killed at any time.
+   */
+  private class FlushOnHideCallbacks implements ComponentCallbacks2 {
+
+    @Override
+    public void onTrimMemory(int level) {
+      if (level >= TRIM_MEMORY_UI_HIDDEN) {
+        eventQueue.scheduleFlush();
+      }
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+      // Left empty on purpose
+    }
+
+    @Override
+    public void onLowMemory() {
+      eventQueue.scheduleFlush();
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package com.mapbox.mapboxandroiddemo.commons;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.gson.JsonElement;
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Constant time lookup of the Features of a {@link FeatureCollection} by their id or by the value of a name
+ * property, for example to find the Feature that was returned by MapboxMap#queryRenderedFeatures.
+ * <p>
+ * Build the index once when the data is loaded. It keeps the positions of the Features in the collection,
+ * so it has to be built again if Features are added, removed or reordered. When several Features share a
+ * name, the first one wins.
+ * </p>
+ */
+public final class FeatureIndex {
+
+  private final List<Feature> features;
+  private final String nameProperty;
+  private final Map<String, Integer> positionsById;
+  private final Map<String, Integer> positionsByName;
+
+  private FeatureIndex(List<Feature> features, String nameProperty) {
+    this.features = features;
+    this.nameProperty = nameProperty;
+    this.positionsById = new HashMap<>(features.size() * 4 / 3 + 1);
+    this.positionsByName = new HashMap<>(features.size() * 4 / 3 + 1);
+    for (int i = 0; i < features.size(); i++) {
+      Feature feature = features.get(i);
+      String id = feature.id();
+      if (id != null && !positionsById.containsKey(id)) {
+        positionsById.put(id, i);
+      }
+      String name = getName(feature);
+      if (name != null && !positionsByName.containsKey(name)) {
+        positionsByName.put(name, i);
+      }
+    }
+  }
+
+  /**
+   * Builds an index over all Features of a collection.
+   *
+   * @param featureCollection the collection to index
+   * @param nameProperty      the String property that identifies a Feature by name, eg. "title"
+   * @return the index
+   */
+  @NonNull
+  public static FeatureIndex build(@NonNull FeatureCollection featureCollection, @NonNull String nameProperty) {
+    List<Feature> features = featureCollection.features();
+    return new FeatureIndex(features != null ? features : Collections.<Feature>emptyList(), nameProperty);
+  }
+
+  /**
+   * @param id the id of a Feature
+   * @return the position of the Feature in the collection, or -1 if there is none with this id
+   */
+  public int indexOfId(@Nullable String id) {
+    return getPosition(positionsById, id);
+  }
+
+  /**
+   * @param name the value of the name property of a Feature
+   * @return the position of the Feature in the collection, or -1 if there is none with this name
+   */
+  public int indexOfName(@Nullable String name) {
+    return getPosition(positionsByName, name);
+  }
+
+  /**
+   * Finds the position of the indexed Feature that matches a Feature, such as one returned by a query of
+   * the rendered features, which is a copy of the original. The id is used if present, the name otherwise.
+   *
+   * @param feature the Feature to look up
+   * @return the position of the matching Feature in the collection, or -1 if there is none
+   */
+  public int indexOf(@NonNull Feature feature) {
+    int position = indexOfId(feature.id());
+    return position != -1 ? position : indexOfName(getName(feature));
+  }
+
+  /**
+   * @param name the value of the name property of a Feature
+   * @return the Feature with this name, or null if there is none
+   */
+  @Nullable
+  public Feature getByName(@Nullable String name) {
+    int position = indexOfName(name);
+    return position != -1 ? features.get(position) : null;
+  }
+
+  /**
+   * @param feature the Feature to look up
+   * @return the indexed Feature that matches it, or null if there is none
+   */
+  @Nullable
+  public Feature get(@NonNull Feature feature) {
+    int position = indexOf(feature);
+    return position != -1 ? features.get(position) : null;
+  }
+
+  private String getName(Feature feature) {
+    if (!feature.hasNonNullValueForProperty(nameProperty)) {
+      return null;
+    }
+    JsonElement name = feature.getProperty(nameProperty);
+    return name.isJsonPrimitive() ? name.getAsString() : null;
+  }
+
+  private static int getPosition(Map<String, Integer> positions, String key) {
+    if (key == null) {
+      return -1;
+    }
+    Integer position = positions.get(key);
+    return position != null ? position : -1;
+  }
+}
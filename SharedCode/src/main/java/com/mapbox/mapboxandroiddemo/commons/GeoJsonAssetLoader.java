@@ -0,0 +1,505 @@
+package com.mapbox.mapboxandroiddemo.commons;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.support.annotation.NonNull;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.geojson.Geometry;
+import com.mapbox.geojson.GeometryCollection;
+import com.mapbox.geojson.LineString;
+import com.mapbox.geojson.MultiLineString;
+import com.mapbox.geojson.MultiPoint;
+import com.mapbox.geojson.MultiPolygon;
+import com.mapbox.geojson.Point;
+import com.mapbox.geojson.Polygon;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads GeoJSON files from the assets folder without ever holding the whole file in memory as a String.
+ * <p>
+ * The first time an asset is requested, it's parsed as a stream and written to the app's cache directory
+ * in a compact binary form. Every later load memory-maps that file and rebuilds the
+ * {@link FeatureCollection} straight from it, so JSON parsing is skipped completely. The cached file is
+ * invalidated whenever the app is reinstalled or updated.
+ * </p>
+ * <p>
+ * Coordinates are stored as longitude/latitude pairs, so any altitude values in the source file are dropped.
+ * </p>
+ */
+public final class GeoJsonAssetLoader {
+
+  private static final String CACHE_DIRECTORY_NAME = "geojson";
+  private static final String CACHE_FILE_EXTENSION = ".bin";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final int MAGIC = 0x474a5342; // "GJSB"
+  private static final int FORMAT_VERSION = 1;
+
+  private static final byte RECORD_END = 0;
+  private static final byte RECORD_FEATURE = 1;
+
+  private static final byte GEOMETRY_NONE = 0;
+  private static final byte GEOMETRY_POINT = 1;
+  private static final byte GEOMETRY_MULTI_POINT = 2;
+  private static final byte GEOMETRY_LINE_STRING = 3;
+  private static final byte GEOMETRY_MULTI_LINE_STRING = 4;
+  private static final byte GEOMETRY_POLYGON = 5;
+  private static final byte GEOMETRY_MULTI_POLYGON = 6;
+  private static final byte GEOMETRY_COLLECTION = 7;
+
+  private static final byte VALUE_NULL = 0;
+  private static final byte VALUE_BOOLEAN = 1;
+  private static final byte VALUE_LONG = 2;
+  private static final byte VALUE_DOUBLE = 3;
+  private static final byte VALUE_STRING = 4;
+  private static final byte VALUE_JSON = 5;
+
+  private GeoJsonAssetLoader() {
+    // No instances
+  }
+
+  /**
+   * Returns the contents of a GeoJSON asset as a {@link FeatureCollection}. A single top-level Feature or
+   * Geometry is wrapped in a collection of one. This does disk I/O and should be called off the main thread.
+   *
+   * @param context   used to open the asset and to locate the cache directory
+   * @param assetName name of the file in the assets folder, for example "la_hotels.geojson"
+   * @return the parsed FeatureCollection
+   * @throws IOException if the asset can't be read or isn't valid GeoJSON
+   */
+  @NonNull
+  public static FeatureCollection loadFeatureCollection(@NonNull Context context,
+                                                        @NonNull String assetName) throws IOException {
+    File cacheFile = ensureCacheFile(context.getApplicationContext(), assetName);
+    return readCacheFile(cacheFile);
+  }
+
+  private static synchronized File ensureCacheFile(Context context, String assetName) throws IOException {
+    File directory = new File(context.getCacheDir(), CACHE_DIRECTORY_NAME);
+    File cacheFile = new File(directory, assetName + CACHE_FILE_EXTENSION);
+    long sourceStamp = getSourceStamp(context);
+    if (isCacheFileValid(cacheFile, sourceStamp)) {
+      return cacheFile;
+    }
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Unable to create GeoJSON cache directory " + directory);
+    }
+
+    // Write to a temporary file first so that a half-written cache is never picked up
+    File temporaryFile = new File(directory, assetName + CACHE_FILE_EXTENSION + ".tmp");
+    InputStream inputStream = context.getAssets().open(assetName);
+    DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)));
+    try {
+      output.writeInt(MAGIC);
+      output.writeInt(FORMAT_VERSION);
+      output.writeLong(sourceStamp);
+      JsonReader reader = new JsonReader(new InputStreamReader(inputStream, UTF_8));
+      try {
+        writeRoot(reader, output);
+      } finally {
+        reader.close();
+      }
+      output.writeByte(RECORD_END);
+    } catch (IOException | RuntimeException exception) {
+      output.close();
+      temporaryFile.delete();
+      throw exception instanceof IOException ? (IOException) exception
+        : new IOException("Unable to parse " + assetName, exception);
+    }
+    output.close();
+    if (!temporaryFile.renameTo(cacheFile)) {
+      temporaryFile.delete();
+      throw new IOException("Unable to write GeoJSON cache file " + cacheFile);
+    }
+    return cacheFile;
+  }
+
+  private static long getSourceStamp(Context context) {
+    try {
+      return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+    } catch (PackageManager.NameNotFoundException exception) {
+      return BuildConfig.VERSION_CODE;
+    }
+  }
+
+  private static boolean isCacheFileValid(File cacheFile, long sourceStamp) {
+    if (!cacheFile.isFile()) {
+      return false;
+    }
+    try {
+      RandomAccessFile file = new RandomAccessFile(cacheFile, "r");
+      try {
+        return file.readInt() == MAGIC && file.readInt() == FORMAT_VERSION && file.readLong() == sourceStamp;
+      } finally {
+        file.close();
+      }
+    } catch (IOException exception) {
+      return false;
+    }
+  }
+
+  //
+  // Streaming JSON -> binary
+  //
+
+  private static void writeRoot(JsonReader reader, DataOutputStream output) throws IOException {
+    JsonParser parser = new JsonParser();
+    String type = null;
+    JsonElement id = null;
+    JsonElement properties = null;
+    JsonElement geometry = null;
+    JsonElement geometries = null;
+    JsonElement coordinates = null;
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if ("features".equals(name)) {
+        // Feature objects are parsed one at a time, so only a single feature is ever held in memory
+        reader.beginArray();
+        while (reader.hasNext()) {
+          writeFeature(parser.parse(reader).getAsJsonObject(), output);
+        }
+        reader.endArray();
+      } else if ("type".equals(name)) {
+        type = reader.nextString();
+      } else if ("id".equals(name)) {
+        id = parser.parse(reader);
+      } else if ("properties".equals(name)) {
+        properties = parser.parse(reader);
+      } else if ("geometry".equals(name)) {
+        geometry = parser.parse(reader);
+      } else if ("geometries".equals(name)) {
+        geometries = parser.parse(reader);
+      } else if ("coordinates".equals(name)) {
+        coordinates = parser.parse(reader);
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+
+    if ("Feature".equals(type)) {
+      JsonObject feature = new JsonObject();
+      feature.add("id", id);
+      feature.add("properties", properties);
+      feature.add("geometry", geometry);
+      writeFeature(feature, output);
+    } else if (type != null && !"FeatureCollection".equals(type)) {
+      JsonObject geometryObject = new JsonObject();
+      geometryObject.addProperty("type", type);
+      geometryObject.add("coordinates", coordinates);
+      geometryObject.add("geometries", geometries);
+      JsonObject feature = new JsonObject();
+      feature.add("geometry", geometryObject);
+      writeFeature(feature, output);
+    }
+  }
+
+  private static void writeFeature(JsonObject feature, DataOutputStream output) throws IOException {
+    output.writeByte(RECORD_FEATURE);
+
+    JsonElement id = feature.get("id");
+    writeNullableString(output, id == null || id.isJsonNull() ? null : id.getAsString());
+
+    JsonElement properties = feature.get("properties");
+    if (properties == null || !properties.isJsonObject()) {
+      output.writeInt(0);
+    } else {
+      JsonObject propertiesObject = properties.getAsJsonObject();
+      output.writeInt(propertiesObject.size());
+      for (Map.Entry<String, JsonElement> entry : propertiesObject.entrySet()) {
+        writeString(output, entry.getKey());
+        writeValue(output, entry.getValue());
+      }
+    }
+
+    writeGeometry(output, feature.get("geometry"));
+  }
+
+  private static void writeValue(DataOutputStream output, JsonElement value) throws IOException {
+    if (value == null || value.isJsonNull()) {
+      output.writeByte(VALUE_NULL);
+    } else if (value.isJsonPrimitive()) {
+      JsonPrimitive primitive = value.getAsJsonPrimitive();
+      if (primitive.isBoolean()) {
+        output.writeByte(VALUE_BOOLEAN);
+        output.writeBoolean(primitive.getAsBoolean());
+      } else if (primitive.isNumber()) {
+        String literal = primitive.getAsString();
+        if (isIntegerLiteral(literal)) {
+          output.writeByte(VALUE_LONG);
+          output.writeLong(primitive.getAsLong());
+        } else {
+          output.writeByte(VALUE_DOUBLE);
+          output.writeDouble(primitive.getAsDouble());
+        }
+      } else {
+        output.writeByte(VALUE_STRING);
+        writeString(output, primitive.getAsString());
+      }
+    } else {
+      // Nested objects and arrays are rare in the demo data, so they're kept as raw JSON
+      output.writeByte(VALUE_JSON);
+      writeString(output, value.toString());
+    }
+  }
+
+  private static boolean isIntegerLiteral(String literal) {
+    int length = literal.length();
+    if (length == 0 || length > 18) {
+      return false;
+    }
+    for (int i = literal.charAt(0) == '-' ? 1 : 0; i < length; i++) {
+      char character = literal.charAt(i);
+      if (character < '0' || character > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void writeGeometry(DataOutputStream output, JsonElement geometry) throws IOException {
+    if (geometry == null || !geometry.isJsonObject()) {
+      output.writeByte(GEOMETRY_NONE);
+      return;
+    }
+    JsonObject geometryObject = geometry.getAsJsonObject();
+    String type = geometryObject.get("type").getAsString();
+    if ("GeometryCollection".equals(type)) {
+      JsonArray geometries = geometryObject.getAsJsonArray("geometries");
+      output.writeByte(GEOMETRY_COLLECTION);
+      output.writeInt(geometries.size());
+      for (JsonElement child : geometries) {
+        writeGeometry(output, child);
+      }
+      return;
+    }
+
+    JsonArray coordinates = geometryObject.getAsJsonArray("coordinates");
+    switch (type) {
+      case "Point":
+        output.writeByte(GEOMETRY_POINT);
+        writePosition(output, coordinates);
+        break;
+      case "MultiPoint":
+        output.writeByte(GEOMETRY_MULTI_POINT);
+        writePositions(output, coordinates);
+        break;
+      case "LineString":
+        output.writeByte(GEOMETRY_LINE_STRING);
+        writePositions(output, coordinates);
+        break;
+      case "MultiLineString":
+        output.writeByte(GEOMETRY_MULTI_LINE_STRING);
+        writePositionLists(output, coordinates);
+        break;
+      case "Polygon":
+        output.writeByte(GEOMETRY_POLYGON);
+        writePositionLists(output, coordinates);
+        break;
+      case "MultiPolygon":
+        output.writeByte(GEOMETRY_MULTI_POLYGON);
+        output.writeInt(coordinates.size());
+        for (JsonElement polygon : coordinates) {
+          writePositionLists(output, polygon.getAsJsonArray());
+        }
+        break;
+      default:
+        throw new IOException("Unsupported geometry type " + type);
+    }
+  }
+
+  private static void writePositionLists(DataOutputStream output, JsonArray lists) throws IOException {
+    output.writeInt(lists.size());
+    for (JsonElement list : lists) {
+      writePositions(output, list.getAsJsonArray());
+    }
+  }
+
+  private static void writePositions(DataOutputStream output, JsonArray positions) throws IOException {
+    output.writeInt(positions.size());
+    for (JsonElement position : positions) {
+      writePosition(output, position.getAsJsonArray());
+    }
+  }
+
+  private static void writePosition(DataOutputStream output, JsonArray position) throws IOException {
+    output.writeDouble(position.get(0).getAsDouble());
+    output.writeDouble(position.get(1).getAsDouble());
+  }
+
+  private static void writeNullableString(DataOutputStream output, String value) throws IOException {
+    if (value == null) {
+      output.writeInt(-1);
+    } else {
+      writeString(output, value);
+    }
+  }
+
+  private static void writeString(DataOutputStream output, String value) throws IOException {
+    byte[] bytes = value.getBytes(UTF_8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  //
+  // Memory-mapped binary -> FeatureCollection
+  //
+
+  private static FeatureCollection readCacheFile(File cacheFile) throws IOException {
+    FileInputStream inputStream = new FileInputStream(cacheFile);
+    MappedByteBuffer buffer;
+    try {
+      FileChannel channel = inputStream.getChannel();
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } finally {
+      // The mapping stays valid after the channel is closed
+      inputStream.close();
+    }
+
+    try {
+      // Skip the header, it was already validated in ensureCacheFile()
+      buffer.position(16);
+      List<Feature> features = new ArrayList<>();
+      while (buffer.get() == RECORD_FEATURE) {
+        features.add(readFeature(buffer));
+      }
+      return FeatureCollection.fromFeatures(features);
+    } catch (RuntimeException exception) {
+      // Corrupt or truncated file, make sure it's rebuilt on the next load
+      cacheFile.delete();
+      throw new IOException("Unable to read GeoJSON cache file " + cacheFile, exception);
+    }
+  }
+
+  private static Feature readFeature(ByteBuffer buffer) {
+    String id = readNullableString(buffer);
+    int propertyCount = buffer.getInt();
+    JsonObject properties = new JsonObject();
+    for (int i = 0; i < propertyCount; i++) {
+      String key = readString(buffer);
+      byte valueType = buffer.get();
+      switch (valueType) {
+        case VALUE_BOOLEAN:
+          properties.addProperty(key, buffer.get() != 0);
+          break;
+        case VALUE_LONG:
+          properties.addProperty(key, buffer.getLong());
+          break;
+        case VALUE_DOUBLE:
+          properties.addProperty(key, buffer.getDouble());
+          break;
+        case VALUE_STRING:
+          properties.addProperty(key, readString(buffer));
+          break;
+        case VALUE_JSON:
+          properties.add(key, new JsonParser().parse(readString(buffer)));
+          break;
+        default:
+          properties.add(key, JsonNull.INSTANCE);
+          break;
+      }
+    }
+    return Feature.fromGeometry(readGeometry(buffer), properties, id);
+  }
+
+  private static Geometry readGeometry(ByteBuffer buffer) {
+    byte type = buffer.get();
+    switch (type) {
+      case GEOMETRY_POINT:
+        return readPoint(buffer);
+      case GEOMETRY_MULTI_POINT:
+        return MultiPoint.fromLngLats(readPoints(buffer));
+      case GEOMETRY_LINE_STRING:
+        return LineString.fromLngLats(readPoints(buffer));
+      case GEOMETRY_MULTI_LINE_STRING:
+        return MultiLineString.fromLngLats(readPointLists(buffer));
+      case GEOMETRY_POLYGON:
+        return Polygon.fromLngLats(readPointLists(buffer));
+      case GEOMETRY_MULTI_POLYGON:
+        int polygonCount = buffer.getInt();
+        List<List<List<Point>>> polygons = new ArrayList<>(polygonCount);
+        for (int i = 0; i < polygonCount; i++) {
+          polygons.add(readPointLists(buffer));
+        }
+        return MultiPolygon.fromLngLats(polygons);
+      case GEOMETRY_COLLECTION:
+        int geometryCount = buffer.getInt();
+        List<Geometry> geometries = new ArrayList<>(geometryCount);
+        for (int i = 0; i < geometryCount; i++) {
+          geometries.add(readGeometry(buffer));
+        }
+        return GeometryCollection.fromGeometries(geometries);
+      default:
+        return null;
+    }
+  }
+
+  private static List<List<Point>> readPointLists(ByteBuffer buffer) {
+    int listCount = buffer.getInt();
+    List<List<Point>> lists = new ArrayList<>(listCount);
+    for (int i = 0; i < listCount; i++) {
+      lists.add(readPoints(buffer));
+    }
+    return lists;
+  }
+
+  private static List<Point> readPoints(ByteBuffer buffer) {
+    int pointCount = buffer.getInt();
+    List<Point> points = new ArrayList<>(pointCount);
+    for (int i = 0; i < pointCount; i++) {
+      points.add(readPoint(buffer));
+    }
+    return points;
+  }
+
+  private static Point readPoint(ByteBuffer buffer) {
+    double longitude = buffer.getDouble();
+    double latitude = buffer.getDouble();
+    return Point.fromLngLat(longitude, latitude);
+  }
+
+  private static String readNullableString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0) {
+      return null;
+    }
+    return readString(buffer, length);
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    return readString(buffer, buffer.getInt());
+  }
+
+  private static String readString(ByteBuffer buffer, int length) {
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, UTF_8);
+  }
+}
@@ -0,0 +1,180 @@
+package com.mapbox.mapboxandroiddemo.commons;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.mapbox.mapboxsdk.geometry.LatLngBounds;
+import com.mapbox.mapboxsdk.offline.OfflineManager;
+import com.mapbox.mapboxsdk.offline.OfflineRegion;
+import com.mapbox.mapboxsdk.offline.OfflineRegionError;
+import com.mapbox.mapboxsdk.offline.OfflineRegionStatus;
+import com.mapbox.mapboxsdk.offline.OfflineTilePyramidRegionDefinition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores offline regions with the Mapbox {@link OfflineManager}.
+ */
+public final class MapboxOfflineRegionBackend implements OfflineRegionBackend {
+
+  private static final String TAG = "MapboxOfflineBackend";
+
+  private final OfflineManager offlineManager;
+
+  public MapboxOfflineRegionBackend(@NonNull Context context) {
+    offlineManager = OfflineManager.getInstance(context);
+  }
+
+  @Override
+  public void createRegion(@NonNull String styleUrl, @NonNull LatLngBounds bounds, double minZoom, double maxZoom,
+                           float pixelRatio, @NonNull byte[] metadata, @NonNull final CreateCallback callback) {
+    OfflineTilePyramidRegionDefinition definition = new OfflineTilePyramidRegionDefinition(
+      styleUrl, bounds, minZoom, maxZoom, pixelRatio);
+    offlineManager.createOfflineRegion(definition, metadata, new OfflineManager.CreateOfflineRegionCallback() {
+      @Override
+      public void onCreate(OfflineRegion offlineRegion) {
+        callback.onCreate(new MapboxRegion(offlineRegion));
+      }
+
+      @Override
+      public void onError(String error) {
+        callback.onError(error);
+      }
+    });
+  }
+
+  @Override
+  public void listRegions(@NonNull final ListCallback callback) {
+    offlineManager.listOfflineRegions(new OfflineManager.ListOfflineRegionsCallback() {
+      @Override
+      public void onList(OfflineRegion[] offlineRegions) {
+        List<Region> regions = new ArrayList<>();
+        if (offlineRegions != null) {
+          for (OfflineRegion offlineRegion : offlineRegions) {
+            regions.add(new MapboxRegion(offlineRegion));
+          }
+        }
+        callback.onList(regions);
+      }
+
+      @Override
+      public void onError(String error) {
+        callback.onError(error);
+      }
+    });
+  }
+
+  private static class MapboxRegion implements Region {
+
+    private final OfflineRegion offlineRegion;
+
+    MapboxRegion(OfflineRegion offlineRegion) {
+      this.offlineRegion = offlineRegion;
+    }
+
+    @Override
+    public long getId() {
+      return offlineRegion.getID();
+    }
+
+    @Override
+    public byte[] getMetadata() {
+      return offlineRegion.getMetadata();
+    }
+
+    @Override
+    public void updateMetadata(byte[] metadata) {
+      offlineRegion.updateMetadata(metadata, new OfflineRegion.OfflineRegionUpdateMetadataCallback() {
+        @Override
+        public void onUpdate(byte[] metadata) {
+          // Nothing to do, the region keeps the new metadata
+        }
+
+        @Override
+        public void onError(String error) {
+          Log.e(TAG, "Unable to update the metadata of region " + offlineRegion.getID() + ": " + error);
+        }
+      });
+    }
+
+    @Override
+    public LatLngBounds getBounds() {
+      return getDefinition().getBounds();
+    }
+
+    @Override
+    public double getMinZoom() {
+      return getDefinition().getMinZoom();
+    }
+
+    @Override
+    public double getMaxZoom() {
+      return getDefinition().getMaxZoom();
+    }
+
+    @Override
+    public void getStatus(final StatusCallback callback) {
+      offlineRegion.getStatus(new OfflineRegion.OfflineRegionStatusCallback() {
+        @Override
+        public void onStatus(OfflineRegionStatus status) {
+          callback.onStatus(status.isComplete(), status.getCompletedResourceSize());
+        }
+
+        @Override
+        public void onError(String error) {
+          callback.onError(error);
+        }
+      });
+    }
+
+    @Override
+    public void startDownload(final ProgressObserver observer) {
+      offlineRegion.setObserver(new OfflineRegion.OfflineRegionObserver() {
+        @Override
+        public void onStatusChanged(OfflineRegionStatus status) {
+          observer.onProgress(status.getCompletedResourceCount(), status.getRequiredResourceCount(),
+            status.getCompletedResourceSize(), status.isRequiredResourceCountPrecise(), status.isComplete());
+        }
+
+        @Override
+        public void onError(OfflineRegionError error) {
+          observer.onError(error.getReason() + ": " + error.getMessage());
+        }
+
+        @Override
+        public void mapboxTileCountLimitExceeded(long limit) {
+          observer.onTileCountLimitExceeded(limit);
+        }
+      });
+      offlineRegion.setDownloadState(OfflineRegion.STATE_ACTIVE);
+    }
+
+    @Override
+    public void stopDownload() {
+      offlineRegion.setDownloadState(OfflineRegion.STATE_INACTIVE);
+      offlineRegion.setObserver(null);
+    }
+
+    @Override
+    public void delete(final DeleteCallback callback) {
+      offlineRegion.delete(new OfflineRegion.OfflineRegionDeleteCallback() {
+        @Override
+        public void onDelete() {
+          callback.onDelete();
+        }
+
+        @Override
+        public void onError(String error) {
+          callback.onError(error);
+        }
+      });
+    }
+
+    private OfflineTilePyramidRegionDefinition getDefinition() {
+      // Regions are only created with tile pyramid definitions
+      return (OfflineTilePyramidRegionDefinition) offlineRegion.getDefinition();
+    }
+  }
+}
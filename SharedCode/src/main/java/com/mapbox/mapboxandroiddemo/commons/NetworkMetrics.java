@@ -0,0 +1,128 @@
+package com.mapbox.mapboxandroiddemo.commons;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Collects the request latency and the connection reuse of all calls made through the
+ * {@link NetworkModule}'s OkHttpClient. Screens that make many requests log a summary with
+ * {@link #logSummary(String)} when they are closed.
+ */
+public class NetworkMetrics {
+
+  private static final String TAG = "NetworkMetrics";
+
+  private final Set<Connection> seenConnections =
+    Collections.newSetFromMap(new WeakHashMap<Connection, Boolean>());
+  private final ThreadLocal<Boolean> connectionReused = new ThreadLocal<>();
+  private long requestCount;
+  private long networkRequestCount;
+  private long reusedConnectionCount;
+  private long cacheHitCount;
+  private long totalLatencyMillis;
+
+  NetworkMetrics() {
+  }
+
+  /**
+   * @return the number of finished requests
+   */
+  public synchronized long getRequestCount() {
+    return requestCount;
+  }
+
+  /**
+   * @return the fraction of requests sent to the network that used an already open connection
+   */
+  public synchronized float getConnectionReuseRate() {
+    return networkRequestCount == 0 ? 0 : (float) reusedConnectionCount / networkRequestCount;
+  }
+
+  /**
+   * @return the fraction of requests that were answered from the HTTP cache without contacting the server
+   */
+  public synchronized float getCacheHitRate() {
+    return requestCount == 0 ? 0 : (float) cacheHitCount / requestCount;
+  }
+
+  /**
+   * @return the average time from sending a request to receiving the response headers, in milliseconds
+   */
+  public synchronized long getAverageLatencyMillis() {
+    return requestCount == 0 ? 0 : totalLatencyMillis / requestCount;
+  }
+
+  /**
+   * Logs the number of requests of the shared client so far, with their average latency, connection reuse
+   * and cache hit rate.
+   *
+   * @param screenName the name of the screen the summary is logged for
+   */
+  public synchronized void logSummary(@NonNull String screenName) {
+    Log.d(TAG, String.format(Locale.US, "%s: %d requests, average latency %d ms, %.0f%% reused connections,"
+        + " %.0f%% cache hits", screenName, requestCount, getAverageLatencyMillis(),
+      getConnectionReuseRate() * 100, getCacheHitRate() * 100));
+  }
+
+  /**
+   * Measures the latency of a call, including redirects, retries and cache lookups.
+   */
+  Interceptor createApplicationInterceptor() {
+    return new Interceptor() {
+      @Override
+      public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        connectionReused.remove();
+        long start = System.nanoTime();
+        Response response = chain.proceed(request);
+        long latencyMillis = (System.nanoTime() - start) / 1000000;
+        onRequestFinished(latencyMillis, connectionReused.get(), response.networkResponse() == null);
+        connectionReused.remove();
+        return response;
+      }
+    };
+  }
+
+  /**
+   * Records whether the connection of a network request was used before. The interceptor chain of a call
+   * runs on a single thread, so the result is handed to the application interceptor through a ThreadLocal.
+   */
+  Interceptor createNetworkInterceptor() {
+    return new Interceptor() {
+      @Override
+      public Response intercept(Chain chain) throws IOException {
+        Connection connection = chain.connection();
+        if (connection != null) {
+          synchronized (seenConnections) {
+            connectionReused.set(!seenConnections.add(connection));
+          }
+        }
+        return chain.proceed(chain.request());
+      }
+    };
+  }
+
+  private synchronized void onRequestFinished(long latencyMillis, Boolean reused, boolean cacheHit) {
+    requestCount++;
+    totalLatencyMillis += latencyMillis;
+    if (cacheHit) {
+      cacheHitCount++;
+    } else if (reused != null) {
+      networkRequestCount++;
+      if (reused) {
+        reusedConnectionCount++;
+      }
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package com.mapbox.mapboxandroiddemo.commons;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * Owns the single OkHttpClient of the app, so that all requests share one connection pool, one set of
+ * dispatcher threads and one HTTP disk cache, instead of every screen opening its own connections.
+ * <p>
+ * Retrofit instances are built on top of the same client and kept per base URL. Responses are requested
+ * gzip compressed and decompressed transparently by OkHttp. Asynchronous calls are limited per host, so a
+ * single slow API can't take up all of the dispatcher's threads.
+ * </p>
+ */
+public final class NetworkModule {
+
+  private static final String HTTP_CACHE_DIRECTORY_NAME = "http";
+  private static final long HTTP_CACHE_SIZE_BYTES = 10 * 1024 * 1024;
+  private static final int MAX_IDLE_CONNECTIONS = 8;
+  private static final long KEEP_ALIVE_DURATION_MINUTES = 5;
+  private static final int MAX_REQUESTS = 32;
+  private static final int MAX_REQUESTS_PER_HOST = 6;
+
+  private static volatile NetworkModule networkModuleInstance;
+
+  private final OkHttpClient okHttpClient;
+  private final NetworkMetrics metrics;
+  private final Map<String, Retrofit> retrofitsByBaseUrl = new HashMap<>();
+
+  private NetworkModule(Context context) {
+    Dispatcher dispatcher = new Dispatcher();
+    dispatcher.setMaxRequests(MAX_REQUESTS);
+    dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+
+    metrics = new NetworkMetrics();
+    okHttpClient = new OkHttpClient.Builder()
+      .dispatcher(dispatcher)
+      .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_DURATION_MINUTES, TimeUnit.MINUTES))
+      .cache(new Cache(new File(context.getCacheDir(), HTTP_CACHE_DIRECTORY_NAME), HTTP_CACHE_SIZE_BYTES))
+      .addInterceptor(metrics.createApplicationInterceptor())
+      .addNetworkInterceptor(metrics.createNetworkInterceptor())
+      .build();
+  }
+
+  /**
+   * Returns the app's NetworkModule, creating it on first use.
+   */
+  public static NetworkModule getInstance(@NonNull Context context) {
+    if (networkModuleInstance == null) {
+      synchronized (NetworkModule.class) {
+        if (networkModuleInstance == null) {
+          networkModuleInstance = new NetworkModule(context.getApplicationContext());
+        }
+      }
+    }
+    return networkModuleInstance;
+  }
+
+  /**
+   * @return the shared client. Use {@link OkHttpClient#newBuilder()} to change settings for a single use,
+   * which keeps the connection pool and the cache shared.
+   */
+  @NonNull
+  public OkHttpClient getOkHttpClient() {
+    return okHttpClient;
+  }
+
+  /**
+   * Returns a Retrofit instance with a Gson converter that uses the shared client.
+   *
+   * @param baseUrl the base URL of the API, ending with a slash
+   * @return the Retrofit instance for this base URL
+   */
+  @NonNull
+  public synchronized Retrofit getRetrofit(@NonNull String baseUrl) {
+    Retrofit retrofit = retrofitsByBaseUrl.get(baseUrl);
+    if (retrofit == null) {
+      retrofit = new Retrofit.Builder()
+        .baseUrl(baseUrl)
+        .client(okHttpClient)
+        .addConverterFactory(GsonConverterFactory.create())
+        .build();
+      retrofitsByBaseUrl.put(baseUrl, retrofit);
+    }
+    return retrofit;
+  }
+
+  /**
+   * @return the latency and connection reuse metrics of the shared client
+   */
+  @NonNull
+  public NetworkMetrics getMetrics() {
+    return metrics;
+  }
+}
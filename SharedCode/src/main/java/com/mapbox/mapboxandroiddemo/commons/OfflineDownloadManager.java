@@ -0,0 +1,413 @@
+package com.mapbox.mapboxandroiddemo.commons;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.mapbox.mapboxsdk.geometry.LatLngBounds;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Downloads map areas for offline use that may be too large for a single offline region.
+ * <p>
+ * Before anything is downloaded, the tiles the area needs are estimated with {@link OfflineRegionPlanner}.
+ * The Mapbox tile count limit applies to all offline regions on the device together, so a download is
+ * rejected with {@link Listener#onDownloadError(String)} if its tiles and the tiles of the regions that are
+ * stored already add up to more than the limit. Otherwise the area is split into regions of a few thousand
+ * tiles, by zoom level and, where needed, by area. The regions are created and downloaded a few at a time,
+ * and their progress is combined into one. Progress
+ * is reported at most a few times per second, however often the regions report it, and the completion is
+ * always reported. Every region's {@link OfflineRegionMetadata} records the download it belongs to and
+ * whether it's complete, so {@link #resume(Listener)} can pick up the regions of a download that was
+ * interrupted, for example because the app was closed. Regions are added to the {@link OfflineRegionCatalog}
+ * as they're created, and before a download starts the catalogue evicts old regions if storage is low.
+ * </p>
+ * <p>
+ * Must be used from the main thread.
+ * </p>
+ */
+public class OfflineDownloadManager {
+
+  /**
+   * The default Mapbox tile count limit, which applies to the tiles of all offline regions together.
+   */
+  public static final long DEFAULT_TILE_COUNT_LIMIT = 6000;
+
+  /**
+   * The default number of tiles a download is split into regions of.
+   */
+  public static final long DEFAULT_MAX_TILES_PER_REGION = 2000;
+
+  private static final String TAG = "OfflineDownloadManager";
+  private static final long PROGRESS_INTERVAL_MILLIS = 500;
+  private static final int DEFAULT_MAX_PARALLEL_DOWNLOADS = 2;
+
+  /**
+   * Receives the combined progress of a download, on the main thread.
+   */
+  public interface Listener {
+
+    /**
+     * @param regionCount        the number of regions the download was split into
+     * @param estimatedTileCount the estimated number of tiles of all regions together
+     */
+    void onDownloadStarted(int regionCount, long estimatedTileCount);
+
+    /**
+     * @param completedResourceCount the number of resources downloaded, in all regions together
+     * @param requiredResourceCount  the number of resources needed, in all regions together
+     * @param completedResourceSize  the number of bytes downloaded
+     * @param precise                whether the required resource counts of all regions are final
+     */
+    void onDownloadProgress(long completedResourceCount, long requiredResourceCount, long completedResourceSize,
+                            boolean precise);
+
+    void onDownloadComplete();
+
+    void onDownloadError(String message);
+  }
+
+  private final OfflineRegionCatalog catalog;
+  private final OfflineRegionBackend backend;
+  private final int maxParallelDownloads;
+  private final long maxTilesPerRegion;
+  private final long tileCountLimit;
+  private final int maxTileZoom;
+  private Download currentDownload;
+
+  /**
+   * Creates a manager that downloads two regions at a time, with the default tile count limit.
+   *
+   * @param catalog the catalogue of the offline regions, which stores them
+   */
+  public OfflineDownloadManager(@NonNull OfflineRegionCatalog catalog) {
+    this(catalog, DEFAULT_MAX_PARALLEL_DOWNLOADS, DEFAULT_MAX_TILES_PER_REGION, DEFAULT_TILE_COUNT_LIMIT,
+      OfflineRegionPlanner.DEFAULT_MAX_TILE_ZOOM);
+  }
+
+  /**
+   * @param catalog              the catalogue of the offline regions, which stores them
+   * @param maxParallelDownloads the number of regions downloaded at the same time, 1 to download in sequence
+   * @param maxTilesPerRegion    the maximum number of tiles of a single region
+   * @param tileCountLimit       the maximum number of tiles of all offline regions together
+   * @param maxTileZoom          the highest zoom level the tiles of the style exist at
+   */
+  public OfflineDownloadManager(@NonNull OfflineRegionCatalog catalog, int maxParallelDownloads,
+                                long maxTilesPerRegion, long tileCountLimit, int maxTileZoom) {
+    this.catalog = catalog;
+    this.backend = catalog.getBackend();
+    this.maxParallelDownloads = Math.max(1, maxParallelDownloads);
+    this.maxTilesPerRegion = maxTilesPerRegion;
+    this.tileCountLimit = tileCountLimit;
+    this.maxTileZoom = maxTileZoom;
+  }
+
+  /**
+   * Estimates the number of tiles an area needs, without downloading anything.
+   */
+  public long estimateTileCount(@NonNull LatLngBounds bounds, double minZoom, double maxZoom) {
+    return OfflineRegionPlanner.estimateTileCount(bounds, minZoom, maxZoom, maxTileZoom);
+  }
+
+  /**
+   * Downloads an area, split into as many regions as needed. Cancels the download that was running. Fails
+   * right away if the area doesn't fit under the tile count limit, next to the regions that are stored already.
+   *
+   * @param styleUrl   the style of the map
+   * @param bounds     the area to download
+   * @param minZoom    the minimum zoom to download
+   * @param maxZoom    the maximum zoom the area can be viewed at
+   * @param pixelRatio the pixel ratio of the display
+   * @param name       the name of the regions
+   * @param listener   receives the progress
+   */
+  public void download(@NonNull final String styleUrl, @NonNull final LatLngBounds bounds, final double minZoom,
+                       final double maxZoom, final float pixelRatio, @NonNull final String name,
+                       @NonNull Listener listener) {
+    cancel();
+    catalog.evictIfLowOnSpace(OfflineRegionCatalog.DEFAULT_MIN_FREE_BYTES);
+    final Download download = new Download(listener);
+    currentDownload = download;
+    backend.listRegions(new OfflineRegionBackend.ListCallback() {
+      @Override
+      public void onList(List<OfflineRegionBackend.Region> regions) {
+        if (download.cancelled) {
+          return;
+        }
+        // Regions that are still downloading will need all of their tiles too. Tiles that regions share are
+        // counted once per region, so this errs on the side of rejecting a download.
+        long storedTileCount = 0;
+        for (OfflineRegionBackend.Region region : regions) {
+          storedTileCount += OfflineRegionPlanner.estimateTileCount(region.getBounds(), region.getMinZoom(),
+            region.getMaxZoom(), maxTileZoom);
+        }
+        long estimatedTileCount = estimateTileCount(bounds, minZoom, maxZoom);
+        if (storedTileCount + estimatedTileCount > tileCountLimit) {
+          fail(download, "The area needs about " + estimatedTileCount + " tiles, but stored regions already use "
+            + storedTileCount + " of the " + tileCountLimit + " tile limit");
+          return;
+        }
+        addParts(download, styleUrl, bounds, minZoom, maxZoom, pixelRatio, name);
+        Log.d(TAG, "Downloading " + estimatedTileCount + " tiles in " + download.parts.size() + " regions");
+        start(download, estimatedTileCount);
+      }
+
+      @Override
+      public void onError(String error) {
+        fail(download, error);
+      }
+    });
+  }
+
+  /**
+   * Continues downloading the regions of earlier downloads that didn't complete. Calls
+   * {@link Listener#onDownloadComplete()} right away if there are none.
+   *
+   * @param listener receives the combined progress of all resumed regions
+   */
+  public void resume(@NonNull final Listener listener) {
+    cancel();
+    final Download download = new Download(listener);
+    currentDownload = download;
+    backend.listRegions(new OfflineRegionBackend.ListCallback() {
+      @Override
+      public void onList(List<OfflineRegionBackend.Region> regions) {
+        if (download.cancelled) {
+          return;
+        }
+        for (OfflineRegionBackend.Region region : regions) {
+          OfflineRegionMetadata metadata = OfflineRegionMetadata.decode(region.getMetadata());
+          if (metadata != null && metadata.getDownloadId() != 0 && !metadata.isComplete()) {
+            download.parts.add(new Part(region, metadata));
+          }
+        }
+        Log.d(TAG, "Resuming " + download.parts.size() + " regions");
+        start(download, 0);
+      }
+
+      @Override
+      public void onError(String error) {
+        fail(download, error);
+      }
+    });
+  }
+
+  /**
+   * Stops the current download. Its regions keep what they downloaded, and {@link #resume(Listener)}
+   * continues them.
+   */
+  public void cancel() {
+    if (currentDownload == null) {
+      return;
+    }
+    currentDownload.cancelled = true;
+    for (Part part : currentDownload.parts) {
+      if (part.region != null && !part.complete) {
+        part.region.stopDownload();
+      }
+    }
+    currentDownload = null;
+  }
+
+  public boolean isDownloading() {
+    return currentDownload != null;
+  }
+
+  private void addParts(Download download, String styleUrl, LatLngBounds bounds, double minZoom, double maxZoom,
+                        float pixelRatio, String name) {
+    List<OfflineRegionPlanner.Chunk> chunks = OfflineRegionPlanner.split(bounds, minZoom, maxZoom, maxTileZoom,
+      maxTilesPerRegion);
+    long downloadId = System.currentTimeMillis();
+    for (int i = 0; i < chunks.size(); i++) {
+      String partName = chunks.size() == 1 ? name : name + " " + (i + 1) + "/" + chunks.size();
+      OfflineRegionPlanner.Chunk chunk = chunks.get(i);
+      download.parts.add(new Part(styleUrl, chunk, pixelRatio, new OfflineRegionMetadata(partName, chunk.bounds,
+        chunk.minZoom, chunk.maxZoom, downloadId, i, chunks.size())));
+    }
+  }
+
+  private void start(Download download, long estimatedTileCount) {
+    currentDownload = download;
+    download.listener.onDownloadStarted(download.parts.size(), estimatedTileCount);
+    if (download.parts.isEmpty()) {
+      currentDownload = null;
+      download.listener.onDownloadComplete();
+      return;
+    }
+    startNextParts(download);
+  }
+
+  private void startNextParts(Download download) {
+    while (!download.cancelled && download.activeCount < maxParallelDownloads
+      && download.nextPart < download.parts.size()) {
+      startPart(download, download.parts.get(download.nextPart++));
+    }
+  }
+
+  private void startPart(final Download download, final Part part) {
+    download.activeCount++;
+    if (part.region != null) {
+      part.region.startDownload(new PartObserver(download, part));
+      return;
+    }
+    OfflineRegionPlanner.Chunk chunk = part.chunk;
+    backend.createRegion(part.styleUrl, chunk.bounds, chunk.minZoom, chunk.maxZoom, part.pixelRatio,
+      part.metadata.encode(), new OfflineRegionBackend.CreateCallback() {
+        @Override
+        public void onCreate(OfflineRegionBackend.Region region) {
+          part.region = region;
+          catalog.put(region, part.metadata);
+          if (download.cancelled) {
+            return;
+          }
+          region.startDownload(new PartObserver(download, part));
+        }
+
+        @Override
+        public void onError(String error) {
+          fail(download, error);
+        }
+      });
+  }
+
+  private void onPartProgress(Download download, Part part, long completedResourceCount,
+                              long requiredResourceCount, long completedResourceSize, boolean precise,
+                              boolean complete) {
+    part.completedResourceCount = completedResourceCount;
+    part.requiredResourceCount = requiredResourceCount;
+    part.completedResourceSize = completedResourceSize;
+    part.precise = precise;
+    if (!complete || part.complete) {
+      reportProgress(download, false);
+      return;
+    }
+
+    part.complete = true;
+    part.region.stopDownload();
+    part.metadata.setComplete(true);
+    part.metadata.setSizeBytes(completedResourceSize);
+    part.region.updateMetadata(part.metadata.encode());
+    catalog.markComplete(part.region.getId(), completedResourceSize);
+    download.activeCount--;
+    download.completedCount++;
+    if (download.completedCount < download.parts.size()) {
+      reportProgress(download, false);
+      startNextParts(download);
+      return;
+    }
+
+    reportProgress(download, true);
+    currentDownload = null;
+    download.listener.onDownloadComplete();
+  }
+
+  private void reportProgress(Download download, boolean force) {
+    long now = SystemClock.elapsedRealtime();
+    if (!force && now - download.lastProgressMillis < PROGRESS_INTERVAL_MILLIS) {
+      return;
+    }
+    download.lastProgressMillis = now;
+
+    long completedResourceCount = 0;
+    long requiredResourceCount = 0;
+    long completedResourceSize = 0;
+    boolean precise = download.nextPart == download.parts.size();
+    for (Part part : download.parts) {
+      completedResourceCount += part.completedResourceCount;
+      requiredResourceCount += part.requiredResourceCount;
+      completedResourceSize += part.completedResourceSize;
+      precise &= part.precise || part.complete;
+    }
+    download.listener.onDownloadProgress(completedResourceCount, requiredResourceCount, completedResourceSize,
+      precise);
+  }
+
+  private void fail(Download download, String message) {
+    if (download.cancelled) {
+      return;
+    }
+    Log.e(TAG, "Offline download failed: " + message);
+    cancel();
+    download.listener.onDownloadError(message);
+  }
+
+  /**
+   * The state of one download, split into parts.
+   */
+  private static class Download {
+
+    final Listener listener;
+    final List<Part> parts = new ArrayList<>();
+    int nextPart;
+    int activeCount;
+    int completedCount;
+    long lastProgressMillis;
+    boolean cancelled;
+
+    Download(Listener listener) {
+      this.listener = listener;
+    }
+  }
+
+  /**
+   * A region of a download, which is only created when its download starts.
+   */
+  private static class Part {
+
+    final String styleUrl;
+    final OfflineRegionPlanner.Chunk chunk;
+    final float pixelRatio;
+    final OfflineRegionMetadata metadata;
+    OfflineRegionBackend.Region region;
+    long completedResourceCount;
+    long requiredResourceCount;
+    long completedResourceSize;
+    boolean precise;
+    boolean complete;
+
+    Part(String styleUrl, OfflineRegionPlanner.Chunk chunk, float pixelRatio, OfflineRegionMetadata metadata) {
+      this.styleUrl = styleUrl;
+      this.chunk = chunk;
+      this.pixelRatio = pixelRatio;
+      this.metadata = metadata;
+    }
+
+    Part(OfflineRegionBackend.Region region, OfflineRegionMetadata metadata) {
+      this(null, null, 0, metadata);
+      this.region = region;
+    }
+  }
+
+  private class PartObserver implements OfflineRegionBackend.ProgressObserver {
+
+    private final Download download;
+    private final Part part;
+
+    PartObserver(Download download, Part part) {
+      this.download = download;
+      this.part = part;
+    }
+
+    @Override
+    public void onProgress(long completedResourceCount, long requiredResourceCount, long completedResourceSize,
+                           boolean precise, boolean complete) {
+      if (!download.cancelled) {
+        onPartProgress(download, part, completedResourceCount, requiredResourceCount, completedResourceSize,
+          precise, complete);
+      }
+    }
+
+    @Override
+    public void onError(String message) {
+      // The offline manager retries by itself, for example once the connection is back
+      Log.e(TAG, "Offline region " + part.region.getId() + " error: " + message);
+    }
+
+    @Override
+    public void onTileCountLimitExceeded(long limit) {
+      fail(download, "Mapbox tile count limit exceeded: " + limit);
+    }
+  }
+}
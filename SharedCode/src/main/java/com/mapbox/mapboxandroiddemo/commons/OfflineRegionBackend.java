@@ -0,0 +1,125 @@
+package com.mapbox.mapboxandroiddemo.commons;
+
+import android.support.annotation.NonNull;
+
+import com.mapbox.mapboxsdk.geometry.LatLngBounds;
+
+import java.util.List;
+
+/**
+ * The offline region storage the {@link OfflineRegionCatalog} and {@link OfflineDownloadManager} work with.
+ * {@link MapboxOfflineRegionBackend} stores regions with the Mapbox OfflineManager. Other implementations can
+ * replace it, for example a fake that runs without the native library and reports progress on demand.
+ * <p>
+ * All callbacks are expected on the main thread.
+ * </p>
+ */
+public interface OfflineRegionBackend {
+
+  /**
+   * Receives a region that was created.
+   */
+  interface CreateCallback {
+    void onCreate(Region region);
+
+    void onError(String error);
+  }
+
+  /**
+   * Receives all stored regions.
+   */
+  interface ListCallback {
+    void onList(List<Region> regions);
+
+    void onError(String error);
+  }
+
+  /**
+   * Receives the result of deleting a region.
+   */
+  interface DeleteCallback {
+    void onDelete();
+
+    void onError(String error);
+  }
+
+  /**
+   * Receives the download status of a region.
+   */
+  interface StatusCallback {
+
+    /**
+     * @param complete              whether all resources of the region have been downloaded
+     * @param completedResourceSize the number of bytes downloaded
+     */
+    void onStatus(boolean complete, long completedResourceSize);
+
+    void onError(String error);
+  }
+
+  /**
+   * Receives the download progress of a region.
+   */
+  interface ProgressObserver {
+
+    /**
+     * @param completedResourceCount the number of tiles and other resources downloaded
+     * @param requiredResourceCount  the number of resources the region needs, an estimate until precise
+     * @param completedResourceSize  the number of bytes downloaded
+     * @param precise                whether the required resource count is final
+     * @param complete               whether all resources have been downloaded
+     */
+    void onProgress(long completedResourceCount, long requiredResourceCount, long completedResourceSize,
+                    boolean precise, boolean complete);
+
+    void onError(String message);
+
+    void onTileCountLimitExceeded(long limit);
+  }
+
+  /**
+   * A stored region.
+   */
+  interface Region {
+    long getId();
+
+    byte[] getMetadata();
+
+    void updateMetadata(byte[] metadata);
+
+    /**
+     * @return the area of the region, as it was created
+     */
+    LatLngBounds getBounds();
+
+    double getMinZoom();
+
+    double getMaxZoom();
+
+    /**
+     * Reads how much of the region has been downloaded, without starting a download.
+     */
+    void getStatus(StatusCallback callback);
+
+    /**
+     * Starts or resumes downloading, reporting progress to the observer.
+     */
+    void startDownload(ProgressObserver observer);
+
+    /**
+     * Stops downloading. Downloaded resources are kept, and {@link #startDownload(ProgressObserver)}
+     * continues where it stopped.
+     */
+    void stopDownload();
+
+    /**
+     * Deletes the region and the resources no other region uses.
+     */
+    void delete(DeleteCallback callback);
+  }
+
+  void createRegion(@NonNull String styleUrl, @NonNull LatLngBounds bounds, double minZoom, double maxZoom,
+                    float pixelRatio, @NonNull byte[] metadata, @NonNull CreateCallback callback);
+
+  void listRegions(@NonNull ListCallback callback);
+}
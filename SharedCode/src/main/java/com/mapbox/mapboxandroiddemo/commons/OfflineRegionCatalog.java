@@ -0,0 +1,565 @@
+package com.mapbox.mapboxandroiddemo.commons;
+
+import android.content.Context;
+import android.os.AsyncTask;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.mapbox.mapboxsdk.geometry.LatLngBounds;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Keeps the {@link OfflineRegionMetadata} of all offline regions in a file of its own, so regions can be
+ * listed, filtered by name or area and sorted by size or recency without listing them from the offline
+ * database and decoding their metadata every time.
+ * <p>
+ * The catalogue is read when it's first used and written in the background after every change. It's
+ * reconciled with the offline database once per process with {@link #sync(SyncCallback)}, which also picks
+ * up regions that were created elsewhere, and {@link #evictIfLowOnSpace(long)} deletes the least recently
+ * used regions the {@link OfflineDownloadManager} downloaded when the device runs low on storage.
+ * </p>
+ * <p>
+ * Must be used from the main thread.
+ * </p>
+ */
+public final class OfflineRegionCatalog {
+
+  /**
+   * Sorts the most recently used regions first.
+   */
+  public static final int SORT_BY_RECENCY = 0;
+
+  /**
+   * Sorts the largest regions first.
+   */
+  public static final int SORT_BY_SIZE = 1;
+
+  /**
+   * The free storage {@link OfflineDownloadManager} keeps before it starts a download.
+   */
+  public static final long DEFAULT_MIN_FREE_BYTES = 50 * 1024 * 1024;
+
+  private static final String TAG = "OfflineRegionCatalog";
+  private static final String FILE_NAME = "offline_region_catalog.bin";
+  // "OFRC"
+  private static final int MAGIC = 0x4F465243;
+  // Regions created before the binary metadata have their name in JSON
+  private static final String LEGACY_JSON_FIELD_REGION_NAME = "FIELD_REGION_NAME";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static volatile OfflineRegionCatalog instance;
+
+  /**
+   * Receives the end of a {@link #sync(SyncCallback)}.
+   */
+  public interface SyncCallback {
+    void onSynced();
+
+    void onError(String error);
+  }
+
+  /**
+   * An offline region in the catalogue.
+   */
+  public static final class Entry {
+
+    private final long regionId;
+    private final OfflineRegionMetadata metadata;
+
+    Entry(long regionId, OfflineRegionMetadata metadata) {
+      this.regionId = regionId;
+      this.metadata = metadata;
+    }
+
+    public long getRegionId() {
+      return regionId;
+    }
+
+    @NonNull
+    public OfflineRegionMetadata getMetadata() {
+      return metadata;
+    }
+  }
+
+  private final File file;
+  private final File storageDir;
+  private final OfflineRegionBackend backend;
+  private final Map<Long, Entry> entries = new HashMap<>();
+  // Only known after a sync, or for regions created since
+  private final Map<Long, OfflineRegionBackend.Region> regions = new HashMap<>();
+  private final List<SyncCallback> pendingSyncCallbacks = new ArrayList<>();
+  private boolean synced;
+  private boolean evicting;
+
+  public static OfflineRegionCatalog getInstance(@NonNull Context context) {
+    if (instance == null) {
+      synchronized (OfflineRegionCatalog.class) {
+        if (instance == null) {
+          Context appContext = context.getApplicationContext();
+          instance = new OfflineRegionCatalog(new File(appContext.getFilesDir(), FILE_NAME),
+            appContext.getFilesDir(), new MapboxOfflineRegionBackend(appContext));
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * @param file       the file the catalogue is kept in
+   * @param storageDir the directory of the offline database, whose free space decides about eviction
+   * @param backend    the storage of the offline regions
+   */
+  OfflineRegionCatalog(@NonNull File file, @NonNull File storageDir, @NonNull OfflineRegionBackend backend) {
+    this.file = file;
+    this.storageDir = storageDir;
+    this.backend = backend;
+    read();
+  }
+
+  @NonNull
+  OfflineRegionBackend getBackend() {
+    return backend;
+  }
+
+  /**
+   * @return whether the catalogue has been reconciled with the offline database since the app started
+   */
+  public boolean isSynced() {
+    return synced;
+  }
+
+  /**
+   * Reconciles the catalogue with the regions in the offline database. Regions that are gone are removed,
+   * and regions that aren't in the catalogue yet are added, with their name read from JSON metadata if
+   * they were created before the binary metadata. Whether such a region is complete is read from its
+   * download status. Sizes and last-used times the catalogue knows are kept.
+   */
+  public void sync(@NonNull SyncCallback callback) {
+    pendingSyncCallbacks.add(callback);
+    if (pendingSyncCallbacks.size() > 1) {
+      // A sync is running already
+      return;
+    }
+    backend.listRegions(new OfflineRegionBackend.ListCallback() {
+      @Override
+      public void onList(List<OfflineRegionBackend.Region> listedRegions) {
+        Map<Long, Entry> listedEntries = new HashMap<>();
+        List<OfflineRegionBackend.Region> statusRegions = new ArrayList<>();
+        regions.clear();
+        for (OfflineRegionBackend.Region region : listedRegions) {
+          regions.put(region.getId(), region);
+          OfflineRegionMetadata metadata = OfflineRegionMetadata.decode(region.getMetadata());
+          if (metadata == null) {
+            statusRegions.add(region);
+          }
+          listedEntries.put(region.getId(), new Entry(region.getId(),
+            merge(region, metadata, entries.get(region.getId()))));
+        }
+        readStatuses(statusRegions, listedEntries);
+      }
+
+      @Override
+      public void onError(String error) {
+        Log.e(TAG, "Unable to list offline regions: " + error);
+        for (SyncCallback pending : takePendingSyncCallbacks()) {
+          pending.onError(error);
+        }
+      }
+    });
+  }
+
+  /**
+   * Adds a region that was just created, or replaces its metadata.
+   */
+  public void put(@NonNull OfflineRegionBackend.Region region, @NonNull OfflineRegionMetadata metadata) {
+    regions.put(region.getId(), region);
+    entries.put(region.getId(), new Entry(region.getId(), metadata));
+    write();
+  }
+
+  @Nullable
+  public Entry get(long regionId) {
+    return entries.get(regionId);
+  }
+
+  /**
+   * Records that a region was viewed, which keeps it from being evicted before regions that weren't.
+   */
+  public void markUsed(long regionId) {
+    Entry entry = entries.get(regionId);
+    if (entry != null) {
+      entry.metadata.setLastUsedMillis(System.currentTimeMillis());
+      write();
+    }
+  }
+
+  /**
+   * Records that a region has downloaded everything, and how large it is.
+   */
+  public void markComplete(long regionId, long sizeBytes) {
+    Entry entry = entries.get(regionId);
+    if (entry != null) {
+      entry.metadata.setComplete(true);
+      entry.metadata.setSizeBytes(sizeBytes);
+      write();
+    }
+  }
+
+  /**
+   * Lists the regions in the catalogue, without asking the offline database.
+   *
+   * @param nameFilter text the names have to contain, ignoring case, or null for all names
+   * @param area       an area the regions have to overlap, or null for all areas
+   * @param sortOrder  {@link #SORT_BY_RECENCY} or {@link #SORT_BY_SIZE}
+   * @return the matching regions
+   */
+  @NonNull
+  public List<Entry> query(@Nullable String nameFilter, @Nullable LatLngBounds area, int sortOrder) {
+    String filter = nameFilter == null || nameFilter.isEmpty() ? null : nameFilter.toLowerCase(Locale.US);
+    List<Entry> result = new ArrayList<>();
+    for (Entry entry : entries.values()) {
+      OfflineRegionMetadata metadata = entry.metadata;
+      if (filter != null && !metadata.getName().toLowerCase(Locale.US).contains(filter)) {
+        continue;
+      }
+      if (area != null && !overlaps(metadata.getBounds(), area)) {
+        continue;
+      }
+      result.add(entry);
+    }
+    Collections.sort(result, sortOrder == SORT_BY_SIZE ? BY_SIZE : BY_RECENCY);
+    return result;
+  }
+
+  /**
+   * @return the number of bytes of all complete regions the catalogue knows the size of
+   */
+  public long getTotalSizeBytes() {
+    long total = 0;
+    for (Entry entry : entries.values()) {
+      total += entry.metadata.getSizeBytes();
+    }
+    return total;
+  }
+
+  /**
+   * Deletes a region from the offline database and the catalogue.
+   */
+  public void delete(final long regionId, @NonNull final OfflineRegionBackend.DeleteCallback callback) {
+    OfflineRegionBackend.Region region = regions.get(regionId);
+    if (region != null) {
+      deleteRegion(region, callback);
+      return;
+    }
+    // The region handles are only known after a sync
+    sync(new SyncCallback() {
+      @Override
+      public void onSynced() {
+        OfflineRegionBackend.Region region = regions.get(regionId);
+        if (region != null) {
+          deleteRegion(region, callback);
+        } else {
+          callback.onDelete();
+        }
+      }
+
+      @Override
+      public void onError(String error) {
+        callback.onError(error);
+      }
+    });
+  }
+
+  /**
+   * Deletes complete regions, least recently used first, until there's at least a number of bytes free
+   * where the offline database is stored. Does nothing if there's enough free space already. Only regions
+   * the {@link OfflineDownloadManager} downloaded are deleted, never regions that are still downloading or
+   * that were created elsewhere, which the catalogue can't download again.
+   *
+   * @param minFreeBytes the number of bytes to keep free
+   */
+  public void evictIfLowOnSpace(final long minFreeBytes) {
+    if (evicting || storageDir.getUsableSpace() >= minFreeBytes) {
+      return;
+    }
+    evicting = true;
+    if (synced) {
+      evictNext(minFreeBytes);
+      return;
+    }
+    sync(new SyncCallback() {
+      @Override
+      public void onSynced() {
+        evictNext(minFreeBytes);
+      }
+
+      @Override
+      public void onError(String error) {
+        evicting = false;
+      }
+    });
+  }
+
+  private void evictNext(final long minFreeBytes) {
+    // The offline database reclaims the space of deleted regions right away, so the free space is measured
+    // again after every region
+    Entry leastRecentlyUsed = null;
+    if (storageDir.getUsableSpace() < minFreeBytes) {
+      for (Entry entry : entries.values()) {
+        if (isEvictable(entry) && (leastRecentlyUsed == null
+          || entry.metadata.getLastUsedMillis() < leastRecentlyUsed.metadata.getLastUsedMillis())) {
+          leastRecentlyUsed = entry;
+        }
+      }
+    }
+    if (leastRecentlyUsed == null) {
+      evicting = false;
+      return;
+    }
+
+    final long regionId = leastRecentlyUsed.regionId;
+    Log.d(TAG, "Low on storage, evicting offline region " + regionId);
+    delete(regionId, new OfflineRegionBackend.DeleteCallback() {
+      @Override
+      public void onDelete() {
+        evictNext(minFreeBytes);
+      }
+
+      @Override
+      public void onError(String error) {
+        Log.e(TAG, "Unable to evict offline region " + regionId + ": " + error);
+        evicting = false;
+      }
+    });
+  }
+
+  private void deleteRegion(final OfflineRegionBackend.Region region,
+                            final OfflineRegionBackend.DeleteCallback callback) {
+    region.delete(new OfflineRegionBackend.DeleteCallback() {
+      @Override
+      public void onDelete() {
+        regions.remove(region.getId());
+        entries.remove(region.getId());
+        write();
+        callback.onDelete();
+      }
+
+      @Override
+      public void onError(String error) {
+        callback.onError(error);
+      }
+    });
+  }
+
+  private List<SyncCallback> takePendingSyncCallbacks() {
+    List<SyncCallback> callbacks = new ArrayList<>(pendingSyncCallbacks);
+    pendingSyncCallbacks.clear();
+    return callbacks;
+  }
+
+  /**
+   * Reads the download status of the regions that were created elsewhere, then completes the sync.
+   */
+  private void readStatuses(final List<OfflineRegionBackend.Region> statusRegions,
+                            final Map<Long, Entry> listedEntries) {
+    if (statusRegions.isEmpty()) {
+      onSyncListed(listedEntries);
+      return;
+    }
+    final int[] remaining = {statusRegions.size()};
+    for (final OfflineRegionBackend.Region region : statusRegions) {
+      region.getStatus(new OfflineRegionBackend.StatusCallback() {
+        @Override
+        public void onStatus(boolean complete, long completedResourceSize) {
+          OfflineRegionMetadata metadata = listedEntries.get(region.getId()).metadata;
+          metadata.setComplete(complete);
+          metadata.setSizeBytes(completedResourceSize);
+          onStatusRead();
+        }
+
+        @Override
+        public void onError(String error) {
+          // The region is kept as incomplete
+          Log.e(TAG, "Unable to read the status of offline region " + region.getId() + ": " + error);
+          onStatusRead();
+        }
+
+        private void onStatusRead() {
+          if (--remaining[0] == 0) {
+            onSyncListed(listedEntries);
+          }
+        }
+      });
+    }
+  }
+
+  private void onSyncListed(Map<Long, Entry> listedEntries) {
+    entries.clear();
+    entries.putAll(listedEntries);
+    synced = true;
+    write();
+    for (SyncCallback pending : takePendingSyncCallbacks()) {
+      pending.onSynced();
+    }
+  }
+
+  /**
+   * @return whether a region was downloaded by the {@link OfflineDownloadManager}, which records its download
+   * in the metadata, and is complete
+   */
+  private static boolean isEvictable(Entry entry) {
+    return entry.metadata.getDownloadId() != 0 && entry.metadata.isComplete();
+  }
+
+  private static OfflineRegionMetadata merge(OfflineRegionBackend.Region region,
+                                             @Nullable OfflineRegionMetadata decoded, @Nullable Entry known) {
+    OfflineRegionMetadata metadata = decoded;
+    if (metadata == null) {
+      // Whether the region is complete is read from its download status
+      metadata = new OfflineRegionMetadata(readLegacyName(region), region.getBounds(), region.getMinZoom(),
+        region.getMaxZoom(), 0, 0, 1);
+    }
+    if (known != null) {
+      // Last-used times are only kept in the catalogue, so they don't rewrite the database every time
+      metadata.setLastUsedMillis(Math.max(metadata.getLastUsedMillis(), known.metadata.getLastUsedMillis()));
+      metadata.setSizeBytes(Math.max(metadata.getSizeBytes(), known.metadata.getSizeBytes()));
+      if (decoded != null) {
+        metadata.setComplete(metadata.isComplete() || known.metadata.isComplete());
+      }
+    }
+    return metadata;
+  }
+
+  private static String readLegacyName(OfflineRegionBackend.Region region) {
+    byte[] metadata = region.getMetadata();
+    if (metadata != null) {
+      try {
+        return new JSONObject(new String(metadata, UTF_8)).getString(LEGACY_JSON_FIELD_REGION_NAME);
+      } catch (JSONException exception) {
+        Log.w(TAG, "Region " + region.getId() + " has no name: " + exception.getMessage());
+      }
+    }
+    return "Region " + region.getId();
+  }
+
+  private static boolean overlaps(LatLngBounds bounds, LatLngBounds area) {
+    return bounds.getLatSouth() <= area.getLatNorth() && bounds.getLatNorth() >= area.getLatSouth()
+      && bounds.getLonWest() <= area.getLonEast() && bounds.getLonEast() >= area.getLonWest();
+  }
+
+  private void read() {
+    if (!file.exists()) {
+      return;
+    }
+    DataInputStream input = null;
+    try {
+      input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      if (input.readInt() != MAGIC) {
+        throw new IOException("Not an offline region catalogue");
+      }
+      int count = input.readInt();
+      for (int i = 0; i < count; i++) {
+        long regionId = input.readLong();
+        entries.put(regionId, new Entry(regionId, OfflineRegionMetadata.readFrom(input)));
+      }
+    } catch (IOException exception) {
+      // The next sync rebuilds the catalogue from the offline database
+      Log.e(TAG, "Unable to read the offline region catalogue: " + exception.getMessage());
+      entries.clear();
+    } finally {
+      closeQuietly(input);
+    }
+  }
+
+  private void write() {
+    final byte[] bytes;
+    try {
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 + entries.size() * 128);
+      DataOutputStream output = new DataOutputStream(buffer);
+      output.writeInt(MAGIC);
+      output.writeInt(entries.size());
+      for (Entry entry : entries.values()) {
+        output.writeLong(entry.regionId);
+        entry.metadata.writeTo(output);
+      }
+      bytes = buffer.toByteArray();
+    } catch (IOException exception) {
+      // Writing to memory doesn't fail
+      throw new IllegalStateException(exception);
+    }
+
+    // Writes run one after another, so the last one wins
+    AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
+      @Override
+      public void run() {
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        FileOutputStream output = null;
+        try {
+          output = new FileOutputStream(temporaryFile);
+          output.write(bytes);
+          output.getFD().sync();
+          output.close();
+          output = null;
+          if (!temporaryFile.renameTo(file)) {
+            Log.e(TAG, "Unable to replace the offline region catalogue");
+          }
+        } catch (IOException exception) {
+          Log.e(TAG, "Unable to write the offline region catalogue: " + exception.getMessage());
+        } finally {
+          closeQuietly(output);
+        }
+      }
+    });
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    if (closeable != null) {
+      try {
+        closeable.close();
+      } catch (IOException exception) {
+        // Nothing left to do
+      }
+    }
+  }
+
+  private static final Comparator<Entry> BY_RECENCY = new Comparator<Entry>() {
+    @Override
+    public int compare(Entry first, Entry second) {
+      return compareDescending(first.metadata.getLastUsedMillis(), second.metadata.getLastUsedMillis());
+    }
+  };
+
+  private static final Comparator<Entry> BY_SIZE = new Comparator<Entry>() {
+    @Override
+    public int compare(Entry first, Entry second) {
+      int bySize = compareDescending(first.metadata.getSizeBytes(), second.metadata.getSizeBytes());
+      return bySize != 0 ? bySize
+        : compareDescending(first.metadata.getLastUsedMillis(), second.metadata.getLastUsedMillis());
+    }
+  };
+
+  private static int compareDescending(long first, long second) {
+    return first > second ? -1 : first < second ? 1 : 0;
+  }
+}
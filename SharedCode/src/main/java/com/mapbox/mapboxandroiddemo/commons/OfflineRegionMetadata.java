@@ -0,0 +1,183 @@
+package com.mapbox.mapboxandroiddemo.commons;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mapbox.mapboxsdk.geometry.LatLngBounds;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * What's known about an offline region without asking the offline database: its name, area, zoom range,
+ * size, when it was last used and which download it belongs to.
+ * <p>
+ * Stored as the metadata of the region and in the {@link OfflineRegionCatalog}, in a fixed binary layout:
+ * a magic number and version, followed by the fields in the order of {@link #writeTo(DataOutputStream)}.
+ * Decoding it is a handful of reads, instead of parsing JSON.
+ * </p>
+ */
+public final class OfflineRegionMetadata {
+
+  // "OFRM"
+  private static final int MAGIC = 0x4F46524D;
+  private static final int VERSION = 1;
+
+  private final String name;
+  private final LatLngBounds bounds;
+  private final double minZoom;
+  private final double maxZoom;
+  private final long downloadId;
+  private final int part;
+  private final int partCount;
+  private boolean complete;
+  private long sizeBytes;
+  private long lastUsedMillis;
+
+  /**
+   * @param name       the name shown for the region
+   * @param bounds     the area of the region
+   * @param minZoom    the minimum zoom of the region
+   * @param maxZoom    the maximum zoom of the region
+   * @param downloadId the download the region is part of, or 0 if it wasn't created by a download
+   * @param part       the index of the region within its download
+   * @param partCount  the number of regions of its download
+   */
+  public OfflineRegionMetadata(@NonNull String name, @NonNull LatLngBounds bounds, double minZoom, double maxZoom,
+                               long downloadId, int part, int partCount) {
+    this.name = name;
+    this.bounds = bounds;
+    this.minZoom = minZoom;
+    this.maxZoom = maxZoom;
+    this.downloadId = downloadId;
+    this.part = part;
+    this.partCount = partCount;
+    this.lastUsedMillis = System.currentTimeMillis();
+  }
+
+  @NonNull
+  public String getName() {
+    return name;
+  }
+
+  @NonNull
+  public LatLngBounds getBounds() {
+    return bounds;
+  }
+
+  public double getMinZoom() {
+    return minZoom;
+  }
+
+  public double getMaxZoom() {
+    return maxZoom;
+  }
+
+  public long getDownloadId() {
+    return downloadId;
+  }
+
+  public int getPart() {
+    return part;
+  }
+
+  public int getPartCount() {
+    return partCount;
+  }
+
+  public boolean isComplete() {
+    return complete;
+  }
+
+  /**
+   * @return the number of bytes downloaded, known once the region is complete
+   */
+  public long getSizeBytes() {
+    return sizeBytes;
+  }
+
+  public long getLastUsedMillis() {
+    return lastUsedMillis;
+  }
+
+  void setComplete(boolean complete) {
+    this.complete = complete;
+  }
+
+  void setSizeBytes(long sizeBytes) {
+    this.sizeBytes = sizeBytes;
+  }
+
+  void setLastUsedMillis(long lastUsedMillis) {
+    this.lastUsedMillis = lastUsedMillis;
+  }
+
+  /**
+   * @return the metadata in its binary layout, to store with the region
+   */
+  @NonNull
+  public byte[] encode() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+    try {
+      writeTo(new DataOutputStream(bytes));
+    } catch (IOException exception) {
+      // Writing to memory doesn't fail
+      throw new IllegalStateException(exception);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * @param metadata the metadata of a region
+   * @return the decoded metadata, or null if the region's metadata has another format
+   */
+  @Nullable
+  public static OfflineRegionMetadata decode(@Nullable byte[] metadata) {
+    if (metadata == null || metadata.length < 8) {
+      return null;
+    }
+    try {
+      return readFrom(new DataInputStream(new ByteArrayInputStream(metadata)));
+    } catch (IOException exception) {
+      return null;
+    }
+  }
+
+  void writeTo(DataOutputStream output) throws IOException {
+    output.writeInt(MAGIC);
+    output.writeInt(VERSION);
+    output.writeUTF(name);
+    output.writeDouble(bounds.getLatNorth());
+    output.writeDouble(bounds.getLonEast());
+    output.writeDouble(bounds.getLatSouth());
+    output.writeDouble(bounds.getLonWest());
+    output.writeDouble(minZoom);
+    output.writeDouble(maxZoom);
+    output.writeLong(downloadId);
+    output.writeInt(part);
+    output.writeInt(partCount);
+    output.writeBoolean(complete);
+    output.writeLong(sizeBytes);
+    output.writeLong(lastUsedMillis);
+  }
+
+  static OfflineRegionMetadata readFrom(DataInputStream input) throws IOException {
+    if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+      throw new IOException("Not offline region metadata");
+    }
+    String name = input.readUTF();
+    LatLngBounds bounds = LatLngBounds.from(input.readDouble(), input.readDouble(), input.readDouble(),
+      input.readDouble());
+    double minZoom = input.readDouble();
+    double maxZoom = input.readDouble();
+    OfflineRegionMetadata metadata = new OfflineRegionMetadata(name, bounds, minZoom, maxZoom, input.readLong(),
+      input.readInt(), input.readInt());
+    metadata.complete = input.readBoolean();
+    metadata.sizeBytes = input.readLong();
+    metadata.lastUsedMillis = input.readLong();
+    return metadata;
+  }
+}
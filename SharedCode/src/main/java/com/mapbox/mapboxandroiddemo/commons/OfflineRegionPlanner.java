@@ -0,0 +1,226 @@
+package com.mapbox.mapboxandroiddemo.commons;
+
+import android.support.annotation.NonNull;
+
+import com.mapbox.mapboxsdk.geometry.LatLngBounds;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Estimates how many tiles an offline region needs, and splits large regions into smaller regions of at most
+ * a number of tiles each.
+ * <p>
+ * Splitting doesn't get around the Mapbox tile count limit, which applies to the tiles of all offline regions
+ * on the device together. It keeps single regions small, so they can be downloaded in parallel and each one
+ * is complete as soon as it's done.
+ * </p>
+ * <p>
+ * Tiles are counted per zoom level over the tile grid the bounds cover, the way the tile pyramid of an
+ * offline region is built. Zoom levels above the maximum zoom of the tiles aren't counted, since the map
+ * overzooms the tiles of that level instead of downloading more. A region over the limit is first split
+ * into bands of consecutive zoom levels. A single zoom level that is over the limit on its own is split
+ * into a grid of areas along tile edges, so no tile is downloaded twice.
+ * </p>
+ * <p>
+ * Bounds with a west edge east of their east edge cross the antimeridian. Their tiles are counted on both
+ * sides of it, and they're split at it, since an offline region can't cross it.
+ * </p>
+ */
+public final class OfflineRegionPlanner {
+
+  /**
+   * The highest zoom level of Mapbox vector tiles.
+   */
+  public static final int DEFAULT_MAX_TILE_ZOOM = 16;
+
+  private static final double MAX_LATITUDE = 85.05112878;
+  // Keeps split areas just inside their tile edges, so they don't cover the neighbouring tiles too
+  private static final double EDGE_INSET_DEGREES = 1e-9;
+
+  private OfflineRegionPlanner() {
+    // No instances
+  }
+
+  /**
+   * One of the regions a region is split into.
+   */
+  public static final class Chunk {
+
+    public final LatLngBounds bounds;
+    public final double minZoom;
+    public final double maxZoom;
+    public final long tileCount;
+
+    Chunk(LatLngBounds bounds, double minZoom, double maxZoom, long tileCount) {
+      this.bounds = bounds;
+      this.minZoom = minZoom;
+      this.maxZoom = maxZoom;
+      this.tileCount = tileCount;
+    }
+  }
+
+  /**
+   * Estimates the number of tiles of an offline region.
+   *
+   * @param bounds      the area of the region
+   * @param minZoom     the minimum zoom of the region
+   * @param maxZoom     the maximum zoom of the region
+   * @param maxTileZoom the highest zoom level the tiles exist at
+   * @return the estimated number of tiles
+   */
+  public static long estimateTileCount(@NonNull LatLngBounds bounds, double minZoom, double maxZoom,
+                                       int maxTileZoom) {
+    long tileCount = 0;
+    for (int zoom = (int) Math.floor(minZoom); zoom <= lastZoom(maxZoom, maxTileZoom); zoom++) {
+      tileCount += countTiles(bounds, zoom);
+    }
+    return tileCount;
+  }
+
+  /**
+   * Splits an offline region into regions that each need at most a number of tiles.
+   *
+   * @param bounds            the area of the region
+   * @param minZoom           the minimum zoom of the region
+   * @param maxZoom           the maximum zoom of the region
+   * @param maxTileZoom       the highest zoom level the tiles exist at
+   * @param maxTilesPerRegion the maximum number of tiles of a single region
+   * @return the regions, from the lowest zoom level up, which is a single region if it fits already and
+   *     doesn't cross the antimeridian
+   */
+  @NonNull
+  public static List<Chunk> split(@NonNull LatLngBounds bounds, double minZoom, double maxZoom, int maxTileZoom,
+                                  long maxTilesPerRegion) {
+    if (crossesAntimeridian(bounds)) {
+      // The few tiles of the lowest zoom levels that reach across the antimeridian are in both halves
+      List<Chunk> chunks = split(LatLngBounds.from(bounds.getLatNorth(), 180, bounds.getLatSouth(),
+        bounds.getLonWest()), minZoom, maxZoom, maxTileZoom, maxTilesPerRegion);
+      chunks.addAll(split(LatLngBounds.from(bounds.getLatNorth(), bounds.getLonEast(), bounds.getLatSouth(),
+        -180), minZoom, maxZoom, maxTileZoom, maxTilesPerRegion));
+      return chunks;
+    }
+
+    List<Chunk> chunks = new ArrayList<>();
+    int firstZoom = (int) Math.floor(minZoom);
+    int lastZoom = lastZoom(maxZoom, maxTileZoom);
+    if (lastZoom < firstZoom) {
+      chunks.add(new Chunk(bounds, minZoom, maxZoom, 0));
+      return chunks;
+    }
+
+    int bandStart = firstZoom;
+    long bandTileCount = 0;
+    for (int zoom = firstZoom; zoom <= lastZoom; zoom++) {
+      long tileCount = countTiles(bounds, zoom);
+      if (tileCount > maxTilesPerRegion) {
+        if (zoom > bandStart) {
+          chunks.add(createBand(bounds, bandStart, zoom - 1, bandTileCount, minZoom, maxZoom, lastZoom));
+        }
+        splitArea(bounds, zoom, maxTilesPerRegion, chunks, Math.max(zoom, minZoom),
+          zoom == lastZoom ? Math.max(maxZoom, zoom) : zoom);
+        bandStart = zoom + 1;
+        bandTileCount = 0;
+      } else if (bandTileCount + tileCount > maxTilesPerRegion) {
+        chunks.add(createBand(bounds, bandStart, zoom - 1, bandTileCount, minZoom, maxZoom, lastZoom));
+        bandStart = zoom;
+        bandTileCount = tileCount;
+      } else {
+        bandTileCount += tileCount;
+      }
+    }
+    if (bandStart <= lastZoom) {
+      chunks.add(createBand(bounds, bandStart, lastZoom, bandTileCount, minZoom, maxZoom, lastZoom));
+    }
+    return chunks;
+  }
+
+  private static int lastZoom(double maxZoom, int maxTileZoom) {
+    return Math.min((int) Math.floor(maxZoom), maxTileZoom);
+  }
+
+  private static Chunk createBand(LatLngBounds bounds, int firstZoom, int lastZoom, long tileCount,
+                                  double minZoom, double maxZoom, int regionLastZoom) {
+    // The outer bands keep the zoom range of the whole region, so it can still be viewed up to its
+    // maximum zoom, with overzoomed tiles
+    double bandMinZoom = Math.max(firstZoom, minZoom);
+    double bandMaxZoom = lastZoom == regionLastZoom ? Math.max(maxZoom, lastZoom) : lastZoom;
+    return new Chunk(bounds, bandMinZoom, bandMaxZoom, tileCount);
+  }
+
+  private static void splitArea(LatLngBounds bounds, int zoom, long maxTilesPerRegion, List<Chunk> chunks,
+                                double minZoom, double maxZoom) {
+    int minX = tileX(bounds.getLonWest(), zoom);
+    int maxX = tileX(bounds.getLonEast(), zoom);
+    int minY = tileY(bounds.getLatNorth(), zoom);
+    int maxY = tileY(bounds.getLatSouth(), zoom);
+    int columnCount = maxX - minX + 1;
+    int rowCount = maxY - minY + 1;
+
+    // Grow the grid along the side with the most tiles per cell, until a cell fits
+    int columns = 1;
+    int rows = 1;
+    while ((long) ceilDivide(columnCount, columns) * ceilDivide(rowCount, rows) > maxTilesPerRegion) {
+      if (ceilDivide(columnCount, columns) >= ceilDivide(rowCount, rows)) {
+        columns++;
+      } else {
+        rows++;
+      }
+    }
+
+    int cellWidth = ceilDivide(columnCount, columns);
+    int cellHeight = ceilDivide(rowCount, rows);
+    for (int cellY = minY; cellY <= maxY; cellY += cellHeight) {
+      for (int cellX = minX; cellX <= maxX; cellX += cellWidth) {
+        int lastX = Math.min(cellX + cellWidth - 1, maxX);
+        int lastY = Math.min(cellY + cellHeight - 1, maxY);
+        LatLngBounds cellBounds = LatLngBounds.from(
+          Math.min(bounds.getLatNorth(), tileLatitude(cellY, zoom) - EDGE_INSET_DEGREES),
+          Math.min(bounds.getLonEast(), tileLongitude(lastX + 1, zoom) - EDGE_INSET_DEGREES),
+          Math.max(bounds.getLatSouth(), tileLatitude(lastY + 1, zoom) + EDGE_INSET_DEGREES),
+          Math.max(bounds.getLonWest(), tileLongitude(cellX, zoom) + EDGE_INSET_DEGREES));
+        chunks.add(new Chunk(cellBounds, minZoom, maxZoom, (long) (lastX - cellX + 1) * (lastY - cellY + 1)));
+      }
+    }
+  }
+
+  private static boolean crossesAntimeridian(LatLngBounds bounds) {
+    return bounds.getLonWest() > bounds.getLonEast();
+  }
+
+  private static long countTiles(LatLngBounds bounds, int zoom) {
+    long columns = tileX(bounds.getLonEast(), zoom) - tileX(bounds.getLonWest(), zoom) + 1;
+    if (crossesAntimeridian(bounds)) {
+      // From the west edge to the last column, and on from the first column to the east edge
+      columns = Math.min(1 << zoom, columns + (1 << zoom));
+    }
+    long rows = tileY(bounds.getLatSouth(), zoom) - tileY(bounds.getLatNorth(), zoom) + 1;
+    return columns * rows;
+  }
+
+  private static int tileX(double longitude, int zoom) {
+    int tileCount = 1 << zoom;
+    int x = (int) Math.floor((longitude + 180) / 360 * tileCount);
+    return Math.max(0, Math.min(tileCount - 1, x));
+  }
+
+  private static int tileY(double latitude, int zoom) {
+    int tileCount = 1 << zoom;
+    double radians = Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude)));
+    double y = (1 - Math.log(Math.tan(radians) + 1 / Math.cos(radians)) / Math.PI) / 2;
+    return Math.max(0, Math.min(tileCount - 1, (int) Math.floor(y * tileCount)));
+  }
+
+  private static double tileLongitude(int x, int zoom) {
+    return (double) x / (1 << zoom) * 360 - 180;
+  }
+
+  private static double tileLatitude(int y, int zoom) {
+    double n = Math.PI - 2 * Math.PI * y / (1 << zoom);
+    return Math.toDegrees(Math.atan(Math.sinh(n)));
+  }
+
+  private static int ceilDivide(int value, int divisor) {
+    return (value + divisor - 1) / divisor;
+  }
+}
@@ -0,0 +1,130 @@
+package com.mapbox.mapboxandroiddemo.commons;
+
+import android.support.annotation.NonNull;
+
+import com.mapbox.mapboxsdk.geometry.LatLngBounds;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores offline regions in memory and calls every callback right away. Downloads only make progress when a
+ * test calls {@link FakeRegion#complete(long)}.
+ */
+class FakeOfflineRegionBackend implements OfflineRegionBackend {
+
+  final List<FakeRegion> regions = new ArrayList<>();
+  private long nextId = 1;
+
+  @Override
+  public void createRegion(@NonNull String styleUrl, @NonNull LatLngBounds bounds, double minZoom, double maxZoom,
+                           float pixelRatio, @NonNull byte[] metadata, @NonNull CreateCallback callback) {
+    callback.onCreate(addRegion(bounds, minZoom, maxZoom, metadata));
+  }
+
+  @Override
+  public void listRegions(@NonNull ListCallback callback) {
+    callback.onList(new ArrayList<Region>(regions));
+  }
+
+  /**
+   * Adds a region as if it had been created before, for example by another app version.
+   */
+  FakeRegion addRegion(LatLngBounds bounds, double minZoom, double maxZoom, byte[] metadata) {
+    FakeRegion region = new FakeRegion(nextId++, bounds, minZoom, maxZoom, metadata);
+    regions.add(region);
+    return region;
+  }
+
+  /**
+   * @return the first region that is downloading, or null
+   */
+  FakeRegion findDownloading() {
+    for (FakeRegion region : regions) {
+      if (region.observer != null) {
+        return region;
+      }
+    }
+    return null;
+  }
+
+  class FakeRegion implements Region {
+
+    private final long id;
+    private final LatLngBounds bounds;
+    private final double minZoom;
+    private final double maxZoom;
+    byte[] metadata;
+    ProgressObserver observer;
+    boolean complete;
+    long sizeBytes;
+
+    FakeRegion(long id, LatLngBounds bounds, double minZoom, double maxZoom, byte[] metadata) {
+      this.id = id;
+      this.bounds = bounds;
+      this.minZoom = minZoom;
+      this.maxZoom = maxZoom;
+      this.metadata = metadata;
+    }
+
+    /**
+     * Reports that all resources of the region have been downloaded.
+     */
+    void complete(long sizeBytes) {
+      complete = true;
+      this.sizeBytes = sizeBytes;
+      observer.onProgress(100, 100, sizeBytes, true, true);
+    }
+
+    @Override
+    public long getId() {
+      return id;
+    }
+
+    @Override
+    public byte[] getMetadata() {
+      return metadata;
+    }
+
+    @Override
+    public void updateMetadata(byte[] metadata) {
+      this.metadata = metadata;
+    }
+
+    @Override
+    public LatLngBounds getBounds() {
+      return bounds;
+    }
+
+    @Override
+    public double getMinZoom() {
+      return minZoom;
+    }
+
+    @Override
+    public double getMaxZoom() {
+      return maxZoom;
+    }
+
+    @Override
+    public void getStatus(StatusCallback callback) {
+      callback.onStatus(complete, sizeBytes);
+    }
+
+    @Override
+    public void startDownload(ProgressObserver observer) {
+      this.observer = observer;
+    }
+
+    @Override
+    public void stopDownload() {
+      observer = null;
+    }
+
+    @Override
+    public void delete(DeleteCallback callback) {
+      regions.remove(this);
+      callback.onDelete();
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package com.mapbox.mapboxandroiddemo.commons;
+
+import com.mapbox.mapboxsdk.geometry.LatLngBounds;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class OfflineDownloadManagerTest {
+
+  private static final String STYLE_URL = "mapbox://styles/mapbox/streets-v10";
+  private static final LatLngBounds SAN_FRANCISCO = LatLngBounds.from(37.81, -122.36, 37.70, -122.52);
+  private static final double MIN_ZOOM = 10;
+  private static final double MAX_ZOOM = 14;
+  private static final int MAX_TILE_ZOOM = 16;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private FakeOfflineRegionBackend backend;
+  private OfflineRegionCatalog catalog;
+  private RecordingListener listener;
+  private long areaTileCount;
+
+  @Before
+  public void setUp() {
+    backend = new FakeOfflineRegionBackend();
+    File storageDir = new File(temporaryFolder.getRoot().getPath()) {
+      @Override
+      public long getUsableSpace() {
+        // Never low on storage, so nothing is evicted
+        return Long.MAX_VALUE;
+      }
+    };
+    catalog = new OfflineRegionCatalog(new File(temporaryFolder.getRoot(), "catalog.bin"), storageDir, backend);
+    listener = new RecordingListener();
+    areaTileCount = OfflineRegionPlanner.estimateTileCount(SAN_FRANCISCO, MIN_ZOOM, MAX_ZOOM, MAX_TILE_ZOOM);
+  }
+
+  @Test
+  public void downloadSplitsTheAreaIntoRegionsAndCompletesThemAll() {
+    long maxTilesPerRegion = areaTileCount / 3;
+    OfflineDownloadManager manager = new OfflineDownloadManager(catalog, 2, maxTilesPerRegion,
+      OfflineDownloadManager.DEFAULT_TILE_COUNT_LIMIT, MAX_TILE_ZOOM);
+
+    manager.download(STYLE_URL, SAN_FRANCISCO, MIN_ZOOM, MAX_ZOOM, 1, "San Francisco", listener);
+    assertEquals(areaTileCount, listener.estimatedTileCount);
+    assertTrue(listener.regionCount > 1);
+    completeAllDownloads();
+
+    assertTrue(listener.complete);
+    assertNull(listener.error);
+    assertFalse(manager.isDownloading());
+    assertEquals(listener.regionCount, backend.regions.size());
+    for (FakeOfflineRegionBackend.FakeRegion region : backend.regions) {
+      assertTrue(OfflineRegionPlanner.estimateTileCount(region.getBounds(), region.getMinZoom(),
+        region.getMaxZoom(), MAX_TILE_ZOOM) <= maxTilesPerRegion);
+      OfflineRegionMetadata metadata = OfflineRegionMetadata.decode(region.getMetadata());
+      assertNotNull(metadata);
+      assertTrue(metadata.isComplete());
+      assertTrue(catalog.get(region.getId()).getMetadata().isComplete());
+    }
+  }
+
+  @Test
+  public void downloadIsRejectedWhenStoredRegionsLeaveTooFewTiles() {
+    // The stored region covers the same area, and the limit leaves room for one tile less than both need
+    backend.addRegion(SAN_FRANCISCO, MIN_ZOOM, MAX_ZOOM, new byte[0]);
+    OfflineDownloadManager manager = new OfflineDownloadManager(catalog, 2,
+      OfflineDownloadManager.DEFAULT_MAX_TILES_PER_REGION, 2 * areaTileCount - 1, MAX_TILE_ZOOM);
+
+    manager.download(STYLE_URL, SAN_FRANCISCO, MIN_ZOOM, MAX_ZOOM, 1, "San Francisco", listener);
+
+    assertNotNull(listener.error);
+    assertFalse(listener.complete);
+    assertEquals(0, listener.regionCount);
+    assertFalse(manager.isDownloading());
+    assertEquals(1, backend.regions.size());
+  }
+
+  @Test
+  public void downloadStartsWhenStoredRegionsLeaveEnoughTiles() {
+    backend.addRegion(SAN_FRANCISCO, MIN_ZOOM, MAX_ZOOM, new byte[0]);
+    OfflineDownloadManager manager = new OfflineDownloadManager(catalog, 2,
+      OfflineDownloadManager.DEFAULT_MAX_TILES_PER_REGION, 2 * areaTileCount, MAX_TILE_ZOOM);
+
+    manager.download(STYLE_URL, SAN_FRANCISCO, MIN_ZOOM, MAX_ZOOM, 1, "San Francisco", listener);
+    completeAllDownloads();
+
+    assertNull(listener.error);
+    assertTrue(listener.complete);
+  }
+
+  @Test
+  public void resumeContinuesTheRegionsOfAnInterruptedDownload() {
+    OfflineDownloadManager manager = new OfflineDownloadManager(catalog, 1, areaTileCount / 3,
+      OfflineDownloadManager.DEFAULT_TILE_COUNT_LIMIT, MAX_TILE_ZOOM);
+    manager.download(STYLE_URL, SAN_FRANCISCO, MIN_ZOOM, MAX_ZOOM, 1, "San Francisco", listener);
+    backend.findDownloading().complete(1000);
+    // Only the regions that were started exist, so the second one is interrupted halfway
+    manager.cancel();
+    assertEquals(2, backend.regions.size());
+    assertNull(backend.findDownloading());
+
+    RecordingListener resumeListener = new RecordingListener();
+    new OfflineDownloadManager(catalog).resume(resumeListener);
+    assertEquals(1, resumeListener.regionCount);
+    completeAllDownloads();
+
+    assertTrue(resumeListener.complete);
+    for (FakeOfflineRegionBackend.FakeRegion region : backend.regions) {
+      assertTrue(OfflineRegionMetadata.decode(region.getMetadata()).isComplete());
+    }
+  }
+
+  private void completeAllDownloads() {
+    FakeOfflineRegionBackend.FakeRegion region;
+    while ((region = backend.findDownloading()) != null) {
+      region.complete(1000);
+    }
+  }
+
+  private static class RecordingListener implements OfflineDownloadManager.Listener {
+
+    int regionCount;
+    long estimatedTileCount;
+    boolean complete;
+    String error;
+
+    @Override
+    public void onDownloadStarted(int regionCount, long estimatedTileCount) {
+      this.regionCount = regionCount;
+      this.estimatedTileCount = estimatedTileCount;
+    }
+
+    @Override
+    public void onDownloadProgress(long completedResourceCount, long requiredResourceCount,
+                                   long completedResourceSize, boolean precise) {
+      // Not checked
+    }
+
+    @Override
+    public void onDownloadComplete() {
+      complete = true;
+    }
+
+    @Override
+    public void onDownloadError(String message) {
+      error = message;
+    }
+  }
+}
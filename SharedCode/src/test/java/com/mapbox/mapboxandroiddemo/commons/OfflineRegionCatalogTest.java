@@ -0,0 +1,96 @@
+package com.mapbox.mapboxandroiddemo.commons;
+
+import com.mapbox.mapboxsdk.geometry.LatLngBounds;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class OfflineRegionCatalogTest {
+
+  private static final LatLngBounds SAN_FRANCISCO = LatLngBounds.from(37.81, -122.36, 37.70, -122.52);
+  private static final long MIN_FREE_BYTES = 1000;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private FakeOfflineRegionBackend backend;
+  private OfflineRegionCatalog catalog;
+
+  @Before
+  public void setUp() {
+    backend = new FakeOfflineRegionBackend();
+    File storageDir = new File(temporaryFolder.getRoot().getPath()) {
+      @Override
+      public long getUsableSpace() {
+        // Always low on storage, so everything that can be evicted is
+        return 0;
+      }
+    };
+    catalog = new OfflineRegionCatalog(new File(temporaryFolder.getRoot(), "catalog.bin"), storageDir, backend);
+  }
+
+  @Test
+  public void syncReadsTheStatusOfRegionsCreatedElsewhere() {
+    FakeOfflineRegionBackend.FakeRegion complete = backend.addRegion(SAN_FRANCISCO, 10, 14, null);
+    complete.complete = true;
+    complete.sizeBytes = 5000;
+    FakeOfflineRegionBackend.FakeRegion partial = backend.addRegion(SAN_FRANCISCO, 10, 16, null);
+
+    catalog.sync(new NoOpSyncCallback());
+
+    assertTrue(catalog.get(complete.getId()).getMetadata().isComplete());
+    assertEquals(5000, catalog.get(complete.getId()).getMetadata().getSizeBytes());
+    assertFalse(catalog.get(partial.getId()).getMetadata().isComplete());
+  }
+
+  @Test
+  public void evictionOnlyDeletesCompleteRegionsOfTheDownloadManager() {
+    FakeOfflineRegionBackend.FakeRegion downloaded = addDownloadedRegion(true);
+    FakeOfflineRegionBackend.FakeRegion downloading = addDownloadedRegion(false);
+    FakeOfflineRegionBackend.FakeRegion createdElsewhere = backend.addRegion(SAN_FRANCISCO, 10, 14, null);
+    createdElsewhere.complete = true;
+    FakeOfflineRegionBackend.FakeRegion downloadingElsewhere = backend.addRegion(SAN_FRANCISCO, 10, 16, null);
+
+    catalog.evictIfLowOnSpace(MIN_FREE_BYTES);
+
+    assertNull(catalog.get(downloaded.getId()));
+    assertFalse(backend.regions.contains(downloaded));
+    assertNotNull(catalog.get(downloading.getId()));
+    assertNotNull(catalog.get(createdElsewhere.getId()));
+    assertNotNull(catalog.get(downloadingElsewhere.getId()));
+    assertEquals(3, backend.regions.size());
+  }
+
+  private FakeOfflineRegionBackend.FakeRegion addDownloadedRegion(boolean complete) {
+    OfflineRegionMetadata metadata = new OfflineRegionMetadata("San Francisco", SAN_FRANCISCO, 10, 14,
+      System.currentTimeMillis(), 0, 1);
+    metadata.setComplete(complete);
+    return backend.addRegion(SAN_FRANCISCO, 10, 14, metadata.encode());
+  }
+
+  private static class NoOpSyncCallback implements OfflineRegionCatalog.SyncCallback {
+
+    @Override
+    public void onSynced() {
+      // Nothing to do, the fake calls back right away
+    }
+
+    @Override
+    public void onError(String error) {
+      throw new AssertionError(error);
+    }
+  }
+}
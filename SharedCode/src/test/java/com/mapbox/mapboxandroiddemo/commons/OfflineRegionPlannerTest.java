@@ -0,0 +1,50 @@
+package com.mapbox.mapboxandroiddemo.commons;
+
+import com.mapbox.mapboxsdk.geometry.LatLngBounds;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class OfflineRegionPlannerTest {
+
+  // Fiji, from 177 degrees east to 178 degrees west
+  private static final LatLngBounds FIJI = LatLngBounds.from(-15.5, -178, -19.5, 177);
+  private static final LatLngBounds FIJI_WEST = LatLngBounds.from(-15.5, 180, -19.5, 177);
+  private static final LatLngBounds FIJI_EAST = LatLngBounds.from(-15.5, -178, -19.5, -180);
+  private static final int MAX_TILE_ZOOM = OfflineRegionPlanner.DEFAULT_MAX_TILE_ZOOM;
+
+  @Test
+  public void estimateCountsTilesOnBothSidesOfTheAntimeridian() {
+    for (int zoom = 0; zoom <= 12; zoom++) {
+      long tileCount = OfflineRegionPlanner.estimateTileCount(FIJI, zoom, zoom, MAX_TILE_ZOOM);
+      long westTileCount = OfflineRegionPlanner.estimateTileCount(FIJI_WEST, zoom, zoom, MAX_TILE_ZOOM);
+      long eastTileCount = OfflineRegionPlanner.estimateTileCount(FIJI_EAST, zoom, zoom, MAX_TILE_ZOOM);
+
+      assertTrue(tileCount > 0);
+      assertTrue(tileCount <= westTileCount + eastTileCount);
+      if (zoom > 0) {
+        // Only the single tile of zoom level 0 is on both sides
+        assertEquals(westTileCount + eastTileCount, tileCount);
+      }
+    }
+  }
+
+  @Test
+  public void splitDoesNotCrossTheAntimeridian() {
+    List<OfflineRegionPlanner.Chunk> chunks = OfflineRegionPlanner.split(FIJI, 6, 12, MAX_TILE_ZOOM, 500);
+
+    assertTrue(chunks.size() > 2);
+    for (OfflineRegionPlanner.Chunk chunk : chunks) {
+      assertTrue(chunk.bounds.getLonWest() <= chunk.bounds.getLonEast());
+      assertTrue(chunk.tileCount > 0 && chunk.tileCount <= 500);
+      assertTrue(chunk.bounds.getLonWest() >= 177 || chunk.bounds.getLonEast() <= -178);
+    }
+  }
+}